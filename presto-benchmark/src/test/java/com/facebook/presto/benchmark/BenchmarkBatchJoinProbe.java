@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.benchmark;
+
+import com.facebook.presto.SystemSessionProperties;
+import com.facebook.presto.spi.Page;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+/**
+ * Compares probing a hash join one row at a time with probing a whole page at once.
+ * The benefit of the batched probe is expected to grow with the size of the build side,
+ * once the hash table no longer fits in the CPU caches.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Thread)
+@OutputTimeUnit(MILLISECONDS)
+@BenchmarkMode(AverageTime)
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+public class BenchmarkBatchJoinProbe
+{
+    @State(Thread)
+    public static class Context
+    {
+        private MemoryLocalQueryRunner queryRunner;
+
+        @Param({"true", "false"})
+        private String batchJoinProbe;
+
+        // tpch schema the build side is read from
+        @Param({"tiny", "sf1"})
+        private String buildSchema;
+
+        public MemoryLocalQueryRunner getQueryRunner()
+        {
+            return queryRunner;
+        }
+
+        @Setup
+        public void setUp()
+        {
+            queryRunner = new MemoryLocalQueryRunner(ImmutableMap.of(SystemSessionProperties.BATCH_JOIN_PROBE_ENABLED, batchJoinProbe));
+
+            queryRunner.execute(format("CREATE TABLE memory.default.build AS SELECT orderkey, totalprice FROM tpch.%s.orders", buildSchema));
+            queryRunner.execute("CREATE TABLE memory.default.probe AS SELECT orderkey, quantity FROM tpch.sf1.lineitem");
+        }
+    }
+
+    @Benchmark
+    public List<Page> benchmarkJoin(Context context)
+    {
+        return context.getQueryRunner()
+                .execute("SELECT count(*), sum(totalprice) FROM probe JOIN build ON probe.orderkey = build.orderkey");
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkBatchJoinProbe.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.facebook.presto.spi.block.ArrayBlockEncoding;
+import com.facebook.presto.spi.block.BlockEncoding;
+import com.facebook.presto.spi.block.BlockEncodingFactory;
+import com.facebook.presto.spi.block.BlockEncodingSerde;
+import com.facebook.presto.spi.block.ByteArrayBlockEncoding;
+import com.facebook.presto.spi.block.DictionaryBlockEncoding;
+import com.facebook.presto.spi.block.FixedWidthBlockEncoding;
+import com.facebook.presto.spi.block.IntArrayBlockEncoding;
+import com.facebook.presto.spi.block.InterleavedBlockEncoding;
+import com.facebook.presto.spi.block.LongArrayBlockEncoding;
+import com.facebook.presto.spi.block.RunLengthBlockEncoding;
+import com.facebook.presto.spi.block.ShortArrayBlockEncoding;
+import com.facebook.presto.spi.block.SliceArrayBlockEncoding;
+import com.facebook.presto.spi.block.VariableWidthBlockEncoding;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+
+import java.util.Map;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.function.Function.identity;
+
+/**
+ * Reads the built-in block encodings the same way the server writes them, without a type manager.
+ * The encodings of map blocks read the types of the keys, so they are not supported.
+ */
+class ClientBlockEncodingSerde
+        implements BlockEncodingSerde
+{
+    public static final ClientBlockEncodingSerde INSTANCE = new ClientBlockEncodingSerde();
+
+    private static final Map<String, BlockEncodingFactory<?>> BLOCK_ENCODINGS = ImmutableList.<BlockEncodingFactory<?>>of(
+            VariableWidthBlockEncoding.FACTORY,
+            FixedWidthBlockEncoding.FACTORY,
+            ByteArrayBlockEncoding.FACTORY,
+            ShortArrayBlockEncoding.FACTORY,
+            IntArrayBlockEncoding.FACTORY,
+            LongArrayBlockEncoding.FACTORY,
+            SliceArrayBlockEncoding.FACTORY,
+            DictionaryBlockEncoding.FACTORY,
+            ArrayBlockEncoding.FACTORY,
+            InterleavedBlockEncoding.FACTORY,
+            RunLengthBlockEncoding.FACTORY)
+            .stream()
+            .collect(toImmutableMap(BlockEncodingFactory::getName, identity()));
+
+    private ClientBlockEncodingSerde() {}
+
+    @Override
+    public BlockEncoding readBlockEncoding(SliceInput input)
+    {
+        String encodingName = readLengthPrefixedString(input);
+        BlockEncodingFactory<?> blockEncoding = BLOCK_ENCODINGS.get(encodingName);
+        if (blockEncoding == null) {
+            throw new ClientException("Unsupported block encoding: " + encodingName);
+        }
+        // none of the supported encodings reads a type
+        return blockEncoding.readEncoding(null, this, input);
+    }
+
+    @Override
+    public void writeBlockEncoding(SliceOutput output, BlockEncoding encoding)
+    {
+        writeLengthPrefixedString(output, encoding.getName());
+        BlockEncodingFactory<BlockEncoding> blockEncoding = encoding.getFactory();
+        blockEncoding.writeEncoding(this, output, encoding);
+    }
+
+    private static String readLengthPrefixedString(SliceInput input)
+    {
+        int length = input.readInt();
+        byte[] bytes = new byte[length];
+        input.readBytes(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeLengthPrefixedString(SliceOutput output, String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.writeBytes(bytes);
+    }
+}
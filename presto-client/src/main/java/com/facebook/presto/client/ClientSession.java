@@ -44,6 +44,7 @@ public class ClientSession
     private final String transactionId;
     private final boolean debug;
     private final Duration clientRequestTimeout;
+    private final boolean binaryResults;
 
     public static ClientSession withCatalogAndSchema(ClientSession session, String catalog, String schema)
     {
@@ -60,7 +61,8 @@ public class ClientSession
                 session.getPreparedStatements(),
                 session.getTransactionId(),
                 session.isDebug(),
-                session.getClientRequestTimeout());
+                session.getClientRequestTimeout(),
+                session.isBinaryResults());
     }
 
     public static ClientSession withProperties(ClientSession session, Map<String, String> properties)
@@ -78,7 +80,8 @@ public class ClientSession
                 session.getPreparedStatements(),
                 session.getTransactionId(),
                 session.isDebug(),
-                session.getClientRequestTimeout());
+                session.getClientRequestTimeout(),
+                session.isBinaryResults());
     }
 
     public static ClientSession withPreparedStatements(ClientSession session, Map<String, String> preparedStatements)
@@ -96,7 +99,8 @@ public class ClientSession
                 preparedStatements,
                 session.getTransactionId(),
                 session.isDebug(),
-                session.getClientRequestTimeout());
+                session.getClientRequestTimeout(),
+                session.isBinaryResults());
     }
 
     public static ClientSession withTransactionId(ClientSession session, String transactionId)
@@ -114,7 +118,8 @@ public class ClientSession
                 session.getPreparedStatements(),
                 transactionId,
                 session.isDebug(),
-                session.getClientRequestTimeout());
+                session.getClientRequestTimeout(),
+                session.isBinaryResults());
     }
 
     public static ClientSession stripTransactionId(ClientSession session)
@@ -132,7 +137,8 @@ public class ClientSession
                 session.getPreparedStatements(),
                 null,
                 session.isDebug(),
-                session.getClientRequestTimeout());
+                session.getClientRequestTimeout(),
+                session.isBinaryResults());
     }
 
     public ClientSession(
@@ -166,6 +172,25 @@ public class ClientSession
             String transactionId,
             boolean debug,
             Duration clientRequestTimeout)
+    {
+        this(server, user, source, clientInfo, catalog, schema, timeZoneId, locale, properties, preparedStatements, transactionId, debug, clientRequestTimeout, false);
+    }
+
+    public ClientSession(
+            URI server,
+            String user,
+            String source,
+            String clientInfo,
+            String catalog,
+            String schema,
+            String timeZoneId,
+            Locale locale,
+            Map<String, String> properties,
+            Map<String, String> preparedStatements,
+            String transactionId,
+            boolean debug,
+            Duration clientRequestTimeout,
+            boolean binaryResults)
     {
         this.server = requireNonNull(server, "server is null");
         this.user = user;
@@ -180,6 +205,7 @@ public class ClientSession
         this.properties = ImmutableMap.copyOf(requireNonNull(properties, "properties is null"));
         this.preparedStatements = ImmutableMap.copyOf(requireNonNull(preparedStatements, "preparedStatements is null"));
         this.clientRequestTimeout = clientRequestTimeout;
+        this.binaryResults = binaryResults;
 
         // verify the properties are valid
         CharsetEncoder charsetEncoder = US_ASCII.newEncoder();
@@ -256,6 +282,14 @@ public class ClientSession
         return clientRequestTimeout;
     }
 
+    /**
+     * Whether the results are fetched as pages when the server supports it, instead of as JSON rows.
+     */
+    public boolean isBinaryResults()
+    {
+        return binaryResults;
+    }
+
     @Override
     public String toString()
     {
@@ -270,6 +304,7 @@ public class ClientSession
                 .add("properties", properties)
                 .add("transactionId", transactionId)
                 .add("debug", debug)
+                .add("binaryResults", binaryResults)
                 .toString();
     }
 }
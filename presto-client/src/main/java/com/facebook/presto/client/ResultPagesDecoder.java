@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.BlockEncoding;
+import com.facebook.presto.spi.type.StandardTypes;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.IntegerType.INTEGER;
+import static com.facebook.presto.spi.type.RealType.REAL;
+import static com.facebook.presto.spi.type.SmallintType.SMALLINT;
+import static com.facebook.presto.spi.type.TinyintType.TINYINT;
+import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes the result pages of a query into rows. The values are read from the blocks of the pages as they
+ * were encoded by the server, so no text is parsed, and the rows hold the same values as the rows of the
+ * JSON results. The server only sends pages for queries with columns of the types this decoder supports.
+ */
+public class ResultPagesDecoder
+{
+    private static final byte UNCOMPRESSED_MARKER = 0;
+
+    private static final Set<String> SUPPORTED_TYPES = ImmutableSet.of(
+            StandardTypes.BOOLEAN,
+            StandardTypes.TINYINT,
+            StandardTypes.SMALLINT,
+            StandardTypes.INTEGER,
+            StandardTypes.BIGINT,
+            StandardTypes.REAL,
+            StandardTypes.DOUBLE,
+            StandardTypes.VARCHAR,
+            StandardTypes.VARBINARY);
+
+    private final List<ValueReader> readers;
+
+    public ResultPagesDecoder(List<Column> columns)
+    {
+        this.readers = requireNonNull(columns, "columns is null").stream()
+                .map(column -> createValueReader(column.getTypeSignature().getRawType()))
+                .collect(toImmutableList());
+    }
+
+    public static boolean isSupportedType(String typeBase)
+    {
+        return SUPPORTED_TYPES.contains(typeBase);
+    }
+
+    /**
+     * Decodes serialized pages, as written with the presto pages media type. The rows are produced as they are
+     * iterated, and the blocks of the pages are views of the data, so the data is not copied.
+     */
+    public Iterable<List<Object>> decode(Slice serializedPages)
+    {
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        SliceInput input = serializedPages.getInput();
+        while (input.isReadable()) {
+            pages.add(readPage(input));
+        }
+        return Iterables.concat(Iterables.transform(pages.build(), page -> () -> new RowIterator(page)));
+    }
+
+    private static Page readPage(SliceInput input)
+    {
+        int positionCount = input.readInt();
+        byte compressionMarker = input.readByte();
+        input.readInt(); // uncompressed size
+        int sizeInBytes = input.readInt();
+        if (compressionMarker != UNCOMPRESSED_MARKER) {
+            throw new ClientException("Compressed result pages are not supported");
+        }
+
+        SliceInput pageInput = input.readSlice(sizeInBytes).getInput();
+        Block[] blocks = new Block[pageInput.readInt()];
+        for (int i = 0; i < blocks.length; i++) {
+            BlockEncoding encoding = ClientBlockEncodingSerde.INSTANCE.readBlockEncoding(pageInput);
+            blocks[i] = encoding.readBlock(pageInput);
+        }
+        return new Page(positionCount, blocks);
+    }
+
+    private static ValueReader createValueReader(String typeBase)
+    {
+        // the values are of the same classes as the values of the JSON results
+        switch (typeBase) {
+            case StandardTypes.BOOLEAN:
+                return BOOLEAN::getBoolean;
+            case StandardTypes.TINYINT:
+                return (block, position) -> (byte) TINYINT.getLong(block, position);
+            case StandardTypes.SMALLINT:
+                return (block, position) -> (short) SMALLINT.getLong(block, position);
+            case StandardTypes.INTEGER:
+                return (block, position) -> (int) INTEGER.getLong(block, position);
+            case StandardTypes.BIGINT:
+                return BIGINT::getLong;
+            case StandardTypes.REAL:
+                return (block, position) -> Float.intBitsToFloat((int) REAL.getLong(block, position));
+            case StandardTypes.DOUBLE:
+                return DOUBLE::getDouble;
+            case StandardTypes.VARCHAR:
+                return (block, position) -> VARCHAR.getSlice(block, position).toStringUtf8();
+            case StandardTypes.VARBINARY:
+                return (block, position) -> VARBINARY.getSlice(block, position).getBytes();
+            default:
+                throw new ClientException("Unsupported type for result pages: " + typeBase);
+        }
+    }
+
+    private interface ValueReader
+    {
+        Object read(Block block, int position);
+    }
+
+    private class RowIterator
+            extends AbstractIterator<List<Object>>
+    {
+        private final Page page;
+        private int position = -1;
+
+        private RowIterator(Page page)
+        {
+            this.page = page;
+        }
+
+        @Override
+        protected List<Object> computeNext()
+        {
+            position++;
+            if (position >= page.getPositionCount()) {
+                return endOfData();
+            }
+
+            Object[] values = new Object[readers.size()];
+            for (int channel = 0; channel < values.length; channel++) {
+                Block block = page.getBlock(channel);
+                if (!block.isNull(position)) {
+                    values[channel] = readers.get(channel).read(block, position);
+                }
+            }
+            return unmodifiableList(Arrays.asList(values)); // allow nulls in list
+        }
+    }
+}
@@ -20,16 +20,19 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import io.airlift.json.JsonCodec;
+import io.airlift.slice.Slices;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
@@ -41,16 +44,20 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_ADDED_PREPARE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_BUFFER_COMPLETE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CATALOG;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLEAR_SESSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLEAR_TRANSACTION_ID;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLIENT_INFO;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_DEALLOCATED_PREPARE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_LANGUAGE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PREPARED_STATEMENT;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_RESULT_FORMAT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SCHEMA;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SESSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SET_SESSION;
@@ -64,19 +71,24 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.net.HttpHeaders.USER_AGENT;
 import static io.airlift.json.JsonCodec.jsonCodec;
 import static java.lang.String.format;
+import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 @ThreadSafe
 public class StatementClient
         implements Closeable
 {
     private static final MediaType MEDIA_TYPE_JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final String PRESTO_PAGES = "application/X-presto-pages";
     private static final JsonCodec<QueryResults> QUERY_RESULTS_CODEC = jsonCodec(QueryResults.class);
+    // how often the stats of a query are read from the JSON results while its results are fetched as pages
+    private static final long STATS_REFRESH_INTERVAL_NANOS = SECONDS.toNanos(1);
 
     private static final Splitter SESSION_HEADER_SPLITTER = Splitter.on('=').limit(2).trimResults();
     private static final String USER_AGENT_VALUE = StatementClient.class.getSimpleName() +
@@ -99,6 +111,11 @@ public class StatementClient
     private final TimeZoneKey timeZone;
     private final long requestTimeoutNanos;
     private final String user;
+    private final boolean streamPages;
+    private final AtomicLong pagesToken = new AtomicLong();
+    private final AtomicBoolean pagesComplete = new AtomicBoolean();
+    private final AtomicReference<ResultPagesDecoder> pagesDecoder = new AtomicReference<>();
+    private final AtomicLong lastStatsRefreshNanos = new AtomicLong(System.nanoTime());
 
     public StatementClient(OkHttpClient httpClient, ClientSession session, String query)
     {
@@ -120,6 +137,9 @@ public class StatementClient
             throw requestFailedException("starting query", request, response);
         }
 
+        // the server tells whether it can send the results as pages
+        this.streamPages = session.isBinaryResults() && PRESTO_PAGES.equalsIgnoreCase(response.getHeaders().get(PRESTO_RESULT_FORMAT));
+
         processResponse(response.getHeaders(), response.getValue());
     }
 
@@ -163,6 +183,10 @@ public class StatementClient
 
         builder.addHeader(PRESTO_TRANSACTION_ID, session.getTransactionId() == null ? "NONE" : session.getTransactionId());
 
+        if (session.isBinaryResults()) {
+            builder.addHeader(PRESTO_RESULT_FORMAT, PRESTO_PAGES);
+        }
+
         return builder.build();
     }
 
@@ -264,6 +288,11 @@ public class StatementClient
             return false;
         }
 
+        // the pages are fetched once the columns are known, then the JSON results report the final state of the query
+        if (streamPages && !pagesComplete.get() && current().getError() == null && current().getColumns() != null && isStreamingSupported(current().getColumns())) {
+            return advancePages();
+        }
+
         Request request = prepareRequest(HttpUrl.get(nextUri)).build();
 
         Exception cause = null;
@@ -273,18 +302,7 @@ public class StatementClient
         do {
             // back-off on retry
             if (attempts > 0) {
-                try {
-                    MILLISECONDS.sleep(attempts * 100);
-                }
-                catch (InterruptedException e) {
-                    try {
-                        close();
-                    }
-                    finally {
-                        Thread.currentThread().interrupt();
-                    }
-                    throw new RuntimeException("StatementClient thread was interrupted");
-                }
+                sleepBeforeRetry(attempts);
             }
             attempts++;
 
@@ -312,6 +330,144 @@ public class StatementClient
         throw new RuntimeException("Error fetching next", cause);
     }
 
+    private static boolean isStreamingSupported(List<Column> columns)
+    {
+        // the results with columns the decoder can not read are returned as JSON
+        return columns.stream()
+                .allMatch(column -> ResultPagesDecoder.isSupportedType(column.getTypeSignature().getRawType()));
+    }
+
+    private boolean advancePages()
+    {
+        QueryResults results = current();
+        if (pagesDecoder.get() == null) {
+            pagesDecoder.set(new ResultPagesDecoder(results.getColumns()));
+        }
+
+        HttpUrl url = HttpUrl.get(results.getNextUri()).newBuilder()
+                .encodedPath("/v1/statement")
+                .addPathSegment(results.getId())
+                .addPathSegment("pages")
+                .addPathSegment(String.valueOf(pagesToken.get()))
+                .query(null)
+                .build();
+        Request request = prepareRequest(url).build();
+
+        Exception cause = null;
+        long start = System.nanoTime();
+        long attempts = 0;
+
+        do {
+            // back-off on retry
+            if (attempts > 0) {
+                sleepBeforeRetry(attempts);
+            }
+            attempts++;
+
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (response.code() == HTTP_UNAVAILABLE) {
+                    continue;
+                }
+                if ((response.code() != HTTP_OK) && (response.code() != HTTP_NO_CONTENT)) {
+                    gone.set(true);
+                    throw new RuntimeException(format("Error fetching pages at %s returned HTTP %s", request.url(), response.code()));
+                }
+
+                Iterable<List<Object>> data = null;
+                if (response.code() == HTTP_OK) {
+                    data = pagesDecoder.get().decode(Slices.wrappedBuffer(requireNonNull(response.body()).bytes()));
+                }
+                pagesToken.set(Long.parseLong(response.header(PRESTO_PAGE_NEXT_TOKEN)));
+                pagesComplete.set(Boolean.parseBoolean(response.header(PRESTO_BUFFER_COMPLETE)));
+
+                // the pages do not carry the stats of the query, so they are read from the JSON results every so often
+                QueryResults status = results;
+                if (!pagesComplete.get() && (System.nanoTime() - lastStatsRefreshNanos.get()) >= STATS_REFRESH_INTERVAL_NANOS) {
+                    status = fetchStatus(results);
+                    lastStatsRefreshNanos.set(System.nanoTime());
+                }
+
+                currentResults.set(new QueryResults(
+                        results.getId(),
+                        results.getInfoUri(),
+                        results.getPartialCancelUri(),
+                        status.getNextUri(),
+                        results.getColumns(),
+                        data,
+                        status.getStats(),
+                        status.getError(),
+                        results.getUpdateType(),
+                        results.getUpdateCount()));
+                return true;
+            }
+            catch (IOException e) {
+                cause = e;
+            }
+        }
+        while (((System.nanoTime() - start) < requestTimeoutNanos) && !isClosed());
+
+        gone.set(true);
+        throw new RuntimeException("Error fetching pages", cause);
+    }
+
+    /**
+     * Reads the current state of a query from its JSON results, without waiting for the state to change.
+     * While the results are fetched as pages, the JSON results carry no rows.
+     */
+    private QueryResults fetchStatus(QueryResults results)
+    {
+        HttpUrl url = HttpUrl.get(results.getNextUri()).newBuilder()
+                .setQueryParameter("maxWait", "0ms")
+                .build();
+        Request request = prepareRequest(url).build();
+
+        JsonResponse<QueryResults> response;
+        try {
+            response = JsonResponse.execute(QUERY_RESULTS_CODEC, httpClient, request);
+        }
+        catch (RuntimeException e) {
+            // the stats are refreshed with the next pages
+            return results;
+        }
+        if ((response.getStatusCode() != HTTP_OK) || !response.hasValue()) {
+            return results;
+        }
+
+        QueryResults status = response.getValue();
+        processResponse(response.getHeaders(), status);
+        if (status.getNextUri() == null && status.getError() == null) {
+            // the query is done, but pages may be left: requesting the same results again returns this final state
+            return new QueryResults(
+                    status.getId(),
+                    status.getInfoUri(),
+                    status.getPartialCancelUri(),
+                    results.getNextUri(),
+                    status.getColumns(),
+                    status.getData(),
+                    status.getStats(),
+                    status.getError(),
+                    status.getUpdateType(),
+                    status.getUpdateCount());
+        }
+        return status;
+    }
+
+    private void sleepBeforeRetry(long attempts)
+    {
+        try {
+            MILLISECONDS.sleep(attempts * 100);
+        }
+        catch (InterruptedException e) {
+            try {
+                close();
+            }
+            finally {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("StatementClient thread was interrupted");
+        }
+    }
+
     private void processResponse(Headers headers, QueryResults results)
     {
         for (String setSession : headers.values(PRESTO_SET_SESSION)) {
@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.google.common.collect.ImmutableList;
+import io.airlift.json.JsonCodec;
+import io.airlift.slice.Slice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.facebook.presto.client.TestResultPagesDecoder.createDecoder;
+import static com.facebook.presto.client.TestResultPagesDecoder.serializePages;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.TypeSignature.parseTypeSignature;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static io.airlift.slice.Slices.utf8Slice;
+
+/**
+ * Compares the rows per second a client decodes from the JSON results and from the result pages of a query.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkResultPagesDecoder
+{
+    private static final int ROWS = 10_000;
+    private static final int ROWS_PER_PAGE = 1024;
+    private static final List<String> TYPES = ImmutableList.of("bigint", "double", "varchar");
+    private static final JsonCodec<QueryResults> QUERY_RESULTS_CODEC = jsonCodec(QueryResults.class);
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long json(BenchmarkData data)
+    {
+        return consume(QUERY_RESULTS_CODEC.fromJson(data.json).getData());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long pages(BenchmarkData data)
+    {
+        return consume(createDecoder(TYPES).decode(data.pages));
+    }
+
+    private static long consume(Iterable<List<Object>> rows)
+    {
+        long checksum = 0;
+        for (List<Object> row : rows) {
+            checksum += (Long) row.get(0);
+            checksum += ((String) row.get(2)).length();
+        }
+        return checksum;
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"8", "64"})
+        private int varcharLength = 8;
+
+        private String json;
+        private Slice pages;
+
+        @Setup
+        public void setup()
+        {
+            List<List<Object>> rows = new ArrayList<>();
+            List<Page> pageList = new ArrayList<>();
+            BlockBuilder bigints = null;
+            BlockBuilder doubles = null;
+            BlockBuilder varchars = null;
+            char[] chars = new char[varcharLength];
+            for (int row = 0; row < ROWS; row++) {
+                if (row % ROWS_PER_PAGE == 0) {
+                    if (bigints != null) {
+                        pageList.add(new Page(bigints.build(), doubles.build(), varchars.build()));
+                    }
+                    bigints = BIGINT.createBlockBuilder(new BlockBuilderStatus(), ROWS_PER_PAGE);
+                    doubles = DOUBLE.createBlockBuilder(new BlockBuilderStatus(), ROWS_PER_PAGE);
+                    varchars = VARCHAR.createBlockBuilder(new BlockBuilderStatus(), ROWS_PER_PAGE);
+                }
+                Arrays.fill(chars, (char) ('a' + row % 26));
+                String value = new String(chars);
+                rows.add(ImmutableList.of((long) row, row * 0.5, value));
+                BIGINT.writeLong(bigints, row);
+                DOUBLE.writeDouble(doubles, row * 0.5);
+                VARCHAR.writeSlice(varchars, utf8Slice(value));
+            }
+            pageList.add(new Page(bigints.build(), doubles.build(), varchars.build()));
+
+            List<Column> columns = TYPES.stream()
+                    .map(type -> new Column("test", type, new ClientTypeSignature(parseTypeSignature(type))))
+                    .collect(toImmutableList());
+            StatementStats stats = new StatementStats("RUNNING", false, true, 1, 1, 0, 1, 0, 0, 0, 0, 0, 0, null);
+            QueryResults results = new QueryResults("test", URI.create("http://localhost"), null, null, columns, rows, stats, null, null, null);
+            json = QUERY_RESULTS_CODEC.toJson(results);
+            pages = serializePages(pageList);
+        }
+    }
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        // assure the benchmarks are valid before running
+        BenchmarkData data = new BenchmarkData();
+        data.setup();
+        BenchmarkResultPagesDecoder benchmark = new BenchmarkResultPagesDecoder();
+        long json = benchmark.json(data);
+        long pages = benchmark.pages(data);
+        if (json != pages) {
+            throw new IllegalStateException("Expected the same rows from JSON and pages, but got checksums " + json + " and " + pages);
+        }
+
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkResultPagesDecoder.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
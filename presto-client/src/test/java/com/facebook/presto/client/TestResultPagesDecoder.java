@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.spi.block.BlockEncoding;
+import com.facebook.presto.spi.block.DictionaryBlock;
+import com.facebook.presto.spi.block.RunLengthEncodedBlock;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.IntegerType.INTEGER;
+import static com.facebook.presto.spi.type.RealType.REAL;
+import static com.facebook.presto.spi.type.SmallintType.SMALLINT;
+import static com.facebook.presto.spi.type.TinyintType.TINYINT;
+import static com.facebook.presto.spi.type.TypeSignature.parseTypeSignature;
+import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Lists.newArrayList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestResultPagesDecoder
+{
+    @Test
+    public void testDecode()
+    {
+        List<String> types = ImmutableList.of("bigint", "integer", "smallint", "tinyint", "boolean", "real", "double", "varchar", "varbinary");
+        BlockBuilder bigint = BIGINT.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder integer = INTEGER.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder smallint = SMALLINT.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder tinyint = TINYINT.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder bool = BOOLEAN.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder real = REAL.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder doubles = DOUBLE.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder varchar = VARCHAR.createBlockBuilder(new BlockBuilderStatus(), 2);
+        BlockBuilder varbinary = VARBINARY.createBlockBuilder(new BlockBuilderStatus(), 2);
+
+        BIGINT.writeLong(bigint, 1000);
+        INTEGER.writeLong(integer, 100);
+        SMALLINT.writeLong(smallint, 10);
+        TINYINT.writeLong(tinyint, 1);
+        BOOLEAN.writeBoolean(bool, true);
+        REAL.writeLong(real, Float.floatToRawIntBits(100.23456f));
+        DOUBLE.writeDouble(doubles, 100.23456);
+        VARCHAR.writeSlice(varchar, Slices.utf8Slice("teststring"));
+        VARBINARY.writeSlice(varbinary, Slices.wrappedBuffer(new byte[] {1, 2, 3}));
+        for (BlockBuilder blockBuilder : ImmutableList.of(bigint, integer, smallint, tinyint, bool, real, doubles, varchar, varbinary)) {
+            blockBuilder.appendNull();
+        }
+
+        Page page = new Page(
+                bigint.build(),
+                integer.build(),
+                smallint.build(),
+                tinyint.build(),
+                bool.build(),
+                real.build(),
+                doubles.build(),
+                varchar.build(),
+                varbinary.build());
+
+        List<List<Object>> rows = newArrayList(createDecoder(types).decode(serializePages(ImmutableList.of(page))));
+        assertEquals(rows.size(), 2);
+
+        List<Object> row = rows.get(0);
+        assertEquals(row.subList(0, 8), ImmutableList.of(1000L, 100, (short) 10, (byte) 1, true, 100.23456f, 100.23456, "teststring"));
+        assertEquals((byte[]) row.get(8), new byte[] {1, 2, 3});
+        assertEquals(rows.get(1), Arrays.asList(new Object[types.size()]));
+    }
+
+    @Test
+    public void testDecodeEncodedBlocks()
+    {
+        Block values = BIGINT.createBlockBuilder(new BlockBuilderStatus(), 3)
+                .writeLong(10).closeEntry()
+                .writeLong(20).closeEntry()
+                .writeLong(30).closeEntry()
+                .build();
+        Block dictionary = new DictionaryBlock(4, values, new int[] {2, 0, 2, 1});
+        Block rle = new RunLengthEncodedBlock(values.getSingleValueBlock(1), 4);
+        Page first = new Page(dictionary, rle);
+        Page second = new Page(values.getRegion(0, 2), values.getRegion(1, 2));
+
+        List<List<Object>> rows = newArrayList(createDecoder(ImmutableList.of("bigint", "bigint")).decode(serializePages(ImmutableList.of(first, second))));
+        assertEquals(rows, ImmutableList.of(
+                ImmutableList.of(30L, 20L),
+                ImmutableList.of(10L, 20L),
+                ImmutableList.of(30L, 20L),
+                ImmutableList.of(20L, 20L),
+                ImmutableList.of(10L, 20L),
+                ImmutableList.of(20L, 30L)));
+    }
+
+    @Test
+    public void testDecodeEmpty()
+    {
+        assertTrue(newArrayList(createDecoder(ImmutableList.of("bigint")).decode(Slices.EMPTY_SLICE)).isEmpty());
+    }
+
+    @Test(expectedExceptions = ClientException.class, expectedExceptionsMessageRegExp = "Unsupported type for result pages: date")
+    public void testUnsupportedType()
+    {
+        createDecoder(ImmutableList.of("date"));
+    }
+
+    static ResultPagesDecoder createDecoder(List<String> types)
+    {
+        return new ResultPagesDecoder(types.stream()
+                .map(type -> new Column("test", type, new ClientTypeSignature(parseTypeSignature(type))))
+                .collect(toImmutableList()));
+    }
+
+    /**
+     * Serializes uncompressed pages the way the server writes them to a client.
+     */
+    static Slice serializePages(List<Page> pages)
+    {
+        SliceOutput output = new DynamicSliceOutput(1024);
+        for (Page page : pages) {
+            SliceOutput pageOutput = new DynamicSliceOutput(1024);
+            pageOutput.writeInt(page.getChannelCount());
+            for (Block block : page.getBlocks()) {
+                BlockEncoding encoding = block.getEncoding();
+                ClientBlockEncodingSerde.INSTANCE.writeBlockEncoding(pageOutput, encoding);
+                encoding.writeBlock(pageOutput, block);
+            }
+            Slice pageData = pageOutput.slice();
+
+            output.writeInt(page.getPositionCount());
+            output.writeByte(0); // uncompressed
+            output.writeInt(pageData.length());
+            output.writeInt(pageData.length());
+            output.writeBytes(pageData);
+        }
+        return output.slice();
+    }
+}
@@ -72,6 +72,7 @@ public class PrestoConnection
     private final Map<String, String> sessionProperties = new ConcurrentHashMap<>();
     private final AtomicReference<String> transactionId = new AtomicReference<>();
     private final QueryExecutor queryExecutor;
+    private final boolean binaryResults;
 
     PrestoConnection(PrestoDriverUri uri, QueryExecutor queryExecutor)
             throws SQLException
@@ -82,6 +83,7 @@ public class PrestoConnection
         this.schema.set(uri.getSchema());
         this.catalog.set(uri.getCatalog());
         this.user = uri.getUser();
+        this.binaryResults = uri.isBinaryResults();
 
         this.queryExecutor = requireNonNull(queryExecutor, "queryExecutor is null");
 
@@ -599,9 +601,11 @@ public class PrestoConnection
                 timeZoneId.get(),
                 locale.get(),
                 ImmutableMap.copyOf(allProperties),
+                ImmutableMap.of(),
                 transactionId.get(),
                 false,
-                new Duration(2, MINUTES));
+                new Duration(2, MINUTES),
+                binaryResults);
 
         return queryExecutor.startQuery(session, sql);
     }
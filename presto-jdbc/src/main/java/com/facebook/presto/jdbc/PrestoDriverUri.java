@@ -36,6 +36,7 @@ import static com.facebook.presto.client.OkHttpUtil.setupHttpProxy;
 import static com.facebook.presto.client.OkHttpUtil.setupKerberos;
 import static com.facebook.presto.client.OkHttpUtil.setupSocksProxy;
 import static com.facebook.presto.client.OkHttpUtil.setupSsl;
+import static com.facebook.presto.jdbc.ConnectionProperties.BINARY_RESULTS;
 import static com.facebook.presto.jdbc.ConnectionProperties.HTTP_PROXY;
 import static com.facebook.presto.jdbc.ConnectionProperties.KERBEROS_CONFIG_PATH;
 import static com.facebook.presto.jdbc.ConnectionProperties.KERBEROS_CREDENTIAL_CACHE_PATH;
@@ -124,6 +125,12 @@ final class PrestoDriverUri
         return properties;
     }
 
+    public boolean isBinaryResults()
+            throws SQLException
+    {
+        return BINARY_RESULTS.getRequiredValue(properties);
+    }
+
     public void setupClient(OkHttpClient.Builder builder)
             throws SQLException
     {
@@ -29,6 +29,8 @@ import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.facebook.presto.jdbc.TestPrestoDriver.closeQuietly;
 import static java.lang.String.format;
@@ -126,6 +128,46 @@ public class TestJdbcResultSet
         }
     }
 
+    @Test
+    public void testBinaryResults()
+            throws Exception
+    {
+        String sql = "SELECT x, x * 100000000000, REAL '123.45', 0.1, x > 1, 'hello' || CAST(x AS VARCHAR), 1.0 / 0.0, 0.0 / 0.0, " +
+                "CAST(x AS SMALLINT), CAST(x AS TINYINT), to_utf8('bytes'), CAST(NULL AS BIGINT) " +
+                "FROM (VALUES 1, 2, 3) t(x)";
+        List<List<Object>> jsonRows = readRows(statement.executeQuery(sql));
+        assertEquals(jsonRows.size(), 3);
+
+        String url = format("jdbc:presto://%s?binaryResults=true", server.getAddress());
+        try (Connection binaryConnection = DriverManager.getConnection(url, "test", null);
+                Statement binaryStatement = binaryConnection.createStatement()) {
+            List<List<Object>> binaryRows = readRows(binaryStatement.executeQuery(sql));
+            assertEquals(binaryRows.size(), jsonRows.size());
+            for (int row = 0; row < jsonRows.size(); row++) {
+                // compare the bytes of the varbinary column by value
+                assertEquals(binaryRows.get(row).get(10), jsonRows.get(row).get(10));
+                assertEquals(binaryRows.get(row).subList(0, 10), jsonRows.get(row).subList(0, 10));
+                assertEquals(binaryRows.get(row).get(11), jsonRows.get(row).get(11));
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryResultsWithUnsupportedColumns()
+            throws Exception
+    {
+        String sql = "SELECT x, CAST('foo' AS CHAR(5)), DECIMAL '1.5' * x, DATE '2017-01-01' FROM (VALUES 1, 2, 3) t(x)";
+        List<List<Object>> jsonRows = readRows(statement.executeQuery(sql));
+        assertEquals(jsonRows.size(), 3);
+
+        String url = format("jdbc:presto://%s?binaryResults=true", server.getAddress());
+        try (Connection binaryConnection = DriverManager.getConnection(url, "test", null);
+                Statement binaryStatement = binaryConnection.createStatement()) {
+            // the results are read as JSON, as the pages of these columns can not be decoded
+            assertEquals(readRows(binaryStatement.executeQuery(sql)), jsonRows);
+        }
+    }
+
     @Test
     public void testStatsExtraction()
             throws Exception
@@ -251,6 +293,26 @@ public class TestJdbcResultSet
         return DriverManager.getConnection(url, "test", null);
     }
 
+    private static List<List<Object>> readRows(ResultSet rs)
+            throws SQLException
+    {
+        try {
+            List<List<Object>> rows = new ArrayList<>();
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                List<Object> row = new ArrayList<>();
+                for (int column = 1; column <= columnCount; column++) {
+                    row.add(rs.getObject(column));
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+        finally {
+            rs.close();
+        }
+    }
+
     private static long countRows(ResultSet rs)
             throws SQLException
     {
@@ -29,7 +29,9 @@ import javax.inject.Inject;
 import java.util.List;
 
 import static com.facebook.presto.spi.session.PropertyMetadata.booleanSessionProperty;
+import static com.facebook.presto.spi.session.PropertyMetadata.doubleSessionProperty;
 import static com.facebook.presto.spi.session.PropertyMetadata.integerSessionProperty;
+import static com.facebook.presto.spi.session.PropertyMetadata.longSessionProperty;
 import static com.facebook.presto.spi.session.PropertyMetadata.stringSessionProperty;
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
@@ -73,6 +75,20 @@ public final class SystemSessionProperties
     public static final String ENABLE_INTERMEDIATE_AGGREGATIONS = "enable_intermediate_aggregations";
     public static final String PUSH_AGGREGATION_THROUGH_JOIN = "push_aggregation_through_join";
     public static final String PUSH_PARTIAL_AGGREGATION_THROUGH_JOIN = "push_partial_aggregation_through_join";
+    public static final String DYNAMIC_FILTERING_ENABLED = "dynamic_filtering_enabled";
+    public static final String JOIN_BLOOM_FILTER_ENABLED = "join_bloom_filter_enabled";
+    public static final String BATCH_JOIN_PROBE_ENABLED = "batch_join_probe_enabled";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_ENABLED = "adaptive_partial_aggregation_enabled";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS = "adaptive_partial_aggregation_min_rows";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD = "adaptive_partial_aggregation_unique_rows_ratio_threshold";
+    public static final String QUERY_CPU_SHARE_WEIGHT = "query_cpu_share_weight";
+    public static final String EXCHANGE_STREAMING_ENABLED = "exchange_streaming_enabled";
+    public static final String EXCHANGE_ADAPTIVE_COMPRESSION = "exchange_adaptive_compression";
+    public static final String COST_BASED_JOIN_REORDERING = "cost_based_join_reordering";
+    public static final String MAX_REORDERED_JOINS = "max_reordered_joins";
+    public static final String AUTOMATIC_JOIN_DISTRIBUTION = "automatic_join_distribution";
+    public static final String JOIN_MAX_BROADCAST_TABLE_SIZE = "join_max_broadcast_table_size";
+    public static final String SKEWED_JOIN_FANOUT = "skewed_join_fanout";
 
     private final List<PropertyMetadata<?>> sessionProperties;
 
@@ -318,7 +334,106 @@ public final class SystemSessionProperties
                         PUSH_PARTIAL_AGGREGATION_THROUGH_JOIN,
                         "Push partial aggregations below joins",
                         false,
-                        false));
+                        false),
+                booleanSessionProperty(
+                        DYNAMIC_FILTERING_ENABLED,
+                        "Experimental: Prune probe side table scans of inner joins using the build side join keys",
+                        featuresConfig.isDynamicFilteringEnabled(),
+                        false),
+                booleanSessionProperty(
+                        JOIN_BLOOM_FILTER_ENABLED,
+                        "Experimental: Check probe rows of hash joins against a Bloom filter of the build side keys before the hash table lookup",
+                        featuresConfig.isJoinBloomFilterEnabled(),
+                        false),
+                booleanSessionProperty(
+                        BATCH_JOIN_PROBE_ENABLED,
+                        "Experimental: Look up all rows of a probe page in the hash table at once",
+                        featuresConfig.isBatchJoinProbeEnabled(),
+                        false),
+                booleanSessionProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_ENABLED,
+                        "Experimental: Disable partial aggregation when it does not reduce the number of rows",
+                        featuresConfig.isAdaptivePartialAggregationEnabled(),
+                        false),
+                longSessionProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS,
+                        "Experimental: Number of rows a partial aggregation processes before deciding whether to disable itself",
+                        featuresConfig.getAdaptivePartialAggregationMinRows(),
+                        false),
+                doubleSessionProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD,
+                        "Experimental: Ratio of groups to input rows above which partial aggregation is disabled",
+                        featuresConfig.getAdaptivePartialAggregationUniqueRowsRatioThreshold(),
+                        false),
+                integerSessionProperty(
+                        QUERY_CPU_SHARE_WEIGHT,
+                        "Weight of the query when worker threads are shared between queries. Larger numbers get more CPU time",
+                        1,
+                        false),
+                booleanSessionProperty(
+                        EXCHANGE_STREAMING_ENABLED,
+                        "Experimental: Read the results already buffered by remote tasks in a single response",
+                        featuresConfig.isExchangeStreamingEnabled(),
+                        false),
+                booleanSessionProperty(
+                        EXCHANGE_ADAPTIVE_COMPRESSION,
+                        "Choose the compression of every exchanged page based on the compression ratio of sampled pages",
+                        featuresConfig.isExchangeAdaptiveCompressionEnabled(),
+                        false),
+                booleanSessionProperty(
+                        COST_BASED_JOIN_REORDERING,
+                        "Experimental: Choose the order and the build sides of inner joins by their estimated cost",
+                        featuresConfig.isCostBasedJoinReordering(),
+                        false),
+                new PropertyMetadata<>(
+                        MAX_REORDERED_JOINS,
+                        "Maximum number of tables of the inner joins that are reordered by their estimated cost",
+                        BIGINT,
+                        Integer.class,
+                        featuresConfig.getMaxReorderedJoins(),
+                        false,
+                        value -> {
+                            int maxReorderedJoins = ((Number) value).intValue();
+                            // the join orders are enumerated over every subset of the tables
+                            if (maxReorderedJoins < 2 || maxReorderedJoins > 10) {
+                                throw new PrestoException(
+                                        StandardErrorCode.INVALID_SESSION_PROPERTY,
+                                        format("%s must be between 2 and 10: %s", MAX_REORDERED_JOINS, maxReorderedJoins));
+                            }
+                            return maxReorderedJoins;
+                        },
+                        value -> value),
+                booleanSessionProperty(
+                        AUTOMATIC_JOIN_DISTRIBUTION,
+                        "Experimental: Choose between replicated and partitioned joins by the estimated size of the build side",
+                        featuresConfig.isAutomaticJoinDistribution(),
+                        false),
+                new PropertyMetadata<>(
+                        JOIN_MAX_BROADCAST_TABLE_SIZE,
+                        "Maximum estimated size of the build side of a join that is replicated when the join distribution is automatic",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getJoinMaxBroadcastTableSize(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
+                new PropertyMetadata<>(
+                        SKEWED_JOIN_FANOUT,
+                        "Experimental: Number of partitions the rows of a hot probe key of a partitioned join are spread over, with the build rows replicated to each of them",
+                        BIGINT,
+                        Integer.class,
+                        featuresConfig.getSkewedJoinFanout(),
+                        false,
+                        value -> {
+                            int fanout = ((Number) value).intValue();
+                            if (fanout < 1) {
+                                throw new PrestoException(
+                                        StandardErrorCode.INVALID_SESSION_PROPERTY,
+                                        format("%s must be positive: %s", SKEWED_JOIN_FANOUT, fanout));
+                            }
+                            return fanout;
+                        },
+                        value -> value));
     }
 
     public List<PropertyMetadata<?>> getSessionProperties()
@@ -499,4 +614,76 @@ public final class SystemSessionProperties
     {
         return session.getSystemProperty(PUSH_PARTIAL_AGGREGATION_THROUGH_JOIN, Boolean.class);
     }
+
+    public static boolean isDynamicFilteringEnabled(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_ENABLED, Boolean.class);
+    }
+
+    public static boolean isJoinBloomFilterEnabled(Session session)
+    {
+        return session.getSystemProperty(JOIN_BLOOM_FILTER_ENABLED, Boolean.class);
+    }
+
+    public static boolean isBatchJoinProbeEnabled(Session session)
+    {
+        return session.getSystemProperty(BATCH_JOIN_PROBE_ENABLED, Boolean.class);
+    }
+
+    public static boolean isAdaptivePartialAggregationEnabled(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_ENABLED, Boolean.class);
+    }
+
+    public static long getAdaptivePartialAggregationMinRows(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS, Long.class);
+    }
+
+    public static double getAdaptivePartialAggregationUniqueRowsRatioThreshold(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD, Double.class);
+    }
+
+    public static int getQueryCpuShareWeight(Session session)
+    {
+        Integer weight = session.getSystemProperty(QUERY_CPU_SHARE_WEIGHT, Integer.class);
+        checkArgument(weight > 0, "Query CPU share weight must be positive");
+        return weight;
+    }
+
+    public static boolean isExchangeStreamingEnabled(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_STREAMING_ENABLED, Boolean.class);
+    }
+
+    public static boolean isExchangeAdaptiveCompressionEnabled(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_ADAPTIVE_COMPRESSION, Boolean.class);
+    }
+
+    public static boolean isCostBasedJoinReordering(Session session)
+    {
+        return session.getSystemProperty(COST_BASED_JOIN_REORDERING, Boolean.class);
+    }
+
+    public static int getMaxReorderedJoins(Session session)
+    {
+        return session.getSystemProperty(MAX_REORDERED_JOINS, Integer.class);
+    }
+
+    public static boolean isAutomaticJoinDistribution(Session session)
+    {
+        return session.getSystemProperty(AUTOMATIC_JOIN_DISTRIBUTION, Boolean.class);
+    }
+
+    public static DataSize getJoinMaxBroadcastTableSize(Session session)
+    {
+        return session.getSystemProperty(JOIN_MAX_BROADCAST_TABLE_SIZE, DataSize.class);
+    }
+
+    public static int getSkewedJoinFanout(Session session)
+    {
+        return session.getSystemProperty(SKEWED_JOIN_FANOUT, Integer.class);
+    }
 }
@@ -18,27 +18,48 @@ import com.facebook.presto.Session;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.Constraint;
+import com.facebook.presto.spi.predicate.DiscreteValues;
+import com.facebook.presto.spi.predicate.Domain;
+import com.facebook.presto.spi.predicate.Marker;
+import com.facebook.presto.spi.predicate.Range;
+import com.facebook.presto.spi.predicate.Ranges;
 import com.facebook.presto.spi.predicate.TupleDomain;
+import com.facebook.presto.spi.statistics.ColumnStatistics;
 import com.facebook.presto.spi.statistics.Estimate;
+import com.facebook.presto.spi.statistics.RangeColumnStatistics;
 import com.facebook.presto.spi.statistics.TableStatistics;
+import com.facebook.presto.spi.type.DecimalType;
+import com.facebook.presto.spi.type.FixedWidthType;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.planner.DomainTranslator;
 import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.iterative.GroupReference;
+import com.facebook.presto.sql.planner.iterative.Lookup;
+import com.facebook.presto.sql.planner.plan.AggregationNode;
+import com.facebook.presto.sql.planner.plan.AssignUniqueId;
+import com.facebook.presto.sql.planner.plan.DistinctLimitNode;
 import com.facebook.presto.sql.planner.plan.EnforceSingleRowNode;
 import com.facebook.presto.sql.planner.plan.ExchangeNode;
 import com.facebook.presto.sql.planner.plan.FilterNode;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.LimitNode;
+import com.facebook.presto.sql.planner.plan.MarkDistinctNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.PlanNode;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.plan.PlanVisitor;
 import com.facebook.presto.sql.planner.plan.ProjectNode;
+import com.facebook.presto.sql.planner.plan.SampleNode;
 import com.facebook.presto.sql.planner.plan.SemiJoinNode;
+import com.facebook.presto.sql.planner.plan.SortNode;
 import com.facebook.presto.sql.planner.plan.TableScanNode;
+import com.facebook.presto.sql.planner.plan.TopNNode;
+import com.facebook.presto.sql.planner.plan.UnionNode;
 import com.facebook.presto.sql.planner.plan.ValuesNode;
+import com.facebook.presto.sql.planner.plan.WindowNode;
 import com.facebook.presto.sql.tree.BooleanLiteral;
 import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.SymbolReference;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
@@ -48,22 +69,38 @@ import javax.inject.Inject;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static com.facebook.presto.cost.JoinStatistics.JOIN_MATCHING_COEFFICIENT;
+import static com.facebook.presto.cost.JoinStatistics.estimateInnerJoin;
+import static com.facebook.presto.cost.JoinStatistics.limitDistinctValuesCounts;
 import static com.facebook.presto.cost.PlanNodeCost.UNKNOWN_COST;
+import static com.facebook.presto.spi.statistics.Estimate.unknownValue;
+import static com.facebook.presto.spi.type.RealType.REAL;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Double.isNaN;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
 
 /**
- * Simple implementation of CostCalculator. It make many arbitrary decisions (e.g filtering selectivity, join matching).
- * It serves POC purpose. To be replaced with more advanced implementation.
+ * Estimates the output of plan nodes from the table statistics provided by the connectors.
+ * The selectivity of filters is derived from the number of distinct values and the low and high values
+ * of the filtered columns, and the output of joins from the number of distinct values of the join columns.
+ * When the statistics are missing it falls back to arbitrary coefficients (e.g filtering selectivity, join matching).
  */
 @ThreadSafe
 public class CoefficientBasedCostCalculator
         implements CostCalculator
 {
     private static final Double FILTER_COEFFICIENT = 0.5;
-    private static final Double JOIN_MATCHING_COEFFICIENT = 2.0;
 
-    // todo some computation for outputSizeInBytes
+    // there are no statistics on the size of the values of variable width types
+    private static final int VARIABLE_WIDTH_VALUE_SIZE = 32;
 
     private final Metadata metadata;
 
@@ -74,9 +111,9 @@ public class CoefficientBasedCostCalculator
     }
 
     @Override
-    public Map<PlanNodeId, PlanNodeCost> calculateCostForPlan(Session session, Map<Symbol, Type> types, PlanNode planNode)
+    public Map<PlanNodeId, PlanNodeCost> calculateCostForPlan(Session session, Map<Symbol, Type> types, PlanNode planNode, Lookup lookup)
     {
-        Visitor visitor = new Visitor(session, types);
+        Visitor visitor = new Visitor(session, types, lookup);
         planNode.accept(visitor, null);
         return ImmutableMap.copyOf(visitor.getCosts());
     }
@@ -87,12 +124,14 @@ public class CoefficientBasedCostCalculator
         private final Session session;
         private final Map<PlanNodeId, PlanNodeCost> costs;
         private final Map<Symbol, Type> types;
+        private final Lookup lookup;
 
-        public Visitor(Session session, Map<Symbol, Type> types)
+        public Visitor(Session session, Map<Symbol, Type> types, Lookup lookup)
         {
             this.costs = new HashMap<>();
             this.session = session;
             this.types = ImmutableMap.copyOf(types);
+            this.lookup = requireNonNull(lookup, "lookup is null");
         }
 
         public Map<PlanNodeId, PlanNodeCost> getCosts()
@@ -104,8 +143,14 @@ public class CoefficientBasedCostCalculator
         protected PlanNodeCost visitPlan(PlanNode node, Void context)
         {
             visitSources(node);
-            costs.put(node.getId(), UNKNOWN_COST);
-            return UNKNOWN_COST;
+            return record(node, UNKNOWN_COST);
+        }
+
+        @Override
+        public PlanNodeCost visitGroupReference(GroupReference node, Void context)
+        {
+            PlanNodeCost cost = lookup.resolve(node).accept(this, context);
+            return record(node, cost);
         }
 
         @Override
@@ -118,24 +163,30 @@ public class CoefficientBasedCostCalculator
         public PlanNodeCost visitFilter(FilterNode node, Void context)
         {
             PlanNodeCost sourceCost;
-            if (node.getSource() instanceof TableScanNode) {
-                sourceCost = visitTableScanWithPredicate((TableScanNode) node.getSource(), node.getPredicate());
+            PlanNode source = lookup.resolve(node.getSource());
+            if (source instanceof TableScanNode) {
+                sourceCost = record(node.getSource(), visitTableScanWithPredicate((TableScanNode) source, node.getPredicate()));
             }
             else {
                 sourceCost = visitSource(node);
             }
 
-            final double filterCoefficient = FILTER_COEFFICIENT;
-            PlanNodeCost filterCost = sourceCost
-                    .mapOutputRowCount(value -> value * filterCoefficient);
-            costs.put(node.getId(), filterCost);
-            return filterCost;
+            PlanNodeCost filterCost = estimateFilter(sourceCost, node.getPredicate());
+            return record(node, filterCost);
         }
 
         @Override
         public PlanNodeCost visitProject(ProjectNode node, Void context)
         {
-            return copySourceCost(node);
+            PlanNodeCost sourceCost = visitSource(node);
+            PlanNodeCost.Builder projectCost = PlanNodeCost.builder()
+                    .setOutputRowCount(sourceCost.getOutputRowCount());
+            for (Map.Entry<Symbol, Expression> assignment : node.getAssignments().entrySet()) {
+                if (assignment.getValue() instanceof SymbolReference) {
+                    projectCost.setSymbolStatistics(assignment.getKey(), sourceCost.getSymbolStatistics(Symbol.from(assignment.getValue())));
+                }
+            }
+            return record(node, projectCost.build());
         }
 
         @Override
@@ -145,35 +196,153 @@ public class CoefficientBasedCostCalculator
             PlanNodeCost leftCost = sourceCosts.get(0);
             PlanNodeCost rightCost = sourceCosts.get(1);
 
-            PlanNodeCost.Builder joinCost = PlanNodeCost.builder();
-            if (!leftCost.getOutputRowCount().isValueUnknown() && !rightCost.getOutputRowCount().isValueUnknown()) {
-                double rowCount = Math.max(leftCost.getOutputRowCount().getValue(), rightCost.getOutputRowCount().getValue()) * JOIN_MATCHING_COEFFICIENT;
-                joinCost.setOutputRowCount(new Estimate(rowCount));
+            PlanNodeCost joinCost = estimateInnerJoin(leftCost, rightCost, node.getCriteria());
+            if (node.getFilter().isPresent()) {
+                joinCost = joinCost.mapOutputRowCount(value -> value * FILTER_COEFFICIENT);
+            }
+            // unmatched rows of the outer sides are added to the output
+            switch (node.getType()) {
+                case LEFT:
+                    joinCost = atLeast(joinCost, leftCost.getOutputRowCount());
+                    break;
+                case RIGHT:
+                    joinCost = atLeast(joinCost, rightCost.getOutputRowCount());
+                    break;
+                case FULL:
+                    joinCost = atLeast(atLeast(joinCost, leftCost.getOutputRowCount()), rightCost.getOutputRowCount());
+                    break;
+            }
+            joinCost = limitDistinctValuesCounts(joinCost);
+
+            return record(node, joinCost);
+        }
+
+        private PlanNodeCost atLeast(PlanNodeCost cost, Estimate rowCount)
+        {
+            if (rowCount.isValueUnknown()) {
+                return cost;
+            }
+            return cost.mapOutputRowCount(value -> max(value, rowCount.getValue()));
+        }
+
+        @Override
+        public PlanNodeCost visitAggregation(AggregationNode node, Void context)
+        {
+            PlanNodeCost sourceCost = visitSource(node);
+            PlanNodeCost.Builder aggregationCost = PlanNodeCost.builder();
+
+            // there is a group for every combination of the values of the grouping keys that occurs in the source
+            Estimate rowCount = new Estimate(1);
+            if (node.getGroupingSets().size() != 1) {
+                rowCount = unknownValue();
+            }
+            for (Symbol groupingKey : node.getGroupingKeys()) {
+                SymbolStatistics statistics = sourceCost.getSymbolStatistics(groupingKey);
+                Estimate distinctValues = statistics.getDistinctValuesCount();
+                if (distinctValues.isValueUnknown()) {
+                    rowCount = unknownValue();
+                }
+                else {
+                    rowCount = rowCount.map(value -> value * max(distinctValues.getValue(), 1));
+                }
+                aggregationCost.setSymbolStatistics(groupingKey, statistics);
+            }
+            if (!node.getGroupingKeys().isEmpty() && !sourceCost.getOutputRowCount().isValueUnknown()) {
+                rowCount = rowCount.map(value -> min(value, sourceCost.getOutputRowCount().getValue()));
             }
 
-            costs.put(node.getId(), joinCost.build());
-            return joinCost.build();
+            PlanNodeCost cost = limitDistinctValuesCounts(aggregationCost.setOutputRowCount(rowCount).build());
+            return record(node, cost);
         }
 
         @Override
         public PlanNodeCost visitExchange(ExchangeNode node, Void context)
+        {
+            return record(node, unionSources(visitSources(node), node.getOutputSymbols(), node.getInputs()));
+        }
+
+        @Override
+        public PlanNodeCost visitUnion(UnionNode node, Void context)
         {
             List<PlanNodeCost> sourceCosts = visitSources(node);
+            List<List<Symbol>> inputs = IntStream.range(0, node.getSources().size())
+                    .mapToObj(node::sourceOutputLayout)
+                    .collect(toImmutableList());
+            return record(node, unionSources(sourceCosts, node.getOutputSymbols(), inputs));
+        }
+
+        private PlanNodeCost unionSources(List<PlanNodeCost> sourceCosts, List<Symbol> outputs, List<List<Symbol>> inputs)
+        {
             Estimate rowCount = new Estimate(0);
             for (PlanNodeCost sourceCost : sourceCosts) {
-                if (sourceCost.getOutputRowCount().isValueUnknown()) {
-                    rowCount = Estimate.unknownValue();
+                rowCount = add(rowCount, sourceCost.getOutputRowCount());
+            }
+
+            PlanNodeCost.Builder unionCost = PlanNodeCost.builder()
+                    .setOutputRowCount(rowCount);
+            for (int i = 0; i < outputs.size(); i++) {
+                SymbolStatistics statistics = null;
+                Estimate statisticsRowCount = null;
+                for (int source = 0; source < sourceCosts.size(); source++) {
+                    PlanNodeCost sourceCost = sourceCosts.get(source);
+                    SymbolStatistics sourceStatistics = sourceCost.getSymbolStatistics(inputs.get(source).get(i));
+                    if (statistics == null) {
+                        statistics = sourceStatistics;
+                        statisticsRowCount = sourceCost.getOutputRowCount();
+                    }
+                    else {
+                        statistics = unionStatistics(statistics, statisticsRowCount, sourceStatistics, sourceCost.getOutputRowCount());
+                        statisticsRowCount = add(statisticsRowCount, sourceCost.getOutputRowCount());
+                    }
                 }
-                else {
-                    rowCount = rowCount.map(value -> value + sourceCost.getOutputRowCount().getValue());
+                if (statistics != null) {
+                    unionCost.setSymbolStatistics(outputs.get(i), statistics);
                 }
             }
+            return limitDistinctValuesCounts(unionCost.build());
+        }
 
-            PlanNodeCost exchangeCost = PlanNodeCost.builder()
-                    .setOutputRowCount(rowCount)
-                    .build();
-            costs.put(node.getId(), exchangeCost);
-            return exchangeCost;
+        @Override
+        public PlanNodeCost visitSort(SortNode node, Void context)
+        {
+            return copySourceCost(node);
+        }
+
+        @Override
+        public PlanNodeCost visitWindow(WindowNode node, Void context)
+        {
+            return copySourceCost(node);
+        }
+
+        @Override
+        public PlanNodeCost visitMarkDistinct(MarkDistinctNode node, Void context)
+        {
+            return copySourceCost(node);
+        }
+
+        @Override
+        public PlanNodeCost visitAssignUniqueId(AssignUniqueId node, Void context)
+        {
+            return copySourceCost(node);
+        }
+
+        @Override
+        public PlanNodeCost visitTopN(TopNNode node, Void context)
+        {
+            return record(node, limit(visitSource(node), node.getCount()));
+        }
+
+        @Override
+        public PlanNodeCost visitDistinctLimit(DistinctLimitNode node, Void context)
+        {
+            return record(node, limit(visitSource(node), node.getLimit()));
+        }
+
+        @Override
+        public PlanNodeCost visitSample(SampleNode node, Void context)
+        {
+            PlanNodeCost sampleCost = visitSource(node).mapOutputRowCount(rowCount -> rowCount * node.getSampleRatio());
+            return record(node, limitDistinctValuesCounts(sampleCost));
         }
 
         @Override
@@ -187,12 +356,17 @@ public class CoefficientBasedCostCalculator
             Constraint<ColumnHandle> constraint = getConstraint(node, predicate);
 
             TableStatistics tableStatistics = metadata.getTableStatistics(session, node.getTable(), constraint);
-            PlanNodeCost tableScanCost = PlanNodeCost.builder()
-                    .setOutputRowCount(tableStatistics.getRowCount())
-                    .build();
+            PlanNodeCost.Builder tableScanCost = PlanNodeCost.builder()
+                    .setOutputRowCount(tableStatistics.getRowCount());
+            for (Map.Entry<Symbol, ColumnHandle> assignment : node.getAssignments().entrySet()) {
+                ColumnStatistics columnStatistics = tableStatistics.getColumnStatistics().get(assignment.getValue());
+                if (columnStatistics != null) {
+                    tableScanCost.setSymbolStatistics(assignment.getKey(), toSymbolStatistics(types.get(assignment.getKey()), columnStatistics));
+                }
+            }
 
-            costs.put(node.getId(), tableScanCost);
-            return tableScanCost;
+            PlanNodeCost cost = tableScanCost.build();
+            return record(node, cost);
         }
 
         private Constraint<ColumnHandle> getConstraint(TableScanNode node, Expression predicate)
@@ -210,6 +384,41 @@ public class CoefficientBasedCostCalculator
             return new Constraint<>(simplifiedConstraint, bindings -> true);
         }
 
+        private PlanNodeCost estimateFilter(PlanNodeCost sourceCost, Expression predicate)
+        {
+            DomainTranslator.ExtractionResult decomposedPredicate = DomainTranslator.fromPredicate(
+                    metadata,
+                    session,
+                    predicate,
+                    types);
+            TupleDomain<Symbol> tupleDomain = decomposedPredicate.getTupleDomain();
+            if (tupleDomain.isNone()) {
+                return PlanNodeCost.buildFrom(sourceCost)
+                        .setOutputRowCount(sourceCost.getOutputRowCount().map(value -> 0.0))
+                        .build();
+            }
+
+            // the conjuncts are assumed to be independent
+            double selectivity = 1;
+            PlanNodeCost.Builder filterCost = PlanNodeCost.buildFrom(sourceCost);
+            for (Map.Entry<Symbol, Domain> entry : tupleDomain.getDomains().get().entrySet()) {
+                Symbol symbol = entry.getKey();
+                Domain domain = entry.getValue();
+                SymbolStatistics statistics = sourceCost.getSymbolStatistics(symbol);
+
+                double valuesSelectivity = estimateValuesSelectivity(domain, statistics, types.get(symbol));
+                selectivity *= estimateSelectivity(domain, statistics, valuesSelectivity);
+                filterCost.setSymbolStatistics(symbol, filterStatistics(domain, statistics, valuesSelectivity, types.get(symbol)));
+            }
+            if (!decomposedPredicate.getRemainingExpression().equals(BooleanLiteral.TRUE_LITERAL)) {
+                selectivity *= FILTER_COEFFICIENT;
+            }
+
+            double filterSelectivity = selectivity;
+            filterCost.setOutputRowCount(sourceCost.getOutputRowCount().map(value -> value * filterSelectivity));
+            return limitDistinctValuesCounts(filterCost.build());
+        }
+
         @Override
         public PlanNodeCost visitValues(ValuesNode node, Void context)
         {
@@ -217,8 +426,7 @@ public class CoefficientBasedCostCalculator
             PlanNodeCost valuesCost = PlanNodeCost.builder()
                     .setOutputRowCount(valuesCount)
                     .build();
-            costs.put(node.getId(), valuesCost);
-            return valuesCost;
+            return record(node, valuesCost);
         }
 
         @Override
@@ -228,40 +436,58 @@ public class CoefficientBasedCostCalculator
             PlanNodeCost nodeCost = PlanNodeCost.builder()
                     .setOutputRowCount(new Estimate(1.0))
                     .build();
-            costs.put(node.getId(), nodeCost);
-            return nodeCost;
+            return record(node, nodeCost);
         }
 
         @Override
         public PlanNodeCost visitSemiJoin(SemiJoinNode node, Void context)
         {
-            visitSources(node);
-            PlanNodeCost sourceStatitics = costs.get(node.getSource().getId());
+            List<PlanNodeCost> sourceCosts = visitSources(node);
+            PlanNodeCost sourceStatitics = sourceCosts.get(0);
             PlanNodeCost semiJoinCost = sourceStatitics.mapOutputRowCount(rowCount -> rowCount * JOIN_MATCHING_COEFFICIENT);
-            costs.put(node.getId(), semiJoinCost);
-            return semiJoinCost;
+            return record(node, semiJoinCost);
         }
 
         @Override
         public PlanNodeCost visitLimit(LimitNode node, Void context)
         {
-            PlanNodeCost sourceCost = visitSource(node);
-            PlanNodeCost.Builder limitCost = PlanNodeCost.builder();
-            if (sourceCost.getOutputRowCount().getValue() < node.getCount()) {
+            return record(node, limit(visitSource(node), node.getCount()));
+        }
+
+        private PlanNodeCost limit(PlanNodeCost sourceCost, long count)
+        {
+            PlanNodeCost.Builder limitCost = PlanNodeCost.buildFrom(sourceCost);
+            if (sourceCost.getOutputRowCount().getValue() < count) {
                 limitCost.setOutputRowCount(sourceCost.getOutputRowCount());
             }
             else {
-                limitCost.setOutputRowCount(new Estimate(node.getCount()));
+                limitCost.setOutputRowCount(new Estimate(count));
             }
-            costs.put(node.getId(), limitCost.build());
-            return limitCost.build();
+            return limitDistinctValuesCounts(limitCost.build());
         }
 
         private PlanNodeCost copySourceCost(PlanNode node)
         {
             PlanNodeCost sourceCost = visitSource(node);
-            costs.put(node.getId(), sourceCost);
-            return sourceCost;
+            return record(node, sourceCost);
+        }
+
+        /**
+         * Stores the cost of a node, with its output size derived from its output row count and the types of its output symbols.
+         */
+        private PlanNodeCost record(PlanNode node, PlanNodeCost cost)
+        {
+            long rowSize = 0;
+            for (Symbol symbol : node.getOutputSymbols()) {
+                Type type = types.get(symbol);
+                rowSize += type instanceof FixedWidthType ? ((FixedWidthType) type).getFixedSize() : VARIABLE_WIDTH_VALUE_SIZE;
+            }
+            long outputRowSize = rowSize;
+            PlanNodeCost recordedCost = PlanNodeCost.buildFrom(cost)
+                    .setOutputSizeInBytes(cost.getOutputRowCount().map(rowCount -> rowCount * outputRowSize))
+                    .build();
+            costs.put(node.getId(), recordedCost);
+            return recordedCost;
         }
 
         private List<PlanNodeCost> visitSources(PlanNode node)
@@ -276,4 +502,184 @@ public class CoefficientBasedCostCalculator
             return Iterables.getOnlyElement(visitSources(node));
         }
     }
+
+    private static Estimate add(Estimate left, Estimate right)
+    {
+        if (left.isValueUnknown() || right.isValueUnknown()) {
+            return unknownValue();
+        }
+        return new Estimate(left.getValue() + right.getValue());
+    }
+
+    /**
+     * Statistics of the values of a symbol in the rows of two relations, e.g. the sources of a union.
+     */
+    private static SymbolStatistics unionStatistics(SymbolStatistics left, Estimate leftRowCount, SymbolStatistics right, Estimate rightRowCount)
+    {
+        Estimate nullsFraction = unknownValue();
+        if (!leftRowCount.isValueUnknown() && !rightRowCount.isValueUnknown() && !left.getNullsFraction().isValueUnknown() && !right.getNullsFraction().isValueUnknown()) {
+            double rowCount = leftRowCount.getValue() + rightRowCount.getValue();
+            if (rowCount == 0) {
+                nullsFraction = new Estimate(0);
+            }
+            else {
+                nullsFraction = new Estimate((left.getNullsFraction().getValue() * leftRowCount.getValue() + right.getNullsFraction().getValue() * rightRowCount.getValue()) / rowCount);
+            }
+        }
+
+        return SymbolStatistics.builder()
+                .setLowValue(combine(left.getLowValue(), right.getLowValue(), Math::min))
+                .setHighValue(combine(left.getHighValue(), right.getHighValue(), Math::max))
+                .setNullsFraction(nullsFraction)
+                // the values of the two relations are assumed to be distinct, which is an upper bound
+                .setDistinctValuesCount(add(left.getDistinctValuesCount(), right.getDistinctValuesCount()))
+                .build();
+    }
+
+    private static Estimate combine(Estimate left, Estimate right, DoubleBinaryOperator operator)
+    {
+        if (left.isValueUnknown() || right.isValueUnknown()) {
+            return unknownValue();
+        }
+        return new Estimate(operator.applyAsDouble(left.getValue(), right.getValue()));
+    }
+
+    private static double estimateSelectivity(Domain domain, SymbolStatistics statistics, double valuesSelectivity)
+    {
+        Estimate nullsFraction = statistics.getNullsFraction();
+        if (isNaN(valuesSelectivity) || (domain.isNullAllowed() && nullsFraction.isValueUnknown())) {
+            return FILTER_COEFFICIENT;
+        }
+        if (nullsFraction.isValueUnknown()) {
+            return valuesSelectivity;
+        }
+        double selectivity = valuesSelectivity * (1 - nullsFraction.getValue());
+        if (domain.isNullAllowed()) {
+            selectivity += nullsFraction.getValue();
+        }
+        return selectivity;
+    }
+
+    /**
+     * Fraction of the non null values of a symbol that are in the domain, or NaN when it is not known.
+     */
+    private static double estimateValuesSelectivity(Domain domain, SymbolStatistics statistics, Type type)
+    {
+        if (domain.getValues().isAll()) {
+            return 1;
+        }
+        if (domain.getValues().isNone()) {
+            return 0;
+        }
+        return domain.getValues().getValuesProcessor().transform(
+                ranges -> estimateRangesSelectivity(ranges, statistics, type),
+                discreteValues -> estimateDiscreteValuesSelectivity(discreteValues, statistics),
+                allOrNone -> Double.NaN);
+    }
+
+    private static double estimateRangesSelectivity(Ranges ranges, SymbolStatistics statistics, Type type)
+    {
+        Estimate distinctValues = statistics.getDistinctValuesCount();
+        double low = statistics.getLowValue().getValue();
+        double high = statistics.getHighValue().getValue();
+
+        double selectivity = 0;
+        for (Range range : ranges.getOrderedRanges()) {
+            if (range.isSingleValue()) {
+                if (distinctValues.isValueUnknown()) {
+                    return Double.NaN;
+                }
+                selectivity += 1 / max(distinctValues.getValue(), 1);
+                continue;
+            }
+
+            double rangeLow = range.getLow().isLowerUnbounded() ? low : toStatisticsValue(type, range.getLow());
+            double rangeHigh = range.getHigh().isUpperUnbounded() ? high : toStatisticsValue(type, range.getHigh());
+            if (isNaN(low) || isNaN(high) || isNaN(rangeLow) || isNaN(rangeHigh)) {
+                return Double.NaN;
+            }
+            if (high == low) {
+                selectivity += (rangeLow <= low && low <= rangeHigh) ? 1 : 0;
+            }
+            else {
+                // the values are assumed to be uniformly distributed between the low and high values
+                selectivity += max(0, min(rangeHigh, high) - max(rangeLow, low)) / (high - low);
+            }
+        }
+        return min(selectivity, 1);
+    }
+
+    private static double estimateDiscreteValuesSelectivity(DiscreteValues discreteValues, SymbolStatistics statistics)
+    {
+        if (statistics.getDistinctValuesCount().isValueUnknown()) {
+            return Double.NaN;
+        }
+        double selectivity = min(discreteValues.getValues().size() / max(statistics.getDistinctValuesCount().getValue(), 1), 1);
+        return discreteValues.isWhiteList() ? selectivity : 1 - selectivity;
+    }
+
+    private static SymbolStatistics filterStatistics(Domain domain, SymbolStatistics statistics, double valuesSelectivity, Type type)
+    {
+        SymbolStatistics.Builder filtered = SymbolStatistics.buildFrom(statistics);
+        if (!domain.isNullAllowed()) {
+            filtered.setNullsFraction(Estimate.zeroValue());
+        }
+        if (!isNaN(valuesSelectivity)) {
+            filtered.setDistinctValuesCount(statistics.getDistinctValuesCount().map(value -> value * valuesSelectivity));
+        }
+        Optional<Range> span = domain.getValues().getValuesProcessor().transform(
+                ranges -> ranges.getRangeCount() > 0 ? Optional.of(ranges.getSpan()) : Optional.empty(),
+                discreteValues -> Optional.empty(),
+                allOrNone -> Optional.empty());
+        if (span.isPresent()) {
+            if (!span.get().getLow().isLowerUnbounded()) {
+                double spanLow = toStatisticsValue(type, span.get().getLow());
+                filtered.setLowValue(isNaN(spanLow) ? statistics.getLowValue() : statistics.getLowValue().map(value -> max(value, spanLow)));
+            }
+            if (!span.get().getHigh().isUpperUnbounded()) {
+                double spanHigh = toStatisticsValue(type, span.get().getHigh());
+                filtered.setHighValue(isNaN(spanHigh) ? statistics.getHighValue() : statistics.getHighValue().map(value -> min(value, spanHigh)));
+            }
+        }
+        return filtered.build();
+    }
+
+    private static SymbolStatistics toSymbolStatistics(Type type, ColumnStatistics columnStatistics)
+    {
+        RangeColumnStatistics rangeStatistics = columnStatistics.getOnlyRangeColumnStatistics();
+        return SymbolStatistics.builder()
+                .setLowValue(rangeStatistics.getLowValue().map(value -> new Estimate(toStatisticsValue(type, value))).orElse(unknownValue()))
+                .setHighValue(rangeStatistics.getHighValue().map(value -> new Estimate(toStatisticsValue(type, value))).orElse(unknownValue()))
+                .setNullsFraction(columnStatistics.getNullsFraction())
+                .setDistinctValuesCount(rangeStatistics.getDistinctValuesCount())
+                .build();
+    }
+
+    private static double toStatisticsValue(Type type, Marker marker)
+    {
+        if (!marker.getValueBlock().isPresent()) {
+            return Double.NaN;
+        }
+        return toStatisticsValue(type, marker.getValue());
+    }
+
+    /**
+     * Numeric representation of a value of the native java type of a type, or NaN for types without one.
+     */
+    private static double toStatisticsValue(Type type, Object value)
+    {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Long) {
+            if (type.equals(REAL)) {
+                return Float.intBitsToFloat(toIntExact((Long) value));
+            }
+            if (type instanceof DecimalType) {
+                return (Long) value / Math.pow(10, ((DecimalType) type).getScale());
+            }
+            return (Long) value;
+        }
+        return Double.NaN;
+    }
 }
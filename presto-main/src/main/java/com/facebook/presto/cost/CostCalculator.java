@@ -16,6 +16,7 @@ package com.facebook.presto.cost;
 import com.facebook.presto.Session;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.iterative.Lookup;
 import com.facebook.presto.sql.planner.plan.PlanNode;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 
@@ -29,10 +30,24 @@ import java.util.Map;
  */
 public interface CostCalculator
 {
-    Map<PlanNodeId, PlanNodeCost> calculateCostForPlan(Session session, Map<Symbol, Type> types, PlanNode planNode);
+    default Map<PlanNodeId, PlanNodeCost> calculateCostForPlan(Session session, Map<Symbol, Type> types, PlanNode planNode)
+    {
+        return calculateCostForPlan(session, types, planNode, Lookup.noLookup());
+    }
+
+    /**
+     * Calculates the cost of a plan which may reference the groups of the iterative optimizer,
+     * resolving the group references with the {@code lookup}.
+     */
+    Map<PlanNodeId, PlanNodeCost> calculateCostForPlan(Session session, Map<Symbol, Type> types, PlanNode planNode, Lookup lookup);
 
     default PlanNodeCost calculateCostForNode(Session session, Map<Symbol, Type> types, PlanNode planNode)
     {
         return calculateCostForPlan(session, types, planNode).get(planNode.getId());
     }
+
+    default PlanNodeCost calculateCostForNode(Session session, Map<Symbol, Type> types, PlanNode planNode, Lookup lookup)
+    {
+        return calculateCostForPlan(session, types, planNode, lookup).get(planNode.getId());
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.cost;
+
+import com.facebook.presto.spi.statistics.Estimate;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Estimates the output of inner joins from the statistics of their sources. Every equi join clause
+ * divides the cross product of the sources by the larger number of distinct values of its symbols,
+ * which is the expected number of matches when the values of the side with fewer distinct values
+ * are contained in the values of the other side. The clauses are assumed to be independent.
+ */
+public final class JoinStatistics
+{
+    // used when the number of distinct values of the join symbols is not known
+    static final double JOIN_MATCHING_COEFFICIENT = 2.0;
+
+    private JoinStatistics() {}
+
+    public static PlanNodeCost estimateInnerJoin(PlanNodeCost left, PlanNodeCost right, List<EquiJoinClause> criteria)
+    {
+        PlanNodeCost.Builder joinCost = PlanNodeCost.builder()
+                .setSymbolStatistics(left.getSymbolStatistics())
+                .setSymbolStatistics(right.getSymbolStatistics());
+        if (left.getOutputRowCount().isValueUnknown() || right.getOutputRowCount().isValueUnknown()) {
+            return joinCost.build();
+        }
+
+        double leftRowCount = left.getOutputRowCount().getValue();
+        double rightRowCount = right.getOutputRowCount().getValue();
+        double rowCount = leftRowCount * rightRowCount;
+        boolean distinctValuesKnown = false;
+        for (EquiJoinClause clause : criteria) {
+            Estimate leftDistinctValues = left.getSymbolStatistics(clause.getLeft()).getDistinctValuesCount();
+            Estimate rightDistinctValues = right.getSymbolStatistics(clause.getRight()).getDistinctValuesCount();
+            double distinctValues = max(
+                    leftDistinctValues.isValueUnknown() ? 0 : leftDistinctValues.getValue(),
+                    rightDistinctValues.isValueUnknown() ? 0 : rightDistinctValues.getValue());
+            if (distinctValues > 0) {
+                rowCount /= distinctValues;
+                distinctValuesKnown = true;
+            }
+        }
+        if (!criteria.isEmpty() && !distinctValuesKnown) {
+            rowCount = max(leftRowCount, rightRowCount) * JOIN_MATCHING_COEFFICIENT;
+        }
+        Estimate outputRowCount = new Estimate(rowCount);
+
+        // the matching values of a clause are the values of the side with fewer distinct values
+        for (EquiJoinClause clause : criteria) {
+            SymbolStatistics leftStatistics = left.getSymbolStatistics(clause.getLeft());
+            SymbolStatistics rightStatistics = right.getSymbolStatistics(clause.getRight());
+            Estimate distinctValues = minDistinctValuesCount(leftStatistics, rightStatistics);
+            joinCost.setSymbolStatistics(clause.getLeft(), SymbolStatistics.buildFrom(leftStatistics).setDistinctValuesCount(distinctValues).build());
+            joinCost.setSymbolStatistics(clause.getRight(), SymbolStatistics.buildFrom(rightStatistics).setDistinctValuesCount(distinctValues).build());
+        }
+        PlanNodeCost cost = joinCost.setOutputRowCount(outputRowCount).build();
+        return limitDistinctValuesCounts(cost);
+    }
+
+    static PlanNodeCost limitDistinctValuesCounts(PlanNodeCost cost)
+    {
+        PlanNodeCost.Builder limited = PlanNodeCost.buildFrom(cost);
+        for (Map.Entry<Symbol, SymbolStatistics> entry : cost.getSymbolStatistics().entrySet()) {
+            limited.setSymbolStatistics(entry.getKey(), entry.getValue().limitDistinctValuesCount(cost.getOutputRowCount()));
+        }
+        return limited.build();
+    }
+
+    private static Estimate minDistinctValuesCount(SymbolStatistics left, SymbolStatistics right)
+    {
+        if (left.getDistinctValuesCount().isValueUnknown()) {
+            return right.getDistinctValuesCount();
+        }
+        if (right.getDistinctValuesCount().isValueUnknown()) {
+            return left.getDistinctValuesCount();
+        }
+        return new Estimate(min(left.getDistinctValuesCount().getValue(), right.getDistinctValuesCount().getValue()));
+    }
+}
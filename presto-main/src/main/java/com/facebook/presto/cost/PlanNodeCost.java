@@ -14,10 +14,15 @@
 package com.facebook.presto.cost;
 
 import com.facebook.presto.spi.statistics.Estimate;
+import com.facebook.presto.sql.planner.Symbol;
+import com.google.common.collect.ImmutableMap;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 
+import static com.facebook.presto.cost.SymbolStatistics.UNKNOWN_STATISTICS;
 import static com.facebook.presto.spi.statistics.Estimate.unknownValue;
 import static java.util.Objects.requireNonNull;
 
@@ -27,11 +32,13 @@ public class PlanNodeCost
 
     private final Estimate outputRowCount;
     private final Estimate outputSizeInBytes;
+    private final Map<Symbol, SymbolStatistics> symbolStatistics;
 
-    private PlanNodeCost(Estimate outputRowCount, Estimate outputSizeInBytes)
+    private PlanNodeCost(Estimate outputRowCount, Estimate outputSizeInBytes, Map<Symbol, SymbolStatistics> symbolStatistics)
     {
         this.outputRowCount = requireNonNull(outputRowCount, "outputRowCount can not be null");
         this.outputSizeInBytes = requireNonNull(outputSizeInBytes, "outputSizeInBytes can not be null");
+        this.symbolStatistics = ImmutableMap.copyOf(requireNonNull(symbolStatistics, "symbolStatistics can not be null"));
     }
 
     public Estimate getOutputRowCount()
@@ -44,6 +51,19 @@ public class PlanNodeCost
         return outputSizeInBytes;
     }
 
+    /**
+     * Statistics of the output symbols for which some statistics are known.
+     */
+    public Map<Symbol, SymbolStatistics> getSymbolStatistics()
+    {
+        return symbolStatistics;
+    }
+
+    public SymbolStatistics getSymbolStatistics(Symbol symbol)
+    {
+        return symbolStatistics.getOrDefault(symbol, UNKNOWN_STATISTICS);
+    }
+
     public PlanNodeCost mapOutputRowCount(Function<Double, Double> mappingFunction)
     {
         return buildFrom(this).setOutputRowCount(outputRowCount.map(mappingFunction)).build();
@@ -51,13 +71,13 @@ public class PlanNodeCost
 
     public PlanNodeCost mapOutputSizeInBytes(Function<Double, Double> mappingFunction)
     {
-        return buildFrom(this).setOutputSizeInBytes(outputRowCount.map(mappingFunction)).build();
+        return buildFrom(this).setOutputSizeInBytes(outputSizeInBytes.map(mappingFunction)).build();
     }
 
     @Override
     public String toString()
     {
-        return "PlanNodeCost{outputRowCount=" + outputRowCount + ", outputSizeInBytes=" + outputSizeInBytes + '}';
+        return "PlanNodeCost{outputRowCount=" + outputRowCount + ", outputSizeInBytes=" + outputSizeInBytes + ", symbolStatistics=" + symbolStatistics + '}';
     }
 
     @Override
@@ -71,13 +91,14 @@ public class PlanNodeCost
         }
         PlanNodeCost that = (PlanNodeCost) o;
         return Objects.equals(outputRowCount, that.outputRowCount) &&
-                Objects.equals(outputSizeInBytes, that.outputSizeInBytes);
+                Objects.equals(outputSizeInBytes, that.outputSizeInBytes) &&
+                Objects.equals(symbolStatistics, that.symbolStatistics);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(outputRowCount, outputSizeInBytes);
+        return Objects.hash(outputRowCount, outputSizeInBytes, symbolStatistics);
     }
 
     public static Builder builder()
@@ -88,13 +109,15 @@ public class PlanNodeCost
     public static Builder buildFrom(PlanNodeCost other)
     {
         return builder().setOutputRowCount(other.getOutputRowCount())
-                .setOutputSizeInBytes(other.getOutputSizeInBytes());
+                .setOutputSizeInBytes(other.getOutputSizeInBytes())
+                .setSymbolStatistics(other.getSymbolStatistics());
     }
 
     public static final class Builder
     {
         private Estimate outputRowCount = unknownValue();
         private Estimate outputSizeInBytes = unknownValue();
+        private final Map<Symbol, SymbolStatistics> symbolStatistics = new HashMap<>();
 
         public Builder setOutputRowCount(Estimate outputRowCount)
         {
@@ -108,9 +131,28 @@ public class PlanNodeCost
             return this;
         }
 
+        public Builder setSymbolStatistics(Symbol symbol, SymbolStatistics statistics)
+        {
+            requireNonNull(symbol, "symbol can not be null");
+            requireNonNull(statistics, "statistics can not be null");
+            if (statistics.equals(UNKNOWN_STATISTICS)) {
+                this.symbolStatistics.remove(symbol);
+            }
+            else {
+                this.symbolStatistics.put(symbol, statistics);
+            }
+            return this;
+        }
+
+        public Builder setSymbolStatistics(Map<Symbol, SymbolStatistics> symbolStatistics)
+        {
+            symbolStatistics.forEach(this::setSymbolStatistics);
+            return this;
+        }
+
         public PlanNodeCost build()
         {
-            return new PlanNodeCost(outputRowCount, outputSizeInBytes);
+            return new PlanNodeCost(outputRowCount, outputSizeInBytes, symbolStatistics);
         }
     }
 }
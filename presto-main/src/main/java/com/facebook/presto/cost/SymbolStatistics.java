@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.cost;
+
+import com.facebook.presto.spi.statistics.Estimate;
+
+import java.util.Objects;
+
+import static com.facebook.presto.spi.statistics.Estimate.unknownValue;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Estimated statistics of the values of a symbol in the output of a plan node. The low and high values are
+ * only known for types with a numeric representation, e.g. they are the number of days since epoch for a date.
+ */
+public class SymbolStatistics
+{
+    public static final SymbolStatistics UNKNOWN_STATISTICS = SymbolStatistics.builder().build();
+
+    private final Estimate lowValue;
+    private final Estimate highValue;
+    private final Estimate nullsFraction;
+    private final Estimate distinctValuesCount;
+
+    private SymbolStatistics(Estimate lowValue, Estimate highValue, Estimate nullsFraction, Estimate distinctValuesCount)
+    {
+        this.lowValue = requireNonNull(lowValue, "lowValue can not be null");
+        this.highValue = requireNonNull(highValue, "highValue can not be null");
+        this.nullsFraction = requireNonNull(nullsFraction, "nullsFraction can not be null");
+        this.distinctValuesCount = requireNonNull(distinctValuesCount, "distinctValuesCount can not be null");
+    }
+
+    public Estimate getLowValue()
+    {
+        return lowValue;
+    }
+
+    public Estimate getHighValue()
+    {
+        return highValue;
+    }
+
+    public Estimate getNullsFraction()
+    {
+        return nullsFraction;
+    }
+
+    public Estimate getDistinctValuesCount()
+    {
+        return distinctValuesCount;
+    }
+
+    /**
+     * Caps the number of distinct values to the number of rows, which is lower after filters and joins.
+     */
+    public SymbolStatistics limitDistinctValuesCount(Estimate rowCount)
+    {
+        if (distinctValuesCount.isValueUnknown() || rowCount.isValueUnknown() || distinctValuesCount.getValue() <= rowCount.getValue()) {
+            return this;
+        }
+        return buildFrom(this).setDistinctValuesCount(rowCount).build();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SymbolStatistics{lowValue=" + lowValue + ", highValue=" + highValue + ", nullsFraction=" + nullsFraction + ", distinctValuesCount=" + distinctValuesCount + '}';
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SymbolStatistics that = (SymbolStatistics) o;
+        return Objects.equals(lowValue, that.lowValue) &&
+                Objects.equals(highValue, that.highValue) &&
+                Objects.equals(nullsFraction, that.nullsFraction) &&
+                Objects.equals(distinctValuesCount, that.distinctValuesCount);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(lowValue, highValue, nullsFraction, distinctValuesCount);
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public static Builder buildFrom(SymbolStatistics other)
+    {
+        return builder()
+                .setLowValue(other.getLowValue())
+                .setHighValue(other.getHighValue())
+                .setNullsFraction(other.getNullsFraction())
+                .setDistinctValuesCount(other.getDistinctValuesCount());
+    }
+
+    public static final class Builder
+    {
+        private Estimate lowValue = unknownValue();
+        private Estimate highValue = unknownValue();
+        private Estimate nullsFraction = unknownValue();
+        private Estimate distinctValuesCount = unknownValue();
+
+        public Builder setLowValue(Estimate lowValue)
+        {
+            this.lowValue = lowValue;
+            return this;
+        }
+
+        public Builder setHighValue(Estimate highValue)
+        {
+            this.highValue = highValue;
+            return this;
+        }
+
+        public Builder setNullsFraction(Estimate nullsFraction)
+        {
+            this.nullsFraction = nullsFraction;
+            return this;
+        }
+
+        public Builder setDistinctValuesCount(Estimate distinctValuesCount)
+        {
+            this.distinctValuesCount = distinctValuesCount;
+            return this;
+        }
+
+        public SymbolStatistics build()
+        {
+            return new SymbolStatistics(lowValue, highValue, nullsFraction, distinctValuesCount);
+        }
+    }
+}
@@ -44,6 +44,7 @@ public class QueryManagerConfig
     private Duration minQueryExpireAge = new Duration(15, TimeUnit.MINUTES);
     private int maxQueryHistory = 100;
     private int maxQueryLength = 1_000_000;
+    private int statementCacheMaxLength = 10_000_000;
     private Duration clientTimeout = new Duration(5, TimeUnit.MINUTES);
 
     private int queryManagerExecutorPoolSize = 5;
@@ -181,6 +182,20 @@ public class QueryManagerConfig
         return this;
     }
 
+    @Min(0)
+    public int getStatementCacheMaxLength()
+    {
+        return statementCacheMaxLength;
+    }
+
+    @Config("query.statement-cache-max-length")
+    @ConfigDescription("Total length of the text of the parsed statements that are cached, including the ones of prepared statements")
+    public QueryManagerConfig setStatementCacheMaxLength(int statementCacheMaxLength)
+    {
+        this.statementCacheMaxLength = statementCacheMaxLength;
+        return this;
+    }
+
     @MinDuration("5s")
     @NotNull
     public Duration getClientTimeout()
@@ -51,6 +51,7 @@ import com.facebook.presto.sql.planner.PlanFragmenter;
 import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
 import com.facebook.presto.sql.planner.PlanOptimizers;
 import com.facebook.presto.sql.planner.StageExecutionPlan;
+import com.facebook.presto.sql.planner.StatsRecorder;
 import com.facebook.presto.sql.planner.SubPlan;
 import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
 import com.facebook.presto.sql.tree.CreateTableAsSelect;
@@ -120,6 +121,7 @@ public final class SqlQueryExecution
     private final NodePartitioningManager nodePartitioningManager;
     private final NodeScheduler nodeScheduler;
     private final List<PlanOptimizer> planOptimizers;
+    private final StatsRecorder planOptimizerStats;
     private final RemoteTaskFactory remoteTaskFactory;
     private final LocationFactory locationFactory;
     private final int scheduleSplitBatchSize;
@@ -149,6 +151,7 @@ public final class SqlQueryExecution
             NodeScheduler nodeScheduler,
             CostCalculator costCalculator,
             List<PlanOptimizer> planOptimizers,
+            StatsRecorder planOptimizerStats,
             RemoteTaskFactory remoteTaskFactory,
             LocationFactory locationFactory,
             int scheduleSplitBatchSize,
@@ -170,6 +173,7 @@ public final class SqlQueryExecution
             this.nodeScheduler = requireNonNull(nodeScheduler, "nodeScheduler is null");
             this.costCalculator = requireNonNull(costCalculator, "costCalculator is null");
             this.planOptimizers = requireNonNull(planOptimizers, "planOptimizers is null");
+            this.planOptimizerStats = requireNonNull(planOptimizerStats, "planOptimizerStats is null");
             this.locationFactory = requireNonNull(locationFactory, "locationFactory is null");
             this.queryExecutor = requireNonNull(queryExecutor, "queryExecutor is null");
             this.failureDetector = requireNonNull(failureDetector, "failureDetector is null");
@@ -354,7 +358,7 @@ public final class SqlQueryExecution
 
         // plan query
         PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
-        LogicalPlanner logicalPlanner = new LogicalPlanner(stateMachine.getSession(), planOptimizers, idAllocator, metadata, sqlParser, costCalculator);
+        LogicalPlanner logicalPlanner = new LogicalPlanner(stateMachine.getSession(), planOptimizers, idAllocator, metadata, sqlParser, costCalculator, planOptimizerStats);
         Plan plan = logicalPlanner.plan(analysis);
         queryPlan.set(plan);
 
@@ -619,6 +623,7 @@ public final class SqlQueryExecution
         private final NodeScheduler nodeScheduler;
         private final CostCalculator costCalculator;
         private final List<PlanOptimizer> planOptimizers;
+        private final StatsRecorder planOptimizerStats;
         private final RemoteTaskFactory remoteTaskFactory;
         private final TransactionManager transactionManager;
         private final QueryExplainer queryExplainer;
@@ -671,6 +676,7 @@ public final class SqlQueryExecution
             this.executionPolicies = requireNonNull(executionPolicies, "schedulerPolicies is null");
             this.costCalculator = requireNonNull(costCalculator, "cost calculator is null");
             this.planOptimizers = planOptimizers.get();
+            this.planOptimizerStats = planOptimizers.getStats();
         }
 
         @Override
@@ -695,6 +701,7 @@ public final class SqlQueryExecution
                     nodeScheduler,
                     costCalculator,
                     planOptimizers,
+                    planOptimizerStats,
                     remoteTaskFactory,
                     locationFactory,
                     scheduleSplitBatchSize,
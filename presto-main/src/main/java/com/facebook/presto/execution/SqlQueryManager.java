@@ -30,6 +30,7 @@ import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.QueryId;
 import com.facebook.presto.spi.resourceGroups.ResourceGroupId;
 import com.facebook.presto.sql.analyzer.SemanticException;
+import com.facebook.presto.sql.gen.CacheStatsMBean;
 import com.facebook.presto.sql.parser.ParsingException;
 import com.facebook.presto.sql.parser.SqlParser;
 import com.facebook.presto.sql.planner.Plan;
@@ -66,6 +67,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import static com.facebook.presto.execution.ParameterExtractor.getParameterCount;
 import static com.facebook.presto.execution.QueryState.RUNNING;
@@ -94,7 +96,7 @@ public class SqlQueryManager
 {
     private static final Logger log = Logger.get(SqlQueryManager.class);
 
-    private final SqlParser sqlParser;
+    private final StatementCache statementCache;
 
     private final ExecutorService queryExecutor;
     private final ThreadPoolExecutorMBean queryExecutorMBean;
@@ -154,8 +156,6 @@ public class SqlQueryManager
             Map<Class<? extends Statement>, QueryExecutionFactory<?>> executionFactories,
             Metadata metadata)
     {
-        this.sqlParser = requireNonNull(sqlParser, "sqlParser is null");
-
         this.executionFactories = requireNonNull(executionFactories, "executionFactories is null");
 
         this.queryExecutor = newCachedThreadPool(threadsNamed("query-scheduler-%s"));
@@ -180,6 +180,8 @@ public class SqlQueryManager
 
         this.internalNodeManager = requireNonNull(internalNodeManager, "internalNodeManager is null");
 
+        this.statementCache = new StatementCache(sqlParser, queryManagerConfig.getStatementCacheMaxLength());
+
         this.isIncludeCoordinator = nodeSchedulerConfig.isIncludeCoordinator();
         this.minQueryExpireAge = queryManagerConfig.getMinQueryExpireAge();
         this.maxQueryHistory = queryManagerConfig.getMaxQueryHistory();
@@ -384,8 +386,8 @@ public class SqlQueryManager
                 throw new PrestoException(QUERY_TEXT_TOO_LARGE, format("Query text length (%s) exceeds the maximum length (%s)", queryLength, maxQueryLength));
             }
 
-            Statement wrappedStatement = sqlParser.createStatement(query);
-            statement = unwrapExecuteStatement(wrappedStatement, sqlParser, session);
+            Statement wrappedStatement = statementCache.getStatement(query);
+            statement = unwrapExecuteStatement(wrappedStatement, statementCache::getStatement, session);
             List<Expression> parameters = wrappedStatement instanceof Execute ? ((Execute) wrappedStatement).getParameters() : emptyList();
             validateParameters(statement, parameters);
             QueryExecutionFactory<?> queryExecutionFactory = executionFactories.get(statement.getClass());
@@ -461,13 +463,18 @@ public class SqlQueryManager
     }
 
     public static Statement unwrapExecuteStatement(Statement statement, SqlParser sqlParser, Session session)
+    {
+        return unwrapExecuteStatement(statement, sqlParser::createStatement, session);
+    }
+
+    private static Statement unwrapExecuteStatement(Statement statement, Function<String, Statement> parser, Session session)
     {
         if ((!(statement instanceof Execute))) {
             return statement;
         }
 
         String sql = session.getPreparedStatementFromExecute((Execute) statement);
-        return sqlParser.createStatement(sql);
+        return parser.apply(sql);
     }
 
     public static void validateParameters(Statement node, List<Expression> parameterValues)
@@ -515,6 +522,13 @@ public class SqlQueryManager
         return stats;
     }
 
+    @Managed(description = "Parsed statement cache")
+    @Nested
+    public CacheStatsMBean getStatementCacheStats()
+    {
+        return statementCache.getStats();
+    }
+
     @Managed(description = "Query scheduler executor")
     @Nested
     public ThreadPoolExecutorMBean getExecutor()
@@ -328,11 +328,16 @@ public class SqlTask
     }
 
     public ListenableFuture<BufferResult> getTaskResults(OutputBufferId bufferId, long startingSequenceId, DataSize maxSize)
+    {
+        return getTaskResults(bufferId, startingSequenceId, startingSequenceId, maxSize);
+    }
+
+    public ListenableFuture<BufferResult> getTaskResults(OutputBufferId bufferId, long acknowledgedSequenceId, long startingSequenceId, DataSize maxSize)
     {
         requireNonNull(bufferId, "bufferId is null");
         checkArgument(maxSize.toBytes() > 0, "maxSize must be at least 1 byte");
 
-        return outputBuffer.get(bufferId, startingSequenceId, maxSize);
+        return outputBuffer.get(bufferId, acknowledgedSequenceId, startingSequenceId, maxSize);
     }
 
     public TaskInfo abortTaskResults(OutputBufferId bufferId)
@@ -336,14 +336,15 @@ public class SqlTaskManager
     }
 
     @Override
-    public ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long startingSequenceId, DataSize maxSize)
+    public ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long acknowledgedSequenceId, long startingSequenceId, DataSize maxSize)
     {
         requireNonNull(taskId, "taskId is null");
         requireNonNull(bufferId, "bufferId is null");
-        Preconditions.checkArgument(startingSequenceId >= 0, "startingSequenceId is negative");
+        Preconditions.checkArgument(acknowledgedSequenceId >= 0, "acknowledgedSequenceId is negative");
+        Preconditions.checkArgument(startingSequenceId >= acknowledgedSequenceId, "startingSequenceId is before acknowledgedSequenceId");
         requireNonNull(maxSize, "maxSize is null");
 
-        return tasks.getUnchecked(taskId).getTaskResults(bufferId, startingSequenceId, maxSize);
+        return tasks.getUnchecked(taskId).getTaskResults(bufferId, acknowledgedSequenceId, startingSequenceId, maxSize);
     }
 
     @Override
@@ -17,7 +17,10 @@ import com.facebook.presto.Session;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.scheduler.SplitSchedulerStats;
 import com.facebook.presto.operator.BlockedReason;
+import com.facebook.presto.operator.OperatorInfo;
 import com.facebook.presto.operator.OperatorStats;
+import com.facebook.presto.operator.PageCompressionInfo;
+import com.facebook.presto.operator.PartitionedOutputOperator.PartitionedOutputInfo;
 import com.facebook.presto.operator.PipelineStats;
 import com.facebook.presto.operator.TaskStats;
 import com.facebook.presto.sql.planner.PlanFragment;
@@ -27,6 +30,7 @@ import io.airlift.log.Logger;
 import io.airlift.stats.Distribution;
 import org.joda.time.DateTime;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.net.URI;
@@ -34,6 +38,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -287,6 +292,18 @@ public class StageStateMachine
             }
         }
 
+        long outputUncompressedDataSize = 0;
+        long outputSerializedDataSize = 0;
+        long outputCompressionCpu = 0;
+        for (OperatorStats operatorStats : operatorToStats.values()) {
+            Optional<PageCompressionInfo> compressionInfo = getPageCompressionInfo(operatorStats.getInfo());
+            if (compressionInfo.isPresent()) {
+                outputUncompressedDataSize += compressionInfo.get().getUncompressedSizeInBytes();
+                outputSerializedDataSize += compressionInfo.get().getSerializedSizeInBytes();
+                outputCompressionCpu += compressionInfo.get().getCompressionCpuNanos();
+            }
+        }
+
         StageStats stageStats = new StageStats(
                 schedulingComplete.get(),
                 getSplitDistribution.snapshot(),
@@ -320,6 +337,9 @@ public class StageStateMachine
                 succinctBytes(bufferedDataSize),
                 succinctBytes(outputDataSize),
                 outputPositions,
+                succinctBytes(outputUncompressedDataSize),
+                succinctBytes(outputSerializedDataSize),
+                succinctDuration(outputCompressionCpu, NANOSECONDS),
                 ImmutableList.copyOf(operatorToStats.values()));
 
         ExecutionFailureInfo failureInfo = null;
@@ -354,6 +374,17 @@ public class StageStateMachine
         addSplitDistribution.add(System.nanoTime() - startNanos);
     }
 
+    private static Optional<PageCompressionInfo> getPageCompressionInfo(@Nullable OperatorInfo info)
+    {
+        if (info instanceof PageCompressionInfo) {
+            return Optional.of((PageCompressionInfo) info);
+        }
+        if (info instanceof PartitionedOutputInfo) {
+            return Optional.of(((PartitionedOutputInfo) info).getCompressionInfo());
+        }
+        return Optional.empty();
+    }
+
     @Override
     public String toString()
     {
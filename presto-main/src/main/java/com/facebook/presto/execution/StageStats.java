@@ -72,6 +72,11 @@ public class StageStats
     private final DataSize bufferedDataSize;
     private final DataSize outputDataSize;
     private final long outputPositions;
+
+    private final DataSize outputUncompressedDataSize;
+    private final DataSize outputSerializedDataSize;
+    private final Duration outputCompressionCpu;
+
     private final List<OperatorStats> operatorSummaries;
 
     @VisibleForTesting
@@ -105,6 +110,9 @@ public class StageStats
         this.bufferedDataSize = null;
         this.outputDataSize = null;
         this.outputPositions = 0;
+        this.outputUncompressedDataSize = null;
+        this.outputSerializedDataSize = null;
+        this.outputCompressionCpu = null;
         this.operatorSummaries = null;
     }
 
@@ -146,6 +154,11 @@ public class StageStats
             @JsonProperty("bufferedDataSize") DataSize bufferedDataSize,
             @JsonProperty("outputDataSize") DataSize outputDataSize,
             @JsonProperty("outputPositions") long outputPositions,
+
+            @JsonProperty("outputUncompressedDataSize") DataSize outputUncompressedDataSize,
+            @JsonProperty("outputSerializedDataSize") DataSize outputSerializedDataSize,
+            @JsonProperty("outputCompressionCpu") Duration outputCompressionCpu,
+
             @JsonProperty("operatorSummaries") List<OperatorStats> operatorSummaries)
     {
         this.schedulingComplete = schedulingComplete;
@@ -194,6 +207,11 @@ public class StageStats
         this.outputDataSize = requireNonNull(outputDataSize, "outputDataSize is null");
         checkArgument(outputPositions >= 0, "outputPositions is negative");
         this.outputPositions = outputPositions;
+
+        this.outputUncompressedDataSize = requireNonNull(outputUncompressedDataSize, "outputUncompressedDataSize is null");
+        this.outputSerializedDataSize = requireNonNull(outputSerializedDataSize, "outputSerializedDataSize is null");
+        this.outputCompressionCpu = requireNonNull(outputCompressionCpu, "outputCompressionCpu is null");
+
         this.operatorSummaries = ImmutableList.copyOf(requireNonNull(operatorSummaries, "operatorSummaries is null"));
     }
 
@@ -365,6 +383,31 @@ public class StageStats
         return outputPositions;
     }
 
+    /**
+     * Size of the pages the stage serialized for its output buffers, before compression.
+     */
+    @JsonProperty
+    public DataSize getOutputUncompressedDataSize()
+    {
+        return outputUncompressedDataSize;
+    }
+
+    /**
+     * Size of the pages the stage serialized for its output buffers, after compression.
+     * The compression ratio of the stage is this size divided by the uncompressed size.
+     */
+    @JsonProperty
+    public DataSize getOutputSerializedDataSize()
+    {
+        return outputSerializedDataSize;
+    }
+
+    @JsonProperty
+    public Duration getOutputCompressionCpu()
+    {
+        return outputCompressionCpu;
+    }
+
     @JsonProperty
     public List<OperatorStats> getOperatorSummaries()
     {
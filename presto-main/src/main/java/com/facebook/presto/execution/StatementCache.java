@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.sql.gen.CacheStatsMBean;
+import com.facebook.presto.sql.parser.SqlParser;
+import com.facebook.presto.sql.tree.Statement;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Caches parsed statements by their text. Statements are immutable, so the same statement can be
+ * analyzed by several queries.
+ */
+public class StatementCache
+{
+    private final LoadingCache<String, Statement> cache;
+
+    /**
+     * @param maxLength the total length of the text of the cached statements
+     */
+    public StatementCache(SqlParser sqlParser, int maxLength)
+    {
+        requireNonNull(sqlParser, "sqlParser is null");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxLength)
+                .weigher((String sql, Statement statement) -> sql.length())
+                .recordStats()
+                .build(CacheLoader.from(sqlParser::createStatement));
+    }
+
+    public Statement getStatement(String sql)
+    {
+        try {
+            return cache.getUnchecked(sql);
+        }
+        catch (UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    public CacheStatsMBean getStats()
+    {
+        return new CacheStatsMBean(cache);
+    }
+}
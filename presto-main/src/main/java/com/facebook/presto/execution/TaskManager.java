@@ -105,7 +105,17 @@ public interface TaskManager
      * NOTE: this design assumes that only tasks and buffers that will
      * eventually exist are queried.
      */
-    ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long startingSequenceId, DataSize maxSize);
+    default ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long startingSequenceId, DataSize maxSize)
+    {
+        return getTaskResults(taskId, bufferId, startingSequenceId, startingSequenceId, maxSize);
+    }
+
+    /**
+     * Gets results from a task starting at the sequence id, but only acknowledges
+     * the results before the acknowledged sequence id.  This allows a client to read
+     * ahead of the results it has confirmed to have received.
+     */
+    ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long acknowledgedSequenceId, long startingSequenceId, DataSize maxSize);
 
     /**
      * Aborts a result buffer for a task.  If the task or buffer has not been
@@ -69,6 +69,7 @@ public class TaskManagerConfig
     private BigDecimal levelTimeMultiplier = new BigDecimal(2.0);
 
     private boolean legacySchedulingBehavior = true;
+    private boolean queryFairSchedulingEnabled;
 
     @MinDuration("1ms")
     @MaxDuration("10s")
@@ -388,4 +389,17 @@ public class TaskManagerConfig
         this.legacySchedulingBehavior = legacySchedulingBehavior;
         return this;
     }
+
+    public boolean isQueryFairSchedulingEnabled()
+    {
+        return queryFairSchedulingEnabled;
+    }
+
+    @Config("task.query-fair-scheduling-enabled")
+    @ConfigDescription("Share worker threads between queries in proportion to their CPU share weight rather than between tasks")
+    public TaskManagerConfig setQueryFairSchedulingEnabled(boolean queryFairSchedulingEnabled)
+    {
+        this.queryFairSchedulingEnabled = queryFairSchedulingEnabled;
+        return this;
+    }
 }
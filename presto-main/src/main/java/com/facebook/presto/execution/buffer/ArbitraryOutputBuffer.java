@@ -19,6 +19,7 @@ import com.facebook.presto.execution.StateMachine;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.SystemMemoryUsageListener;
 import com.facebook.presto.execution.buffer.ClientBuffer.PagesSupplier;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
@@ -30,6 +31,7 @@ import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -56,6 +58,7 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * A buffer that assigns pages to queues based on a first come, first served basis.
+ * When several clients are waiting for pages, the pages go to the client that drained its previous pages the fastest.
  */
 public class ArbitraryOutputBuffer
         implements OutputBuffer
@@ -72,6 +75,7 @@ public class ArbitraryOutputBuffer
 
     private final StateMachine<BufferState> state;
     private final String taskInstanceId;
+    private final Ticker ticker;
 
     private final AtomicLong totalPagesAdded = new AtomicLong();
     private final AtomicLong totalRowsAdded = new AtomicLong();
@@ -82,6 +86,17 @@ public class ArbitraryOutputBuffer
             DataSize maxBufferSize,
             SystemMemoryUsageListener systemMemoryUsageListener,
             Executor notificationExecutor)
+    {
+        this(taskInstanceId, state, maxBufferSize, systemMemoryUsageListener, notificationExecutor, Ticker.systemTicker());
+    }
+
+    public ArbitraryOutputBuffer(
+            String taskInstanceId,
+            StateMachine<BufferState> state,
+            DataSize maxBufferSize,
+            SystemMemoryUsageListener systemMemoryUsageListener,
+            Executor notificationExecutor,
+            Ticker ticker)
     {
         this.taskInstanceId = requireNonNull(taskInstanceId, "taskInstanceId is null");
         this.state = requireNonNull(state, "state is null");
@@ -92,6 +107,7 @@ public class ArbitraryOutputBuffer
                 requireNonNull(systemMemoryUsageListener, "systemMemoryUsageListener is null"),
                 requireNonNull(notificationExecutor, "notificationExecutor is null"));
         this.masterBuffer = new MasterBuffer();
+        this.ticker = requireNonNull(ticker, "ticker is null");
     }
 
     @Override
@@ -129,9 +145,11 @@ public class ArbitraryOutputBuffer
 
         int totalBufferedPages = masterBuffer.getBufferedPages();
         ImmutableList.Builder<BufferInfo> infos = ImmutableList.builder();
+        ImmutableList.Builder<ClientLagInfo> clientLags = ImmutableList.builder();
         for (ClientBuffer buffer : buffers) {
             BufferInfo bufferInfo = buffer.getInfo();
             infos.add(bufferInfo);
+            clientLags.add(buffer.getLagInfo());
 
             PageBufferInfo pageBufferInfo = bufferInfo.getPageBufferInfo();
             totalBufferedPages += pageBufferInfo.getBufferedPages();
@@ -146,7 +164,8 @@ public class ArbitraryOutputBuffer
                 totalBufferedPages,
                 totalRowsAdded.get(),
                 totalPagesAdded.get(),
-                infos.build());
+                infos.build(),
+                clientLags.build());
     }
 
     @Override
@@ -215,8 +234,9 @@ public class ArbitraryOutputBuffer
         // add pages to the buffer (this will increase the reference count by one)
         masterBuffer.addPages(serializedPageReferences);
 
-        // process any pending reads from the client buffers
-        for (ClientBuffer clientBuffer : safeGetBuffersSnapshot()) {
+        // process any pending reads from the client buffers, handing the pages to the fastest consumers first
+        // so that slow consumers do not hold on to pages that other consumers could already be processing
+        for (ClientBuffer clientBuffer : getBuffersByDrainRate()) {
             if (masterBuffer.isEmpty()) {
                 break;
             }
@@ -234,13 +254,13 @@ public class ArbitraryOutputBuffer
     }
 
     @Override
-    public ListenableFuture<BufferResult> get(OutputBufferId bufferId, long startingSequenceId, DataSize maxSize)
+    public ListenableFuture<BufferResult> get(OutputBufferId bufferId, long acknowledgedSequenceId, long startingSequenceId, DataSize maxSize)
     {
         checkState(!Thread.holdsLock(this), "Can not get pages while holding a lock on this");
         requireNonNull(bufferId, "bufferId is null");
         checkArgument(maxSize.toBytes() > 0, "maxSize must be at least 1 byte");
 
-        return getBuffer(bufferId).getPages(startingSequenceId, maxSize, Optional.of(masterBuffer));
+        return getBuffer(bufferId).getPages(acknowledgedSequenceId, startingSequenceId, maxSize, Optional.of(masterBuffer));
     }
 
     @Override
@@ -308,7 +328,7 @@ public class ArbitraryOutputBuffer
 
         // NOTE: buffers are allowed to be created before they are explicitly declared by setOutputBuffers
         // When no-more-buffers is set, we verify that all created buffers have been declared
-        buffer = new ClientBuffer(taskInstanceId, id);
+        buffer = new ClientBuffer(taskInstanceId, id, ticker);
 
         // buffer may have finished immediately before calling this method
         if (state.get() == FINISHED) {
@@ -319,6 +339,20 @@ public class ArbitraryOutputBuffer
         return buffer;
     }
 
+    private List<ClientBuffer> getBuffersByDrainRate()
+    {
+        List<ClientBuffer> buffers = new ArrayList<>(safeGetBuffersSnapshot());
+        // clients that did not acknowledge any page yet go first, so that every client is measured
+        buffers.sort(Comparator.comparingDouble(ArbitraryOutputBuffer::getDrainRateOrMax).reversed());
+        return buffers;
+    }
+
+    private static double getDrainRateOrMax(ClientBuffer buffer)
+    {
+        double drainRate = buffer.getDrainRate();
+        return Double.isNaN(drainRate) ? Double.MAX_VALUE : drainRate;
+    }
+
     private synchronized Collection<ClientBuffer> safeGetBuffersSnapshot()
     {
         return ImmutableList.copyOf(this.buffers.values());
@@ -14,6 +14,7 @@
 package com.facebook.presto.execution.buffer;
 
 import com.facebook.presto.OutputBuffers.OutputBufferId;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
@@ -37,14 +38,19 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.units.DataSize.succinctBytes;
+import static io.airlift.units.Duration.succinctNanos;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
 class ClientBuffer
 {
+    private static final long NO_OUTSTANDING_PAGES = Long.MIN_VALUE;
+
     private final String taskInstanceId;
     private final OutputBufferId bufferId;
+    private final Ticker ticker;
 
     private final AtomicLong rowsAdded = new AtomicLong();
     private final AtomicLong pagesAdded = new AtomicLong();
@@ -68,10 +74,50 @@ class ClientBuffer
     @GuardedBy("this")
     private PendingRead pendingRead;
 
+    // time the buffered pages were added or last acknowledged
+    private final AtomicLong outstandingSinceNanos = new AtomicLong(NO_OUTSTANDING_PAGES);
+    private final AtomicLong acknowledgedBytes = new AtomicLong();
+    private final AtomicLong outstandingNanos = new AtomicLong();
+
     public ClientBuffer(String taskInstanceId, OutputBufferId bufferId)
+    {
+        this(taskInstanceId, bufferId, Ticker.systemTicker());
+    }
+
+    public ClientBuffer(String taskInstanceId, OutputBufferId bufferId, Ticker ticker)
     {
         this.taskInstanceId = requireNonNull(taskInstanceId, "taskInstanceId is null");
         this.bufferId = requireNonNull(bufferId, "bufferId is null");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+    }
+
+    /**
+     * Bytes acknowledged by the client per second that they were outstanding, or NaN if nothing was acknowledged yet.
+     */
+    public double getDrainRate()
+    {
+        long nanos = outstandingNanos.get();
+        long bytes = acknowledgedBytes.get();
+        if (bytes == 0) {
+            return Double.NaN;
+        }
+        return bytes * 1_000_000_000.0 / Math.max(nanos, 1);
+    }
+
+    public ClientLagInfo getLagInfo()
+    {
+        //
+        // NOTE: this code must be lock free so state machine updates do not hang
+        //
+
+        long outstandingSince = outstandingSinceNanos.get();
+        long lagNanos = outstandingSince == NO_OUTSTANDING_PAGES ? 0 : Math.max(ticker.read() - outstandingSince, 0);
+        double drainRate = getDrainRate();
+        return new ClientLagInfo(
+                bufferId,
+                succinctBytes(bufferedBytes.get()),
+                succinctNanos(lagNanos),
+                succinctBytes(Double.isNaN(drainRate) ? 0 : (long) drainRate));
     }
 
     public BufferInfo getInfo()
@@ -112,6 +158,7 @@ class ClientBuffer
             pages.clear();
 
             bufferedBytes.getAndSet(0);
+            outstandingSinceNanos.set(NO_OUTSTANDING_PAGES);
 
             noMorePages = true;
             destroyed.set(true);
@@ -160,6 +207,10 @@ class ClientBuffer
 
         long bytesAdded = pages.stream().mapToLong(SerializedPageReference::getRetainedSizeInBytes).sum();
         bufferedBytes.addAndGet(bytesAdded);
+
+        if (!this.pages.isEmpty()) {
+            outstandingSinceNanos.compareAndSet(NO_OUTSTANDING_PAGES, ticker.read());
+        }
     }
 
     public ListenableFuture<BufferResult> getPages(long sequenceId, DataSize maxSize)
@@ -169,13 +220,24 @@ class ClientBuffer
 
     public ListenableFuture<BufferResult> getPages(long sequenceId, DataSize maxSize, Optional<PagesSupplier> pagesSupplier)
     {
-        checkArgument(sequenceId >= 0, "Invalid sequence id");
+        return getPages(sequenceId, sequenceId, maxSize, pagesSupplier);
+    }
+
+    /**
+     * Gets the pages starting at the sequence id, but only acknowledges the pages before the acknowledged
+     * sequence id, so that a client can read ahead of the pages it confirmed to have received. The pages
+     * that are not acknowledged are kept, and returned again if the client reads them again.
+     */
+    public ListenableFuture<BufferResult> getPages(long acknowledgedSequenceId, long sequenceId, DataSize maxSize, Optional<PagesSupplier> pagesSupplier)
+    {
+        checkArgument(acknowledgedSequenceId >= 0, "Invalid acknowledged sequence id");
+        checkArgument(sequenceId >= acknowledgedSequenceId, "Invalid sequence id");
 
         // acknowledge pages first, out side of locks to not trigger callbacks while holding the lock
-        acknowledgePages(sequenceId);
+        acknowledgePages(acknowledgedSequenceId);
 
         // attempt to load some data before processing the read
-        pagesSupplier.ifPresent(supplier -> loadPagesIfNecessary(supplier, maxSize));
+        pagesSupplier.ifPresent(supplier -> loadPagesIfNecessary(supplier, sequenceId, maxSize));
 
         PendingRead oldPendingRead = null;
         try {
@@ -184,9 +246,9 @@ class ClientBuffer
                 oldPendingRead = this.pendingRead;
                 this.pendingRead = null;
 
-                // Return results immediately if we have data, there will be no more data, or this is
-                // an out of order request
-                if (!pages.isEmpty() || noMorePages || sequenceId != currentSequenceId.get()) {
+                // Return results immediately if we have data after the sequence id, there will be no more data,
+                // or this is an out of order request
+                if (sequenceId != currentSequenceId.get() + pages.size() || noMorePages) {
                     return immediateFuture(processRead(sequenceId, maxSize));
                 }
 
@@ -232,15 +294,17 @@ class ClientBuffer
         // Get the max size from the current pending read, which may not be the
         // same pending read instance by the time pages are loaded but this is
         // safe since the size is rechecked before returning pages.
+        long sequenceId;
         DataSize maxSize;
         synchronized (this) {
             if (pendingRead == null) {
                 return;
             }
+            sequenceId = pendingRead.getSequenceId();
             maxSize = pendingRead.getMaxSize();
         }
 
-        boolean dataAdded = loadPagesIfNecessary(pagesSupplier, maxSize);
+        boolean dataAdded = loadPagesIfNecessary(pagesSupplier, sequenceId, maxSize);
 
         if (dataAdded) {
             PendingRead pendingRead;
@@ -254,9 +318,9 @@ class ClientBuffer
     }
 
     /**
-     * If there no data, attempt to load some from the pages supplier.
+     * If there no data to read from the sequence id, attempt to load some from the pages supplier.
      */
-    private boolean loadPagesIfNecessary(PagesSupplier pagesSupplier, DataSize maxSize)
+    private boolean loadPagesIfNecessary(PagesSupplier pagesSupplier, long sequenceId, DataSize maxSize)
     {
         checkState(!Thread.holdsLock(this), "Can not load pages while holding a lock on this");
 
@@ -266,7 +330,7 @@ class ClientBuffer
                 return false;
             }
 
-            if (!pages.isEmpty()) {
+            if (currentSequenceId.get() + pages.size() > sequenceId) {
                 return false;
             }
 
@@ -341,19 +405,22 @@ class ClientBuffer
             return emptyResults(taskInstanceId, currentSequenceId.get(), true);
         }
 
-        // if request is for pages after the current position, there is a bug somewhere
-        // a read call is always proceeded by acknowledge pages, which
-        // will advance the sequence id to at least the request position, unless
-        // the buffer is destroyed, and in that case the buffer will be empty with
-        // no more pages set, which is checked above
-        verify(sequenceId == currentSequenceId.get(), "Invalid sequence id");
+        // a read ahead of the acknowledged pages that reached the end of the finished buffer
+        int offset = toIntExact(sequenceId - currentSequenceId.get());
+        if (offset == pages.size() && noMorePages) {
+            return emptyResults(taskInstanceId, sequenceId, true);
+        }
+
+        // a read ahead of the acknowledged pages can only start at a page that has been
+        // buffered, since a client only reads ahead up to the pages it has been sent
+        checkArgument(offset <= pages.size(), "Invalid sequence id");
 
         // read the new pages
         long maxBytes = maxSize.toBytes();
         List<SerializedPage> result = new ArrayList<>();
         long bytes = 0;
 
-        for (SerializedPageReference page : pages) {
+        for (SerializedPageReference page : pages.subList(offset, pages.size())) {
             bytes += page.getRetainedSizeInBytes();
             // break (and don't add) if this page would exceed the limit
             if (!result.isEmpty() && bytes > maxBytes) {
@@ -398,6 +465,16 @@ class ClientBuffer
 
             // update memory tracking
             verify(bufferedBytes.addAndGet(-bytesRemoved) >= 0);
+
+            if (bytesRemoved > 0) {
+                long now = ticker.read();
+                long outstandingSince = outstandingSinceNanos.get();
+                if (outstandingSince != NO_OUTSTANDING_PAGES) {
+                    outstandingNanos.addAndGet(now - outstandingSince);
+                    acknowledgedBytes.addAndGet(bytesRemoved);
+                }
+                outstandingSinceNanos.set(pages.isEmpty() ? NO_OUTSTANDING_PAGES : now);
+            }
         }
 
         // dereference outside of synchronized to avoid making a callback while holding a lock
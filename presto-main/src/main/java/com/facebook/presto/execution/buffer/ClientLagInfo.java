@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.OutputBuffers.OutputBufferId;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * How far a client is behind in consuming the pages of its buffer.
+ */
+public class ClientLagInfo
+{
+    private final OutputBufferId bufferId;
+    private final DataSize outstandingSize;
+    private final Duration lag;
+    private final DataSize drainRate;
+
+    @JsonCreator
+    public ClientLagInfo(
+            @JsonProperty("bufferId") OutputBufferId bufferId,
+            @JsonProperty("outstandingSize") DataSize outstandingSize,
+            @JsonProperty("lag") Duration lag,
+            @JsonProperty("drainRate") DataSize drainRate)
+    {
+        this.bufferId = requireNonNull(bufferId, "bufferId is null");
+        this.outstandingSize = requireNonNull(outstandingSize, "outstandingSize is null");
+        this.lag = requireNonNull(lag, "lag is null");
+        this.drainRate = requireNonNull(drainRate, "drainRate is null");
+    }
+
+    @JsonProperty
+    public OutputBufferId getBufferId()
+    {
+        return bufferId;
+    }
+
+    /**
+     * Size of the pages sent to the client and not acknowledged yet.
+     */
+    @JsonProperty
+    public DataSize getOutstandingSize()
+    {
+        return outstandingSize;
+    }
+
+    /**
+     * Time since the client last acknowledged pages while it had outstanding pages, or zero when it has none.
+     */
+    @JsonProperty
+    public Duration getLag()
+    {
+        return lag;
+    }
+
+    /**
+     * Size of the pages the client acknowledged per second that they were outstanding.
+     */
+    @JsonProperty
+    public DataSize getDrainRate()
+    {
+        return drainRate;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("bufferId", bufferId)
+                .add("outstandingSize", outstandingSize)
+                .add("lag", lag)
+                .add("drainRate", drainRate)
+                .toString();
+    }
+}
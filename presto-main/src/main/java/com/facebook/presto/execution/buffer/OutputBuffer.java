@@ -57,7 +57,18 @@ public interface OutputBuffer
      * If the buffer result is marked as complete, the client must call abort to acknowledge
      * receipt of the final state.
      */
-    ListenableFuture<BufferResult> get(OutputBufferId bufferId, long token, DataSize maxSize);
+    default ListenableFuture<BufferResult> get(OutputBufferId bufferId, long token, DataSize maxSize)
+    {
+        return get(bufferId, token, token, maxSize);
+    }
+
+    /**
+     * Gets pages from the output buffer starting at the token, but only acknowledges the pages
+     * before the acknowledged token.  This allows a client to read ahead of the pages it has
+     * confirmed to have received; the pages that are not acknowledged are returned again
+     * if the client reads them again.
+     */
+    ListenableFuture<BufferResult> get(OutputBufferId bufferId, long acknowledgedToken, long token, DataSize maxSize);
 
     /**
      * Closes the specified output buffer.
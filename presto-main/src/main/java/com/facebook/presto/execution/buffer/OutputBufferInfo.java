@@ -33,6 +33,21 @@ public final class OutputBufferInfo
     private final long totalRowsSent;
     private final long totalPagesSent;
     private final List<BufferInfo> buffers;
+    private final List<ClientLagInfo> clientLags;
+
+    public OutputBufferInfo(
+            String type,
+            BufferState state,
+            boolean canAddBuffers,
+            boolean canAddPages,
+            long totalBufferedBytes,
+            long totalBufferedPages,
+            long totalRowsSent,
+            long totalPagesSent,
+            List<BufferInfo> buffers)
+    {
+        this(type, state, canAddBuffers, canAddPages, totalBufferedBytes, totalBufferedPages, totalRowsSent, totalPagesSent, buffers, ImmutableList.of());
+    }
 
     @JsonCreator
     public OutputBufferInfo(
@@ -44,7 +59,8 @@ public final class OutputBufferInfo
             @JsonProperty("totalBufferedPages") long totalBufferedPages,
             @JsonProperty("totalRowsSent") long totalRowsSent,
             @JsonProperty("totalPagesSent") long totalPagesSent,
-            @JsonProperty("buffers") List<BufferInfo> buffers)
+            @JsonProperty("buffers") List<BufferInfo> buffers,
+            @JsonProperty("clientLags") List<ClientLagInfo> clientLags)
     {
         this.type = type;
         this.state = state;
@@ -55,6 +71,7 @@ public final class OutputBufferInfo
         this.totalRowsSent = totalRowsSent;
         this.totalPagesSent = totalPagesSent;
         this.buffers = ImmutableList.copyOf(buffers);
+        this.clientLags = ImmutableList.copyOf(clientLags);
     }
 
     @JsonProperty
@@ -75,6 +92,12 @@ public final class OutputBufferInfo
         return buffers;
     }
 
+    @JsonProperty
+    public List<ClientLagInfo> getClientLags()
+    {
+        return clientLags;
+    }
+
     @JsonProperty
     public boolean isCanAddBuffers()
     {
@@ -156,6 +179,7 @@ public final class OutputBufferInfo
                 .add("totalRowsSent", totalRowsSent)
                 .add("totalPagesSent", totalPagesSent)
                 .add("buffers", buffers)
+                .add("clientLags", clientLags)
                 .toString();
     }
 }
@@ -17,10 +17,15 @@ import com.facebook.presto.spi.PrestoException;
 
 import static com.facebook.presto.spi.StandardErrorCode.CORRUPT_PAGE;
 
+/**
+ * Codec a serialized page was compressed with. The marker is written with every page, so pages compressed
+ * with different codecs can be sent on the same exchange.
+ */
 public enum PageCompression
 {
     UNCOMPRESSED((byte) 0),
-    COMPRESSED((byte) 1);
+    LZ4((byte) 1),
+    DEFLATE((byte) 2);
 
     private final byte marker;
 
@@ -36,9 +41,11 @@ public enum PageCompression
 
     public static PageCompression lookupCodecFromMarker(byte marker)
     {
-        if (marker != UNCOMPRESSED.getMarker() && marker != COMPRESSED.getMarker()) {
-            throw new PrestoException(CORRUPT_PAGE, "Page marker did not contain expected value");
+        for (PageCompression compression : values()) {
+            if (compression.getMarker() == marker) {
+                return compression;
+            }
         }
-        return UNCOMPRESSED.getMarker() == marker ? UNCOMPRESSED : COMPRESSED;
+        throw new PrestoException(CORRUPT_PAGE, "Page marker did not contain expected value");
     }
 }
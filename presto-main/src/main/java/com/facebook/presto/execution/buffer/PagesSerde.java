@@ -14,81 +14,325 @@
 package com.facebook.presto.execution.buffer;
 
 import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.block.BlockEncodingSerde;
 import io.airlift.compress.Compressor;
 import io.airlift.compress.Decompressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
 import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
 import io.airlift.slice.SliceOutput;
 import io.airlift.slice.Slices;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
-import static com.facebook.presto.execution.buffer.PageCompression.COMPRESSED;
+import static com.facebook.presto.execution.buffer.PageCompression.DEFLATE;
+import static com.facebook.presto.execution.buffer.PageCompression.LZ4;
 import static com.facebook.presto.execution.buffer.PageCompression.UNCOMPRESSED;
 import static com.facebook.presto.execution.buffer.PagesSerdeUtil.readRawPage;
 import static com.facebook.presto.execution.buffer.PagesSerdeUtil.writeRawPage;
+import static com.facebook.presto.spi.StandardErrorCode.CORRUPT_PAGE;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static io.airlift.compress.lz4.Lz4RawCompressor.maxCompressedLength;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Serializes pages for exchanges and spilling.
+ * <p>
+ * With adaptive compression, every codec is tried on a sample of the pages, and the pages in between are
+ * compressed with the codec that did best on the last sample: deflate when it saves a significant part of
+ * the size over LZ4, e.g. for text, LZ4 otherwise, and no compression at all when neither codec reduces the
+ * size enough, e.g. for random or already dictionary encoded data, so no CPU is spent on compressing it.
+ */
 @NotThreadSafe
 public class PagesSerde
 {
     private static final double MINIMUM_COMPRESSION_RATIO = 0.8;
+    // every codec is tried on one page out of this many
+    private static final int ADAPTIVE_COMPRESSION_SAMPLE_INTERVAL = 32;
+    // deflate is slower than LZ4, so it is only chosen when it saves this fraction of the size compressed with LZ4
+    private static final double DEFLATE_MINIMUM_SAVINGS = 0.25;
+    // deflaters and inflaters hold native memory until they are ended, so rather than being kept by every serde,
+    // which is not closed by its owners, they are borrowed from a pool for a single page
+    private static final int MAX_POOLED_CODECS = 2 * Runtime.getRuntime().availableProcessors();
+    private static final BlockingQueue<Deflater> DEFLATER_POOL = new ArrayBlockingQueue<>(MAX_POOLED_CODECS);
+    private static final BlockingQueue<Inflater> INFLATER_POOL = new ArrayBlockingQueue<>(MAX_POOLED_CODECS);
 
     private final BlockEncodingSerde blockEncodingSerde;
     private final Optional<Compressor> compressor;
     private final Optional<Decompressor> decompressor;
+    private final boolean adaptiveCompression;
+
+    private Decompressor lz4Decompressor;
+
+    private PageCompression selectedCompression = LZ4;
+    private int pagesUntilSample;
+
+    private final AtomicLong uncompressedPages = new AtomicLong();
+    private final AtomicLong lz4Pages = new AtomicLong();
+    private final AtomicLong deflatePages = new AtomicLong();
+    private final AtomicLong uncompressedSizeInBytes = new AtomicLong();
+    private final AtomicLong serializedSizeInBytes = new AtomicLong();
+    private final AtomicLong compressionCpuNanos = new AtomicLong();
 
     public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<Compressor> compressor, Optional<Decompressor> decompressor)
+    {
+        this(blockEncodingSerde, compressor, decompressor, false);
+    }
+
+    public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<Compressor> compressor, Optional<Decompressor> decompressor, boolean adaptiveCompression)
     {
         this.blockEncodingSerde = requireNonNull(blockEncodingSerde, "blockEncodingSerde is null");
         this.compressor = requireNonNull(compressor, "compressor is null");
         this.decompressor = requireNonNull(decompressor, "decompressor is null");
         checkArgument(compressor.isPresent() == decompressor.isPresent(), "compressor and decompressor must both be present or both be absent");
+        checkArgument(compressor.isPresent() || !adaptiveCompression, "adaptive compression requires a compressor");
+        this.adaptiveCompression = adaptiveCompression;
     }
 
     public SerializedPage serialize(Page page)
     {
         SliceOutput serializationBuffer = new DynamicSliceOutput(toIntExact((page.getSizeInBytes() + Integer.BYTES))); // block length is an int
         writeRawPage(page, serializationBuffer, blockEncodingSerde);
+        Slice slice = serializationBuffer.slice();
 
+        SerializedPage serializedPage;
         if (!compressor.isPresent()) {
-            return new SerializedPage(serializationBuffer.slice(), UNCOMPRESSED, page.getPositionCount(), serializationBuffer.size());
+            serializedPage = new SerializedPage(slice, UNCOMPRESSED, page.getPositionCount(), slice.length());
+        }
+        else {
+            long start = System.nanoTime();
+            if (adaptiveCompression) {
+                serializedPage = compressAdaptively(slice, page.getPositionCount());
+            }
+            else {
+                serializedPage = compress(LZ4, slice, page.getPositionCount());
+            }
+            compressionCpuNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        recordSerializedPage(serializedPage);
+        return serializedPage;
+    }
+
+    private SerializedPage compressAdaptively(Slice slice, int positionCount)
+    {
+        if (pagesUntilSample > 0) {
+            pagesUntilSample--;
+            return compress(selectedCompression, slice, positionCount);
         }
 
-        int maxCompressedLength = maxCompressedLength(serializationBuffer.size());
-        byte[] compressionBuffer = new byte[maxCompressedLength];
-        int actualCompressedLength = compressor.get().compress(serializationBuffer.slice().getBytes(), 0, serializationBuffer.size(), compressionBuffer, 0, maxCompressedLength);
+        pagesUntilSample = ADAPTIVE_COMPRESSION_SAMPLE_INTERVAL - 1;
+        SerializedPage lz4Page = compress(LZ4, slice, positionCount);
+        SerializedPage deflatePage = compress(DEFLATE, slice, positionCount);
 
-        if (((1.0 * actualCompressedLength) / serializationBuffer.size()) > MINIMUM_COMPRESSION_RATIO) {
-            return new SerializedPage(serializationBuffer.slice(), UNCOMPRESSED, page.getPositionCount(), serializationBuffer.size());
+        SerializedPage selectedPage = lz4Page;
+        if (deflatePage.getCompression() == DEFLATE && deflatePage.getSizeInBytes() < lz4Page.getSizeInBytes() * (1 - DEFLATE_MINIMUM_SAVINGS)) {
+            selectedPage = deflatePage;
+        }
+        selectedCompression = selectedPage.getCompression();
+        return selectedPage;
+    }
+
+    private SerializedPage compress(PageCompression compression, Slice slice, int positionCount)
+    {
+        int uncompressedSize = slice.length();
+        byte[] compressionBuffer;
+        int actualCompressedLength;
+        switch (compression) {
+            case UNCOMPRESSED:
+                return new SerializedPage(slice, UNCOMPRESSED, positionCount, uncompressedSize);
+            case LZ4:
+                int maxCompressedLength = maxCompressedLength(uncompressedSize);
+                compressionBuffer = new byte[maxCompressedLength];
+                actualCompressedLength = compressor.get().compress(slice.getBytes(), 0, uncompressedSize, compressionBuffer, 0, maxCompressedLength);
+                break;
+            case DEFLATE:
+                // output that does not fit in the size of the input is not worth keeping
+                compressionBuffer = new byte[uncompressedSize];
+                Deflater deflater = borrowDeflater();
+                boolean finished;
+                try {
+                    deflater.setInput(slice.getBytes());
+                    deflater.finish();
+                    actualCompressedLength = deflater.deflate(compressionBuffer);
+                    finished = deflater.finished();
+                }
+                finally {
+                    releaseDeflater(deflater);
+                }
+                if (!finished) {
+                    return new SerializedPage(slice, UNCOMPRESSED, positionCount, uncompressedSize);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported compression: " + compression);
+        }
+
+        if (((1.0 * actualCompressedLength) / uncompressedSize) > MINIMUM_COMPRESSION_RATIO) {
+            return new SerializedPage(slice, UNCOMPRESSED, positionCount, uncompressedSize);
         }
 
         return new SerializedPage(
                 Slices.copyOf(Slices.wrappedBuffer(compressionBuffer, 0, actualCompressedLength)),
-                COMPRESSED,
-                page.getPositionCount(),
-                serializationBuffer.size());
+                compression,
+                positionCount,
+                uncompressedSize);
+    }
+
+    private void recordSerializedPage(SerializedPage serializedPage)
+    {
+        switch (serializedPage.getCompression()) {
+            case UNCOMPRESSED:
+                uncompressedPages.incrementAndGet();
+                break;
+            case LZ4:
+                lz4Pages.incrementAndGet();
+                break;
+            case DEFLATE:
+                deflatePages.incrementAndGet();
+                break;
+        }
+        uncompressedSizeInBytes.addAndGet(serializedPage.getUncompressedSizeInBytes());
+        serializedSizeInBytes.addAndGet(serializedPage.getSizeInBytes());
     }
 
     public Page deserialize(SerializedPage serializedPage)
     {
         checkArgument(serializedPage != null, "serializedPage is null");
 
-        if (!decompressor.isPresent() || serializedPage.getCompression() == UNCOMPRESSED) {
-            return readRawPage(serializedPage.getPositionCount(), serializedPage.getSlice().getInput(), blockEncodingSerde);
+        SerializedPage uncompressedPage = decompress(serializedPage);
+        return readRawPage(uncompressedPage.getPositionCount(), uncompressedPage.getSlice().getInput(), blockEncodingSerde);
+    }
+
+    /**
+     * Returns the page with its data decompressed, so it can be read without the codec it was compressed with.
+     */
+    public SerializedPage decompress(SerializedPage serializedPage)
+    {
+        checkArgument(serializedPage != null, "serializedPage is null");
+
+        if (serializedPage.getCompression() == UNCOMPRESSED) {
+            return serializedPage;
         }
 
         int uncompressedSize = serializedPage.getUncompressedSizeInBytes();
         byte[] decompressed = new byte[uncompressedSize];
-        int actualUncompressedSize = decompressor.get().decompress(serializedPage.getSlice().getBytes(), 0, serializedPage.getSlice().length(), decompressed, 0, uncompressedSize);
+        int actualUncompressedSize;
+        if (serializedPage.getCompression() == DEFLATE) {
+            Inflater inflater = borrowInflater();
+            try {
+                inflater.setInput(serializedPage.getSlice().getBytes());
+                actualUncompressedSize = inflater.inflate(decompressed);
+            }
+            catch (DataFormatException e) {
+                throw new PrestoException(CORRUPT_PAGE, "Page data is not valid deflate data", e);
+            }
+            finally {
+                releaseInflater(inflater);
+            }
+        }
+        else {
+            actualUncompressedSize = getLz4Decompressor().decompress(serializedPage.getSlice().getBytes(), 0, serializedPage.getSlice().length(), decompressed, 0, uncompressedSize);
+        }
         checkState(uncompressedSize == actualUncompressedSize);
 
-        return readRawPage(serializedPage.getPositionCount(), Slices.wrappedBuffer(decompressed, 0, uncompressedSize).getInput(), blockEncodingSerde);
+        return new SerializedPage(Slices.wrappedBuffer(decompressed), UNCOMPRESSED, serializedPage.getPositionCount(), uncompressedSize);
+    }
+
+    public long getUncompressedPages()
+    {
+        return uncompressedPages.get();
+    }
+
+    public long getLz4Pages()
+    {
+        return lz4Pages.get();
+    }
+
+    public long getDeflatePages()
+    {
+        return deflatePages.get();
+    }
+
+    /**
+     * Size of the serialized pages before compression.
+     */
+    public long getUncompressedSizeInBytes()
+    {
+        return uncompressedSizeInBytes.get();
+    }
+
+    /**
+     * Size of the serialized pages after compression.
+     */
+    public long getSerializedSizeInBytes()
+    {
+        return serializedSizeInBytes.get();
+    }
+
+    /**
+     * Time spent compressing pages, including the samples compressed with codecs that were not chosen.
+     * Compression does not block, so this is the CPU time spent on it.
+     */
+    public long getCompressionCpuNanos()
+    {
+        return compressionCpuNanos.get();
+    }
+
+    private Decompressor getLz4Decompressor()
+    {
+        // pages may be compressed by the producer even when compression is disabled here
+        if (decompressor.isPresent()) {
+            return decompressor.get();
+        }
+        if (lz4Decompressor == null) {
+            lz4Decompressor = new Lz4Decompressor();
+        }
+        return lz4Decompressor;
+    }
+
+    private static Deflater borrowDeflater()
+    {
+        Deflater deflater = DEFLATER_POOL.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+        return deflater;
+    }
+
+    private static void releaseDeflater(Deflater deflater)
+    {
+        deflater.reset();
+        if (!DEFLATER_POOL.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static Inflater borrowInflater()
+    {
+        Inflater inflater = INFLATER_POOL.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        return inflater;
+    }
+
+    private static void releaseInflater(Inflater inflater)
+    {
+        inflater.reset();
+        if (!INFLATER_POOL.offer(inflater)) {
+            inflater.end();
+        }
     }
 }
@@ -17,21 +17,47 @@ import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.block.BlockEncodingSerde;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
 import io.airlift.slice.Slice;
 import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 
 import static com.facebook.presto.block.BlockSerdeUtil.readBlock;
 import static com.facebook.presto.block.BlockSerdeUtil.writeBlock;
 import static com.facebook.presto.execution.buffer.PageCompression.lookupCodecFromMarker;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
 import static java.lang.Math.toIntExact;
+import static java.lang.String.format;
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
 
 public class PagesSerdeUtil
 {
+    /**
+     * Size of the position count, compression marker, uncompressed size and size written before every serialized page.
+     */
+    public static final int SERIALIZED_PAGE_HEADER_SIZE = SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT + SIZE_OF_INT;
+
+    /**
+     * Size of the token, next token, buffer complete flag and page count written before every frame of a results stream.
+     */
+    public static final int SERIALIZED_PAGES_FRAME_HEADER_SIZE = SIZE_OF_LONG + SIZE_OF_LONG + SIZE_OF_BYTE + SIZE_OF_INT;
+
+    // the data of larger pages is only allocated as it arrives, so that a corrupted size can not allocate a huge array
+    private static final int MAX_PREALLOCATED_PAGE_SIZE = 16 * 1024 * 1024;
+
     private PagesSerdeUtil()
     {
     }
@@ -65,7 +91,129 @@ public class PagesSerdeUtil
         output.writeBytes(page.getSlice());
     }
 
-    private static SerializedPage readSerializedPage(SliceInput sliceInput)
+    /**
+     * Writes the pages to the stream without copying them into an intermediate buffer: only the page headers
+     * are staged, and the page data is handed to the stream directly, so the stream can write it to the socket
+     * as is, or gather it with the headers into its own buffer.
+     *
+     * @return the number of bytes written
+     */
+    public static long writeSerializedPages(OutputStream output, Iterable<SerializedPage> pages)
+            throws IOException
+    {
+        Slice header = Slices.allocate(SERIALIZED_PAGE_HEADER_SIZE);
+        long size = 0;
+        for (SerializedPage page : pages) {
+            header.setInt(0, page.getPositionCount());
+            header.setByte(SIZE_OF_INT, page.getCompression().getMarker());
+            header.setInt(SIZE_OF_INT + SIZE_OF_BYTE, page.getUncompressedSizeInBytes());
+            header.setInt(SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT, page.getSizeInBytes());
+            header.getBytes(0, output, SERIALIZED_PAGE_HEADER_SIZE);
+            page.getSlice().getBytes(0, output, page.getSizeInBytes());
+            size += SERIALIZED_PAGE_HEADER_SIZE + page.getSizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Reads serialized pages until the end of the stream. The data of every page is read from the stream
+     * directly into an array of the exact page size, instead of being staged in a read buffer first.
+     * The arrays are not pooled, as deserialized blocks may keep references to them. Only pages larger
+     * than 16MB are read through a buffer, as their size is not trusted before their data arrives.
+     */
+    public static List<SerializedPage> readSerializedPagesFully(InputStream input)
+            throws IOException
+    {
+        ImmutableList.Builder<SerializedPage> pages = ImmutableList.builder();
+        byte[] headerBytes = new byte[SERIALIZED_PAGE_HEADER_SIZE];
+        Slice header = Slices.wrappedBuffer(headerBytes);
+        while (true) {
+            int firstByte = input.read();
+            if (firstByte == -1) {
+                return pages.build();
+            }
+            headerBytes[0] = (byte) firstByte;
+            ByteStreams.readFully(input, headerBytes, 1, SERIALIZED_PAGE_HEADER_SIZE - 1);
+            pages.add(readSerializedPageData(header, input));
+        }
+    }
+
+    private static SerializedPage readSerializedPageData(Slice header, InputStream input)
+            throws IOException
+    {
+        int positionCount = header.getInt(0);
+        byte codecMarker = header.getByte(SIZE_OF_INT);
+        int uncompressedSizeInBytes = header.getInt(SIZE_OF_INT + SIZE_OF_BYTE);
+        int sizeInBytes = header.getInt(SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT);
+        if (positionCount < 0 || uncompressedSizeInBytes < 0 || sizeInBytes < 0) {
+            throw new IOException(format("Invalid serialized page header: positionCount=%s, uncompressedSizeInBytes=%s, sizeInBytes=%s", positionCount, uncompressedSizeInBytes, sizeInBytes));
+        }
+
+        byte[] data;
+        if (sizeInBytes <= MAX_PREALLOCATED_PAGE_SIZE) {
+            data = new byte[sizeInBytes];
+            ByteStreams.readFully(input, data);
+        }
+        else {
+            data = ByteStreams.toByteArray(ByteStreams.limit(input, sizeInBytes));
+            if (data.length != sizeInBytes) {
+                throw new EOFException(format("Serialized page is truncated: expected %s bytes, but got %s", sizeInBytes, data.length));
+            }
+        }
+        return new SerializedPage(Slices.wrappedBuffer(data), lookupCodecFromMarker(codecMarker), positionCount, uncompressedSizeInBytes);
+    }
+
+    /**
+     * Writes a buffer result as one frame of a results stream. A frame carries the tokens and the buffer
+     * complete flag that are sent as headers by the request per result endpoint, followed by the pages.
+     *
+     * @return the number of bytes written
+     */
+    public static long writeSerializedPagesFrame(OutputStream output, BufferResult result)
+            throws IOException
+    {
+        Slice header = Slices.allocate(SERIALIZED_PAGES_FRAME_HEADER_SIZE);
+        header.setLong(0, result.getToken());
+        header.setLong(SIZE_OF_LONG, result.getNextToken());
+        header.setByte(SIZE_OF_LONG + SIZE_OF_LONG, result.isBufferComplete() ? 1 : 0);
+        header.setInt(SIZE_OF_LONG + SIZE_OF_LONG + SIZE_OF_BYTE, result.size());
+        header.getBytes(0, output, SERIALIZED_PAGES_FRAME_HEADER_SIZE);
+        return SERIALIZED_PAGES_FRAME_HEADER_SIZE + writeSerializedPages(output, result.getSerializedPages());
+    }
+
+    /**
+     * Reads the next frame of a results stream.
+     *
+     * @return the frame, or empty if the stream ended before the frame
+     */
+    public static Optional<BufferResult> readSerializedPagesFrame(InputStream input, String taskInstanceId)
+            throws IOException
+    {
+        byte[] headerBytes = new byte[SERIALIZED_PAGES_FRAME_HEADER_SIZE];
+        int firstByte = input.read();
+        if (firstByte == -1) {
+            return Optional.empty();
+        }
+        headerBytes[0] = (byte) firstByte;
+        ByteStreams.readFully(input, headerBytes, 1, SERIALIZED_PAGES_FRAME_HEADER_SIZE - 1);
+
+        Slice header = Slices.wrappedBuffer(headerBytes);
+        long token = header.getLong(0);
+        long nextToken = header.getLong(SIZE_OF_LONG);
+        boolean bufferComplete = header.getByte(SIZE_OF_LONG + SIZE_OF_LONG) != 0;
+        int pageCount = header.getInt(SIZE_OF_LONG + SIZE_OF_LONG + SIZE_OF_BYTE);
+
+        ImmutableList.Builder<SerializedPage> pages = ImmutableList.builder();
+        byte[] pageHeaderBytes = new byte[SERIALIZED_PAGE_HEADER_SIZE];
+        Slice pageHeader = Slices.wrappedBuffer(pageHeaderBytes);
+        for (int i = 0; i < pageCount; i++) {
+            ByteStreams.readFully(input, pageHeaderBytes);
+            pages.add(readSerializedPageData(pageHeader, input));
+        }
+        return Optional.of(new BufferResult(taskInstanceId, token, nextToken, bufferComplete, pages.build()));
+    }
+
+    public static SerializedPage readSerializedPage(SliceInput sliceInput)
     {
         int positionCount = sliceInput.readInt();
         byte codecMarker = sliceInput.readByte();
@@ -30,11 +30,17 @@ public class LegacyTaskHandle
         super(taskId, splitQueue, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency);
     }
 
+    public LegacyTaskHandle(TaskId taskId, MultilevelSplitQueue splitQueue, DoubleSupplier utilizationSupplier, int initialSplitConcurrency, Duration splitConcurrencyAdjustFrequency, QueryCpuShare queryCpuShare)
+    {
+        super(taskId, splitQueue, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, queryCpuShare, false);
+    }
+
     @Override
     public synchronized Priority addScheduledNanos(long durationNanos)
     {
         concurrencyController.update(durationNanos, utilizationSupplier.getAsDouble(), runningLeafSplits.size());
         scheduledNanos += durationNanos;
+        queryCpuShare.addScheduledNanos(durationNanos);
 
         Priority oldPriority = priority.get();
         Priority newPriority;
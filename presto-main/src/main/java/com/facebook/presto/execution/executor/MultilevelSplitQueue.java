@@ -233,6 +233,18 @@ public class MultilevelSplitQueue
      */
     public Priority updatePriority(Priority oldPriority, long quantaNanos, long scheduledNanos)
     {
+        return updatePriority(oldPriority, quantaNanos, scheduledNanos, 1.0);
+    }
+
+    /**
+     * Same as {@link #updatePriority(Priority, long, long)}, but the task is charged {@code priorityFactor}
+     * times the quanta run time within its level. Levels are still charged the actual run time.
+     *
+     * @return the new priority for the task
+     */
+    public Priority updatePriority(Priority oldPriority, long quantaNanos, long scheduledNanos, double priorityFactor)
+    {
+        checkArgument(priorityFactor > 0, "priorityFactor must be positive");
         int oldLevel = oldPriority.getLevel();
         int newLevel = computeLevel(scheduledNanos);
 
@@ -240,7 +252,7 @@ public class MultilevelSplitQueue
 
         if (oldLevel == newLevel) {
             addLevelTime(oldLevel, levelContribution);
-            return new Priority(oldLevel, oldPriority.getLevelPriority() + quantaNanos);
+            return new Priority(oldLevel, oldPriority.getLevelPriority() + (long) (quantaNanos * priorityFactor));
         }
 
         long remainingLevelContribution = levelContribution;
@@ -258,7 +270,7 @@ public class MultilevelSplitQueue
 
         addLevelTime(newLevel, remainingLevelContribution);
         long newLevelMinPriority = getLevelMinPriority(newLevel, scheduledNanos);
-        return new Priority(newLevel, newLevelMinPriority + remainingTaskTime);
+        return new Priority(newLevel, newLevelMinPriority + (long) (remainingTaskTime * priorityFactor));
     }
 
     public void remove(PrioritizedSplitRunner split)
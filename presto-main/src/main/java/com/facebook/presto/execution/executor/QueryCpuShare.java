@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.executor;
+
+import com.facebook.presto.spi.QueryId;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Scheduled time of all the tasks of a query on this worker, and the weight of the query
+ * when threads are shared between queries.
+ * <p>
+ * With query fair scheduling, the level priority of a task advances by its quanta times the
+ * number of active tasks of the query divided by the weight of the query. All the tasks of a
+ * query then compete for threads as a single task would, and a query with twice the weight
+ * receives twice the thread time of other queries in the same level.
+ */
+@ThreadSafe
+public class QueryCpuShare
+{
+    private final QueryId queryId;
+    private final int weight;
+
+    private final AtomicLong scheduledNanos = new AtomicLong();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+
+    public QueryCpuShare(QueryId queryId, int weight)
+    {
+        this.queryId = requireNonNull(queryId, "queryId is null");
+        checkArgument(weight > 0, "weight must be positive");
+        this.weight = weight;
+    }
+
+    public QueryId getQueryId()
+    {
+        return queryId;
+    }
+
+    public int getWeight()
+    {
+        return weight;
+    }
+
+    public long getScheduledNanos()
+    {
+        return scheduledNanos.get();
+    }
+
+    /**
+     * Scheduled time of the query divided by its weight. Queries with the lowest weighted scheduled time
+     * are the furthest behind their fair share.
+     */
+    public double getWeightedScheduledNanos()
+    {
+        return scheduledNanos.get() / (double) weight;
+    }
+
+    public int getActiveTasks()
+    {
+        return activeTasks.get();
+    }
+
+    public void addScheduledNanos(long nanos)
+    {
+        scheduledNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Factor applied to the quanta of a task of this query when computing its level priority.
+     */
+    public double getPriorityFactor()
+    {
+        return Math.max(activeTasks.get(), 1) / (double) weight;
+    }
+
+    void taskAdded()
+    {
+        activeTasks.incrementAndGet();
+    }
+
+    /**
+     * @return true if this was the last active task of the query
+     */
+    boolean taskRemoved()
+    {
+        return activeTasks.decrementAndGet() == 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("queryId", queryId)
+                .add("weight", weight)
+                .add("scheduledNanos", scheduledNanos)
+                .add("activeTasks", activeTasks)
+                .toString();
+    }
+}
@@ -17,6 +17,7 @@ import com.facebook.presto.execution.SplitRunner;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.QueryId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Ticker;
 import com.google.common.collect.ComparisonChain;
@@ -38,6 +39,7 @@ import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -64,6 +66,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Sets.newConcurrentHashSet;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static io.airlift.concurrent.Threads.threadsNamed;
+import static java.util.Comparator.comparingDouble;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
@@ -97,6 +100,12 @@ public class TaskExecutor
     @GuardedBy("this")
     private final List<TaskHandle> tasks;
 
+    /**
+     * Scheduled time and weight of the queries of all tasks registered with the task executor.
+     */
+    @GuardedBy("this")
+    private final Map<QueryId, QueryCpuShare> queryCpuShares = new HashMap<>();
+
     /**
      * All splits registered with the task executor.
      */
@@ -149,14 +158,23 @@ public class TaskExecutor
     private final TimeStat blockedQuantaWallTime = new TimeStat(MICROSECONDS);
     private final TimeStat unblockedQuantaWallTime = new TimeStat(MICROSECONDS);
 
+    private final TimeDistribution queryScheduledTime = new TimeDistribution(MICROSECONDS);
+
     private final boolean legacySchedulingBehavior;
+    private final boolean queryFairSchedulingEnabled;
 
     private volatile boolean closed;
 
     @Inject
     public TaskExecutor(TaskManagerConfig config)
     {
-        this(requireNonNull(config, "config is null").getMaxWorkerThreads(), config.getMinDrivers(), config.getLevelTimeMultiplier().doubleValue(), config.isLevelAbsolutePriority(), config.isLegacySchedulingBehavior(), Ticker.systemTicker());
+        this(requireNonNull(config, "config is null").getMaxWorkerThreads(),
+                config.getMinDrivers(),
+                config.getLevelTimeMultiplier().doubleValue(),
+                config.isLevelAbsolutePriority(),
+                config.isLegacySchedulingBehavior(),
+                config.isQueryFairSchedulingEnabled(),
+                Ticker.systemTicker());
     }
 
     public TaskExecutor(int runnerThreads, int minDrivers)
@@ -171,6 +189,19 @@ public class TaskExecutor
 
     @VisibleForTesting
     public TaskExecutor(int runnerThreads, int minDrivers, double levelTimeMultiplier, boolean levelAbsolutePriority, boolean legacySchedulingBehavior, Ticker ticker)
+    {
+        this(runnerThreads, minDrivers, levelTimeMultiplier, levelAbsolutePriority, legacySchedulingBehavior, false, ticker);
+    }
+
+    @VisibleForTesting
+    public TaskExecutor(
+            int runnerThreads,
+            int minDrivers,
+            double levelTimeMultiplier,
+            boolean levelAbsolutePriority,
+            boolean legacySchedulingBehavior,
+            boolean queryFairSchedulingEnabled,
+            Ticker ticker)
     {
         checkArgument(runnerThreads > 0, "runnerThreads must be at least 1");
 
@@ -185,6 +216,7 @@ public class TaskExecutor
         this.waitingSplits = new MultilevelSplitQueue(levelAbsolutePriority, levelTimeMultiplier);
         this.tasks = new LinkedList<>();
         this.legacySchedulingBehavior = legacySchedulingBehavior;
+        this.queryFairSchedulingEnabled = queryFairSchedulingEnabled;
     }
 
     @PostConstruct
@@ -227,20 +259,29 @@ public class TaskExecutor
         }
     }
 
-    public synchronized TaskHandle addTask(TaskId taskId, DoubleSupplier utilizationSupplier, int initialSplitConcurrency, Duration splitConcurrencyAdjustFrequency)
+    public TaskHandle addTask(TaskId taskId, DoubleSupplier utilizationSupplier, int initialSplitConcurrency, Duration splitConcurrencyAdjustFrequency)
+    {
+        return addTask(taskId, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, 1);
+    }
+
+    public synchronized TaskHandle addTask(TaskId taskId, DoubleSupplier utilizationSupplier, int initialSplitConcurrency, Duration splitConcurrencyAdjustFrequency, int cpuShareWeight)
     {
         requireNonNull(taskId, "taskId is null");
         requireNonNull(utilizationSupplier, "utilizationSupplier is null");
 
         log.debug("Task scheduled " + taskId);
 
+        // all tasks of a query on this worker share its scheduled time; the weight is set by the first task
+        QueryCpuShare queryCpuShare = queryCpuShares.computeIfAbsent(taskId.getQueryId(), queryId -> new QueryCpuShare(queryId, cpuShareWeight));
+        queryCpuShare.taskAdded();
+
         TaskHandle taskHandle;
 
         if (legacySchedulingBehavior) {
-            taskHandle = new LegacyTaskHandle(taskId, waitingSplits, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency);
+            taskHandle = new LegacyTaskHandle(taskId, waitingSplits, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, queryCpuShare);
         }
         else {
-            taskHandle = new TaskHandle(taskId, waitingSplits, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency);
+            taskHandle = new TaskHandle(taskId, waitingSplits, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, queryCpuShare, queryFairSchedulingEnabled);
         }
 
         tasks.add(taskHandle);
@@ -251,7 +292,13 @@ public class TaskExecutor
     {
         List<PrioritizedSplitRunner> splits;
         synchronized (this) {
-            tasks.remove(taskHandle);
+            if (tasks.remove(taskHandle)) {
+                QueryCpuShare queryCpuShare = taskHandle.getQueryCpuShare();
+                if (queryCpuShare.taskRemoved()) {
+                    queryCpuShares.remove(queryCpuShare.getQueryId());
+                    queryScheduledTime.add(queryCpuShare.getScheduledNanos());
+                }
+            }
             splits = taskHandle.destroy();
 
             // stop tracking splits (especially blocked splits which may never unblock)
@@ -414,6 +461,10 @@ public class TaskExecutor
 
     private synchronized PrioritizedSplitRunner pollNextSplitWorker()
     {
+        if (queryFairSchedulingEnabled) {
+            return pollNextSplitWorkerFairly();
+        }
+
         // todo find a better algorithm for this
         // find the first task that produces a split, then move that task to the
         // end of the task list, so we get round robin
@@ -433,6 +484,33 @@ public class TaskExecutor
         return null;
     }
 
+    /**
+     * Starts a split of the task whose query is furthest behind its share of the scheduled time,
+     * so that a query with many tasks does not get more splits started than a query with few.
+     * Ties are broken in round robin order.
+     */
+    private synchronized PrioritizedSplitRunner pollNextSplitWorkerFairly()
+    {
+        // snapshot the scheduled times, as they are updated concurrently by the runner threads
+        Map<TaskHandle, Double> weightedScheduledNanos = new HashMap<>();
+        for (TaskHandle task : tasks) {
+            weightedScheduledNanos.put(task, task.getQueryCpuShare().getWeightedScheduledNanos());
+        }
+        List<TaskHandle> candidates = new ArrayList<>(tasks);
+        candidates.sort(comparingDouble(weightedScheduledNanos::get));
+
+        for (TaskHandle task : candidates) {
+            PrioritizedSplitRunner split = task.pollNextSplit();
+            if (split != null) {
+                // move task to end of list
+                tasks.remove(task);
+                tasks.add(task);
+                return split;
+            }
+        }
+        return null;
+    }
+
     private void monitorActiveSplits()
     {
         for (RunningSplitInfo splitInfo : runningSplitInfos) {
@@ -805,6 +883,42 @@ public class TaskExecutor
         return globalCpuTimeMicros;
     }
 
+    @Managed
+    @Nested
+    public TimeDistribution getQueryScheduledTime()
+    {
+        return queryScheduledTime;
+    }
+
+    @Managed
+    public synchronized int getActiveQueries()
+    {
+        return queryCpuShares.size();
+    }
+
+    @Managed(description = "Share of the scheduled time of the active queries used by the query with the most scheduled time")
+    public synchronized double getMaxQueryScheduledTimeShare()
+    {
+        long total = 0;
+        long max = 0;
+        for (QueryCpuShare queryCpuShare : queryCpuShares.values()) {
+            long scheduledNanos = queryCpuShare.getScheduledNanos();
+            total += scheduledNanos;
+            max = Math.max(max, scheduledNanos);
+        }
+        return total == 0 ? 0 : max / (double) total;
+    }
+
+    @Managed(description = "Scheduled time in milliseconds of the tasks of an active query on this worker")
+    public synchronized long getQueryScheduledMillis(String queryId)
+    {
+        QueryCpuShare queryCpuShare = queryCpuShares.get(new QueryId(queryId));
+        if (queryCpuShare == null) {
+            return 0;
+        }
+        return NANOSECONDS.toMillis(queryCpuShare.getScheduledNanos());
+    }
+
     private synchronized int getRunningTasksForLevel(int level)
     {
         int count = 0;
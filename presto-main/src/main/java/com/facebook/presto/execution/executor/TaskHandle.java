@@ -56,8 +56,22 @@ public class TaskHandle
 
     protected final AtomicReference<Priority> priority = new AtomicReference<>(new Priority(0, 0));
     private final MultilevelSplitQueue splitQueue;
+    protected final QueryCpuShare queryCpuShare;
+    private final boolean queryFairSchedulingEnabled;
 
     public TaskHandle(TaskId taskId, MultilevelSplitQueue splitQueue, DoubleSupplier utilizationSupplier, int initialSplitConcurrency, Duration splitConcurrencyAdjustFrequency)
+    {
+        this(taskId, splitQueue, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, new QueryCpuShare(taskId.getQueryId(), 1), false);
+    }
+
+    public TaskHandle(
+            TaskId taskId,
+            MultilevelSplitQueue splitQueue,
+            DoubleSupplier utilizationSupplier,
+            int initialSplitConcurrency,
+            Duration splitConcurrencyAdjustFrequency,
+            QueryCpuShare queryCpuShare,
+            boolean queryFairSchedulingEnabled)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         this.splitQueue = requireNonNull(splitQueue, "splitQueue is null");
@@ -65,14 +79,18 @@ public class TaskHandle
         this.concurrencyController = new SplitConcurrencyController(
                 initialSplitConcurrency,
                 requireNonNull(splitConcurrencyAdjustFrequency, "splitConcurrencyAdjustFrequency is null"));
+        this.queryCpuShare = requireNonNull(queryCpuShare, "queryCpuShare is null");
+        this.queryFairSchedulingEnabled = queryFairSchedulingEnabled;
     }
 
     public synchronized Priority addScheduledNanos(long durationNanos)
     {
         concurrencyController.update(durationNanos, utilizationSupplier.getAsDouble(), runningLeafSplits.size());
         scheduledNanos += durationNanos;
+        queryCpuShare.addScheduledNanos(durationNanos);
 
-        Priority newPriority = splitQueue.updatePriority(priority.get(), durationNanos, scheduledNanos);
+        double priorityFactor = queryFairSchedulingEnabled ? queryCpuShare.getPriorityFactor() : 1.0;
+        Priority newPriority = splitQueue.updatePriority(priority.get(), durationNanos, scheduledNanos, priorityFactor);
 
         priority.set(newPriority);
         return newPriority;
@@ -105,6 +123,11 @@ public class TaskHandle
         return taskId;
     }
 
+    public QueryCpuShare getQueryCpuShare()
+    {
+        return queryCpuShare;
+    }
+
     // Returns any remaining splits. The caller must destroy these.
     public synchronized List<PrioritizedSplitRunner> destroy()
     {
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Decides when a partial aggregation does not reduce its input enough to be worth the hash table.
+ * Once at least {@code minRows} rows were aggregated, partial aggregation is disabled if the number
+ * of groups is at least {@code uniqueRowsRatioThreshold} times the number of rows.
+ */
+public final class AdaptivePartialAggregation
+{
+    private final long minRows;
+    private final double uniqueRowsRatioThreshold;
+
+    public AdaptivePartialAggregation(long minRows, double uniqueRowsRatioThreshold)
+    {
+        checkArgument(minRows > 0, "minRows must be positive");
+        checkArgument(uniqueRowsRatioThreshold >= 0 && uniqueRowsRatioThreshold <= 1, "uniqueRowsRatioThreshold must be between 0 and 1");
+        this.minRows = minRows;
+        this.uniqueRowsRatioThreshold = uniqueRowsRatioThreshold;
+    }
+
+    public long getMinRows()
+    {
+        return minRows;
+    }
+
+    public double getUniqueRowsRatioThreshold()
+    {
+        return uniqueRowsRatioThreshold;
+    }
+
+    public boolean shouldDisable(long inputRows, long uniqueRows)
+    {
+        return inputRows >= minRows && uniqueRows >= inputRows * uniqueRowsRatioThreshold;
+    }
+
+    public String getDisabledReason(long inputRows, long uniqueRows)
+    {
+        return format("%s unique rows out of %s input rows exceed the ratio threshold of %s", uniqueRows, inputRows, uniqueRowsRatioThreshold);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("minRows", minRows)
+                .add("uniqueRowsRatioThreshold", uniqueRowsRatioThreshold)
+                .toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Join probe that looks up all rows of the probe page at once when it is created. The hashes of the
+ * page are computed into an array first, and the whole batch is then handed to
+ * {@link LookupSource#getJoinPositions}, which walks the hash table a pass at a time.
+ */
+public class BatchJoinProbe
+        implements JoinProbe
+{
+    public static class BatchJoinProbeFactory
+            implements JoinProbeFactory
+    {
+        private final List<Type> types;
+        private final List<Integer> probeOutputChannels;
+        private final List<Integer> probeJoinChannels;
+        private final Optional<Integer> probeHashChannel;
+        private final HashGenerator hashGenerator;
+
+        public BatchJoinProbeFactory(List<Type> types, List<Integer> probeOutputChannels, List<Integer> probeJoinChannels, Optional<Integer> probeHashChannel)
+        {
+            this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+            this.probeOutputChannels = ImmutableList.copyOf(requireNonNull(probeOutputChannels, "probeOutputChannels is null"));
+            this.probeJoinChannels = ImmutableList.copyOf(requireNonNull(probeJoinChannels, "probeJoinChannels is null"));
+            this.probeHashChannel = requireNonNull(probeHashChannel, "probeHashChannel is null");
+            List<Type> probeJoinChannelTypes = probeJoinChannels.stream()
+                    .map(types::get)
+                    .collect(toImmutableList());
+            this.hashGenerator = new InterpretedHashGenerator(probeJoinChannelTypes, Ints.toArray(probeJoinChannels));
+        }
+
+        @Override
+        public JoinProbe createJoinProbe(LookupSource lookupSource, Page page)
+        {
+            return new BatchJoinProbe(types, probeOutputChannels, lookupSource, page, probeJoinChannels, probeHashChannel, hashGenerator);
+        }
+    }
+
+    private final List<Type> types;
+    private final List<Integer> probeOutputChannels;
+    private final int positionCount;
+    private final Page page;
+    private final long[] joinPositions;
+
+    private int position = -1;
+
+    private BatchJoinProbe(
+            List<Type> types,
+            List<Integer> probeOutputChannels,
+            LookupSource lookupSource,
+            Page page,
+            List<Integer> probeJoinChannels,
+            Optional<Integer> hashChannel,
+            HashGenerator hashGenerator)
+    {
+        this.types = types;
+        this.probeOutputChannels = probeOutputChannels;
+        this.positionCount = page.getPositionCount();
+        this.page = page;
+
+        Block[] probeBlocks = new Block[probeJoinChannels.size()];
+        for (int i = 0; i < probeJoinChannels.size(); i++) {
+            probeBlocks[i] = page.getBlock(probeJoinChannels.get(i));
+        }
+        Page probePage = new Page(positionCount, probeBlocks);
+        Block probeHashBlock = hashChannel.map(page::getBlock).orElse(null);
+
+        // rows with a null key never match, so they are not part of the batch
+        int[] positions = new int[positionCount];
+        long[] rawHashes = new long[positionCount];
+        int batchSize = 0;
+        for (int position = 0; position < positionCount; position++) {
+            if (rowContainsNull(probeBlocks, position)) {
+                continue;
+            }
+            positions[batchSize] = position;
+            rawHashes[batchSize] = probeHashBlock != null ? BIGINT.getLong(probeHashBlock, position) : hashGenerator.hashPosition(position, page);
+            batchSize++;
+        }
+
+        long[] batchJoinPositions = new long[batchSize];
+        lookupSource.getJoinPositions(positions, batchSize, probePage, page, rawHashes, batchJoinPositions);
+
+        this.joinPositions = new long[positionCount];
+        Arrays.fill(joinPositions, -1);
+        for (int i = 0; i < batchSize; i++) {
+            joinPositions[positions[i]] = batchJoinPositions[i];
+        }
+    }
+
+    @Override
+    public int getOutputChannelCount()
+    {
+        return probeOutputChannels.size();
+    }
+
+    @Override
+    public boolean advanceNextPosition()
+    {
+        position++;
+        return position < positionCount;
+    }
+
+    @Override
+    public void appendTo(PageBuilder pageBuilder)
+    {
+        int pageBuilderOutputChannel = 0;
+        for (int outputIndex : probeOutputChannels) {
+            Type type = types.get(outputIndex);
+            Block block = page.getBlock(outputIndex);
+            type.appendTo(block, position, pageBuilder.getBlockBuilder(pageBuilderOutputChannel++));
+        }
+    }
+
+    @Override
+    public long getCurrentJoinPosition()
+    {
+        return joinPositions[position];
+    }
+
+    @Override
+    public int getPosition()
+    {
+        return position;
+    }
+
+    @Override
+    public Page getPage()
+    {
+        return page;
+    }
+
+    private static boolean rowContainsNull(Block[] probeBlocks, int position)
+    {
+        for (Block probeBlock : probeBlocks) {
+            if (probeBlock.isNull(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
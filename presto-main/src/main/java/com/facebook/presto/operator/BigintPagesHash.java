@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
+import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Hash table for joins on a single column whose values are stored as a long, e.g. bigint, integer or date.
+ * The key values of the slots are stored contiguously, so a probe compares keys without following
+ * the build row address into the pages, and the position of the build row is only read once the key matches.
+ */
+// This implementation assumes arrays used in the hash are always a power of 2
+public final class BigintPagesHash
+        implements JoinHashTable
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BigintPagesHash.class).instanceSize();
+    private static final int EMPTY_SLOT = -1;
+
+    private final LongArrayList addresses;
+    private final PagesHashStrategy pagesHashStrategy;
+    private final Type keyType;
+
+    private final int channelCount;
+    private final int mask;
+    private final long[] keys;
+    private final int[] positions;
+    private final long size;
+
+    // checked before the hash table, so that keys missing on the build side can skip the bucket walk
+    @Nullable
+    private final BlockedBloomFilter bloomFilter;
+    private final long hashCollisions;
+    private final double expectedHashCollisions;
+
+    public BigintPagesHash(
+            LongArrayList addresses,
+            PagesHashStrategy pagesHashStrategy,
+            Type keyType,
+            List<Block> keyBlocks,
+            PositionLinks.FactoryBuilder positionLinks,
+            boolean bloomFilterEnabled)
+    {
+        this.addresses = requireNonNull(addresses, "addresses is null");
+        this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
+        this.keyType = requireNonNull(keyType, "keyType is null");
+        checkArgument(keyType.getJavaType() == long.class, "keyType must be stored as a long: %s", keyType);
+        List<Block> blocks = ImmutableList.copyOf(requireNonNull(keyBlocks, "keyBlocks is null"));
+        this.channelCount = pagesHashStrategy.getChannelCount();
+
+        int hashSize = HashCommon.arraySize(addresses.size(), 0.75f);
+        mask = hashSize - 1;
+        keys = new long[hashSize];
+        positions = new int[hashSize];
+        Arrays.fill(positions, EMPTY_SLOT);
+
+        bloomFilter = bloomFilterEnabled ? new BlockedBloomFilter(addresses.size()) : null;
+
+        long hashCollisionsLocal = 0;
+        for (int position = 0; position < addresses.size(); position++) {
+            long pageAddress = addresses.getLong(position);
+            int blockIndex = decodeSliceIndex(pageAddress);
+            int blockPosition = decodePosition(pageAddress);
+            Block block = blocks.get(blockIndex);
+            if (block.isNull(blockPosition)) {
+                continue;
+            }
+
+            long value = keyType.getLong(block, blockPosition);
+            if (bloomFilter != null) {
+                bloomFilter.add(pagesHashStrategy.hashPosition(blockIndex, blockPosition));
+            }
+
+            int realPosition = position;
+            int slot = getHashPosition(value, mask);
+            // look for an empty slot or a slot containing this key
+            while (positions[slot] != EMPTY_SLOT) {
+                if (keys[slot] == value) {
+                    // link the new key position to the current key position
+                    realPosition = positionLinks.link(realPosition, positions[slot]);
+                    break;
+                }
+                // increment position and mask to handler wrap around
+                slot = (slot + 1) & mask;
+                hashCollisionsLocal++;
+            }
+            keys[slot] = value;
+            positions[slot] = realPosition;
+        }
+
+        size = sizeOf(addresses.elements()) + pagesHashStrategy.getSizeInBytes() +
+                sizeOf(keys) + sizeOf(positions) + (bloomFilter == null ? 0 : bloomFilter.getSizeInBytes());
+        hashCollisions = hashCollisionsLocal;
+        expectedHashCollisions = estimateNumberOfHashCollisions(addresses.size(), hashSize);
+    }
+
+    @Override
+    public int getChannelCount()
+    {
+        return channelCount;
+    }
+
+    @Override
+    public int getPositionCount()
+    {
+        return addresses.size();
+    }
+
+    @Override
+    public long getInMemorySizeInBytes()
+    {
+        return INSTANCE_SIZE + size;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions;
+    }
+
+    @Override
+    public boolean hasBloomFilter()
+    {
+        return bloomFilter != null;
+    }
+
+    @Override
+    public boolean mightContain(long rawHash)
+    {
+        return bloomFilter == null || bloomFilter.mightContain(rawHash);
+    }
+
+    @Override
+    public long hashRow(int position, Page hashChannelsPage)
+    {
+        return pagesHashStrategy.hashRow(position, hashChannelsPage);
+    }
+
+    @Override
+    public int getAddressIndex(int position, Page hashChannelsPage)
+    {
+        return findPosition(keyType.getLong(hashChannelsPage.getBlock(0), position));
+    }
+
+    @Override
+    public int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash)
+    {
+        // slots are placed by the key value, so the probe hash is not needed
+        return getAddressIndex(rightPosition, hashChannelsPage);
+    }
+
+    @Override
+    public void getAddressIndexes(int[] probePositions, int positionCount, Page hashChannelsPage, long[] rawHashes, int[] addressIndexes)
+    {
+        Block block = hashChannelsPage.getBlock(0);
+        long[] values = new long[positionCount];
+        int[] hashPositions = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            values[i] = keyType.getLong(block, probePositions[i]);
+            hashPositions[i] = getHashPosition(values[i], mask);
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            int slot = hashPositions[i];
+            long value = values[i];
+            while (positions[slot] != EMPTY_SLOT && keys[slot] != value) {
+                // increment position and mask to handler wrap around
+                slot = (slot + 1) & mask;
+            }
+            addressIndexes[i] = positions[slot];
+        }
+    }
+
+    @Override
+    public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        long pageAddress = addresses.getLong(toIntExact(position));
+        int blockIndex = decodeSliceIndex(pageAddress);
+        int blockPosition = decodePosition(pageAddress);
+
+        pagesHashStrategy.appendTo(blockIndex, blockPosition, pageBuilder, outputChannelOffset);
+    }
+
+    private int findPosition(long value)
+    {
+        int slot = getHashPosition(value, mask);
+        while (positions[slot] != EMPTY_SLOT) {
+            if (keys[slot] == value) {
+                return positions[slot];
+            }
+            // increment position and mask to handler wrap around
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int getHashPosition(long value, int mask)
+    {
+        return (int) HashCommon.murmurHash3(value) & mask;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+
+/**
+ * Bloom filter over raw hashes of join keys. All bits of a key are set in a single 64-bit word,
+ * so a lookup touches one cache line only, at the cost of a slightly higher false positive rate
+ * than a classic Bloom filter of the same size.
+ */
+public final class BlockedBloomFilter
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BlockedBloomFilter.class).instanceSize();
+    private static final int BITS_PER_ENTRY = 10;
+
+    private final long[] words;
+    private final int mask;
+
+    public BlockedBloomFilter(int expectedEntries)
+    {
+        checkArgument(expectedEntries >= 0, "expectedEntries is negative");
+        int wordCount = HashCommon.nextPowerOfTwo(Math.max(1, (int) (((long) expectedEntries * BITS_PER_ENTRY + Long.SIZE - 1) / Long.SIZE)));
+        this.words = new long[wordCount];
+        this.mask = wordCount - 1;
+    }
+
+    public void add(long rawHash)
+    {
+        long hash = HashCommon.murmurHash3(rawHash);
+        words[wordIndex(hash)] |= bitMask(hash);
+    }
+
+    public boolean mightContain(long rawHash)
+    {
+        long hash = HashCommon.murmurHash3(rawHash);
+        long bitMask = bitMask(hash);
+        return (words[wordIndex(hash)] & bitMask) == bitMask;
+    }
+
+    public long getSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(words);
+    }
+
+    private int wordIndex(long hash)
+    {
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private static long bitMask(long hash)
+    {
+        // shift distance of a long shift is taken from the lowest 6 bits
+        return (1L << hash) | (1L << (hash >>> 6)) | (1L << (hash >>> 12));
+    }
+}
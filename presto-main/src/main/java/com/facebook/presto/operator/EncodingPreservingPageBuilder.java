@@ -0,0 +1,238 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.spi.block.DictionaryBlock;
+import com.facebook.presto.spi.block.DictionaryId;
+import com.facebook.presto.spi.block.RunLengthEncodedBlock;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Accumulates the rows of one output partition without flattening dictionary and run length encoded blocks.
+ * The rows of a dictionary block keep referencing the dictionary of the source block, which is shared by
+ * all the partitions, and the rows of a run length encoded block keep its value. When the page is built,
+ * the blocks of a channel are merged back into a single dictionary or run length encoded block if they
+ * share the same dictionary or value, and are copied into a flat block otherwise.
+ */
+public class EncodingPreservingPageBuilder
+{
+    // bounds pages of run length encoded blocks, whose estimated size does not grow with the position count
+    private static final int MAX_POSITION_COUNT = 64 * 1024;
+
+    private final List<Type> types;
+    private final long maxPageSizeInBytes;
+
+    private final List<Page> pages = new ArrayList<>();
+    // the dictionaries referenced by the appended rows, which are retained until the page is built
+    private final Set<Block> dictionaries = newSetFromMap(new IdentityHashMap<>());
+    private int positionCount;
+    private long sizeInBytes;
+    private long retainedSizeInBytes;
+
+    public EncodingPreservingPageBuilder(List<Type> types, long maxPageSizeInBytes)
+    {
+        this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+        checkArgument(maxPageSizeInBytes > 0, "maxPageSizeInBytes must be positive");
+        this.maxPageSizeInBytes = maxPageSizeInBytes;
+    }
+
+    /**
+     * Returns true if partitioning the blocks of this page position by position would flatten an encoding.
+     */
+    public static boolean hasEncodedBlocks(Page page)
+    {
+        for (int channel = 0; channel < page.getChannelCount(); channel++) {
+            Block block = page.getBlock(channel);
+            if (block instanceof DictionaryBlock || block instanceof RunLengthEncodedBlock) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the given positions of the page.
+     *
+     * @param estimatedSizeInBytes size of the appended rows, used to decide when the builder is full
+     */
+    public void append(Page page, IntArrayList positions, long estimatedSizeInBytes)
+    {
+        requireNonNull(page, "page is null");
+        requireNonNull(positions, "positions is null");
+        checkArgument(page.getChannelCount() == types.size(), "page has %s channels, expected %s", page.getChannelCount(), types.size());
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        int count = positions.size();
+        Block[] blocks = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            Block block = page.getBlock(channel);
+            if (block instanceof RunLengthEncodedBlock) {
+                blocks[channel] = new RunLengthEncodedBlock(((RunLengthEncodedBlock) block).getValue(), count);
+                retainedSizeInBytes += blocks[channel].getRetainedSizeInBytes();
+            }
+            else if (block instanceof DictionaryBlock) {
+                DictionaryBlock dictionaryBlock = (DictionaryBlock) block;
+                int[] ids = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ids[i] = dictionaryBlock.getId(positions.getInt(i));
+                }
+                blocks[channel] = new DictionaryBlock(count, dictionaryBlock.getDictionary(), ids, dictionaryBlock.getDictionarySourceId());
+                retainedSizeInBytes += sizeOf(ids);
+                if (dictionaries.add(dictionaryBlock.getDictionary())) {
+                    retainedSizeInBytes += dictionaryBlock.getDictionary().getRetainedSizeInBytes();
+                }
+            }
+            else {
+                blocks[channel] = block.copyPositions(positions);
+                retainedSizeInBytes += blocks[channel].getRetainedSizeInBytes();
+            }
+        }
+        pages.add(new Page(count, blocks));
+        positionCount += count;
+        sizeInBytes += estimatedSizeInBytes;
+    }
+
+    public boolean isEmpty()
+    {
+        return positionCount == 0;
+    }
+
+    public boolean isFull()
+    {
+        return sizeInBytes >= maxPageSizeInBytes || positionCount >= MAX_POSITION_COUNT;
+    }
+
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public long getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    /**
+     * Memory retained by the appended rows, including the whole dictionaries they reference, each counted once.
+     */
+    public long getRetainedSizeInBytes()
+    {
+        return retainedSizeInBytes;
+    }
+
+    public void reset()
+    {
+        pages.clear();
+        dictionaries.clear();
+        positionCount = 0;
+        sizeInBytes = 0;
+        retainedSizeInBytes = 0;
+    }
+
+    public Page build()
+    {
+        checkState(!pages.isEmpty(), "page builder is empty");
+        if (pages.size() == 1) {
+            return pages.get(0);
+        }
+
+        Block[] blocks = new Block[types.size()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            blocks[channel] = mergeBlocks(types.get(channel), channel);
+        }
+        return new Page(positionCount, blocks);
+    }
+
+    private Block mergeBlocks(Type type, int channel)
+    {
+        Block first = pages.get(0).getBlock(channel);
+        if (first instanceof DictionaryBlock && isSameDictionary(channel, ((DictionaryBlock) first).getDictionary())) {
+            DictionaryId dictionarySourceId = ((DictionaryBlock) first).getDictionarySourceId();
+            int[] ids = new int[positionCount];
+            int offset = 0;
+            for (Page page : pages) {
+                DictionaryBlock block = (DictionaryBlock) page.getBlock(channel);
+                for (int position = 0; position < block.getPositionCount(); position++) {
+                    ids[offset++] = block.getId(position);
+                }
+            }
+            return new DictionaryBlock(positionCount, ((DictionaryBlock) first).getDictionary(), ids, dictionarySourceId);
+        }
+        if (first instanceof RunLengthEncodedBlock && isSameValue(type, channel, ((RunLengthEncodedBlock) first).getValue())) {
+            return new RunLengthEncodedBlock(((RunLengthEncodedBlock) first).getValue(), positionCount);
+        }
+
+        BlockBuilder blockBuilder = type.createBlockBuilder(new BlockBuilderStatus(), positionCount);
+        for (Page page : pages) {
+            Block block = page.getBlock(channel);
+            for (int position = 0; position < block.getPositionCount(); position++) {
+                type.appendTo(block, position, blockBuilder);
+            }
+        }
+        return blockBuilder.build();
+    }
+
+    private boolean isSameDictionary(int channel, Block dictionary)
+    {
+        for (Page page : pages) {
+            Block block = page.getBlock(channel);
+            if (!(block instanceof DictionaryBlock) || ((DictionaryBlock) block).getDictionary() != dictionary) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSameValue(Type type, int channel, Block value)
+    {
+        for (Page page : pages) {
+            Block block = page.getBlock(channel);
+            if (!(block instanceof RunLengthEncodedBlock)) {
+                return false;
+            }
+            Block other = ((RunLengthEncodedBlock) block).getValue();
+            if (other == value) {
+                continue;
+            }
+            if (value.isNull(0) || other.isNull(0)) {
+                if (value.isNull(0) != other.isNull(0)) {
+                    return false;
+                }
+            }
+            else if (!type.isComparable() || !type.equalTo(value, 0, other, 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -63,6 +63,7 @@ public class ExchangeClient
     private final Duration maxErrorDuration;
     private final HttpClient httpClient;
     private final ScheduledExecutorService executor;
+    private final boolean streamingEnabled;
 
     @GuardedBy("this")
     private boolean noMoreLocations;
@@ -103,6 +104,20 @@ public class ExchangeClient
             HttpClient httpClient,
             ScheduledExecutorService executor,
             SystemMemoryUsageListener systemMemoryUsageListener)
+    {
+        this(bufferCapacity, maxResponseSize, concurrentRequestMultiplier, minErrorDuration, maxErrorDuration, httpClient, executor, systemMemoryUsageListener, false);
+    }
+
+    public ExchangeClient(
+            DataSize bufferCapacity,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            Duration minErrorDuration,
+            Duration maxErrorDuration,
+            HttpClient httpClient,
+            ScheduledExecutorService executor,
+            SystemMemoryUsageListener systemMemoryUsageListener,
+            boolean streamingEnabled)
     {
         this.bufferCapacity = bufferCapacity.toBytes();
         this.maxResponseSize = maxResponseSize;
@@ -112,6 +127,7 @@ public class ExchangeClient
         this.httpClient = httpClient;
         this.executor = executor;
         this.systemMemoryUsageListener = systemMemoryUsageListener;
+        this.streamingEnabled = streamingEnabled;
         this.maxBufferBytes = Long.MIN_VALUE;
     }
 
@@ -123,10 +139,12 @@ public class ExchangeClient
         }
 
         ImmutableList.Builder<PageBufferClientStatus> exchangeStatus = ImmutableList.builder();
+        long bytesReceived = 0;
         for (HttpPageBufferClient client : allClients.values()) {
             exchangeStatus.add(client.getStatus());
+            bytesReceived += client.getBytesReceived();
         }
-        return new ExchangeClientStatus(bufferBytes, maxBufferBytes, averageBytesPerRequest, successfulRequests, bufferedPages, noMoreLocations, exchangeStatus.build());
+        return new ExchangeClientStatus(bufferBytes, maxBufferBytes, averageBytesPerRequest, successfulRequests, bufferedPages, noMoreLocations, bytesReceived, exchangeStatus.build());
     }
 
     public synchronized void addLocation(URI location)
@@ -153,7 +171,8 @@ public class ExchangeClient
                 maxErrorDuration,
                 location,
                 new ExchangeClientCallback(),
-                executor);
+                executor,
+                streamingEnabled);
         allClients.put(location, client);
         queuedClients.add(client);
 
@@ -346,6 +365,16 @@ public class ExchangeClient
         return true;
     }
 
+    private synchronized long getStreamCapacity()
+    {
+        if (isClosed()) {
+            return 0;
+        }
+        // the free buffer is shared by the clients with a request in flight
+        int pendingClients = allClients.size() - queuedClients.size() - completedClients.size();
+        return Math.max(bufferCapacity - bufferBytes, 0) / Math.max(pendingClients, 1);
+    }
+
     private synchronized void notifyBlockedCallers()
     {
         List<SettableFuture<?>> callers = ImmutableList.copyOf(blockedCallers);
@@ -424,6 +453,13 @@ public class ExchangeClient
             requireNonNull(cause, "cause is null");
             ExchangeClient.this.clientFailed(cause);
         }
+
+        @Override
+        public long getStreamCapacity(HttpPageBufferClient client)
+        {
+            requireNonNull(client, "client is null");
+            return ExchangeClient.this.getStreamCapacity();
+        }
     }
 
     private static void closeQuietly(HttpPageBufferClient client)
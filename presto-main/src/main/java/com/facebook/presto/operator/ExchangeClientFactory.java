@@ -83,6 +83,12 @@ public class ExchangeClientFactory
 
     @Override
     public ExchangeClient get(SystemMemoryUsageListener systemMemoryUsageListener)
+    {
+        return get(systemMemoryUsageListener, false);
+    }
+
+    @Override
+    public ExchangeClient get(SystemMemoryUsageListener systemMemoryUsageListener, boolean streamingEnabled)
     {
         return new ExchangeClient(
                 maxBufferedBytes,
@@ -92,6 +98,7 @@ public class ExchangeClientFactory
                 maxErrorDuration,
                 httpClient,
                 executor,
-                systemMemoryUsageListener);
+                systemMemoryUsageListener,
+                streamingEnabled);
     }
 }
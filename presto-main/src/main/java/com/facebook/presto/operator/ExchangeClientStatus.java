@@ -32,6 +32,7 @@ public class ExchangeClientStatus
     private final long successfulRequestsCount;
     private final int bufferedPages;
     private final boolean noMoreLocations;
+    private final long bytesReceived;
     private final List<PageBufferClientStatus> pageBufferClientStatuses;
 
     @JsonCreator
@@ -42,6 +43,7 @@ public class ExchangeClientStatus
             @JsonProperty("successfulRequestsCount") long successFullRequestsCount,
             @JsonProperty("bufferedPages") int bufferedPages,
             @JsonProperty("noMoreLocations") boolean noMoreLocations,
+            @JsonProperty("bytesReceived") long bytesReceived,
             @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses)
     {
         this.bufferedBytes = bufferedBytes;
@@ -50,6 +52,7 @@ public class ExchangeClientStatus
         this.successfulRequestsCount = successFullRequestsCount;
         this.bufferedPages = bufferedPages;
         this.noMoreLocations = noMoreLocations;
+        this.bytesReceived = bytesReceived;
         this.pageBufferClientStatuses = ImmutableList.copyOf(requireNonNull(pageBufferClientStatuses, "pageBufferClientStatuses is null"));
     }
 
@@ -89,6 +92,15 @@ public class ExchangeClientStatus
         return noMoreLocations;
     }
 
+    /**
+     * Number of bytes of serialized pages received from all the clients.
+     */
+    @JsonProperty
+    public long getBytesReceived()
+    {
+        return bytesReceived;
+    }
+
     @JsonProperty
 
     public List<PageBufferClientStatus> getPageBufferClientStatuses()
@@ -106,6 +118,7 @@ public class ExchangeClientStatus
                 .add("successfulRequestsCount", successfulRequestsCount)
                 .add("bufferedPages", bufferedPages)
                 .add("noMoreLocations", noMoreLocations)
+                .add("bytesReceived", bytesReceived)
                 .add("pageBufferClientStatuses", pageBufferClientStatuses)
                 .toString();
     }
@@ -120,6 +133,7 @@ public class ExchangeClientStatus
                 successfulRequestsCount + other.successfulRequestsCount,
                 bufferedPages + other.bufferedPages,
                 noMoreLocations && other.noMoreLocations, // if at least one has some locations, mergee has some too
+                bytesReceived + other.bytesReceived,
                 ImmutableList.of()); // pageBufferClientStatuses may be long, so we don't want to combine the lists
     }
 
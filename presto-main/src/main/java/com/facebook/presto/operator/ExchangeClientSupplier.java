@@ -18,4 +18,13 @@ import com.facebook.presto.execution.SystemMemoryUsageListener;
 public interface ExchangeClientSupplier
 {
     ExchangeClient get(SystemMemoryUsageListener systemMemoryUsageListener);
+
+    /**
+     * @param streamingEnabled read all the results already buffered by a remote buffer in one response
+     * instead of a request per batch of pages
+     */
+    default ExchangeClient get(SystemMemoryUsageListener systemMemoryUsageListener, boolean streamingEnabled)
+    {
+        return get(systemMemoryUsageListener);
+    }
 }
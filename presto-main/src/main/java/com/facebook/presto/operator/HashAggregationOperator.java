@@ -40,6 +40,7 @@ import java.util.stream.Collectors;
 import static com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder.toTypes;
 import static com.facebook.presto.sql.planner.optimizations.HashGenerationOptimizer.INITIAL_HASH_VALUE;
 import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
@@ -71,6 +72,7 @@ public class HashAggregationOperator
         private final DataSize memoryLimitForMergeWithMemory;
         private final SpillerFactory spillerFactory;
         private final JoinCompiler joinCompiler;
+        private final Optional<AdaptivePartialAggregation> adaptivePartialAggregation;
 
         private boolean closed;
 
@@ -107,7 +109,8 @@ public class HashAggregationOperator
                     (types, spillContext, memoryContext) -> {
                         throw new UnsupportedOperationException();
                     },
-                    joinCompiler);
+                    joinCompiler,
+                    Optional.empty());
         }
 
         public HashAggregationOperatorFactory(
@@ -127,6 +130,44 @@ public class HashAggregationOperator
                 DataSize memoryLimitBeforeSpill,
                 SpillerFactory spillerFactory,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId,
+                    planNodeId,
+                    groupByTypes,
+                    groupByChannels,
+                    globalAggregationGroupIds,
+                    step,
+                    produceDefaultOutput,
+                    accumulatorFactories,
+                    hashChannel,
+                    groupIdChannel,
+                    expectedGroups,
+                    maxPartialMemory,
+                    spillEnabled,
+                    memoryLimitBeforeSpill,
+                    spillerFactory,
+                    joinCompiler,
+                    Optional.empty());
+        }
+
+        public HashAggregationOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> groupByTypes,
+                List<Integer> groupByChannels,
+                List<Integer> globalAggregationGroupIds,
+                Step step,
+                boolean produceDefaultOutput,
+                List<AccumulatorFactory> accumulatorFactories,
+                Optional<Integer> hashChannel,
+                Optional<Integer> groupIdChannel,
+                int expectedGroups,
+                DataSize maxPartialMemory,
+                boolean spillEnabled,
+                DataSize memoryLimitBeforeSpill,
+                SpillerFactory spillerFactory,
+                JoinCompiler joinCompiler,
+                Optional<AdaptivePartialAggregation> adaptivePartialAggregation)
         {
             this(operatorId,
                     planNodeId,
@@ -144,7 +185,8 @@ public class HashAggregationOperator
                     memoryLimitBeforeSpill,
                     DataSize.succinctBytes((long) (memoryLimitBeforeSpill.toBytes() * MERGE_WITH_MEMORY_RATIO)),
                     spillerFactory,
-                    joinCompiler);
+                    joinCompiler,
+                    adaptivePartialAggregation);
         }
 
         @VisibleForTesting
@@ -165,7 +207,8 @@ public class HashAggregationOperator
                 DataSize memoryLimitBeforeSpill,
                 DataSize memoryLimitForMergeWithMemory,
                 SpillerFactory spillerFactory,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                Optional<AdaptivePartialAggregation> adaptivePartialAggregation)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -184,6 +227,8 @@ public class HashAggregationOperator
             this.memoryLimitForMergeWithMemory = requireNonNull(memoryLimitForMergeWithMemory, "memoryLimitForMergeWithMemory is null");
             this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.adaptivePartialAggregation = requireNonNull(adaptivePartialAggregation, "adaptivePartialAggregation is null");
+            checkArgument(!adaptivePartialAggregation.isPresent() || step == Step.PARTIAL, "adaptive partial aggregation is only supported for partial step");
 
             this.types = toTypes(groupByTypes, step, accumulatorFactories, hashChannel);
         }
@@ -216,7 +261,8 @@ public class HashAggregationOperator
                     memoryLimitBeforeSpill,
                     memoryLimitForMergeWithMemory,
                     spillerFactory,
-                    joinCompiler);
+                    joinCompiler,
+                    adaptivePartialAggregation);
             return hashAggregationOperator;
         }
 
@@ -246,7 +292,8 @@ public class HashAggregationOperator
                     memoryLimitBeforeSpill,
                     memoryLimitForMergeWithMemory,
                     spillerFactory,
-                    joinCompiler);
+                    joinCompiler,
+                    adaptivePartialAggregation);
         }
     }
 
@@ -267,8 +314,11 @@ public class HashAggregationOperator
     private final SpillerFactory spillerFactory;
     private final JoinCompiler joinCompiler;
 
+    private final Optional<AdaptivePartialAggregation> adaptivePartialAggregation;
+
     private final List<Type> types;
     private final HashCollisionsCounter hashCollisionsCounter;
+    private final PartialAggregationPassThrough partialAggregationPassThrough;
 
     private HashAggregationBuilder aggregationBuilder;
     private Iterator<Page> outputIterator;
@@ -276,6 +326,16 @@ public class HashAggregationOperator
     private boolean finishing;
     private boolean finished;
 
+    // rows aggregated and groups created by all the aggregation builders so far
+    private long aggregatedRows;
+    private long flushedGroups;
+    // once set, the current aggregation builder is flushed and the remaining input is passed through
+    private volatile boolean partialAggregationDisabled;
+    private volatile long aggregatedRowsBeforeDisabled;
+    private volatile String partialAggregationDisabledReason;
+    private volatile long passThroughRows;
+    private Page passThroughPage;
+
     public HashAggregationOperator(
             OperatorContext operatorContext,
             List<Type> groupByTypes,
@@ -292,7 +352,8 @@ public class HashAggregationOperator
             DataSize memoryLimitBeforeSpill,
             DataSize memoryLimitForMergeWithMemory,
             SpillerFactory spillerFactory,
-            JoinCompiler joinCompiler)
+            JoinCompiler joinCompiler,
+            Optional<AdaptivePartialAggregation> adaptivePartialAggregation)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         requireNonNull(step, "step is null");
@@ -315,8 +376,17 @@ public class HashAggregationOperator
         this.memoryLimitForMergeWithMemory = requireNonNull(memoryLimitForMergeWithMemory, "memoryLimitForMergeWithMemory is null");
         this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
         this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.adaptivePartialAggregation = requireNonNull(adaptivePartialAggregation, "adaptivePartialAggregation is null");
+        checkArgument(!adaptivePartialAggregation.isPresent() || step == Step.PARTIAL, "adaptive partial aggregation is only supported for partial step");
         this.hashCollisionsCounter = new HashCollisionsCounter(operatorContext);
-        operatorContext.setInfoSupplier(hashCollisionsCounter);
+        if (adaptivePartialAggregation.isPresent()) {
+            this.partialAggregationPassThrough = new PartialAggregationPassThrough(accumulatorFactories, groupByChannels, hashChannel);
+            operatorContext.setInfoSupplier(this::getHashAggregationOperatorInfo);
+        }
+        else {
+            this.partialAggregationPassThrough = null;
+            operatorContext.setInfoSupplier(hashCollisionsCounter);
+        }
     }
 
     @Override
@@ -355,7 +425,11 @@ public class HashAggregationOperator
     @Override
     public boolean needsInput()
     {
-        if (finishing || outputIterator != null) {
+        if (finishing || outputIterator != null || passThroughPage != null) {
+            return false;
+        }
+        else if (partialAggregationDisabled && aggregationBuilder != null) {
+            // wait for the rows aggregated so far to be flushed
             return false;
         }
         else if (aggregationBuilder != null && aggregationBuilder.isFull()) {
@@ -373,6 +447,13 @@ public class HashAggregationOperator
         requireNonNull(page, "page is null");
         inputProcessed = true;
 
+        if (partialAggregationDisabled) {
+            checkState(aggregationBuilder == null && passThroughPage == null, "Aggregation builder has not been flushed");
+            passThroughPage = partialAggregationPassThrough.process(page);
+            passThroughRows += page.getPositionCount();
+            return;
+        }
+
         if (aggregationBuilder == null) {
             if (step.isOutputPartial() || !spillEnabled) {
                 aggregationBuilder = new InMemoryHashAggregationBuilder(
@@ -408,6 +489,16 @@ public class HashAggregationOperator
         }
         aggregationBuilder.processPage(page);
         aggregationBuilder.updateMemory();
+
+        if (adaptivePartialAggregation.isPresent()) {
+            aggregatedRows += page.getPositionCount();
+            long groups = flushedGroups + ((InMemoryHashAggregationBuilder) aggregationBuilder).getGroupCount();
+            if (adaptivePartialAggregation.get().shouldDisable(aggregatedRows, groups)) {
+                partialAggregationDisabledReason = adaptivePartialAggregation.get().getDisabledReason(aggregatedRows, groups);
+                aggregatedRowsBeforeDisabled = aggregatedRows;
+                partialAggregationDisabled = true;
+            }
+        }
     }
 
     @Override
@@ -417,6 +508,12 @@ public class HashAggregationOperator
             return null;
         }
 
+        if (passThroughPage != null) {
+            Page output = passThroughPage;
+            passThroughPage = null;
+            return output;
+        }
+
         if (outputIterator == null) {
             // current output iterator is done
             outputIterator = null;
@@ -434,8 +531,8 @@ public class HashAggregationOperator
                 }
             }
 
-            // only flush if we are finishing or the aggregation builder is full
-            if (!finishing && (aggregationBuilder == null || !aggregationBuilder.isFull())) {
+            // only flush if we are finishing, the aggregation builder is full or partial aggregation was disabled
+            if (!finishing && (aggregationBuilder == null || !(aggregationBuilder.isFull() || partialAggregationDisabled))) {
                 return null;
             }
 
@@ -465,12 +562,25 @@ public class HashAggregationOperator
     {
         outputIterator = null;
         if (aggregationBuilder != null) {
+            if (adaptivePartialAggregation.isPresent()) {
+                flushedGroups += ((InMemoryHashAggregationBuilder) aggregationBuilder).getGroupCount();
+            }
             aggregationBuilder.recordHashCollisions(hashCollisionsCounter);
             aggregationBuilder.close();
             aggregationBuilder = null;
         }
     }
 
+    private HashAggregationOperatorInfo getHashAggregationOperatorInfo()
+    {
+        return new HashAggregationOperatorInfo(
+                hashCollisionsCounter.get(),
+                partialAggregationDisabled ? 1 : 0,
+                aggregatedRowsBeforeDisabled,
+                passThroughRows,
+                partialAggregationDisabledReason);
+    }
+
     private Page getGlobalAggregationOutput()
     {
         List<Accumulator> accumulators = accumulatorFactories.stream()
@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.util.Mergeable;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Info of a partial aggregation that can disable itself when it does not reduce its input.
+ */
+public class HashAggregationOperatorInfo
+        implements Mergeable<HashAggregationOperatorInfo>, OperatorInfo
+{
+    private final HashCollisionsInfo hashCollisionsInfo;
+    private final long partialAggregationDisabledCount;
+    private final long aggregatedRowsBeforeDisabled;
+    private final long passThroughRows;
+    @Nullable
+    private final String partialAggregationDisabledReason;
+
+    @JsonCreator
+    public HashAggregationOperatorInfo(
+            @JsonProperty("hashCollisionsInfo") HashCollisionsInfo hashCollisionsInfo,
+            @JsonProperty("partialAggregationDisabledCount") long partialAggregationDisabledCount,
+            @JsonProperty("aggregatedRowsBeforeDisabled") long aggregatedRowsBeforeDisabled,
+            @JsonProperty("passThroughRows") long passThroughRows,
+            @JsonProperty("partialAggregationDisabledReason") @Nullable String partialAggregationDisabledReason)
+    {
+        this.hashCollisionsInfo = requireNonNull(hashCollisionsInfo, "hashCollisionsInfo is null");
+        this.partialAggregationDisabledCount = partialAggregationDisabledCount;
+        this.aggregatedRowsBeforeDisabled = aggregatedRowsBeforeDisabled;
+        this.passThroughRows = passThroughRows;
+        this.partialAggregationDisabledReason = partialAggregationDisabledReason;
+    }
+
+    @JsonProperty
+    public HashCollisionsInfo getHashCollisionsInfo()
+    {
+        return hashCollisionsInfo;
+    }
+
+    /**
+     * Number of operators that switched to pass-through.
+     */
+    @JsonProperty
+    public long getPartialAggregationDisabledCount()
+    {
+        return partialAggregationDisabledCount;
+    }
+
+    /**
+     * Number of rows the operators that switched to pass-through aggregated before switching.
+     */
+    @JsonProperty
+    public long getAggregatedRowsBeforeDisabled()
+    {
+        return aggregatedRowsBeforeDisabled;
+    }
+
+    /**
+     * Number of rows emitted as intermediate state without aggregation.
+     */
+    @JsonProperty
+    public long getPassThroughRows()
+    {
+        return passThroughRows;
+    }
+
+    @Nullable
+    @JsonProperty
+    public String getPartialAggregationDisabledReason()
+    {
+        return partialAggregationDisabledReason;
+    }
+
+    @Override
+    public HashAggregationOperatorInfo mergeWith(HashAggregationOperatorInfo other)
+    {
+        return new HashAggregationOperatorInfo(
+                hashCollisionsInfo.mergeWith(other.hashCollisionsInfo),
+                partialAggregationDisabledCount + other.partialAggregationDisabledCount,
+                aggregatedRowsBeforeDisabled + other.aggregatedRowsBeforeDisabled,
+                passThroughRows + other.passThroughRows,
+                partialAggregationDisabledReason != null ? partialAggregationDisabledReason : other.partialAggregationDisabledReason);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("hashCollisionsInfo", hashCollisionsInfo)
+                .add("partialAggregationDisabledCount", partialAggregationDisabledCount)
+                .add("aggregatedRowsBeforeDisabled", aggregatedRowsBeforeDisabled)
+                .add("passThroughRows", passThroughRows)
+                .add("partialAggregationDisabledReason", partialAggregationDisabledReason)
+                .toString();
+    }
+}
@@ -15,14 +15,20 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import com.facebook.presto.sql.planner.Symbol;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +36,9 @@ import java.util.Optional;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
+import static io.airlift.concurrent.MoreFutures.whenAnyComplete;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
@@ -49,6 +58,10 @@ public class HashBuilderOperator
         private final PagesIndex.Factory pagesIndexFactory;
 
         private final int expectedPositions;
+        private final boolean spillEnabled;
+        private final DataSize memoryLimitBeforeSpill;
+        private final SpillerFactory spillerFactory;
+        private final Optional<JoinDynamicFilter> dynamicFilter;
 
         private int partitionIndex;
         private boolean closed;
@@ -66,6 +79,44 @@ public class HashBuilderOperator
                 int expectedPositions,
                 int partitionCount,
                 PagesIndex.Factory pagesIndexFactory)
+        {
+            this(operatorId,
+                    planNodeId,
+                    types,
+                    outputChannels,
+                    layout,
+                    hashChannels,
+                    preComputedHashChannel,
+                    outer,
+                    filterFunctionFactory,
+                    expectedPositions,
+                    partitionCount,
+                    pagesIndexFactory,
+                    false,
+                    new DataSize(0, MEGABYTE),
+                    (spillTypes, spillContext, memoryContext) -> {
+                        throw new UnsupportedOperationException();
+                    },
+                    false);
+        }
+
+        public HashBuilderOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<Type> types,
+                List<Integer> outputChannels,
+                Map<Symbol, Integer> layout,
+                List<Integer> hashChannels,
+                Optional<Integer> preComputedHashChannel,
+                boolean outer,
+                Optional<JoinFilterFunctionFactory> filterFunctionFactory,
+                int expectedPositions,
+                int partitionCount,
+                PagesIndex.Factory pagesIndexFactory,
+                boolean spillEnabled,
+                DataSize memoryLimitBeforeSpill,
+                SpillerFactory spillerFactory,
+                boolean dynamicFilterEnabled)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -88,6 +139,24 @@ public class HashBuilderOperator
             this.pagesIndexFactory = requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
 
             this.expectedPositions = expectedPositions;
+            // outer position tracking requires the whole build side to stay in memory
+            this.spillEnabled = spillEnabled && !outer;
+            this.memoryLimitBeforeSpill = requireNonNull(memoryLimitBeforeSpill, "memoryLimitBeforeSpill is null");
+            this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+
+            // unmatched build rows of outer joins are produced regardless of the probe side
+            if (dynamicFilterEnabled && !outer) {
+                this.dynamicFilter = Optional.of(new JoinDynamicFilter(
+                        hashChannels.stream()
+                                .map(types::get)
+                                .collect(toImmutableList()),
+                        hashChannels,
+                        partitionCount,
+                        JoinDynamicFilter.DEFAULT_MAX_DISTINCT_VALUES));
+            }
+            else {
+                this.dynamicFilter = Optional.empty();
+            }
         }
 
         public LookupSourceFactory getLookupSourceFactory()
@@ -95,6 +164,11 @@ public class HashBuilderOperator
             return lookupSourceFactory;
         }
 
+        public Optional<JoinDynamicFilter> getDynamicFilter()
+        {
+            return dynamicFilter;
+        }
+
         @Override
         public List<Type> getTypes()
         {
@@ -115,7 +189,11 @@ public class HashBuilderOperator
                     preComputedHashChannel,
                     filterFunctionFactory,
                     expectedPositions,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    spillEnabled,
+                    memoryLimitBeforeSpill,
+                    spillerFactory,
+                    dynamicFilter);
 
             partitionIndex++;
             return operator;
@@ -134,6 +212,40 @@ public class HashBuilderOperator
         }
     }
 
+    @VisibleForTesting
+    enum State
+    {
+        /**
+         * Operator accepts input
+         */
+        CONSUMING_INPUT,
+
+        /**
+         * Memory limit before spill was exceeded, so current and future input is spilled to disk
+         */
+        SPILLING_INPUT,
+
+        /**
+         * Lookup source has been built from in-memory input and passed to the lookup source factory
+         */
+        LOOKUP_SOURCE_BUILT,
+
+        /**
+         * Input has been spilled and the partition was marked as spilled in the lookup source factory
+         */
+        INPUT_SPILLED,
+
+        /**
+         * Spilled input has been read back and the lookup source built from it was handed to the probe side
+         */
+        INPUT_UNSPILLED_AND_BUILT,
+
+        /**
+         * No longer needed
+         */
+        CLOSED
+    }
+
     private final OperatorContext operatorContext;
     private final PartitionedLookupSourceFactory lookupSourceFactory;
     private final int partitionIndex;
@@ -145,9 +257,18 @@ public class HashBuilderOperator
 
     private final PagesIndex index;
 
-    private boolean finishing;
+    private final boolean spillEnabled;
+    private final long memoryLimitBeforeSpill;
+    private final SpillerFactory spillerFactory;
+    private final Optional<JoinDynamicFilter> dynamicFilter;
+
     private final HashCollisionsCounter hashCollisionsCounter;
 
+    private State state = State.CONSUMING_INPUT;
+    private Optional<Spiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+    private Optional<SpilledLookupSourceHandle> spilledLookupSourceHandle = Optional.empty();
+
     public HashBuilderOperator(
             OperatorContext operatorContext,
             PartitionedLookupSourceFactory lookupSourceFactory,
@@ -157,7 +278,11 @@ public class HashBuilderOperator
             Optional<Integer> preComputedHashChannel,
             Optional<JoinFilterFunctionFactory> filterFunctionFactory,
             int expectedPositions,
-            PagesIndex.Factory pagesIndexFactory)
+            PagesIndex.Factory pagesIndexFactory,
+            boolean spillEnabled,
+            DataSize memoryLimitBeforeSpill,
+            SpillerFactory spillerFactory,
+            Optional<JoinDynamicFilter> dynamicFilter)
     {
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
 
@@ -172,6 +297,11 @@ public class HashBuilderOperator
         this.hashChannels = hashChannels;
         this.preComputedHashChannel = preComputedHashChannel;
 
+        this.spillEnabled = spillEnabled;
+        this.memoryLimitBeforeSpill = requireNonNull(memoryLimitBeforeSpill, "memoryLimitBeforeSpill is null").toBytes();
+        this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+        this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
+
         this.hashCollisionsCounter = new HashCollisionsCounter(operatorContext);
         operatorContext.setInfoSupplier(hashCollisionsCounter);
     }
@@ -188,59 +318,197 @@ public class HashBuilderOperator
         return lookupSourceFactory.getTypes();
     }
 
+    @VisibleForTesting
+    State getState()
+    {
+        return state;
+    }
+
     @Override
-    public void finish()
+    public ListenableFuture<?> isBlocked()
     {
-        if (finishing) {
+        switch (state) {
+            case CONSUMING_INPUT:
+                return NOT_BLOCKED;
+            case SPILLING_INPUT:
+                return spillInProgress;
+            case LOOKUP_SOURCE_BUILT:
+                return lookupSourceFactory.isDestroyed();
+            case INPUT_SPILLED:
+                return whenAnyComplete(ImmutableList.of(
+                        spilledLookupSourceHandle.get().getUnspillingRequested(),
+                        spilledLookupSourceHandle.get().getDisposeRequested(),
+                        lookupSourceFactory.isDestroyed()));
+            case INPUT_UNSPILLED_AND_BUILT:
+                return whenAnyComplete(ImmutableList.of(
+                        spilledLookupSourceHandle.get().getDisposeRequested(),
+                        lookupSourceFactory.isDestroyed()));
+            case CLOSED:
+                return NOT_BLOCKED;
+        }
+        throw new IllegalStateException("Unhandled state: " + state);
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return state == State.CONSUMING_INPUT || (state == State.SPILLING_INPUT && spillInProgress.isDone());
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        requireNonNull(page, "page is null");
+        checkState(needsInput(), "Operator does not need input");
+
+        if (state == State.SPILLING_INPUT) {
+            finishPreviousSpill();
+            spillInProgress = spiller.get().spill(Iterators.singletonIterator(page));
+            operatorContext.recordGeneratedOutput(page.getSizeInBytes(), page.getPositionCount());
             return;
         }
-        finishing = true;
 
-        LookupSourceSupplier partition = index.createLookupSourceSupplier(operatorContext.getSession(), hashChannels, preComputedHashChannel, filterFunctionFactory, Optional.of(outputChannels));
-        lookupSourceFactory.setPartitionLookupSourceSupplier(partitionIndex, partition);
+        index.addPage(page);
+        if (spillEnabled && memoryLimitBeforeSpill > 0 && index.getEstimatedSize().toBytes() > memoryLimitBeforeSpill) {
+            spillIndex();
+        }
+        else {
+            if (!operatorContext.trySetMemoryReservation(index.getEstimatedSize().toBytes())) {
+                index.compact();
+            }
+            operatorContext.setMemoryReservation(index.getEstimatedSize().toBytes());
+        }
+        operatorContext.recordGeneratedOutput(page.getSizeInBytes(), page.getPositionCount());
+    }
 
-        operatorContext.setMemoryReservation(partition.get().getInMemorySizeInBytes());
-        hashCollisionsCounter.recordHashCollision(partition.getHashCollisions(), partition.getExpectedHashCollisions());
+    private void spillIndex()
+    {
+        checkState(!spiller.isPresent(), "Spiller already created");
+        spiller = Optional.of(spillerFactory.create(
+                index.getTypes(),
+                operatorContext.getSpillContext(),
+                operatorContext.getSystemMemoryContext().newAggregatedMemoryContext()));
+        state = State.SPILLING_INPUT;
+        // index stays reserved until the spill completes, since its pages are read by the spilling thread
+        spillInProgress = spiller.get().spill(index.getPages());
     }
 
-    @Override
-    public boolean isFinished()
+    private void finishPreviousSpill()
     {
-        return finishing && lookupSourceFactory.isDestroyed().isDone();
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        // check for exception from previous spill
+        getFutureValue(spillInProgress);
+        if (index.getPositionCount() > 0) {
+            index.clear();
+            operatorContext.setMemoryReservation(index.getEstimatedSize().toBytes());
+        }
     }
 
     @Override
-    public boolean needsInput()
+    public Page getOutput()
     {
-        return !finishing;
+        return null;
     }
 
     @Override
-    public ListenableFuture<?> isBlocked()
+    public void finish()
     {
-        if (!finishing) {
-            return NOT_BLOCKED;
+        // called repeatedly by the driver until the operator is finished
+        switch (state) {
+            case CONSUMING_INPUT:
+                finishInput();
+                return;
+            case SPILLING_INPUT:
+                finishSpilledInput();
+                return;
+            case LOOKUP_SOURCE_BUILT:
+                if (lookupSourceFactory.isDestroyed().isDone()) {
+                    close();
+                }
+                return;
+            case INPUT_SPILLED:
+                if (spilledLookupSourceHandle.get().getDisposeRequested().isDone() || lookupSourceFactory.isDestroyed().isDone()) {
+                    close();
+                }
+                else if (spilledLookupSourceHandle.get().getUnspillingRequested().isDone()) {
+                    unspillLookupSource();
+                }
+                return;
+            case INPUT_UNSPILLED_AND_BUILT:
+                if (spilledLookupSourceHandle.get().getDisposeRequested().isDone() || lookupSourceFactory.isDestroyed().isDone()) {
+                    close();
+                }
+                return;
+            case CLOSED:
+                return;
         }
-        return lookupSourceFactory.isDestroyed();
+        throw new IllegalStateException("Unhandled state: " + state);
     }
 
-    @Override
-    public void addInput(Page page)
+    private void finishInput()
     {
-        requireNonNull(page, "page is null");
-        checkState(!isFinished(), "Operator is already finished");
+        dynamicFilter.ifPresent(filter -> filter.addPartition(index));
+        LookupSourceSupplier partition = buildLookupSource();
+        lookupSourceFactory.setPartitionLookupSourceSupplier(partitionIndex, partition);
+        state = State.LOOKUP_SOURCE_BUILT;
+    }
 
-        index.addPage(page);
-        if (!operatorContext.trySetMemoryReservation(index.getEstimatedSize().toBytes())) {
-            index.compact();
+    private void finishSpilledInput()
+    {
+        if (!spillInProgress.isDone()) {
+            return;
         }
-        operatorContext.setMemoryReservation(index.getEstimatedSize().toBytes());
-        operatorContext.recordGeneratedOutput(page.getSizeInBytes(), page.getPositionCount());
+        finishPreviousSpill();
+        dynamicFilter.ifPresent(JoinDynamicFilter::addUnknownPartition);
+
+        SpilledLookupSourceHandle spilledLookupSourceHandle = new SpilledLookupSourceHandle();
+        this.spilledLookupSourceHandle = Optional.of(spilledLookupSourceHandle);
+        lookupSourceFactory.setPartitionSpilledLookupSourceHandle(partitionIndex, spilledLookupSourceHandle);
+        state = State.INPUT_SPILLED;
+    }
+
+    private void unspillLookupSource()
+    {
+        checkState(index.getPositionCount() == 0, "Index is not empty");
+
+        Iterator<Page> spilledPages = Iterators.concat(spiller.get().getSpills().iterator());
+        while (spilledPages.hasNext()) {
+            index.addPage(spilledPages.next());
+            // the partition has to fit in memory, but only one spilled partition is read back at a time
+            operatorContext.setMemoryReservation(index.getEstimatedSize().toBytes());
+        }
+
+        LookupSourceSupplier partition = buildLookupSource();
+        spilledLookupSourceHandle.get().setLookupSource(partition);
+        state = State.INPUT_UNSPILLED_AND_BUILT;
+    }
+
+    private LookupSourceSupplier buildLookupSource()
+    {
+        LookupSourceSupplier partition = index.createLookupSourceSupplier(operatorContext.getSession(), hashChannels, preComputedHashChannel, filterFunctionFactory, Optional.of(outputChannels));
+        operatorContext.setMemoryReservation(partition.get().getInMemorySizeInBytes());
+        hashCollisionsCounter.recordHashCollision(partition.getHashCollisions(), partition.getExpectedHashCollisions());
+        return partition;
     }
 
     @Override
-    public Page getOutput()
+    public boolean isFinished()
     {
-        return null;
+        return state == State.CLOSED;
+    }
+
+    @Override
+    public void close()
+    {
+        if (state == State.CLOSED) {
+            return;
+        }
+        state = State.CLOSED;
+
+        // lookup source built from the index is no longer referenced by the probe side
+        index.clear();
+        operatorContext.setMemoryReservation(0);
+        spiller.ifPresent(Spiller::close);
+        spiller = Optional.empty();
     }
 }
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.execution.buffer.BufferResult;
 import com.facebook.presto.execution.buffer.SerializedPage;
 import com.facebook.presto.server.remotetask.Backoff;
 import com.facebook.presto.spi.PrestoException;
@@ -31,8 +32,6 @@ import io.airlift.http.client.Response;
 import io.airlift.http.client.ResponseHandler;
 import io.airlift.http.client.ResponseTooLargeException;
 import io.airlift.log.Logger;
-import io.airlift.slice.InputStreamSliceInput;
-import io.airlift.slice.SliceInput;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.joda.time.DateTime;
@@ -44,9 +43,11 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.concurrent.Future;
@@ -54,13 +55,18 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES_STREAM_TYPE;
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES_TYPE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_BUFFER_COMPLETE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_STREAM_SIZE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_TASK_INSTANCE_ID;
-import static com.facebook.presto.execution.buffer.PagesSerdeUtil.readSerializedPages;
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.SERIALIZED_PAGE_HEADER_SIZE;
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.readSerializedPagesFrame;
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.readSerializedPagesFully;
 import static com.facebook.presto.operator.HttpPageBufferClient.PagesResponse.createEmptyPagesResponse;
 import static com.facebook.presto.operator.HttpPageBufferClient.PagesResponse.createPagesResponse;
 import static com.facebook.presto.spi.HostAddress.fromUri;
@@ -76,6 +82,7 @@ import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.http.client.ResponseHandlerUtils.propagate;
 import static io.airlift.http.client.StatusResponseHandler.StatusResponse;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -88,6 +95,9 @@ public final class HttpPageBufferClient
 {
     private static final Logger log = Logger.get(HttpPageBufferClient.class);
 
+    // longest time a streaming request waits for the first results before the request is completed and a new one is sent
+    private static final Duration MAX_STREAM_WAIT = new Duration(10, SECONDS);
+
     /**
      * For each request, the addPage method will be called zero or more times,
      * followed by either requestComplete or clientFinished (if buffer complete).  If the client is
@@ -105,6 +115,16 @@ public final class HttpPageBufferClient
         void clientFinished(HttpPageBufferClient client);
 
         void clientFailed(HttpPageBufferClient client, Throwable cause);
+
+        /**
+         * The number of bytes the client can take from a single streaming request. The producer stops
+         * writing a stream after this size, and every frame written is read and added by the client,
+         * so this bounds the pages a stream adds to the buffer of the client.
+         */
+        default long getStreamCapacity(HttpPageBufferClient client)
+        {
+            return 0;
+        }
     }
 
     private final HttpClient httpClient;
@@ -112,6 +132,7 @@ public final class HttpPageBufferClient
     private final URI location;
     private final ClientCallback clientCallback;
     private final ScheduledExecutorService executor;
+    private final boolean streamingEnabled;
     private final Backoff backoff;
 
     @GuardedBy("this")
@@ -135,6 +156,8 @@ public final class HttpPageBufferClient
     private final AtomicLong rowsRejected = new AtomicLong();
     private final AtomicInteger pagesRejected = new AtomicInteger();
 
+    private final AtomicLong bytesReceived = new AtomicLong();
+
     private final AtomicInteger requestsScheduled = new AtomicInteger();
     private final AtomicInteger requestsCompleted = new AtomicInteger();
     private final AtomicInteger requestsFailed = new AtomicInteger();
@@ -148,7 +171,20 @@ public final class HttpPageBufferClient
             ClientCallback clientCallback,
             ScheduledExecutorService executor)
     {
-        this(httpClient, maxResponseSize, minErrorDuration, maxErrorDuration, location, clientCallback, executor, Ticker.systemTicker());
+        this(httpClient, maxResponseSize, minErrorDuration, maxErrorDuration, location, clientCallback, executor, false, Ticker.systemTicker());
+    }
+
+    public HttpPageBufferClient(
+            HttpClient httpClient,
+            DataSize maxResponseSize,
+            Duration minErrorDuration,
+            Duration maxErrorDuration,
+            URI location,
+            ClientCallback clientCallback,
+            ScheduledExecutorService executor,
+            boolean streamingEnabled)
+    {
+        this(httpClient, maxResponseSize, minErrorDuration, maxErrorDuration, location, clientCallback, executor, streamingEnabled, Ticker.systemTicker());
     }
 
     public HttpPageBufferClient(
@@ -160,12 +196,27 @@ public final class HttpPageBufferClient
             ClientCallback clientCallback,
             ScheduledExecutorService executor,
             Ticker ticker)
+    {
+        this(httpClient, maxResponseSize, minErrorDuration, maxErrorDuration, location, clientCallback, executor, false, ticker);
+    }
+
+    public HttpPageBufferClient(
+            HttpClient httpClient,
+            DataSize maxResponseSize,
+            Duration minErrorDuration,
+            Duration maxErrorDuration,
+            URI location,
+            ClientCallback clientCallback,
+            ScheduledExecutorService executor,
+            boolean streamingEnabled,
+            Ticker ticker)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.maxResponseSize = requireNonNull(maxResponseSize, "maxResponseSize is null");
         this.location = requireNonNull(location, "location is null");
         this.clientCallback = requireNonNull(clientCallback, "clientCallback is null");
         this.executor = requireNonNull(executor, "executor is null");
+        this.streamingEnabled = streamingEnabled;
         requireNonNull(minErrorDuration, "minErrorDuration is null");
         requireNonNull(maxErrorDuration, "maxErrorDuration is null");
         requireNonNull(ticker, "ticker is null");
@@ -220,6 +271,14 @@ public final class HttpPageBufferClient
                 httpRequestState);
     }
 
+    /**
+     * Number of bytes of serialized pages read from the responses, including the page headers.
+     */
+    public long getBytesReceived()
+    {
+        return bytesReceived.get();
+    }
+
     public synchronized boolean isRunning()
     {
         return future != null;
@@ -277,31 +336,51 @@ public final class HttpPageBufferClient
         requestsScheduled.incrementAndGet();
     }
 
-    private synchronized void initiateRequest()
+    private void initiateRequest()
     {
-        scheduled = false;
-        if (closed || (future != null)) {
-            return;
-        }
+        // the capacity is read before locking this client, since the callback can lock the owner of the client
+        checkNotHoldsLock();
+        long streamCapacity = streamingEnabled ? clientCallback.getStreamCapacity(this) : 0;
 
-        if (completed) {
-            sendDelete();
-        }
-        else {
-            sendGetResults();
-        }
+        synchronized (this) {
+            scheduled = false;
+            if (closed || (future != null)) {
+                return;
+            }
 
-        lastUpdate = DateTime.now();
+            if (completed) {
+                sendDelete();
+            }
+            else {
+                sendGetResults(streamCapacity);
+            }
+
+            lastUpdate = DateTime.now();
+        }
     }
 
-    private synchronized void sendGetResults()
+    private synchronized void sendGetResults(long streamCapacity)
     {
-        URI uri = HttpUriBuilder.uriBuilderFrom(location).appendPath(String.valueOf(token)).build();
-        HttpResponseFuture<PagesResponse> resultFuture = httpClient.executeAsync(
-                prepareGet()
-                        .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
-                        .setUri(uri).build(),
-                new PageResponseHandler());
+        HttpResponseFuture<PagesResponse> resultFuture;
+        URI uri;
+        if (streamingEnabled) {
+            uri = HttpUriBuilder.uriBuilderFrom(location).appendPath(String.valueOf(token)).appendPath("stream").build();
+            resultFuture = httpClient.executeAsync(
+                    prepareGet()
+                            .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
+                            .setHeader(PRESTO_MAX_STREAM_SIZE, new DataSize(Math.max(maxResponseSize.toBytes(), streamCapacity), BYTE).toString())
+                            .setHeader(PRESTO_MAX_WAIT, MAX_STREAM_WAIT.toString())
+                            .setUri(uri).build(),
+                    new StreamingPageResponseHandler());
+        }
+        else {
+            uri = HttpUriBuilder.uriBuilderFrom(location).appendPath(String.valueOf(token)).build();
+            resultFuture = httpClient.executeAsync(
+                    prepareGet()
+                            .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
+                            .setUri(uri).build(),
+                    new PageResponseHandler());
+        }
 
         future = resultFuture;
         Futures.addCallback(resultFuture, new FutureCallback<PagesResponse>()
@@ -315,42 +394,16 @@ public final class HttpPageBufferClient
 
                 List<SerializedPage> pages;
                 try {
-                    synchronized (HttpPageBufferClient.this) {
-                        if (taskInstanceId == null) {
-                            taskInstanceId = result.getTaskInstanceId();
-                        }
-
-                        if (!isNullOrEmpty(taskInstanceId) && !result.getTaskInstanceId().equals(taskInstanceId)) {
-                            // TODO: update error message
-                            throw new PrestoException(REMOTE_TASK_MISMATCH, format("%s (%s)", REMOTE_TASK_MISMATCH_ERROR, fromUri(uri)));
-                        }
-
-                        if (result.getToken() == token) {
-                            pages = result.getPages();
-                            token = result.getNextToken();
-                        }
-                        else {
-                            pages = ImmutableList.of();
-                        }
-                    }
+                    pages = acceptPages(result, uri);
                 }
                 catch (PrestoException e) {
                     handleFailure(e, resultFuture);
                     return;
                 }
 
-                // add pages:
-                // addPages must be called regardless of whether pages is an empty list because
-                // clientCallback can keep stats of requests and responses. For example, it may
-                // keep track of how often a client returns empty response and adjust request
-                // frequency or buffer size.
-                if (clientCallback.addPages(HttpPageBufferClient.this, pages)) {
-                    pagesReceived.addAndGet(pages.size());
-                    rowsReceived.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
-                }
-                else {
-                    pagesRejected.addAndGet(pages.size());
-                    rowsRejected.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
+                // the pages of a streaming request were added as the frames were read
+                if (!streamingEnabled) {
+                    addPages(pages);
                 }
 
                 synchronized (HttpPageBufferClient.this) {
@@ -387,6 +440,51 @@ public final class HttpPageBufferClient
         }, executor);
     }
 
+    /**
+     * Checks the response is from the expected task instance, and advances the token.
+     *
+     * @return the pages of the response, or no pages if the response is for a token that was already received
+     */
+    private synchronized List<SerializedPage> acceptPages(PagesResponse result, URI uri)
+    {
+        if (taskInstanceId == null) {
+            taskInstanceId = result.getTaskInstanceId();
+        }
+
+        if (!isNullOrEmpty(taskInstanceId) && !result.getTaskInstanceId().equals(taskInstanceId)) {
+            // TODO: update error message
+            throw new PrestoException(REMOTE_TASK_MISMATCH, format("%s (%s)", REMOTE_TASK_MISMATCH_ERROR, fromUri(uri)));
+        }
+
+        if (result.getToken() == token) {
+            token = result.getNextToken();
+            return result.getPages();
+        }
+        return ImmutableList.of();
+    }
+
+    private void addPages(List<SerializedPage> pages)
+    {
+        checkNotHoldsLock();
+
+        // page data is read from the response stream in place, only the page headers go through a buffer
+        bytesReceived.addAndGet(pages.stream().mapToLong(SerializedPage::getSizeInBytes).sum() + (long) pages.size() * SERIALIZED_PAGE_HEADER_SIZE);
+
+        // add pages:
+        // addPages must be called regardless of whether pages is an empty list because
+        // clientCallback can keep stats of requests and responses. For example, it may
+        // keep track of how often a client returns empty response and adjust request
+        // frequency or buffer size.
+        if (clientCallback.addPages(HttpPageBufferClient.this, pages)) {
+            pagesReceived.addAndGet(pages.size());
+            rowsReceived.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
+        }
+        else {
+            pagesRejected.addAndGet(pages.size());
+            rowsRejected.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
+        }
+    }
+
     private synchronized void sendDelete()
     {
         HttpResponseFuture<StatusResponse> resultFuture = httpClient.executeAsync(prepareDelete().setUri(location).build(), createStatusResponseHandler());
@@ -562,8 +660,8 @@ public final class HttpPageBufferClient
                 long nextToken = getNextToken(response);
                 boolean complete = getComplete(response);
 
-                try (SliceInput input = new InputStreamSliceInput(response.getInputStream())) {
-                    List<SerializedPage> pages = ImmutableList.copyOf(readSerializedPages(input));
+                try (InputStream input = response.getInputStream()) {
+                    List<SerializedPage> pages = readSerializedPagesFully(input);
                     return createPagesResponse(taskInstanceId, token, nextToken, pages, complete);
                 }
                 catch (IOException e) {
@@ -622,6 +720,75 @@ public final class HttpPageBufferClient
         }
     }
 
+    /**
+     * Reads the frames of a results stream as they arrive, and adds the pages of every frame before reading the next one.
+     * Every frame the producer writes is read and added, since the size of the stream is bounded by the capacity
+     * requested by the client; the stream is only abandoned when the client is closed. The producer acknowledges
+     * the frames when the next request is sent with the token reached. The returned response carries no pages,
+     * only the token reached and whether the buffer is complete.
+     */
+    private class StreamingPageResponseHandler
+            implements ResponseHandler<PagesResponse, RuntimeException>
+    {
+        @Override
+        public PagesResponse handleException(Request request, Exception exception)
+        {
+            throw propagate(request, exception);
+        }
+
+        @Override
+        public PagesResponse handle(Request request, Response response)
+        {
+            try {
+                if (response.getStatusCode() != HttpStatus.OK.code()) {
+                    throw new PageTransportErrorException(format("Expected response code to be 200, but was %s %s", response.getStatusCode(), response.getStatusMessage()));
+                }
+
+                String contentType = response.getHeader(CONTENT_TYPE);
+                if (contentType == null) {
+                    throw new PageTransportErrorException(format("%s header is not set: %s", CONTENT_TYPE, response));
+                }
+                if (!PageResponseHandler.mediaTypeMatches(contentType, PRESTO_PAGES_STREAM_TYPE)) {
+                    throw new PageTransportErrorException(format("Expected %s response from server but got %s", PRESTO_PAGES_STREAM_TYPE, contentType));
+                }
+
+                String taskInstanceId = PageResponseHandler.getTaskInstanceId(response);
+                long streamToken;
+                synchronized (HttpPageBufferClient.this) {
+                    streamToken = token;
+                }
+                boolean complete = false;
+
+                try (InputStream input = response.getInputStream()) {
+                    while (!complete && isStreamOpen()) {
+                        Optional<BufferResult> frame = readSerializedPagesFrame(input, taskInstanceId);
+                        if (!frame.isPresent()) {
+                            break;
+                        }
+                        BufferResult result = frame.get();
+                        addPages(acceptPages(createPagesResponse(taskInstanceId, result.getToken(), result.getNextToken(), result.getSerializedPages(), result.isBufferComplete()), request.getUri()));
+                        streamToken = result.getNextToken();
+                        complete = result.isBufferComplete();
+                    }
+                }
+                catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+                return createEmptyPagesResponse(taskInstanceId, streamToken, streamToken, complete);
+            }
+            catch (PageTransportErrorException e) {
+                throw new PageTransportErrorException(format("Error fetching %s: %s", request.getUri().toASCIIString(), e.getMessage()), e);
+            }
+        }
+
+        private boolean isStreamOpen()
+        {
+            synchronized (HttpPageBufferClient.this) {
+                return !closed;
+            }
+        }
+    }
+
     public static class PagesResponse
     {
         public static PagesResponse createPagesResponse(String taskInstanceId, long token, long nextToken, Iterable<SerializedPage> pages, boolean complete)
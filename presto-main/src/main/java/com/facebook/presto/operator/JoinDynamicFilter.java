@@ -0,0 +1,184 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.predicate.Domain;
+import com.facebook.presto.spi.predicate.Range;
+import com.facebook.presto.spi.predicate.TupleDomain;
+import com.facebook.presto.spi.predicate.ValueSet;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.facebook.presto.spi.type.TypeUtils.readNativeValue;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Summary of the build side join keys of an inner join, used to prune the probe side table scan.
+ * <p>
+ * Every build partition reports the keys it contains once its input is finished. For each key,
+ * the summary is the set of distinct values if it is small, the range between the minimum and
+ * the maximum value for orderable types, or any non-null value otherwise. Nulls never match in
+ * an equi-join, so they are always excluded. The summary is complete once all partitions reported.
+ */
+@ThreadSafe
+public final class JoinDynamicFilter
+{
+    public static final int DEFAULT_MAX_DISTINCT_VALUES = 1_000;
+
+    private final List<Type> keyTypes;
+    private final List<Integer> keyChannels;
+    private final int maxDistinctValues;
+    private final SettableFuture<List<Domain>> summary = SettableFuture.create();
+
+    @GuardedBy("this")
+    private final List<Domain> domains;
+    @GuardedBy("this")
+    private int pendingPartitions;
+
+    public JoinDynamicFilter(List<Type> keyTypes, List<Integer> keyChannels, int partitionCount, int maxDistinctValues)
+    {
+        this.keyTypes = ImmutableList.copyOf(requireNonNull(keyTypes, "keyTypes is null"));
+        this.keyChannels = ImmutableList.copyOf(requireNonNull(keyChannels, "keyChannels is null"));
+        checkArgument(keyTypes.size() == keyChannels.size(), "keyTypes and keyChannels must have the same size");
+        checkArgument(partitionCount > 0, "partitionCount must be positive");
+        checkArgument(maxDistinctValues > 0, "maxDistinctValues must be positive");
+        this.maxDistinctValues = maxDistinctValues;
+        this.pendingPartitions = partitionCount;
+
+        this.domains = new ArrayList<>();
+        for (Type type : keyTypes) {
+            domains.add(Domain.none(type));
+        }
+    }
+
+    /**
+     * Adds the join keys of a build partition held in memory.
+     */
+    public void addPartition(PagesIndex index)
+    {
+        ImmutableList.Builder<Domain> partitionDomains = ImmutableList.builder();
+        for (int i = 0; i < keyChannels.size(); i++) {
+            partitionDomains.add(summarize(keyTypes.get(i), index.getChannel(keyChannels.get(i))));
+        }
+        addPartition(partitionDomains.build());
+    }
+
+    /**
+     * Adds a build partition whose keys are not known, e.g. because it was spilled.
+     */
+    public void addUnknownPartition()
+    {
+        ImmutableList.Builder<Domain> partitionDomains = ImmutableList.builder();
+        for (Type type : keyTypes) {
+            partitionDomains.add(Domain.notNull(type));
+        }
+        addPartition(partitionDomains.build());
+    }
+
+    private synchronized void addPartition(List<Domain> partitionDomains)
+    {
+        checkState(pendingPartitions > 0, "All partitions already added");
+        for (int i = 0; i < domains.size(); i++) {
+            domains.set(i, domains.get(i).union(partitionDomains.get(i)));
+        }
+        pendingPartitions--;
+        if (pendingPartitions == 0) {
+            summary.set(ImmutableList.copyOf(domains));
+        }
+    }
+
+    /**
+     * Completes with the summary of every join key, in the order of the key channels, once all partitions reported.
+     */
+    public ListenableFuture<List<Domain>> getSummary()
+    {
+        return nonCancellationPropagating(summary);
+    }
+
+    /**
+     * Expresses the summary over the columns the join keys are read from.
+     *
+     * @param keyColumns column providing each join key, in the order of the key channels
+     */
+    public static <T> TupleDomain<T> toTupleDomain(List<T> keyColumns, List<Domain> keyDomains)
+    {
+        checkArgument(keyColumns.size() == keyDomains.size(), "keyColumns and keyDomains must have the same size");
+        TupleDomain<T> tupleDomain = TupleDomain.all();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            // the same column can provide multiple join keys
+            tupleDomain = tupleDomain.intersect(TupleDomain.withColumnDomains(ImmutableMap.of(keyColumns.get(i), keyDomains.get(i))));
+        }
+        return tupleDomain;
+    }
+
+    private Domain summarize(Type type, List<Block> blocks)
+    {
+        Set<Object> values = new LinkedHashSet<>();
+        boolean tooManyValues = false;
+        Block minBlock = null;
+        int minPosition = -1;
+        Block maxBlock = null;
+        int maxPosition = -1;
+
+        for (Block block : blocks) {
+            for (int position = 0; position < block.getPositionCount(); position++) {
+                if (block.isNull(position)) {
+                    continue;
+                }
+                if (!tooManyValues) {
+                    values.add(readNativeValue(type, block, position));
+                    tooManyValues = values.size() > maxDistinctValues;
+                }
+                if (type.isOrderable()) {
+                    if (minBlock == null || type.compareTo(block, position, minBlock, minPosition) < 0) {
+                        minBlock = block;
+                        minPosition = position;
+                    }
+                    if (maxBlock == null || type.compareTo(block, position, maxBlock, maxPosition) > 0) {
+                        maxBlock = block;
+                        maxPosition = position;
+                    }
+                }
+                else if (tooManyValues) {
+                    // neither a value set nor a range can be produced
+                    return Domain.notNull(type);
+                }
+            }
+        }
+
+        if (values.isEmpty()) {
+            return Domain.none(type);
+        }
+        if (!tooManyValues) {
+            return Domain.multipleValues(type, ImmutableList.copyOf(values));
+        }
+        Range range = Range.range(type, readNativeValue(type, minBlock, minPosition), true, readNativeValue(type, maxBlock, maxPosition), true);
+        return Domain.create(ValueSet.ofRanges(range), false);
+    }
+}
@@ -29,7 +29,7 @@ public final class JoinHash
         implements LookupSource
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(JoinHash.class).instanceSize();
-    private final PagesHash pagesHash;
+    private final JoinHashTable pagesHash;
 
     // we unwrap Optional<JoinFilterFunction> to actual verifier or null in constructor for performance reasons
     // we do quick check for `filterFunction == null` in `isJoinPositionEligible` to avoid calls to applyFilterFunction
@@ -41,11 +41,16 @@ public final class JoinHash
     @Nullable
     private final PositionLinks positionLinks;
 
-    public JoinHash(PagesHash pagesHash, Optional<JoinFilterFunction> filterFunction, Optional<PositionLinks> positionLinks)
+    private final boolean bloomFilterEnabled;
+    private long bloomFilterHits;
+    private long bloomFilterMisses;
+
+    public JoinHash(JoinHashTable pagesHash, Optional<JoinFilterFunction> filterFunction, Optional<PositionLinks> positionLinks)
     {
         this.pagesHash = requireNonNull(pagesHash, "pagesHash is null");
         this.filterFunction = requireNonNull(filterFunction, "filterFunction can not be null").orElse(null);
         this.positionLinks = requireNonNull(positionLinks, "positionLinks is null").orElse(null);
+        this.bloomFilterEnabled = pagesHash.hasBloomFilter();
     }
 
     @Override
@@ -69,6 +74,9 @@ public final class JoinHash
     @Override
     public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage)
     {
+        if (bloomFilterEnabled) {
+            return getJoinPosition(position, hashChannelsPage, allChannelsPage, pagesHash.hashRow(position, hashChannelsPage));
+        }
         int addressIndex = pagesHash.getAddressIndex(position, hashChannelsPage);
         return startJoinPosition(addressIndex, position, allChannelsPage);
     }
@@ -76,10 +84,53 @@ public final class JoinHash
     @Override
     public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage, long rawHash)
     {
+        if (bloomFilterEnabled) {
+            if (!pagesHash.mightContain(rawHash)) {
+                bloomFilterMisses++;
+                return -1;
+            }
+            bloomFilterHits++;
+        }
         int addressIndex = pagesHash.getAddressIndex(position, hashChannelsPage, rawHash);
         return startJoinPosition(addressIndex, position, allChannelsPage);
     }
 
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes, long[] joinPositions)
+    {
+        int[] lookupPositions = positions;
+        long[] lookupHashes = rawHashes;
+        int[] lookupIndexes = null;
+        int lookupCount = positionCount;
+        if (bloomFilterEnabled) {
+            // only look up the rows that pass the filter
+            lookupPositions = new int[positionCount];
+            lookupHashes = new long[positionCount];
+            lookupIndexes = new int[positionCount];
+            lookupCount = 0;
+            for (int i = 0; i < positionCount; i++) {
+                if (pagesHash.mightContain(rawHashes[i])) {
+                    lookupPositions[lookupCount] = positions[i];
+                    lookupHashes[lookupCount] = rawHashes[i];
+                    lookupIndexes[lookupCount] = i;
+                    lookupCount++;
+                }
+                else {
+                    joinPositions[i] = -1;
+                }
+            }
+            bloomFilterHits += lookupCount;
+            bloomFilterMisses += positionCount - lookupCount;
+        }
+
+        int[] addressIndexes = new int[lookupCount];
+        pagesHash.getAddressIndexes(lookupPositions, lookupCount, hashChannelsPage, lookupHashes, addressIndexes);
+        for (int i = 0; i < lookupCount; i++) {
+            int index = lookupIndexes == null ? i : lookupIndexes[i];
+            joinPositions[index] = startJoinPosition(addressIndexes[i], lookupPositions[i], allChannelsPage);
+        }
+    }
+
     private long startJoinPosition(int currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
         if (currentJoinPosition == -1) {
@@ -106,6 +157,18 @@ public final class JoinHash
         return filterFunction == null || filterFunction.filter(toIntExact(currentJoinPosition), probePosition, allProbeChannelsPage);
     }
 
+    @Override
+    public long getBloomFilterHits()
+    {
+        return bloomFilterHits;
+    }
+
+    @Override
+    public long getBloomFilterMisses()
+    {
+        return bloomFilterMisses;
+    }
+
     @Override
     public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
     {
@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.Session;
 import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 
@@ -22,13 +23,15 @@ import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isFastInequalityJoin;
+import static com.facebook.presto.SystemSessionProperties.isJoinBloomFilterEnabled;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 public class JoinHashSupplier
         implements LookupSourceSupplier
 {
     private final Session session;
-    private final PagesHash pagesHash;
+    private final JoinHashTable pagesHash;
     private final LongArrayList addresses;
     private final List<List<Block>> channels;
     private final Optional<PositionLinks.Factory> positionLinks;
@@ -40,12 +43,31 @@ public class JoinHashSupplier
             LongArrayList addresses,
             List<List<Block>> channels,
             Optional<JoinFilterFunctionFactory> filterFunctionFactory)
+    {
+        this(session, pagesHashStrategy, addresses, channels, filterFunctionFactory, Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * @param bigintJoinChannel the only join channel, if its values are stored as a long
+     * @param bigintJoinType the type of {@code bigintJoinChannel}
+     */
+    public JoinHashSupplier(
+            Session session,
+            PagesHashStrategy pagesHashStrategy,
+            LongArrayList addresses,
+            List<List<Block>> channels,
+            Optional<JoinFilterFunctionFactory> filterFunctionFactory,
+            Optional<Integer> bigintJoinChannel,
+            Optional<Type> bigintJoinType)
     {
         this.session = requireNonNull(session, "session is null");
         this.addresses = requireNonNull(addresses, "addresses is null");
         this.channels = requireNonNull(channels, "channels is null");
         this.filterFunctionFactory = requireNonNull(filterFunctionFactory, "filterFunctionFactory is null");
         requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
+        requireNonNull(bigintJoinChannel, "bigintJoinChannel is null");
+        requireNonNull(bigintJoinType, "bigintJoinType is null");
+        checkArgument(bigintJoinChannel.isPresent() == bigintJoinType.isPresent(), "bigintJoinChannel and bigintJoinType must be both present or both absent");
 
         PositionLinks.FactoryBuilder positionLinksFactoryBuilder;
         if (filterFunctionFactory.isPresent() &&
@@ -60,7 +82,18 @@ public class JoinHashSupplier
             positionLinksFactoryBuilder = ArrayPositionLinks.builder(addresses.size());
         }
 
-        this.pagesHash = new PagesHash(addresses, pagesHashStrategy, positionLinksFactoryBuilder);
+        if (bigintJoinChannel.isPresent()) {
+            this.pagesHash = new BigintPagesHash(
+                    addresses,
+                    pagesHashStrategy,
+                    bigintJoinType.get(),
+                    channels.get(bigintJoinChannel.get()),
+                    positionLinksFactoryBuilder,
+                    isJoinBloomFilterEnabled(session));
+        }
+        else {
+            this.pagesHash = new PagesHash(addresses, pagesHashStrategy, positionLinksFactoryBuilder, isJoinBloomFilterEnabled(session));
+        }
         this.positionLinks = positionLinksFactoryBuilder.isEmpty() ? Optional.empty() : Optional.of(positionLinksFactoryBuilder.build());
     }
 
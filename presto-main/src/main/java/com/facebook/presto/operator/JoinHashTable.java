@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+
+/**
+ * Hash table over the build side rows of a join, mapping join keys to positions in the build side addresses.
+ */
+public interface JoinHashTable
+{
+    int getChannelCount();
+
+    int getPositionCount();
+
+    long getInMemorySizeInBytes();
+
+    long getHashCollisions();
+
+    double getExpectedHashCollisions();
+
+    boolean hasBloomFilter();
+
+    /**
+     * Returns false if the build side definitely contains no row with the given hash.
+     */
+    boolean mightContain(long rawHash);
+
+    long hashRow(int position, Page hashChannelsPage);
+
+    int getAddressIndex(int position, Page hashChannelsPage);
+
+    int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash);
+
+    /**
+     * Batched version of {@link #getAddressIndex(int, Page, long)}. For every {@code i < positionCount}, stores
+     * the address index of the probe row {@code positions[i]} with hash {@code rawHashes[i]} in {@code addressIndexes[i]}.
+     */
+    void getAddressIndexes(int[] positions, int positionCount, Page hashChannelsPage, long[] rawHashes, int[] addressIndexes);
+
+    void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
+}
@@ -29,8 +29,10 @@ public class JoinOperatorInfo
     private final JoinType joinType;
     private final long[] logHistogramProbes;
     private final long[] logHistogramOutput;
+    private final long bloomFilterHits;
+    private final long bloomFilterMisses;
 
-    public static JoinOperatorInfo createJoinOperatorInfo(JoinType joinType, long[] logHistogramCounters)
+    public static JoinOperatorInfo createJoinOperatorInfo(JoinType joinType, long[] logHistogramCounters, long bloomFilterHits, long bloomFilterMisses)
     {
         long[] logHistogramProbes = new long[HISTOGRAM_BUCKETS];
         long[] logHistogramOutput = new long[HISTOGRAM_BUCKETS];
@@ -38,20 +40,24 @@ public class JoinOperatorInfo
             logHistogramProbes[i] = logHistogramCounters[2 * i];
             logHistogramOutput[i] = logHistogramCounters[2 * i + 1];
         }
-        return new JoinOperatorInfo(joinType, logHistogramProbes, logHistogramOutput);
+        return new JoinOperatorInfo(joinType, logHistogramProbes, logHistogramOutput, bloomFilterHits, bloomFilterMisses);
     }
 
     @JsonCreator
     public JoinOperatorInfo(
             @JsonProperty("joinType") JoinType joinType,
             @JsonProperty("logHistogramProbes") long[] logHistogramProbes,
-            @JsonProperty("logHistogramOutput") long[] logHistogramOutput)
+            @JsonProperty("logHistogramOutput") long[] logHistogramOutput,
+            @JsonProperty("bloomFilterHits") long bloomFilterHits,
+            @JsonProperty("bloomFilterMisses") long bloomFilterMisses)
     {
         checkArgument(logHistogramProbes.length == HISTOGRAM_BUCKETS);
         checkArgument(logHistogramOutput.length == HISTOGRAM_BUCKETS);
         this.joinType = joinType;
         this.logHistogramProbes = logHistogramProbes;
         this.logHistogramOutput = logHistogramOutput;
+        this.bloomFilterHits = bloomFilterHits;
+        this.bloomFilterMisses = bloomFilterMisses;
     }
 
     @JsonProperty
@@ -72,6 +78,24 @@ public class JoinOperatorInfo
         return logHistogramOutput;
     }
 
+    /**
+     * Number of probe rows that passed the Bloom filter of the build side keys.
+     */
+    @JsonProperty
+    public long getBloomFilterHits()
+    {
+        return bloomFilterHits;
+    }
+
+    /**
+     * Number of probe rows rejected by the Bloom filter of the build side keys.
+     */
+    @JsonProperty
+    public long getBloomFilterMisses()
+    {
+        return bloomFilterMisses;
+    }
+
     @Override
     public String toString()
     {
@@ -79,6 +103,8 @@ public class JoinOperatorInfo
                 .add("joinType", joinType)
                 .add("logHistogramProbes", logHistogramProbes)
                 .add("logHistogramOutput", logHistogramOutput)
+                .add("bloomFilterHits", bloomFilterHits)
+                .add("bloomFilterMisses", bloomFilterMisses)
                 .toString();
     }
 
@@ -92,7 +118,12 @@ public class JoinOperatorInfo
             logHistogramProbes[i] = this.logHistogramProbes[i] + other.logHistogramProbes[i];
             logHistogramOutput[i] = this.logHistogramOutput[i] + other.logHistogramOutput[i];
         }
-        return new JoinOperatorInfo(this.joinType, logHistogramProbes, logHistogramOutput);
+        return new JoinOperatorInfo(
+                this.joinType,
+                logHistogramProbes,
+                logHistogramOutput,
+                this.bloomFilterHits + other.bloomFilterHits,
+                this.bloomFilterMisses + other.bloomFilterMisses);
     }
 
     @Override
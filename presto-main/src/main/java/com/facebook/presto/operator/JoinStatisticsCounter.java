@@ -34,6 +34,8 @@ public class JoinStatisticsCounter
     //      [2*bucket]      count probe positions that produced "bucket" rows on source side,
     //      [2*bucket + 1]  total count of rows that were produces by probe rows in this bucket.
     private final long[] logHistogramCounters = new long[HISTOGRAM_BUCKETS * 2];
+    private long bloomFilterHits;
+    private long bloomFilterMisses;
 
     public JoinStatisticsCounter(JoinType joinType)
     {
@@ -59,9 +61,15 @@ public class JoinStatisticsCounter
         logHistogramCounters[2 * bucket + 1] += numSourcePositions;
     }
 
+    public void recordBloomFilter(long hits, long misses)
+    {
+        bloomFilterHits += hits;
+        bloomFilterMisses += misses;
+    }
+
     @Override
     public JoinOperatorInfo get()
     {
-        return createJoinOperatorInfo(joinType, logHistogramCounters);
+        return createJoinOperatorInfo(joinType, logHistogramCounters, bloomFilterHits, bloomFilterMisses);
     }
 }
@@ -14,18 +14,31 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.operator.LookupJoinOperators.JoinType;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
 import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import static com.facebook.presto.operator.LookupJoinOperators.JoinType.FULL_OUTER;
 import static com.facebook.presto.operator.LookupJoinOperators.JoinType.PROBE_OUTER;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static io.airlift.concurrent.MoreFutures.tryGetFutureValue;
 import static java.util.Objects.requireNonNull;
 
@@ -36,8 +49,14 @@ public class LookupJoinOperator
 
     private final OperatorContext operatorContext;
     private final List<Type> types;
+    private final List<Type> probeTypes;
+    private final LookupSourceFactory lookupSourceFactory;
     private final ListenableFuture<? extends LookupSource> lookupSourceFuture;
     private final JoinProbeFactory joinProbeFactory;
+    private final HashGenerator probeHashGenerator;
+    private final SpillerFactory spillerFactory;
+    private final ProbeInputBarrier probeInputBarrier;
+    private final ListenableFuture<Integer> spillingProbeOperatorsCount;
     private final Runnable onClose;
 
     private final JoinStatisticsCounter statisticsCounter;
@@ -53,26 +72,56 @@ public class LookupJoinOperator
     private boolean finishing;
     private long joinPosition = -1;
     private int joinSourcePositions = 0;
+    // Bloom filter counters of the lookup source when the current probe page was started
+    private long probeStartBloomFilterHits;
+    private long probeStartBloomFilterMisses;
 
     private boolean currentProbePositionProducedRow;
 
+    // build partitions spilled to disk; null until the lookup source is available
+    private Map<Integer, SpilledLookupSourceHandle> spilledPartitions;
+    private LocalPartitionGenerator partitionGenerator;
+    private final Map<Integer, Spiller> probeSpillers = new HashMap<>();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+
+    private boolean probeInputFinished;
+    private int spilledPartitionConsumers;
+    private Iterator<Integer> pendingSpilledPartitions;
+    private SpilledLookupSourceHandle currentSpilledPartition;
+    private ListenableFuture<Supplier<LookupSource>> unspilledLookupSource;
+    private boolean currentSpilledPartitionLoaded;
+    private Iterator<Page> spilledProbePages;
+    private ListenableFuture<?> previousSpilledPartitionDisposed = NOT_BLOCKED;
+    private boolean spilledPartitionsProcessed;
+
     public LookupJoinOperator(
             OperatorContext operatorContext,
             List<Type> types,
+            List<Type> probeTypes,
             JoinType joinType,
+            LookupSourceFactory lookupSourceFactory,
             ListenableFuture<LookupSource> lookupSourceFuture,
             JoinProbeFactory joinProbeFactory,
+            HashGenerator probeHashGenerator,
+            SpillerFactory spillerFactory,
+            ProbeInputBarrier probeInputBarrier,
             Runnable onClose)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+        this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
 
         requireNonNull(joinType, "joinType is null");
         // Cannot use switch case here, because javac will synthesize an inner class and cause IllegalAccessError
         probeOnOuterSide = joinType == PROBE_OUTER || joinType == FULL_OUTER;
 
+        this.lookupSourceFactory = requireNonNull(lookupSourceFactory, "lookupSourceFactory is null");
         this.lookupSourceFuture = requireNonNull(lookupSourceFuture, "lookupSourceFuture is null");
         this.joinProbeFactory = requireNonNull(joinProbeFactory, "joinProbeFactory is null");
+        this.probeHashGenerator = requireNonNull(probeHashGenerator, "probeHashGenerator is null");
+        this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+        this.probeInputBarrier = requireNonNull(probeInputBarrier, "probeInputBarrier is null");
+        this.spillingProbeOperatorsCount = probeInputBarrier.getSpillingPartiesCount();
         this.onClose = requireNonNull(onClose, "onClose is null");
 
         this.statisticsCounter = new JoinStatisticsCounter(joinType);
@@ -102,7 +151,7 @@ public class LookupJoinOperator
     @Override
     public boolean isFinished()
     {
-        boolean finished = finishing && probe == null && pageBuilder.isEmpty();
+        boolean finished = finishing && probe == null && pageBuilder.isEmpty() && spillInProgress.isDone() && (!hasSpilledPartitions() || spilledPartitionsProcessed);
 
         // if finished drop references so memory is freed early
         if (finished) {
@@ -114,6 +163,18 @@ public class LookupJoinOperator
     @Override
     public ListenableFuture<?> isBlocked()
     {
+        if (!spillInProgress.isDone()) {
+            return spillInProgress;
+        }
+        if (finishing && probe == null && probeInputFinished && hasSpilledPartitions() && !spilledPartitionsProcessed) {
+            if (pendingSpilledPartitions == null) {
+                return spillingProbeOperatorsCount;
+            }
+            if (currentSpilledPartition == null) {
+                return previousSpilledPartitionDisposed;
+            }
+            return unspilledLookupSource;
+        }
         return lookupSourceFuture;
     }
 
@@ -126,8 +187,14 @@ public class LookupJoinOperator
 
         if (lookupSource == null) {
             lookupSource = tryGetFutureValue(lookupSourceFuture).orElse(null);
+            if (lookupSource != null) {
+                spilledPartitions = lookupSourceFactory.getSpilledPartitions();
+                if (!spilledPartitions.isEmpty()) {
+                    partitionGenerator = new LocalPartitionGenerator(probeHashGenerator, lookupSourceFactory.getPartitionCount());
+                }
+            }
         }
-        return lookupSource != null && probe == null;
+        return lookupSource != null && probe == null && spillInProgress.isDone();
     }
 
     @Override
@@ -138,13 +205,73 @@ public class LookupJoinOperator
         checkState(lookupSource != null, "Lookup source has not been built yet");
         checkState(probe == null, "Current page has not been completely processed yet");
 
-        // create probe
+        if (hasSpilledPartitions()) {
+            page = spillProbeRowsOfSpilledPartitions(page);
+            if (page.getPositionCount() == 0) {
+                return;
+            }
+        }
+
+        createProbe(page);
+    }
+
+    private void createProbe(Page page)
+    {
         probe = joinProbeFactory.createJoinProbe(lookupSource, page);
+        probeStartBloomFilterHits = lookupSource.getBloomFilterHits();
+        probeStartBloomFilterMisses = lookupSource.getBloomFilterMisses();
 
         // initialize to invalid join position to force output code to advance the cursors
         joinPosition = -1;
     }
 
+    private boolean hasSpilledPartitions()
+    {
+        return spilledPartitions != null && !spilledPartitions.isEmpty();
+    }
+
+    /**
+     * Spills probe rows that belong to spilled build partitions. These rows are joined after all probe input
+     * was consumed, when the spilled build partitions are read back one at a time.
+     *
+     * @return page with rows that can be joined with the in-memory build partitions
+     */
+    private Page spillProbeRowsOfSpilledPartitions(Page page)
+    {
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        // check for exception from previous spill
+        getFutureValue(spillInProgress);
+
+        Map<Integer, IntArrayList> spilledPositions = new HashMap<>();
+        IntArrayList retainedPositions = new IntArrayList(page.getPositionCount());
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            int partition = partitionGenerator.getPartition(position, page);
+            if (spilledPartitions.containsKey(partition)) {
+                spilledPositions.computeIfAbsent(partition, ignored -> new IntArrayList()).add(position);
+            }
+            else {
+                retainedPositions.add(position);
+            }
+        }
+
+        if (spilledPositions.isEmpty()) {
+            return page;
+        }
+
+        List<ListenableFuture<?>> spills = new ArrayList<>();
+        for (Map.Entry<Integer, IntArrayList> entry : spilledPositions.entrySet()) {
+            Spiller spiller = probeSpillers.computeIfAbsent(entry.getKey(), ignored -> spillerFactory.create(
+                    probeTypes,
+                    operatorContext.getSpillContext(),
+                    operatorContext.getSystemMemoryContext().newAggregatedMemoryContext()));
+            Page spilledPage = page.getPositionCount() == entry.getValue().size() ? page : Page.mask(page, entry.getValue().toIntArray());
+            spills.add(spiller.spill(Iterators.singletonIterator(spilledPage)));
+        }
+        spillInProgress = Futures.allAsList(spills);
+
+        return Page.mask(page, retainedPositions.toIntArray());
+    }
+
     @Override
     public Page getOutput()
     {
@@ -152,6 +279,10 @@ public class LookupJoinOperator
             return null;
         }
 
+        if (finishing && probe == null) {
+            processSpilledPartitions();
+        }
+
         // join probe page with the lookup source
         Counter lookupPositionsConsidered = new Counter();
         if (probe != null) {
@@ -177,7 +308,7 @@ public class LookupJoinOperator
         }
 
         // only flush full pages unless we are done
-        if (pageBuilder.isFull() || (finishing && !pageBuilder.isEmpty() && probe == null)) {
+        if (pageBuilder.isFull() || (finishing && !pageBuilder.isEmpty() && probe == null && (!hasSpilledPartitions() || spilledPartitionsProcessed))) {
             Page page = pageBuilder.build();
             pageBuilder.reset();
             return page;
@@ -200,9 +331,110 @@ public class LookupJoinOperator
         if (lookupSource != null) {
             lookupSource.close();
         }
+        if (!probeInputFinished) {
+            probeInputFinished = true;
+            probeInputBarrier.arrive(false);
+        }
+        else if (hasSpilledPartitions() && !spilledPartitionsProcessed) {
+            releaseUnprocessedSpilledPartitions();
+        }
+        probeSpillers.values().forEach(Spiller::close);
+        probeSpillers.clear();
         onClose.run();
     }
 
+    /**
+     * Once all probe input is consumed, joins spilled probe rows with spilled build partitions.
+     * Partitions are read back one at a time, in the same order by all probe operators, and the next
+     * partition is requested only after all probe operators released the previous one.
+     */
+    private void processSpilledPartitions()
+    {
+        if (!probeInputFinished) {
+            if (!spillInProgress.isDone()) {
+                return;
+            }
+            // check for exception from previous spill
+            getFutureValue(spillInProgress);
+            probeInputFinished = true;
+            probeInputBarrier.arrive(hasSpilledPartitions());
+        }
+
+        if (!hasSpilledPartitions() || spilledPartitionsProcessed) {
+            return;
+        }
+
+        if (pendingSpilledPartitions == null) {
+            if (!spillingProbeOperatorsCount.isDone()) {
+                return;
+            }
+            spilledPartitionConsumers = getFutureValue(spillingProbeOperatorsCount);
+            pendingSpilledPartitions = spilledPartitions.keySet().iterator();
+        }
+
+        while (true) {
+            if (currentSpilledPartition == null) {
+                if (!previousSpilledPartitionDisposed.isDone()) {
+                    return;
+                }
+                if (!pendingSpilledPartitions.hasNext()) {
+                    spilledPartitionsProcessed = true;
+                    return;
+                }
+                int partition = pendingSpilledPartitions.next();
+                currentSpilledPartition = spilledPartitions.get(partition);
+                unspilledLookupSource = currentSpilledPartition.unspill(spilledPartitionConsumers);
+
+                Spiller spiller = probeSpillers.get(partition);
+                if (spiller == null) {
+                    spilledProbePages = ImmutableList.<Page>of().iterator();
+                }
+                else {
+                    spilledProbePages = Iterators.concat(spiller.getSpills().iterator());
+                }
+            }
+
+            if (!unspilledLookupSource.isDone()) {
+                return;
+            }
+            if (!currentSpilledPartitionLoaded) {
+                lookupSource.close();
+                lookupSource = getFutureValue(unspilledLookupSource).get();
+                currentSpilledPartitionLoaded = true;
+            }
+            if (spilledProbePages.hasNext()) {
+                createProbe(spilledProbePages.next());
+                return;
+            }
+
+            // all spilled probe rows of this partition were joined
+            currentSpilledPartition.release(spilledPartitionConsumers);
+            previousSpilledPartitionDisposed = currentSpilledPartition.getDisposeRequested();
+            currentSpilledPartition = null;
+            currentSpilledPartitionLoaded = false;
+            unspilledLookupSource = null;
+            spilledProbePages = null;
+        }
+    }
+
+    private void releaseUnprocessedSpilledPartitions()
+    {
+        List<SpilledLookupSourceHandle> unprocessedPartitions = new ArrayList<>();
+        if (currentSpilledPartition != null) {
+            unprocessedPartitions.add(currentSpilledPartition);
+        }
+        if (pendingSpilledPartitions == null) {
+            unprocessedPartitions.addAll(spilledPartitions.values());
+        }
+        else {
+            pendingSpilledPartitions.forEachRemaining(partition -> unprocessedPartitions.add(spilledPartitions.get(partition)));
+        }
+        // other probe operators may be waiting for this operator to release the partitions
+        spillingProbeOperatorsCount.addListener(
+                () -> unprocessedPartitions.forEach(handle -> handle.release(getFutureValue(spillingProbeOperatorsCount))),
+                directExecutor());
+    }
+
     /**
      * Produce rows matching join condition for the current probe position. If this method was called previously
      * for the current probe position, calling this again will produce rows that wasn't been produced in previous
@@ -246,6 +478,9 @@ public class LookupJoinOperator
     {
         if (!probe.advanceNextPosition()) {
             probe = null;
+            statisticsCounter.recordBloomFilter(
+                    lookupSource.getBloomFilterHits() - probeStartBloomFilterHits,
+                    lookupSource.getBloomFilterMisses() - probeStartBloomFilterMisses);
             return false;
         }
 
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.operator.LookupJoinOperators.JoinType;
 import com.facebook.presto.operator.LookupOuterOperator.LookupOuterOperatorFactory;
 import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -43,9 +44,12 @@ public class LookupJoinOperatorFactory
     private final JoinType joinType;
     private final LookupSourceFactory lookupSourceFactory;
     private final JoinProbeFactory joinProbeFactory;
+    private final HashGenerator probeHashGenerator;
+    private final SpillerFactory spillerFactory;
     private final Optional<OperatorFactory> outerOperatorFactory;
     private final ReferenceCount probeReferenceCount;
     private final ReferenceCount lookupSourceFactoryUsersCount;
+    private final ProbeInputBarrier probeInputBarrier;
     private boolean closed;
 
     public LookupJoinOperatorFactory(int operatorId,
@@ -54,7 +58,9 @@ public class LookupJoinOperatorFactory
             List<Type> probeTypes,
             List<Type> probeOutputTypes,
             JoinType joinType,
-            JoinProbeFactory joinProbeFactory)
+            JoinProbeFactory joinProbeFactory,
+            HashGenerator probeHashGenerator,
+            SpillerFactory spillerFactory)
     {
         this.operatorId = operatorId;
         this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -65,9 +71,12 @@ public class LookupJoinOperatorFactory
         this.buildOutputTypes = ImmutableList.copyOf(lookupSourceFactory.getOutputTypes());
         this.joinType = requireNonNull(joinType, "joinType is null");
         this.joinProbeFactory = requireNonNull(joinProbeFactory, "joinProbeFactory is null");
+        this.probeHashGenerator = requireNonNull(probeHashGenerator, "probeHashGenerator is null");
+        this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
 
         probeReferenceCount = new ReferenceCount();
         lookupSourceFactoryUsersCount = new ReferenceCount();
+        probeInputBarrier = new ProbeInputBarrier();
 
         // when all probe and build-outer operators finish, destroy the lookup source (freeing the memory)
         lookupSourceFactoryUsersCount.getFreeFuture().addListener(lookupSourceFactory::destroy, directExecutor());
@@ -103,11 +112,15 @@ public class LookupJoinOperatorFactory
         joinType = other.joinType;
         lookupSourceFactory = other.lookupSourceFactory;
         joinProbeFactory = other.joinProbeFactory;
+        probeHashGenerator = other.probeHashGenerator;
+        spillerFactory = other.spillerFactory;
         probeReferenceCount = other.probeReferenceCount;
         lookupSourceFactoryUsersCount = other.lookupSourceFactoryUsersCount;
+        probeInputBarrier = other.probeInputBarrier;
         outerOperatorFactory = other.outerOperatorFactory;
 
         probeReferenceCount.retain();
+        probeInputBarrier.registerParty();
     }
 
     public int getOperatorId()
@@ -133,12 +146,18 @@ public class LookupJoinOperatorFactory
         lookupSourceFactory.setTaskContext(driverContext.getPipelineContext().getTaskContext());
 
         probeReferenceCount.retain();
+        probeInputBarrier.registerParty();
         return new LookupJoinOperator(
                 operatorContext,
                 getTypes(),
+                probeTypes,
                 joinType,
+                lookupSourceFactory,
                 lookupSourceFactory.createLookupSource(),
                 joinProbeFactory,
+                probeHashGenerator,
+                spillerFactory,
+                probeInputBarrier,
                 probeReferenceCount::release);
     }
 
@@ -150,6 +169,7 @@ public class LookupJoinOperatorFactory
         }
         closed = true;
         probeReferenceCount.release();
+        probeInputBarrier.arrive(false);
     }
 
     @Override
@@ -34,12 +34,39 @@ public interface LookupSource
 
     long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage);
 
+    /**
+     * Looks up a batch of probe rows at once. For every {@code i < positionCount}, stores the join position
+     * of the probe row {@code positions[i]} with hash {@code rawHashes[i]} in {@code joinPositions[i]}.
+     */
+    default void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes, long[] joinPositions)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            joinPositions[i] = getJoinPosition(positions[i], hashChannelsPage, allChannelsPage, rawHashes[i]);
+        }
+    }
+
     long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage);
 
     void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
 
     boolean isJoinPositionEligible(long currentJoinPosition, int probePosition, Page allProbeChannelsPage);
 
+    /**
+     * Number of probe rows that passed the Bloom filter of the build side keys and were looked up in the hash table.
+     */
+    default long getBloomFilterHits()
+    {
+        return 0;
+    }
+
+    /**
+     * Number of probe rows rejected by the Bloom filter of the build side keys without a hash table lookup.
+     */
+    default long getBloomFilterMisses()
+    {
+        return 0;
+    }
+
     @Override
     void close();
 }
@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.planner.Symbol;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
@@ -35,6 +36,20 @@ public interface LookupSourceFactory
 
     Map<Symbol, Integer> getLayout();
 
+    /**
+     * Returns build partitions that were spilled to disk, ordered by partition index.
+     * Can be called only after {@link #createLookupSource()} is done.
+     */
+    default Map<Integer, SpilledLookupSourceHandle> getSpilledPartitions()
+    {
+        return ImmutableMap.of();
+    }
+
+    default int getPartitionCount()
+    {
+        return 1;
+    }
+
     // this is only here for the index lookup source
     default void setTaskContext(TaskContext taskContext) {}
 
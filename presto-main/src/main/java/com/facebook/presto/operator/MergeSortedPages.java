@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.memory.AggregatedMemoryContext;
+import com.facebook.presto.memory.LocalMemoryContext;
+import com.facebook.presto.operator.MergeHashSort.PagePosition;
+import com.facebook.presto.operator.MergeHashSort.SingleChannelPagePositions;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.block.SortOrder;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class performs a streaming k-way merge of page streams, each of which
+ * is sorted on the same channels, e.g. sorted runs read back from a spill.
+ * <p>
+ * Only the current page of every stream and the page being built are kept in memory.
+ */
+public class MergeSortedPages
+        implements Closeable
+{
+    private final AggregatedMemoryContext memoryContext;
+
+    public MergeSortedPages(AggregatedMemoryContext memoryContext)
+    {
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+    }
+
+    public Iterator<Page> merge(List<Type> types, List<Integer> sortChannels, List<SortOrder> sortOrders, List<Iterator<Page>> sortedStreams)
+    {
+        checkArgument(sortChannels.size() == sortOrders.size(), "Must have same number of sort channels as sort orders");
+
+        List<Iterator<PagePosition>> streamPositions = sortedStreams.stream()
+                .map(stream -> new SingleChannelPagePositions(
+                        Iterators.filter(stream, page -> page.getPositionCount() > 0),
+                        memoryContext.newLocalMemoryContext()))
+                .collect(toList());
+
+        Comparator<PagePosition> comparator = new PagePositionComparator(types, sortChannels, sortOrders);
+        return new PageBuildingIterator(types, Iterators.mergeSorted(streamPositions, comparator), memoryContext.newLocalMemoryContext());
+    }
+
+    @Override
+    public void close()
+    {
+        memoryContext.close();
+    }
+
+    private static class PagePositionComparator
+            implements Comparator<PagePosition>
+    {
+        private final List<Type> types;
+        private final List<Integer> sortChannels;
+        private final List<SortOrder> sortOrders;
+
+        public PagePositionComparator(List<Type> types, List<Integer> sortChannels, List<SortOrder> sortOrders)
+        {
+            this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+            this.sortChannels = ImmutableList.copyOf(requireNonNull(sortChannels, "sortChannels is null"));
+            this.sortOrders = ImmutableList.copyOf(requireNonNull(sortOrders, "sortOrders is null"));
+        }
+
+        @Override
+        public int compare(PagePosition left, PagePosition right)
+        {
+            for (int i = 0; i < sortChannels.size(); i++) {
+                int channel = sortChannels.get(i);
+                int compare = sortOrders.get(i).compareBlockValue(
+                        types.get(channel),
+                        left.getPage().getBlock(channel),
+                        left.getPosition(),
+                        right.getPage().getBlock(channel),
+                        right.getPosition());
+                if (compare != 0) {
+                    return compare;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private static class PageBuildingIterator
+            extends AbstractIterator<Page>
+    {
+        private final List<Type> types;
+        private final Iterator<PagePosition> pagePositions;
+        private final PageBuilder pageBuilder;
+        private final LocalMemoryContext memoryContext;
+
+        public PageBuildingIterator(List<Type> types, Iterator<PagePosition> pagePositions, LocalMemoryContext memoryContext)
+        {
+            this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+            this.pagePositions = requireNonNull(pagePositions, "pagePositions is null");
+            this.pageBuilder = new PageBuilder(types);
+            this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            if (!pagePositions.hasNext()) {
+                memoryContext.setBytes(0);
+                return endOfData();
+            }
+
+            pageBuilder.reset();
+            while (!pageBuilder.isFull() && pagePositions.hasNext()) {
+                PagePosition pagePosition = pagePositions.next();
+                pageBuilder.declarePosition();
+                for (int channel = 0; channel < types.size(); channel++) {
+                    Type type = types.get(channel);
+                    type.appendTo(pagePosition.getPage().getBlock(channel), pagePosition.getPosition(), pageBuilder.getBlockBuilder(channel));
+                }
+            }
+            memoryContext.setBytes(pageBuilder.getRetainedSizeInBytes());
+            return pageBuilder.build();
+        }
+    }
+}
@@ -15,15 +15,24 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.block.SortOrder;
 import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
 
 public class OrderByOperator
@@ -42,6 +51,9 @@ public class OrderByOperator
         private final List<Type> types;
         private boolean closed;
         private final PagesIndex.Factory pagesIndexFactory;
+        private final boolean spillEnabled;
+        private final DataSize memoryLimitBeforeSpill;
+        private final SpillerFactory spillerFactory;
 
         public OrderByOperatorFactory(
                 int operatorId,
@@ -52,6 +64,34 @@ public class OrderByOperator
                 List<Integer> sortChannels,
                 List<SortOrder> sortOrder,
                 PagesIndex.Factory pagesIndexFactory)
+        {
+            this(operatorId,
+                    planNodeId,
+                    sourceTypes,
+                    outputChannels,
+                    expectedPositions,
+                    sortChannels,
+                    sortOrder,
+                    pagesIndexFactory,
+                    false,
+                    new DataSize(0, MEGABYTE),
+                    (types, spillContext, memoryContext) -> {
+                        throw new UnsupportedOperationException();
+                    });
+        }
+
+        public OrderByOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> outputChannels,
+                int expectedPositions,
+                List<Integer> sortChannels,
+                List<SortOrder> sortOrder,
+                PagesIndex.Factory pagesIndexFactory,
+                boolean spillEnabled,
+                DataSize memoryLimitBeforeSpill,
+                SpillerFactory spillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -63,6 +103,9 @@ public class OrderByOperator
 
             this.types = toTypes(sourceTypes, outputChannels);
             this.pagesIndexFactory = requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
+            this.spillEnabled = spillEnabled;
+            this.memoryLimitBeforeSpill = requireNonNull(memoryLimitBeforeSpill, "memoryLimitBeforeSpill is null");
+            this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
         }
 
         @Override
@@ -84,7 +127,10 @@ public class OrderByOperator
                     expectedPositions,
                     sortChannels,
                     sortOrder,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    spillEnabled,
+                    memoryLimitBeforeSpill,
+                    spillerFactory);
         }
 
         @Override
@@ -96,7 +142,18 @@ public class OrderByOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new OrderByOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, expectedPositions, sortChannels, sortOrder, pagesIndexFactory);
+            return new OrderByOperatorFactory(
+                    operatorId,
+                    planNodeId,
+                    sourceTypes,
+                    outputChannels,
+                    expectedPositions,
+                    sortChannels,
+                    sortOrder,
+                    pagesIndexFactory,
+                    spillEnabled,
+                    memoryLimitBeforeSpill,
+                    spillerFactory);
         }
     }
 
@@ -108,6 +165,7 @@ public class OrderByOperator
     }
 
     private final OperatorContext operatorContext;
+    private final List<Type> sourceTypes;
     private final List<Integer> sortChannels;
     private final List<SortOrder> sortOrder;
     private final int[] outputChannels;
@@ -118,6 +176,15 @@ public class OrderByOperator
     private final PageBuilder pageBuilder;
     private int currentPosition;
 
+    private final boolean spillEnabled;
+    private final long memoryLimitBeforeSpill;
+    private final SpillerFactory spillerFactory;
+
+    private Optional<Spiller> spiller = Optional.empty();
+    private Optional<ListenableFuture<?>> spillInProgress = Optional.empty();
+    private Optional<MergeSortedPages> mergeSortedPages = Optional.empty();
+    private Optional<Iterator<Page>> sortedPages = Optional.empty();
+
     private State state = State.NEEDS_INPUT;
 
     public OrderByOperator(
@@ -128,10 +195,37 @@ public class OrderByOperator
             List<Integer> sortChannels,
             List<SortOrder> sortOrder,
             PagesIndex.Factory pagesIndexFactory)
+    {
+        this(operatorContext,
+                sourceTypes,
+                outputChannels,
+                expectedPositions,
+                sortChannels,
+                sortOrder,
+                pagesIndexFactory,
+                false,
+                new DataSize(0, MEGABYTE),
+                (types, spillContext, memoryContext) -> {
+                    throw new UnsupportedOperationException();
+                });
+    }
+
+    public OrderByOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            List<Integer> outputChannels,
+            int expectedPositions,
+            List<Integer> sortChannels,
+            List<SortOrder> sortOrder,
+            PagesIndex.Factory pagesIndexFactory,
+            boolean spillEnabled,
+            DataSize memoryLimitBeforeSpill,
+            SpillerFactory spillerFactory)
     {
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
 
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.sourceTypes = ImmutableList.copyOf(requireNonNull(sourceTypes, "sourceTypes is null"));
         this.outputChannels = Ints.toArray(requireNonNull(outputChannels, "outputChannels is null"));
         this.types = toTypes(sourceTypes, outputChannels);
         this.sortChannels = ImmutableList.copyOf(requireNonNull(sortChannels, "sortChannels is null"));
@@ -140,6 +234,10 @@ public class OrderByOperator
         this.pageIndex = pagesIndexFactory.newPagesIndex(sourceTypes, expectedPositions);
 
         this.pageBuilder = new PageBuilder(this.types);
+
+        this.spillEnabled = spillEnabled;
+        this.memoryLimitBeforeSpill = requireNonNull(memoryLimitBeforeSpill, "memoryLimitBeforeSpill is null").toBytes();
+        this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
     }
 
     @Override
@@ -157,12 +255,30 @@ public class OrderByOperator
     @Override
     public void finish()
     {
-        if (state == State.NEEDS_INPUT) {
+        if (state != State.NEEDS_INPUT || !isSpillDone()) {
+            // called again by the driver once the spill in progress completes
+            return;
+        }
+
+        if (!spiller.isPresent()) {
             state = State.HAS_OUTPUT;
 
             // sort the index
             pageIndex.sort(sortChannels, sortOrder);
+            return;
         }
+
+        finishPreviousSpill();
+        state = State.HAS_OUTPUT;
+
+        // merge the spilled runs with the sorted rows still in memory
+        pageIndex.sort(sortChannels, sortOrder);
+        List<Iterator<Page>> sortedRuns = ImmutableList.<Iterator<Page>>builder()
+                .addAll(spiller.get().getSpills())
+                .add(pageIndex.getSortedPages())
+                .build();
+        mergeSortedPages = Optional.of(new MergeSortedPages(operatorContext.getSystemMemoryContext().newAggregatedMemoryContext()));
+        sortedPages = Optional.of(mergeSortedPages.get().merge(sourceTypes, sortChannels, sortOrder, sortedRuns));
     }
 
     @Override
@@ -171,20 +287,34 @@ public class OrderByOperator
         return state == State.FINISHED;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress.orElse(NOT_BLOCKED);
+    }
+
     @Override
     public boolean needsInput()
     {
-        return state == State.NEEDS_INPUT;
+        return state == State.NEEDS_INPUT && isSpillDone();
     }
 
     @Override
     public void addInput(Page page)
     {
         checkState(state == State.NEEDS_INPUT, "Operator is already finishing");
+        checkState(isSpillDone(), "Spill is still in progress");
         requireNonNull(page, "page is null");
 
+        finishPreviousSpill();
+
         pageIndex.addPage(page);
 
+        if (spillEnabled && memoryLimitBeforeSpill > 0 && pageIndex.getEstimatedSize().toBytes() > memoryLimitBeforeSpill) {
+            spillSortedRun();
+            return;
+        }
+
         if (!operatorContext.trySetMemoryReservation(pageIndex.getEstimatedSize().toBytes())) {
             pageIndex.compact();
         }
@@ -192,6 +322,40 @@ public class OrderByOperator
         operatorContext.setMemoryReservation(pageIndex.getEstimatedSize().toBytes());
     }
 
+    private void spillSortedRun()
+    {
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(spillerFactory.create(
+                    sourceTypes,
+                    operatorContext.getSpillContext(),
+                    operatorContext.getSystemMemoryContext().newAggregatedMemoryContext()));
+        }
+
+        // every spill call produces a separate stream, so each run is sorted on its own
+        pageIndex.sort(sortChannels, sortOrder);
+        // index stays reserved until the spill completes, since its pages are read by the spilling thread
+        operatorContext.setMemoryReservation(pageIndex.getEstimatedSize().toBytes());
+        spillInProgress = Optional.of(spiller.get().spill(pageIndex.getSortedPages()));
+    }
+
+    private boolean isSpillDone()
+    {
+        return !spillInProgress.isPresent() || spillInProgress.get().isDone();
+    }
+
+    private void finishPreviousSpill()
+    {
+        if (!spillInProgress.isPresent()) {
+            return;
+        }
+
+        // check for exception from previous spill
+        getFutureValue(spillInProgress.get());
+        spillInProgress = Optional.empty();
+        pageIndex.clear();
+        operatorContext.setMemoryReservation(pageIndex.getEstimatedSize().toBytes());
+    }
+
     @Override
     public Page getOutput()
     {
@@ -199,6 +363,10 @@ public class OrderByOperator
             return null;
         }
 
+        if (sortedPages.isPresent()) {
+            return getMergedOutput();
+        }
+
         if (currentPosition >= pageIndex.getPositionCount()) {
             state = State.FINISHED;
             return null;
@@ -218,6 +386,30 @@ public class OrderByOperator
         return page;
     }
 
+    private Page getMergedOutput()
+    {
+        if (!sortedPages.get().hasNext()) {
+            state = State.FINISHED;
+            return null;
+        }
+
+        Page page = sortedPages.get().next();
+        Block[] blocks = new Block[outputChannels.length];
+        for (int i = 0; i < outputChannels.length; i++) {
+            blocks[i] = page.getBlock(outputChannels[i]);
+        }
+        return new Page(page.getPositionCount(), blocks);
+    }
+
+    @Override
+    public void close()
+    {
+        pageIndex.clear();
+        operatorContext.setMemoryReservation(0);
+        mergeSortedPages.ifPresent(MergeSortedPages::close);
+        spiller.ifPresent(Spiller::close);
+    }
+
     private static List<Type> toTypes(List<? extends Type> sourceTypes, List<Integer> outputChannels)
     {
         ImmutableList.Builder<Type> types = ImmutableList.builder();
@@ -75,6 +75,12 @@ public final class OuterLookupSource
         return lookupSource.getJoinPosition(position, hashChannelsPage, allChannelsPage);
     }
 
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes, long[] joinPositions)
+    {
+        lookupSource.getJoinPositions(positions, positionCount, hashChannelsPage, allChannelsPage, rawHashes, joinPositions);
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
@@ -87,6 +93,18 @@ public final class OuterLookupSource
         return lookupSource.isJoinPositionEligible(currentJoinPosition, probePosition, allProbeChannelsPage);
     }
 
+    @Override
+    public long getBloomFilterHits()
+    {
+        return lookupSource.getBloomFilterHits();
+    }
+
+    @Override
+    public long getBloomFilterMisses()
+    {
+        return lookupSource.getBloomFilterMisses();
+    }
+
     @Override
     public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
     {
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.buffer.PagesSerde;
+import com.facebook.presto.util.Mergeable;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Codecs chosen for the pages an output operator serialized, and the size and time of the compression.
+ */
+public class PageCompressionInfo
+        implements Mergeable<PageCompressionInfo>, OperatorInfo
+{
+    private final long uncompressedPages;
+    private final long lz4Pages;
+    private final long deflatePages;
+    private final long uncompressedSizeInBytes;
+    private final long serializedSizeInBytes;
+    private final long compressionCpuNanos;
+
+    public static PageCompressionInfo fromPagesSerde(PagesSerde serde)
+    {
+        return new PageCompressionInfo(
+                serde.getUncompressedPages(),
+                serde.getLz4Pages(),
+                serde.getDeflatePages(),
+                serde.getUncompressedSizeInBytes(),
+                serde.getSerializedSizeInBytes(),
+                serde.getCompressionCpuNanos());
+    }
+
+    @JsonCreator
+    public PageCompressionInfo(
+            @JsonProperty("uncompressedPages") long uncompressedPages,
+            @JsonProperty("lz4Pages") long lz4Pages,
+            @JsonProperty("deflatePages") long deflatePages,
+            @JsonProperty("uncompressedSizeInBytes") long uncompressedSizeInBytes,
+            @JsonProperty("serializedSizeInBytes") long serializedSizeInBytes,
+            @JsonProperty("compressionCpuNanos") long compressionCpuNanos)
+    {
+        this.uncompressedPages = uncompressedPages;
+        this.lz4Pages = lz4Pages;
+        this.deflatePages = deflatePages;
+        this.uncompressedSizeInBytes = uncompressedSizeInBytes;
+        this.serializedSizeInBytes = serializedSizeInBytes;
+        this.compressionCpuNanos = compressionCpuNanos;
+    }
+
+    @JsonProperty
+    public long getUncompressedPages()
+    {
+        return uncompressedPages;
+    }
+
+    @JsonProperty
+    public long getLz4Pages()
+    {
+        return lz4Pages;
+    }
+
+    @JsonProperty
+    public long getDeflatePages()
+    {
+        return deflatePages;
+    }
+
+    @JsonProperty
+    public long getUncompressedSizeInBytes()
+    {
+        return uncompressedSizeInBytes;
+    }
+
+    @JsonProperty
+    public long getSerializedSizeInBytes()
+    {
+        return serializedSizeInBytes;
+    }
+
+    @JsonProperty
+    public long getCompressionCpuNanos()
+    {
+        return compressionCpuNanos;
+    }
+
+    @Override
+    public PageCompressionInfo mergeWith(PageCompressionInfo other)
+    {
+        return new PageCompressionInfo(
+                uncompressedPages + other.uncompressedPages,
+                lz4Pages + other.lz4Pages,
+                deflatePages + other.deflatePages,
+                uncompressedSizeInBytes + other.uncompressedSizeInBytes,
+                serializedSizeInBytes + other.serializedSizeInBytes,
+                compressionCpuNanos + other.compressionCpuNanos);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("uncompressedPages", uncompressedPages)
+                .add("lz4Pages", lz4Pages)
+                .add("deflatePages", deflatePages)
+                .add("uncompressedSizeInBytes", uncompressedSizeInBytes)
+                .add("serializedSizeInBytes", serializedSizeInBytes)
+                .add("compressionCpuNanos", compressionCpuNanos)
+                .toString();
+    }
+}
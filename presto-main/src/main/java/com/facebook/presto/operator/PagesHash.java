@@ -20,6 +20,8 @@ import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.openjdk.jol.info.ClassLayout;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
 
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
@@ -32,6 +34,7 @@ import static java.util.Objects.requireNonNull;
 
 // This implementation assumes arrays used in the hash are always a power of 2
 public final class PagesHash
+        implements JoinHashTable
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(PagesHash.class).instanceSize();
     private static final DataSize CACHE_SIZE = new DataSize(128, KILOBYTE);
@@ -47,6 +50,9 @@ public final class PagesHash
     // to accessing values in blocks. We use bytes to reduce memory foot print
     // and there is no performance gain from storing full hashes
     private final byte[] positionToHashes;
+    // checked before the hash table, so that keys missing on the build side can skip the bucket walk
+    @Nullable
+    private final BlockedBloomFilter bloomFilter;
     private final long hashCollisions;
     private final double expectedHashCollisions;
 
@@ -54,6 +60,15 @@ public final class PagesHash
             LongArrayList addresses,
             PagesHashStrategy pagesHashStrategy,
             PositionLinks.FactoryBuilder positionLinks)
+    {
+        this(addresses, pagesHashStrategy, positionLinks, false);
+    }
+
+    public PagesHash(
+            LongArrayList addresses,
+            PagesHashStrategy pagesHashStrategy,
+            PositionLinks.FactoryBuilder positionLinks,
+            boolean bloomFilterEnabled)
     {
         this.addresses = requireNonNull(addresses, "addresses is null");
         this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
@@ -67,6 +82,7 @@ public final class PagesHash
         Arrays.fill(key, -1);
 
         positionToHashes = new byte[addresses.size()];
+        bloomFilter = bloomFilterEnabled ? new BlockedBloomFilter(addresses.size()) : null;
 
         // We will process addresses in batches, to save memory on array of hashes.
         int positionsInStep = Math.min(addresses.size() + 1, (int) CACHE_SIZE.toBytes() / Integer.SIZE);
@@ -96,6 +112,9 @@ public final class PagesHash
                 }
 
                 long hash = positionToFullHashes[position];
+                if (bloomFilter != null) {
+                    bloomFilter.add(hash);
+                }
                 int pos = getHashPosition(hash, mask);
 
                 // look for an empty slot or a slot containing this key
@@ -119,41 +138,66 @@ public final class PagesHash
         }
 
         size = sizeOf(addresses.elements()) + pagesHashStrategy.getSizeInBytes() +
-                sizeOf(key) + sizeOf(positionToHashes);
+                sizeOf(key) + sizeOf(positionToHashes) + (bloomFilter == null ? 0 : bloomFilter.getSizeInBytes());
         hashCollisions = hashCollisionsLocal;
         expectedHashCollisions = estimateNumberOfHashCollisions(addresses.size(), hashSize);
     }
 
+    @Override
     public final int getChannelCount()
     {
         return channelCount;
     }
 
+    @Override
     public int getPositionCount()
     {
         return addresses.size();
     }
 
+    @Override
     public long getInMemorySizeInBytes()
     {
         return INSTANCE_SIZE + size;
     }
 
+    @Override
     public long getHashCollisions()
     {
         return hashCollisions;
     }
 
+    @Override
     public double getExpectedHashCollisions()
     {
         return expectedHashCollisions;
     }
 
+    @Override
+    public boolean hasBloomFilter()
+    {
+        return bloomFilter != null;
+    }
+
+    @Override
+    public boolean mightContain(long rawHash)
+    {
+        return bloomFilter == null || bloomFilter.mightContain(rawHash);
+    }
+
+    @Override
+    public long hashRow(int position, Page hashChannelsPage)
+    {
+        return pagesHashStrategy.hashRow(position, hashChannelsPage);
+    }
+
+    @Override
     public int getAddressIndex(int position, Page hashChannelsPage)
     {
         return getAddressIndex(position, hashChannelsPage, pagesHashStrategy.hashRow(position, hashChannelsPage));
     }
 
+    @Override
     public int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash)
     {
         int pos = getHashPosition(rawHash, mask);
@@ -168,6 +212,37 @@ public final class PagesHash
         return -1;
     }
 
+    /**
+     * The hash table is probed in separate passes over the batch: first the buckets of all rows are computed,
+     * then the first slot of every bucket is loaded, and only then the slots are compared with the probe rows.
+     * The loads of a pass do not depend on each other, so the cache misses on a large hash table overlap
+     * instead of being paid one row at a time.
+     */
+    @Override
+    public void getAddressIndexes(int[] positions, int positionCount, Page hashChannelsPage, long[] rawHashes, int[] addressIndexes)
+    {
+        int[] hashPositions = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            hashPositions[i] = getHashPosition(rawHashes[i], mask);
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            addressIndexes[i] = key[hashPositions[i]];
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            int pos = hashPositions[i];
+            int candidate = addressIndexes[i];
+            while (candidate != -1 && !positionEqualsCurrentRowIgnoreNulls(candidate, (byte) rawHashes[i], positions[i], hashChannelsPage)) {
+                // increment position and mask to handler wrap around
+                pos = (pos + 1) & mask;
+                candidate = key[pos];
+            }
+            addressIndexes[i] = candidate;
+        }
+    }
+
+    @Override
     public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
     {
         long pageAddress = addresses.getLong(toIntExact(position));
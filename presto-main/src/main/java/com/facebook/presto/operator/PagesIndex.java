@@ -18,6 +18,7 @@ import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.DictionaryBlock;
 import com.facebook.presto.spi.block.SortOrder;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.gen.JoinCompiler;
@@ -25,6 +26,7 @@ import com.facebook.presto.sql.gen.JoinCompiler.LookupSourceSupplierFactory;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import com.facebook.presto.sql.gen.OrderingCompiler;
 import com.facebook.presto.sql.planner.SortExpressionExtractor.SortExpression;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
@@ -36,6 +38,7 @@ import org.openjdk.jol.info.ClassLayout;
 
 import javax.inject.Inject;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -57,6 +60,7 @@ import static java.util.Objects.requireNonNull;
  * <li>Sort via the {@link #sort} method</li>
  * <li>Hash build via the {@link #createLookupSourceSupplier} method</li>
  * <li>Positional output via the {@link #appendTo} method</li>
+ * <li>Spilling of the indexed pages via the {@link #getPages} and {@link #getSortedPages} methods</li>
  * </ul>
  */
 public class PagesIndex
@@ -178,6 +182,11 @@ public class PagesIndex
         int pageIndex = (channels.length > 0) ? channels[0].size() : 0;
         for (int i = 0; i < channels.length; i++) {
             Block block = page.getBlock(i);
+            if (block instanceof DictionaryBlock) {
+                // a dictionary block can reference a few positions of a much larger block, such
+                // as a partition of a local exchange page, so keep only the referenced positions
+                block = ((DictionaryBlock) block).compact();
+            }
             channels[i].add(block);
             pagesMemorySize += block.getRetainedSizeInBytes();
         }
@@ -214,6 +223,57 @@ public class PagesIndex
         estimatedSize = calculateEstimatedSize();
     }
 
+    /**
+     * Returns the pages added to this index, in insertion order. Positions are not sorted.
+     */
+    public Iterator<Page> getPages()
+    {
+        return new AbstractIterator<Page>()
+        {
+            private int pageCounter;
+
+            @Override
+            protected Page computeNext()
+            {
+                if (channels.length == 0 || pageCounter == channels[0].size()) {
+                    return endOfData();
+                }
+
+                Block[] blocks = new Block[channels.length];
+                for (int channel = 0; channel < channels.length; channel++) {
+                    blocks[channel] = channels[channel].get(pageCounter);
+                }
+                pageCounter++;
+                return new Page(blocks);
+            }
+        };
+    }
+
+    /**
+     * Returns the indexed rows in the order of the value addresses, e.g. after a {@link #sort}.
+     */
+    public Iterator<Page> getSortedPages()
+    {
+        int[] outputChannels = IntStream.range(0, types.size()).toArray();
+        PageBuilder pageBuilder = new PageBuilder(types);
+        return new AbstractIterator<Page>()
+        {
+            private int currentPosition;
+
+            @Override
+            protected Page computeNext()
+            {
+                if (currentPosition >= positionCount) {
+                    return endOfData();
+                }
+
+                pageBuilder.reset();
+                currentPosition = buildPage(currentPosition, outputChannels, pageBuilder);
+                return pageBuilder.build();
+            }
+        };
+    }
+
     private long calculateEstimatedSize()
     {
         long elementsSize = (channels.length > 0) ? sizeOf(channels[0].elements()) : 0;
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.operator.aggregation.AccumulatorFactory;
+import com.facebook.presto.operator.aggregation.GroupedAccumulator;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Produces the output of a partial aggregation without grouping: every input row becomes a group
+ * of its own, and its intermediate aggregation state is computed from that row alone.
+ */
+class PartialAggregationPassThrough
+{
+    private final List<AccumulatorFactory> accumulatorFactories;
+    private final List<Integer> groupByChannels;
+    private final Optional<Integer> hashChannel;
+
+    public PartialAggregationPassThrough(List<AccumulatorFactory> accumulatorFactories, List<Integer> groupByChannels, Optional<Integer> hashChannel)
+    {
+        this.accumulatorFactories = ImmutableList.copyOf(requireNonNull(accumulatorFactories, "accumulatorFactories is null"));
+        this.groupByChannels = ImmutableList.copyOf(requireNonNull(groupByChannels, "groupByChannels is null"));
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+    }
+
+    public Page process(Page page)
+    {
+        int positionCount = page.getPositionCount();
+        Block[] blocks = new Block[groupByChannels.size() + (hashChannel.isPresent() ? 1 : 0) + accumulatorFactories.size()];
+
+        int outputChannel = 0;
+        for (int groupByChannel : groupByChannels) {
+            blocks[outputChannel++] = page.getBlock(groupByChannel);
+        }
+        if (hashChannel.isPresent()) {
+            blocks[outputChannel++] = page.getBlock(hashChannel.get());
+        }
+
+        BlockBuilder groupIdsBuilder = BIGINT.createBlockBuilder(new BlockBuilderStatus(), positionCount);
+        for (int position = 0; position < positionCount; position++) {
+            BIGINT.writeLong(groupIdsBuilder, position);
+        }
+        GroupByIdBlock groupIds = new GroupByIdBlock(positionCount, groupIdsBuilder.build());
+
+        for (AccumulatorFactory accumulatorFactory : accumulatorFactories) {
+            GroupedAccumulator accumulator = accumulatorFactory.createGroupedAccumulator();
+            accumulator.addInput(groupIds, page);
+            BlockBuilder output = accumulator.getIntermediateType().createBlockBuilder(new BlockBuilderStatus(), positionCount);
+            for (int groupId = 0; groupId < positionCount; groupId++) {
+                accumulator.evaluateIntermediate(groupId, output);
+            }
+            blocks[outputChannel++] = output.build();
+        }
+
+        return new Page(positionCount, blocks);
+    }
+}
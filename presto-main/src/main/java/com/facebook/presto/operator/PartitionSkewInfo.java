@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.util.Mergeable;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Rows sent to each partition of a partitioned output, and the partitioning keys that were sampled
+ * more often than an even distribution of the rows between the partitions would allow.
+ */
+public class PartitionSkewInfo
+        implements Mergeable<PartitionSkewInfo>
+{
+    static final int MAX_HOT_KEYS = 10;
+
+    private final List<Long> partitionRowCounts;
+    private final long sampledRows;
+    private final List<HotKey> hotKeys;
+
+    public static PartitionSkewInfo empty()
+    {
+        return new PartitionSkewInfo(ImmutableList.of(), 0, ImmutableList.of());
+    }
+
+    @JsonCreator
+    public PartitionSkewInfo(
+            @JsonProperty("partitionRowCounts") List<Long> partitionRowCounts,
+            @JsonProperty("sampledRows") long sampledRows,
+            @JsonProperty("hotKeys") List<HotKey> hotKeys)
+    {
+        this.partitionRowCounts = ImmutableList.copyOf(requireNonNull(partitionRowCounts, "partitionRowCounts is null"));
+        this.sampledRows = sampledRows;
+        this.hotKeys = ImmutableList.copyOf(requireNonNull(hotKeys, "hotKeys is null"));
+    }
+
+    @JsonProperty
+    public List<Long> getPartitionRowCounts()
+    {
+        return partitionRowCounts;
+    }
+
+    @JsonProperty
+    public long getSampledRows()
+    {
+        return sampledRows;
+    }
+
+    @JsonProperty
+    public List<HotKey> getHotKeys()
+    {
+        return hotKeys;
+    }
+
+    /**
+     * Rows of the largest partition divided by the average rows per partition. An even distribution has a skew of 1.
+     */
+    public double getSkew()
+    {
+        long total = 0;
+        long max = 0;
+        for (long rows : partitionRowCounts) {
+            total += rows;
+            max = Math.max(max, rows);
+        }
+        if (total == 0) {
+            return 1;
+        }
+        return max * partitionRowCounts.size() / (double) total;
+    }
+
+    @Override
+    public PartitionSkewInfo mergeWith(PartitionSkewInfo other)
+    {
+        List<Long> rowCounts = new ArrayList<>(partitionRowCounts);
+        for (int partition = 0; partition < other.partitionRowCounts.size(); partition++) {
+            if (partition < rowCounts.size()) {
+                rowCounts.set(partition, rowCounts.get(partition) + other.partitionRowCounts.get(partition));
+            }
+            else {
+                rowCounts.add(other.partitionRowCounts.get(partition));
+            }
+        }
+
+        Map<Long, HotKey> keys = new LinkedHashMap<>();
+        for (HotKey hotKey : hotKeys) {
+            keys.put(hotKey.getKeyHash(), hotKey);
+        }
+        for (HotKey hotKey : other.hotKeys) {
+            keys.merge(hotKey.getKeyHash(), hotKey, HotKey::mergeWith);
+        }
+        List<HotKey> mergedHotKeys = keys.values().stream()
+                .sorted(Comparator.comparingLong(HotKey::getSampledRows).reversed())
+                .limit(MAX_HOT_KEYS)
+                .collect(toImmutableList());
+
+        return new PartitionSkewInfo(rowCounts, sampledRows + other.sampledRows, mergedHotKeys);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("partitionRowCounts", partitionRowCounts)
+                .add("sampledRows", sampledRows)
+                .add("hotKeys", hotKeys)
+                .toString();
+    }
+
+    public static class HotKey
+            implements Mergeable<HotKey>
+    {
+        private final long keyHash;
+        private final int partition;
+        private final long sampledRows;
+
+        @JsonCreator
+        public HotKey(
+                @JsonProperty("keyHash") long keyHash,
+                @JsonProperty("partition") int partition,
+                @JsonProperty("sampledRows") long sampledRows)
+        {
+            this.keyHash = keyHash;
+            this.partition = partition;
+            this.sampledRows = sampledRows;
+        }
+
+        @JsonProperty
+        public long getKeyHash()
+        {
+            return keyHash;
+        }
+
+        @JsonProperty
+        public int getPartition()
+        {
+            return partition;
+        }
+
+        /**
+         * Lower bound of the number of sampled rows with this key.
+         */
+        @JsonProperty
+        public long getSampledRows()
+        {
+            return sampledRows;
+        }
+
+        @Override
+        public HotKey mergeWith(HotKey other)
+        {
+            return new HotKey(keyHash, partition, sampledRows + other.sampledRows);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("keyHash", keyHash)
+                    .add("partition", partition)
+                    .add("sampledRows", sampledRows)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.operator.PartitionSkewInfo.HotKey;
+import com.facebook.presto.operator.scalar.CombineHashFunction;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.type.TypeUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Longs;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Counts the rows sent to each partition and finds the heavy hitters among a sample of the partitioning keys.
+ * Keys are counted with the Misra-Gries summary: when a key that is not tracked is sampled and the summary
+ * is full, the counts of all the tracked keys are decremented instead. A key sampled more than
+ * {@code sampledRows / (capacity + 1)} times is always tracked, and its count underestimates its
+ * frequency by at most that bound.
+ */
+@ThreadSafe
+class PartitionSkewTracker
+{
+    // partition of the rows that are sent to every partition
+    public static final int REPLICATED = -1;
+
+    // keys are not reported before this many rows were sampled, as the counts are mostly noise until then
+    private static final long MIN_SAMPLED_ROWS = 1000;
+
+    private final List<Type> keyTypes;
+    private final List<Integer> keyChannels;
+    private final int sampleInterval;
+    private final int capacity;
+    private final int partitionFanout;
+
+    @GuardedBy("this")
+    private final long[] partitionRowCounts;
+    @GuardedBy("this")
+    private final Long2LongOpenHashMap keyCounts;
+    @GuardedBy("this")
+    private final Long2IntOpenHashMap keyPartitions;
+    @GuardedBy("this")
+    private int nextSamplePosition;
+    @GuardedBy("this")
+    private long sampledRows;
+
+    public PartitionSkewTracker(int partitionCount, List<Type> keyTypes, List<Integer> keyChannels, int sampleInterval, int capacity)
+    {
+        this(partitionCount, keyTypes, keyChannels, sampleInterval, capacity, 1);
+    }
+
+    /**
+     * @param keyTypes types of the channels of the partitioning keys
+     * @param keyChannels channels of the partitioning keys that identify a key, i.e. excluding constants
+     * @param partitionFanout number of consecutive partitions, starting from its partition, that each row is sent to
+     */
+    public PartitionSkewTracker(int partitionCount, List<Type> keyTypes, List<Integer> keyChannels, int sampleInterval, int capacity, int partitionFanout)
+    {
+        checkArgument(partitionCount > 0, "partitionCount must be positive");
+        checkArgument(sampleInterval > 0, "sampleInterval must be positive");
+        checkArgument(capacity > 0, "capacity must be positive");
+        checkArgument(partitionFanout > 0 && partitionFanout <= partitionCount, "partitionFanout must be between one and partitionCount");
+        this.partitionRowCounts = new long[partitionCount];
+        this.keyTypes = ImmutableList.copyOf(requireNonNull(keyTypes, "keyTypes is null"));
+        this.keyChannels = ImmutableList.copyOf(requireNonNull(keyChannels, "keyChannels is null"));
+        this.sampleInterval = sampleInterval;
+        this.capacity = capacity;
+        this.partitionFanout = partitionFanout;
+        this.keyCounts = new Long2LongOpenHashMap(capacity);
+        this.keyPartitions = new Long2IntOpenHashMap(capacity);
+    }
+
+    /**
+     * Records the partition of the first {@code positionCount} rows of a page, and samples their keys.
+     *
+     * @param keys the partitioning keys of the page
+     * @param partitions the partition of each row, or {@link #REPLICATED}
+     */
+    public synchronized void recordPage(Page keys, int[] partitions, int positionCount)
+    {
+        for (int position = 0; position < positionCount; position++) {
+            int partition = partitions[position];
+            if (partition == REPLICATED) {
+                for (int i = 0; i < partitionRowCounts.length; i++) {
+                    partitionRowCounts[i]++;
+                }
+            }
+            else {
+                for (int i = 0; i < partitionFanout; i++) {
+                    partitionRowCounts[(partition + i) % partitionRowCounts.length]++;
+                }
+            }
+        }
+
+        // sample one row out of every sampleInterval, continuing the interval across pages
+        int position = nextSamplePosition;
+        for (; position < positionCount; position += sampleInterval) {
+            if (partitions[position] != REPLICATED) {
+                sampleKey(hashKey(keys, position), partitions[position]);
+            }
+        }
+        nextSamplePosition = position - positionCount;
+    }
+
+    public synchronized PartitionSkewInfo getInfo()
+    {
+        return new PartitionSkewInfo(Longs.asList(partitionRowCounts.clone()), sampledRows, getHotKeys());
+    }
+
+    /**
+     * Returns the hashes of the keys that are currently hot, as computed by {@link #hashKey}.
+     */
+    public synchronized LongSet getHotKeyHashes()
+    {
+        LongSet hotKeyHashes = new LongOpenHashSet();
+        for (HotKey hotKey : getHotKeys()) {
+            hotKeyHashes.add(hotKey.getKeyHash());
+        }
+        return hotKeyHashes;
+    }
+
+    public long hashKey(Page keys, int position)
+    {
+        long hash = 0;
+        for (int i = 0; i < keyChannels.size(); i++) {
+            hash = CombineHashFunction.getHash(hash, TypeUtils.hashPosition(keyTypes.get(i), keys.getBlock(keyChannels.get(i)), position));
+        }
+        return hash;
+    }
+
+    @GuardedBy("this")
+    private void sampleKey(long keyHash, int partition)
+    {
+        sampledRows++;
+        if (keyCounts.containsKey(keyHash)) {
+            keyCounts.addTo(keyHash, 1);
+            return;
+        }
+        if (keyCounts.size() < capacity) {
+            keyCounts.put(keyHash, 1);
+            keyPartitions.put(keyHash, partition);
+            return;
+        }
+
+        ObjectIterator<Long2LongMap.Entry> iterator = keyCounts.long2LongEntrySet().iterator();
+        while (iterator.hasNext()) {
+            Long2LongMap.Entry entry = iterator.next();
+            if (entry.getLongValue() == 1) {
+                keyPartitions.remove(entry.getLongKey());
+                iterator.remove();
+            }
+            else {
+                entry.setValue(entry.getLongValue() - 1);
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private List<HotKey> getHotKeys()
+    {
+        if (sampledRows < MIN_SAMPLED_ROWS || partitionRowCounts.length == 1) {
+            return ImmutableList.of();
+        }
+
+        // a key is hot when its rows alone exceed the share of rows of a partition with an even distribution
+        long threshold = sampledRows / partitionRowCounts.length;
+        return keyCounts.long2LongEntrySet().stream()
+                .filter(entry -> entry.getLongValue() > threshold)
+                .sorted(Comparator.comparingLong(Long2LongMap.Entry::getLongValue).reversed())
+                .limit(PartitionSkewInfo.MAX_HOT_KEYS)
+                .map(entry -> new HotKey(entry.getLongKey(), keyPartitions.get(entry.getLongKey()), entry.getLongValue()))
+                .collect(toImmutableList());
+    }
+}
@@ -134,6 +134,62 @@ public class PartitionedLookupSource
         return encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
     }
 
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes, long[] joinPositions)
+    {
+        if (lookupSources.length == 1) {
+            lookupSources[0].getJoinPositions(positions, positionCount, hashChannelsPage, allChannelsPage, rawHashes, joinPositions);
+            for (int i = 0; i < positionCount; i++) {
+                if (joinPositions[i] >= 0) {
+                    joinPositions[i] = encodePartitionedJoinPosition(0, toIntExact(joinPositions[i]));
+                }
+            }
+            return;
+        }
+
+        // split the batch by partition, so that every partition is probed with a batch of its own
+        int[] partitions = new int[positionCount];
+        int[] partitionSizes = new int[lookupSources.length];
+        for (int i = 0; i < positionCount; i++) {
+            partitions[i] = partitionGenerator.getPartition(rawHashes[i]);
+            partitionSizes[partitions[i]]++;
+        }
+
+        int[][] partitionPositions = new int[lookupSources.length][];
+        long[][] partitionHashes = new long[lookupSources.length][];
+        int[][] batchIndexes = new int[lookupSources.length][];
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            if (partitionSizes[partition] > 0) {
+                partitionPositions[partition] = new int[partitionSizes[partition]];
+                partitionHashes[partition] = new long[partitionSizes[partition]];
+                batchIndexes[partition] = new int[partitionSizes[partition]];
+            }
+        }
+
+        // the sizes are reused as the number of positions assigned to each partition so far
+        Arrays.fill(partitionSizes, 0);
+        for (int i = 0; i < positionCount; i++) {
+            int partition = partitions[i];
+            int index = partitionSizes[partition]++;
+            partitionPositions[partition][index] = positions[i];
+            partitionHashes[partition][index] = rawHashes[i];
+            batchIndexes[partition][index] = i;
+        }
+
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            int partitionSize = partitionSizes[partition];
+            if (partitionSize == 0) {
+                continue;
+            }
+            long[] partitionJoinPositions = new long[partitionSize];
+            lookupSources[partition].getJoinPositions(partitionPositions[partition], partitionSize, hashChannelsPage, allChannelsPage, partitionHashes[partition], partitionJoinPositions);
+            for (int i = 0; i < partitionSize; i++) {
+                long joinPosition = partitionJoinPositions[i];
+                joinPositions[batchIndexes[partition][i]] = joinPosition < 0 ? joinPosition : encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
+            }
+        }
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
@@ -156,6 +212,18 @@ public class PartitionedLookupSource
         return lookupSource.isJoinPositionEligible(joinPosition, probePosition, allProbeChannelsPage);
     }
 
+    @Override
+    public long getBloomFilterHits()
+    {
+        return Arrays.stream(lookupSources).mapToLong(LookupSource::getBloomFilterHits).sum();
+    }
+
+    @Override
+    public long getBloomFilterMisses()
+    {
+        return Arrays.stream(lookupSources).mapToLong(LookupSource::getBloomFilterMisses).sum();
+    }
+
     @Override
     public void appendTo(long partitionedJoinPosition, PageBuilder pageBuilder, int outputChannelOffset)
     {
@@ -13,10 +13,13 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.planner.Symbol;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
@@ -24,6 +27,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -55,6 +59,9 @@ public final class PartitionedLookupSourceFactory
     @GuardedBy("this")
     private final List<SettableFuture<LookupSource>> lookupSourceFutures = new ArrayList<>();
 
+    @GuardedBy("this")
+    private final Map<Integer, SpilledLookupSourceHandle> spilledPartitions = new HashMap<>();
+
     public PartitionedLookupSourceFactory(List<Type> types, List<Type> outputTypes, List<Integer> hashChannels, int partitionCount, Map<Symbol, Integer> layout, boolean outer)
     {
         this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
@@ -138,6 +145,40 @@ public final class PartitionedLookupSourceFactory
         }
     }
 
+    /**
+     * Marks the partition as spilled. Until the partition is read back through the handle, it is probed
+     * as an empty lookup source, so probe operators must divert rows of spilled partitions themselves.
+     */
+    public void setPartitionSpilledLookupSourceHandle(int partitionIndex, SpilledLookupSourceHandle spilledLookupSourceHandle)
+    {
+        requireNonNull(spilledLookupSourceHandle, "spilledLookupSourceHandle is null");
+        checkState(!outer, "Spilling is not supported when the build side is the outer side of the join");
+
+        synchronized (this) {
+            if (destroyed.isDone()) {
+                return;
+            }
+            checkState(!spilledPartitions.containsKey(partitionIndex), "Partition already spilled");
+            spilledPartitions.put(partitionIndex, spilledLookupSourceHandle);
+        }
+
+        int channelCount = outputTypes.size();
+        setPartitionLookupSourceSupplier(partitionIndex, () -> new SpilledLookupSource(channelCount));
+    }
+
+    @Override
+    public synchronized Map<Integer, SpilledLookupSourceHandle> getSpilledPartitions()
+    {
+        checkState(lookupSourceSupplier != null, "lookup source not ready yet");
+        return ImmutableSortedMap.copyOf(spilledPartitions);
+    }
+
+    @Override
+    public int getPartitionCount()
+    {
+        return partitions.length;
+    }
+
     @Override
     public OuterPositionIterator getOuterPositionIterator()
     {
@@ -159,4 +200,68 @@ public final class PartitionedLookupSourceFactory
     {
         return nonCancellationPropagating(destroyed);
     }
+
+    private static class SpilledLookupSource
+            implements LookupSource
+    {
+        private final int channelCount;
+
+        public SpilledLookupSource(int channelCount)
+        {
+            this.channelCount = channelCount;
+        }
+
+        @Override
+        public int getChannelCount()
+        {
+            return channelCount;
+        }
+
+        @Override
+        public long getInMemorySizeInBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getJoinPositionCount()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage, long rawHash)
+        {
+            return -1;
+        }
+
+        @Override
+        public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage)
+        {
+            return -1;
+        }
+
+        @Override
+        public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+        {
+            return -1;
+        }
+
+        @Override
+        public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isJoinPositionEligible(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
 }
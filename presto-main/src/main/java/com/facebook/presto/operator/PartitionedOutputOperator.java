@@ -24,6 +24,8 @@ import com.facebook.presto.spi.block.PageBuilderStatus;
 import com.facebook.presto.spi.block.RunLengthEncodedBlock;
 import com.facebook.presto.spi.predicate.NullableValue;
 import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.sql.planner.SkewMitigation;
+import com.facebook.presto.sql.planner.SkewMitigation.Strategy;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.util.Mergeable;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -32,6 +34,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -42,6 +47,8 @@ import java.util.function.Function;
 
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
 import static com.facebook.presto.spi.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.facebook.presto.sql.planner.SkewMitigation.Strategy.REPLICATE;
+import static com.facebook.presto.sql.planner.SkewMitigation.Strategy.SALT_HOT_KEYS;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
@@ -59,6 +66,7 @@ public class PartitionedOutputOperator
         private final OutputBuffer outputBuffer;
         private final boolean replicatesAnyRow;
         private final OptionalInt nullChannel;
+        private final Optional<SkewMitigation> skewMitigation;
         private final DataSize maxMemory;
 
         public PartitionedOutputFactory(
@@ -67,6 +75,7 @@ public class PartitionedOutputOperator
                 List<Optional<NullableValue>> partitionConstants,
                 boolean replicatesAnyRow,
                 OptionalInt nullChannel,
+                Optional<SkewMitigation> skewMitigation,
                 OutputBuffer outputBuffer,
                 DataSize maxMemory)
         {
@@ -75,6 +84,7 @@ public class PartitionedOutputOperator
             this.partitionConstants = requireNonNull(partitionConstants, "partitionConstants is null");
             this.replicatesAnyRow = replicatesAnyRow;
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null");
+            this.skewMitigation = requireNonNull(skewMitigation, "skewMitigation is null");
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
         }
@@ -97,6 +107,7 @@ public class PartitionedOutputOperator
                     partitionConstants,
                     replicatesAnyRow,
                     nullChannel,
+                    skewMitigation,
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -115,6 +126,7 @@ public class PartitionedOutputOperator
         private final List<Optional<NullableValue>> partitionConstants;
         private final boolean replicatesAnyRow;
         private final OptionalInt nullChannel;
+        private final Optional<SkewMitigation> skewMitigation;
         private final OutputBuffer outputBuffer;
         private final PagesSerdeFactory serdeFactory;
         private final DataSize maxMemory;
@@ -129,6 +141,7 @@ public class PartitionedOutputOperator
                 List<Optional<NullableValue>> partitionConstants,
                 boolean replicatesAnyRow,
                 OptionalInt nullChannel,
+                Optional<SkewMitigation> skewMitigation,
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
                 DataSize maxMemory)
@@ -142,6 +155,7 @@ public class PartitionedOutputOperator
             this.partitionConstants = requireNonNull(partitionConstants, "partitionConstants is null");
             this.replicatesAnyRow = replicatesAnyRow;
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null");
+            this.skewMitigation = requireNonNull(skewMitigation, "skewMitigation is null");
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.serdeFactory = requireNonNull(serdeFactory, "serdeFactory is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
@@ -166,6 +180,7 @@ public class PartitionedOutputOperator
                     partitionConstants,
                     replicatesAnyRow,
                     nullChannel,
+                    skewMitigation,
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -189,6 +204,7 @@ public class PartitionedOutputOperator
                     partitionConstants,
                     replicatesAnyRow,
                     nullChannel,
+                    skewMitigation,
                     outputBuffer,
                     serdeFactory,
                     maxMemory);
@@ -210,6 +226,7 @@ public class PartitionedOutputOperator
             List<Optional<NullableValue>> partitionConstants,
             boolean replicatesAnyRow,
             OptionalInt nullChannel,
+            Optional<SkewMitigation> skewMitigation,
             OutputBuffer outputBuffer,
             PagesSerdeFactory serdeFactory,
             DataSize maxMemory)
@@ -222,6 +239,7 @@ public class PartitionedOutputOperator
                 partitionConstants,
                 replicatesAnyRow,
                 nullChannel,
+                skewMitigation,
                 outputBuffer,
                 serdeFactory,
                 sourceTypes,
@@ -303,6 +321,11 @@ public class PartitionedOutputOperator
 
     private static class PagePartitioner
     {
+        private static final int SKEW_SAMPLE_INTERVAL = 16;
+        private static final int SKEW_SKETCH_CAPACITY = 64;
+        // the hot keys only change as rows are sampled, so they are not looked up again for every page
+        private static final int HOT_KEY_REFRESH_INTERVAL = 8;
+
         private final OutputBuffer outputBuffer;
         private final List<Type> sourceTypes;
         private final PartitionFunction partitionFunction;
@@ -310,10 +333,22 @@ public class PartitionedOutputOperator
         private final List<Optional<Block>> partitionConstants;
         private final PagesSerde serde;
         private final List<PageBuilder> pageBuilders;
+        // rows of pages with dictionary or run length encoded blocks, which are sent without flattening the encodings
+        private final List<EncodingPreservingPageBuilder> encodedPageBuilders;
+        private final IntArrayList[] partitionPositions;
         private final boolean replicatesAnyRow;
         private final OptionalInt nullChannel; // when present, send the position to every partition if this channel is null.
+        // the rows of hot keys are sent in turn to one of this many consecutive partitions, starting from the partition of the key
+        private final int saltFanout;
+        // every row is sent to this many consecutive partitions, starting from the partition of its key
+        private final int replicationFanout;
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
+        private final PartitionSkewTracker skewTracker;
+        private int[] rowPartitions = new int[0];
+        private LongSet cachedHotKeys = LongSets.EMPTY_SET;
+        private int pagesUntilHotKeyRefresh;
+        private int nextSalt;
         private boolean hasAnyRowBeenReplicated;
 
         public PagePartitioner(
@@ -322,6 +357,7 @@ public class PartitionedOutputOperator
                 List<Optional<NullableValue>> partitionConstants,
                 boolean replicatesAnyRow,
                 OptionalInt nullChannel,
+                Optional<SkewMitigation> skewMitigation,
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
                 List<Type> sourceTypes,
@@ -334,6 +370,9 @@ public class PartitionedOutputOperator
                     .collect(toImmutableList());
             this.replicatesAnyRow = replicatesAnyRow;
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null");
+            requireNonNull(skewMitigation, "skewMitigation is null");
+            this.saltFanout = getFanout(skewMitigation, SALT_HOT_KEYS, partitionFunction.getPartitionCount());
+            this.replicationFanout = getFanout(skewMitigation, REPLICATE, partitionFunction.getPartitionCount());
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.sourceTypes = requireNonNull(sourceTypes, "sourceTypes is null");
             this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
@@ -346,6 +385,32 @@ public class PartitionedOutputOperator
                 pageBuilders.add(PageBuilder.withMaxPageSize(pageSize, sourceTypes));
             }
             this.pageBuilders = pageBuilders.build();
+
+            ImmutableList.Builder<EncodingPreservingPageBuilder> encodedPageBuilders = ImmutableList.builder();
+            this.partitionPositions = new IntArrayList[partitionFunction.getPartitionCount()];
+            for (int i = 0; i < partitionFunction.getPartitionCount(); i++) {
+                encodedPageBuilders.add(new EncodingPreservingPageBuilder(sourceTypes, pageSize));
+                partitionPositions[i] = new IntArrayList();
+            }
+            this.encodedPageBuilders = encodedPageBuilders.build();
+
+            ImmutableList.Builder<Type> keyTypes = ImmutableList.builder();
+            ImmutableList.Builder<Integer> keyChannels = ImmutableList.builder();
+            for (int i = 0; i < partitionChannels.size(); i++) {
+                if (!this.partitionConstants.get(i).isPresent()) {
+                    keyTypes.add(sourceTypes.get(partitionChannels.get(i)));
+                    keyChannels.add(i);
+                }
+            }
+            this.skewTracker = new PartitionSkewTracker(partitionFunction.getPartitionCount(), keyTypes.build(), keyChannels.build(), SKEW_SAMPLE_INTERVAL, SKEW_SKETCH_CAPACITY, replicationFanout);
+        }
+
+        private static int getFanout(Optional<SkewMitigation> skewMitigation, Strategy strategy, int partitionCount)
+        {
+            return skewMitigation
+                    .filter(mitigation -> mitigation.getStrategy() == strategy)
+                    .map(mitigation -> Math.min(mitigation.getFanout(), partitionCount))
+                    .orElse(1);
         }
 
         // Does not include size of SharedBuffer
@@ -353,19 +418,28 @@ public class PartitionedOutputOperator
         {
             return pageBuilders.stream()
                     .mapToLong(PageBuilder::getRetainedSizeInBytes)
-                    .sum();
+                    .sum() +
+                    encodedPageBuilders.stream()
+                            .mapToLong(EncodingPreservingPageBuilder::getRetainedSizeInBytes)
+                            .sum();
         }
 
         public PartitionedOutputInfo getInfo()
         {
-            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get());
+            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), PageCompressionInfo.fromPagesSerde(serde), skewTracker.getInfo());
         }
 
         public ListenableFuture<?> partitionPage(Page page)
         {
             requireNonNull(page, "page is null");
 
+            if (EncodingPreservingPageBuilder.hasEncodedBlocks(page)) {
+                return partitionEncodedPage(page);
+            }
+
             Page partitionFunctionArgs = getPartitionFunctionArguments(page);
+            int[] partitions = getRowPartitions(page.getPositionCount());
+            LongSet hotKeys = getHotKeys();
             for (int position = 0; position < page.getPositionCount(); position++) {
                 boolean shouldReplicate = (replicatesAnyRow && !hasAnyRowBeenReplicated) ||
                         nullChannel.isPresent() && page.getBlock(nullChannel.getAsInt()).isNull(position);
@@ -374,17 +448,88 @@ public class PartitionedOutputOperator
                         appendRow(pageBuilder, page, position);
                     }
                     hasAnyRowBeenReplicated = true;
+                    partitions[position] = PartitionSkewTracker.REPLICATED;
                 }
                 else {
-                    int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
+                    int partition = getPartition(partitionFunctionArgs, position, hotKeys);
+                    for (int i = 0; i < replicationFanout; i++) {
+                        PageBuilder pageBuilder = pageBuilders.get((partition + i) % pageBuilders.size());
+                        appendRow(pageBuilder, page, position);
+                    }
+                    partitions[position] = partition;
+                }
+            }
+            skewTracker.recordPage(partitionFunctionArgs, partitions, page.getPositionCount());
+            return flush(false);
+        }
 
-                    PageBuilder pageBuilder = pageBuilders.get(partition);
-                    appendRow(pageBuilder, page, position);
+        private ListenableFuture<?> partitionEncodedPage(Page page)
+        {
+            Page partitionFunctionArgs = getPartitionFunctionArguments(page);
+            int[] partitions = getRowPartitions(page.getPositionCount());
+            LongSet hotKeys = getHotKeys();
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                boolean shouldReplicate = (replicatesAnyRow && !hasAnyRowBeenReplicated) ||
+                        nullChannel.isPresent() && page.getBlock(nullChannel.getAsInt()).isNull(position);
+                if (shouldReplicate) {
+                    for (IntArrayList positions : partitionPositions) {
+                        positions.add(position);
+                    }
+                    hasAnyRowBeenReplicated = true;
+                    partitions[position] = PartitionSkewTracker.REPLICATED;
                 }
+                else {
+                    int partition = getPartition(partitionFunctionArgs, position, hotKeys);
+                    for (int i = 0; i < replicationFanout; i++) {
+                        partitionPositions[(partition + i) % partitionPositions.length].add(position);
+                    }
+                    partitions[position] = partition;
+                }
+            }
+            skewTracker.recordPage(partitionFunctionArgs, partitions, page.getPositionCount());
+
+            // the size of a dictionary block only accounts for the dictionary entries it references
+            double sizeInBytesPerPosition = page.getSizeInBytes() / (double) page.getPositionCount();
+            for (int partition = 0; partition < partitionPositions.length; partition++) {
+                IntArrayList positions = partitionPositions[partition];
+                encodedPageBuilders.get(partition).append(page, positions, (long) (positions.size() * sizeInBytesPerPosition));
+                positions.clear();
             }
             return flush(false);
         }
 
+        private LongSet getHotKeys()
+        {
+            if (saltFanout == 1) {
+                return LongSets.EMPTY_SET;
+            }
+            if (pagesUntilHotKeyRefresh == 0) {
+                cachedHotKeys = skewTracker.getHotKeyHashes();
+                pagesUntilHotKeyRefresh = HOT_KEY_REFRESH_INTERVAL;
+            }
+            pagesUntilHotKeyRefresh--;
+            return cachedHotKeys;
+        }
+
+        private int getPartition(Page partitionFunctionArgs, int position, LongSet hotKeys)
+        {
+            int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
+            if (!hotKeys.isEmpty() && hotKeys.contains(skewTracker.hashKey(partitionFunctionArgs, position))) {
+                // the build side replicates the rows of every key to all the partitions the key is salted over
+                partition = (partition + nextSalt) % partitionFunction.getPartitionCount();
+                nextSalt = (nextSalt + 1) % saltFanout;
+            }
+            return partition;
+        }
+
+        private int[] getRowPartitions(int positionCount)
+        {
+            if (rowPartitions.length < positionCount) {
+                rowPartitions = new int[positionCount];
+            }
+            return rowPartitions;
+        }
+
         private Page getPartitionFunctionArguments(Page page)
         {
             Block[] blocks = new Block[partitionChannels.size()];
@@ -417,16 +562,14 @@ public class PartitionedOutputOperator
             for (int partition = 0; partition < pageBuilders.size(); partition++) {
                 PageBuilder partitionPageBuilder = pageBuilders.get(partition);
                 if (!partitionPageBuilder.isEmpty() && (force || partitionPageBuilder.isFull())) {
-                    Page pagePartition = partitionPageBuilder.build();
+                    blockedFutures.add(enqueuePage(partition, partitionPageBuilder.build()));
                     partitionPageBuilder.reset();
+                }
 
-                    List<SerializedPage> serializedPages = splitPage(pagePartition, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream()
-                            .map(serde::serialize)
-                            .collect(toImmutableList());
-
-                    blockedFutures.add(outputBuffer.enqueue(partition, serializedPages));
-                    pagesAdded.incrementAndGet();
-                    rowsAdded.addAndGet(pagePartition.getPositionCount());
+                EncodingPreservingPageBuilder encodedPageBuilder = encodedPageBuilders.get(partition);
+                if (!encodedPageBuilder.isEmpty() && (force || encodedPageBuilder.isFull())) {
+                    blockedFutures.add(enqueuePage(partition, encodedPageBuilder.build()));
+                    encodedPageBuilder.reset();
                 }
             }
             ListenableFuture<?> future = Futures.allAsList(blockedFutures);
@@ -435,6 +578,17 @@ public class PartitionedOutputOperator
             }
             return future;
         }
+
+        private ListenableFuture<?> enqueuePage(int partition, Page pagePartition)
+        {
+            List<SerializedPage> serializedPages = splitPage(pagePartition, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream()
+                    .map(serde::serialize)
+                    .collect(toImmutableList());
+
+            pagesAdded.incrementAndGet();
+            rowsAdded.addAndGet(pagePartition.getPositionCount());
+            return outputBuffer.enqueue(partition, serializedPages);
+        }
     }
 
     public static class PartitionedOutputInfo
@@ -442,14 +596,25 @@ public class PartitionedOutputOperator
     {
         private final long rowsAdded;
         private final long pagesAdded;
+        private final PageCompressionInfo compressionInfo;
+        private final PartitionSkewInfo skewInfo;
+
+        public PartitionedOutputInfo(long rowsAdded, long pagesAdded)
+        {
+            this(rowsAdded, pagesAdded, new PageCompressionInfo(0, 0, 0, 0, 0, 0), PartitionSkewInfo.empty());
+        }
 
         @JsonCreator
         public PartitionedOutputInfo(
                 @JsonProperty("rowsAdded") long rowsAdded,
-                @JsonProperty("pagesAdded") long pagesAdded)
+                @JsonProperty("pagesAdded") long pagesAdded,
+                @JsonProperty("compressionInfo") PageCompressionInfo compressionInfo,
+                @JsonProperty("skewInfo") PartitionSkewInfo skewInfo)
         {
             this.rowsAdded = rowsAdded;
             this.pagesAdded = pagesAdded;
+            this.compressionInfo = requireNonNull(compressionInfo, "compressionInfo is null");
+            this.skewInfo = requireNonNull(skewInfo, "skewInfo is null");
         }
 
         @JsonProperty
@@ -464,10 +629,26 @@ public class PartitionedOutputOperator
             return pagesAdded;
         }
 
+        @JsonProperty
+        public PageCompressionInfo getCompressionInfo()
+        {
+            return compressionInfo;
+        }
+
+        @JsonProperty
+        public PartitionSkewInfo getSkewInfo()
+        {
+            return skewInfo;
+        }
+
         @Override
         public PartitionedOutputInfo mergeWith(PartitionedOutputInfo other)
         {
-            return new PartitionedOutputInfo(rowsAdded + other.rowsAdded, pagesAdded + other.pagesAdded);
+            return new PartitionedOutputInfo(
+                    rowsAdded + other.rowsAdded,
+                    pagesAdded + other.pagesAdded,
+                    compressionInfo.mergeWith(other.compressionInfo),
+                    skewInfo.mergeWith(other.skewInfo));
         }
 
         @Override
@@ -476,6 +657,8 @@ public class PartitionedOutputOperator
             return toStringHelper(this)
                     .add("rowsAdded", rowsAdded)
                     .add("pagesAdded", pagesAdded)
+                    .add("compressionInfo", compressionInfo)
+                    .add("skewInfo", skewInfo)
                     .toString();
         }
     }
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.util.concurrent.Futures.transform;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+/**
+ * Barrier shared by all probe operators of a single join. Spilled build partitions can be read back
+ * only after every probe operator consumed its input, because until then probe rows may still be
+ * spilled for them. Operators that have spilled probe rows become consumers of the spilled partitions.
+ * <p>
+ * This class needs to be public because LookupJoinOperator is isolated.
+ */
+@ThreadSafe
+public final class ProbeInputBarrier
+{
+    // the initial reference is owned by the operator factory
+    private final ReferenceCount pendingParties = new ReferenceCount();
+    private final AtomicInteger spillingParties = new AtomicInteger();
+
+    public void registerParty()
+    {
+        pendingParties.retain();
+    }
+
+    public void arrive(boolean hasSpilledProbe)
+    {
+        if (hasSpilledProbe) {
+            spillingParties.incrementAndGet();
+        }
+        pendingParties.release();
+    }
+
+    /**
+     * Completes with the number of parties that arrived with spilled probe rows, once all parties arrived.
+     */
+    public ListenableFuture<Integer> getSpillingPartiesCount()
+    {
+        return transform(pendingParties.getFreeFuture(), ignored -> spillingParties.get(), directExecutor());
+    }
+}
@@ -24,6 +24,7 @@ import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.spi.RecordPageSource;
 import com.facebook.presto.spi.UpdatablePageSource;
+import com.facebook.presto.spi.predicate.TupleDomain;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.split.EmptySplit;
 import com.facebook.presto.split.EmptySplitPageSource;
@@ -43,6 +44,8 @@ import java.util.function.Supplier;
 
 import static com.facebook.presto.operator.project.PageProcessorOutput.EMPTY_PAGE_PROCESSOR_OUTPUT;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static io.airlift.concurrent.MoreFutures.toListenableFuture;
 import static java.util.Objects.requireNonNull;
 
@@ -59,6 +62,7 @@ public class ScanFilterAndProjectOperator
     private final PageBuilder pageBuilder;
     private final CursorProcessor cursorProcessor;
     private final PageProcessor pageProcessor;
+    private final ListenableFuture<TupleDomain<ColumnHandle>> dynamicFilter;
     private final LocalMemoryContext pageSourceMemoryContext;
     private final LocalMemoryContext pageBuilderMemoryContext;
     private final SettableFuture<?> blocked = SettableFuture.create();
@@ -81,10 +85,12 @@ public class ScanFilterAndProjectOperator
             CursorProcessor cursorProcessor,
             PageProcessor pageProcessor,
             Iterable<ColumnHandle> columns,
-            Iterable<Type> types)
+            Iterable<Type> types,
+            ListenableFuture<TupleDomain<ColumnHandle>> dynamicFilter)
     {
         this.cursorProcessor = requireNonNull(cursorProcessor, "cursorProcessor is null");
         this.pageProcessor = requireNonNull(pageProcessor, "pageProcessor is null");
+        this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.planNodeId = requireNonNull(sourceId, "sourceId is null");
         this.pageSourceProvider = requireNonNull(pageSourceProvider, "pageSourceProvider is null");
@@ -189,6 +195,9 @@ public class ScanFilterAndProjectOperator
         if (!blocked.isDone()) {
             return blocked;
         }
+        if (split != null && !finishing && pageSource == null && cursor == null && !dynamicFilter.isDone()) {
+            return dynamicFilter;
+        }
         if (pageSource != null) {
             CompletableFuture<?> pageSourceBlocked = pageSource.isBlocked();
             return pageSourceBlocked.isDone() ? NOT_BLOCKED : toListenableFuture(pageSourceBlocked);
@@ -216,7 +225,18 @@ public class ScanFilterAndProjectOperator
         }
 
         if (!finishing && pageSource == null && cursor == null) {
-            ConnectorPageSource source = pageSourceProvider.createPageSource(operatorContext.getSession(), split, columns);
+            if (!dynamicFilter.isDone()) {
+                return null;
+            }
+            TupleDomain<ColumnHandle> filter = getFutureValue(dynamicFilter);
+            ConnectorPageSource source;
+            if (filter.isNone()) {
+                // no row of the split could pass the filter
+                source = new EmptySplitPageSource();
+            }
+            else {
+                source = pageSourceProvider.createPageSource(operatorContext.getSession(), split, columns, filter);
+            }
             if (source instanceof RecordPageSource) {
                 cursor = ((RecordPageSource) source).getCursor();
             }
@@ -299,6 +319,7 @@ public class ScanFilterAndProjectOperator
         private final PageSourceProvider pageSourceProvider;
         private final List<ColumnHandle> columns;
         private final List<Type> types;
+        private final ListenableFuture<TupleDomain<ColumnHandle>> dynamicFilter;
         private boolean closed;
 
         public ScanFilterAndProjectOperatorFactory(
@@ -310,6 +331,24 @@ public class ScanFilterAndProjectOperator
                 Supplier<PageProcessor> pageProcessor,
                 Iterable<ColumnHandle> columns,
                 List<Type> types)
+        {
+            this(operatorId, planNodeId, sourceId, pageSourceProvider, cursorProcessor, pageProcessor, columns, types, immediateFuture(TupleDomain.all()));
+        }
+
+        /**
+         * @param dynamicFilter completes with a filter on the scanned columns, which is computed during query execution;
+         * splits are read only after it completes
+         */
+        public ScanFilterAndProjectOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                PlanNodeId sourceId,
+                PageSourceProvider pageSourceProvider,
+                Supplier<CursorProcessor> cursorProcessor,
+                Supplier<PageProcessor> pageProcessor,
+                Iterable<ColumnHandle> columns,
+                List<Type> types,
+                ListenableFuture<TupleDomain<ColumnHandle>> dynamicFilter)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -319,6 +358,7 @@ public class ScanFilterAndProjectOperator
             this.pageSourceProvider = requireNonNull(pageSourceProvider, "pageSourceProvider is null");
             this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
             this.types = requireNonNull(types, "types is null");
+            this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
         }
 
         @Override
@@ -345,7 +385,8 @@ public class ScanFilterAndProjectOperator
                     cursorProcessor.get(),
                     pageProcessor.get(),
                     columns,
-                    types);
+                    types,
+                    dynamicFilter);
         }
 
         @Override
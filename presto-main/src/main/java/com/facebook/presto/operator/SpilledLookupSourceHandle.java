@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Coordinates a single spilled build partition between the {@link HashBuilderOperator} that
+ * owns the spilled data and the {@link LookupJoinOperator}s that consume it.
+ * <p>
+ * The build operator waits for {@link #getUnspillingRequested()}, reads the partition back,
+ * publishes it with {@link #setLookupSource(Supplier)} and keeps it in memory until
+ * {@link #getDisposeRequested()} completes, which happens once every consumer called {@link #release(int)}.
+ * <p>
+ * This class needs to be public because LookupJoinOperator is isolated.
+ */
+@ThreadSafe
+public final class SpilledLookupSourceHandle
+{
+    private final SettableFuture<?> unspillingRequested = SettableFuture.create();
+    private final SettableFuture<Supplier<LookupSource>> unspilledLookupSource = SettableFuture.create();
+    private final SettableFuture<?> disposeRequested = SettableFuture.create();
+
+    @GuardedBy("this")
+    private int pendingConsumers = -1;
+
+    /**
+     * Requests the partition to be read back into memory. All consumers must pass the same {@code consumersCount}.
+     */
+    public synchronized ListenableFuture<Supplier<LookupSource>> unspill(int consumersCount)
+    {
+        initializeConsumers(consumersCount);
+        checkState(pendingConsumers > 0, "Spilled lookup source already released by all consumers");
+        unspillingRequested.set(null);
+        return nonCancellationPropagating(unspilledLookupSource);
+    }
+
+    /**
+     * Releases the partition on behalf of a single consumer. All consumers must pass the same {@code consumersCount}.
+     */
+    public synchronized void release(int consumersCount)
+    {
+        initializeConsumers(consumersCount);
+        checkState(pendingConsumers > 0, "Spilled lookup source already released by all consumers");
+        pendingConsumers--;
+        if (pendingConsumers == 0) {
+            disposeRequested.set(null);
+        }
+    }
+
+    public ListenableFuture<?> getUnspillingRequested()
+    {
+        return nonCancellationPropagating(unspillingRequested);
+    }
+
+    public void setLookupSource(Supplier<LookupSource> lookupSource)
+    {
+        requireNonNull(lookupSource, "lookupSource is null");
+        checkState(unspillingRequested.isDone(), "Unspilling was not requested");
+        checkState(unspilledLookupSource.set(lookupSource), "Lookup source already set");
+    }
+
+    public ListenableFuture<?> getDisposeRequested()
+    {
+        return nonCancellationPropagating(disposeRequested);
+    }
+
+    @GuardedBy("this")
+    private void initializeConsumers(int consumersCount)
+    {
+        checkArgument(consumersCount > 0, "consumersCount must be positive");
+        if (pendingConsumers < 0) {
+            pendingConsumers = consumersCount;
+        }
+    }
+}
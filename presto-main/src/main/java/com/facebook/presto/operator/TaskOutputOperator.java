@@ -108,6 +108,7 @@ public class TaskOutputOperator
         this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
         this.pagePreprocessor = requireNonNull(pagePreprocessor, "pagePreprocessor is null");
         this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
+        operatorContext.setInfoSupplier(() -> PageCompressionInfo.fromPagesSerde(serde));
     }
 
     @Override
@@ -20,13 +20,18 @@ import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.block.SortOrder;
 import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
@@ -39,6 +44,8 @@ import static com.google.common.base.Preconditions.checkPositionIndex;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.concat;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Collections.nCopies;
 import static java.util.Objects.requireNonNull;
 
@@ -62,6 +69,9 @@ public class WindowOperator
         private final List<Type> types;
         private boolean closed;
         private final PagesIndex.Factory pagesIndexFactory;
+        private final boolean spillEnabled;
+        private final DataSize memoryLimitBeforeSpill;
+        private final SpillerFactory spillerFactory;
 
         public WindowOperatorFactory(
                 int operatorId,
@@ -76,6 +86,42 @@ public class WindowOperator
                 int preSortedChannelPrefix,
                 int expectedPositions,
                 PagesIndex.Factory pagesIndexFactory)
+        {
+            this(operatorId,
+                    planNodeId,
+                    sourceTypes,
+                    outputChannels,
+                    windowFunctionDefinitions,
+                    partitionChannels,
+                    preGroupedChannels,
+                    sortChannels,
+                    sortOrder,
+                    preSortedChannelPrefix,
+                    expectedPositions,
+                    pagesIndexFactory,
+                    false,
+                    new DataSize(0, MEGABYTE),
+                    (types, spillContext, memoryContext) -> {
+                        throw new UnsupportedOperationException();
+                    });
+        }
+
+        public WindowOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> outputChannels,
+                List<WindowFunctionDefinition> windowFunctionDefinitions,
+                List<Integer> partitionChannels,
+                List<Integer> preGroupedChannels,
+                List<Integer> sortChannels,
+                List<SortOrder> sortOrder,
+                int preSortedChannelPrefix,
+                int expectedPositions,
+                PagesIndex.Factory pagesIndexFactory,
+                boolean spillEnabled,
+                DataSize memoryLimitBeforeSpill,
+                SpillerFactory spillerFactory)
         {
             requireNonNull(sourceTypes, "sourceTypes is null");
             requireNonNull(planNodeId, "planNodeId is null");
@@ -87,11 +133,16 @@ public class WindowOperator
             requireNonNull(sortChannels, "sortChannels is null");
             requireNonNull(sortOrder, "sortOrder is null");
             requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
+            requireNonNull(memoryLimitBeforeSpill, "memoryLimitBeforeSpill is null");
+            requireNonNull(spillerFactory, "spillerFactory is null");
             checkArgument(sortChannels.size() == sortOrder.size(), "Must have same number of sort channels as sort orders");
             checkArgument(preSortedChannelPrefix <= sortChannels.size(), "Cannot have more pre-sorted channels than specified sorted channels");
             checkArgument(preSortedChannelPrefix == 0 || ImmutableSet.copyOf(preGroupedChannels).equals(ImmutableSet.copyOf(partitionChannels)), "preSortedChannelPrefix can only be greater than zero if all partition channels are pre-grouped");
 
             this.pagesIndexFactory = pagesIndexFactory;
+            this.spillEnabled = spillEnabled;
+            this.memoryLimitBeforeSpill = memoryLimitBeforeSpill;
+            this.spillerFactory = spillerFactory;
             this.operatorId = operatorId;
             this.planNodeId = planNodeId;
             this.sourceTypes = ImmutableList.copyOf(sourceTypes);
@@ -134,7 +185,10 @@ public class WindowOperator
                     sortOrder,
                     preSortedChannelPrefix,
                     expectedPositions,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    spillEnabled,
+                    memoryLimitBeforeSpill,
+                    spillerFactory);
         }
 
         @Override
@@ -158,7 +212,10 @@ public class WindowOperator
                     sortOrder,
                     preSortedChannelPrefix,
                     expectedPositions,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    spillEnabled,
+                    memoryLimitBeforeSpill,
+                    spillerFactory);
         }
     }
 
@@ -171,6 +228,7 @@ public class WindowOperator
     }
 
     private final OperatorContext operatorContext;
+    private final List<Type> sourceTypes;
     private final int[] outputChannels;
     private final List<FramedWindowFunction> windowFunctions;
     private final List<Integer> orderChannels;
@@ -178,8 +236,10 @@ public class WindowOperator
     private final List<Type> types;
 
     private final int[] preGroupedChannels;
+    private final int[] partitionChannels;
 
     private final PagesHashStrategy preGroupedPartitionHashStrategy;
+    private final PagesHashStrategy partitionHashStrategy;
     private final PagesHashStrategy unGroupedPartitionHashStrategy;
     private final PagesHashStrategy preSortedPartitionHashStrategy;
     private final PagesHashStrategy peerGroupHashStrategy;
@@ -197,6 +257,16 @@ public class WindowOperator
 
     private Page pendingInput;
 
+    private final boolean spillEnabled;
+    private final long memoryLimitBeforeSpill;
+    private final SpillerFactory spillerFactory;
+
+    private Optional<Spiller> spiller = Optional.empty();
+    private Optional<ListenableFuture<?>> spillInProgress = Optional.empty();
+    private Optional<MergeSortedPages> mergeSortedPages = Optional.empty();
+    // sorted on all partition channels, so it can be consumed one partition at a time
+    private Optional<Iterator<Page>> sortedPages = Optional.empty();
+
     public WindowOperator(
             OperatorContext operatorContext,
             List<Type> sourceTypes,
@@ -209,6 +279,40 @@ public class WindowOperator
             int preSortedChannelPrefix,
             int expectedPositions,
             PagesIndex.Factory pagesIndexFactory)
+    {
+        this(operatorContext,
+                sourceTypes,
+                outputChannels,
+                windowFunctionDefinitions,
+                partitionChannels,
+                preGroupedChannels,
+                sortChannels,
+                sortOrder,
+                preSortedChannelPrefix,
+                expectedPositions,
+                pagesIndexFactory,
+                false,
+                new DataSize(0, MEGABYTE),
+                (types, spillContext, memoryContext) -> {
+                    throw new UnsupportedOperationException();
+                });
+    }
+
+    public WindowOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            List<Integer> outputChannels,
+            List<WindowFunctionDefinition> windowFunctionDefinitions,
+            List<Integer> partitionChannels,
+            List<Integer> preGroupedChannels,
+            List<Integer> sortChannels,
+            List<SortOrder> sortOrder,
+            int preSortedChannelPrefix,
+            int expectedPositions,
+            PagesIndex.Factory pagesIndexFactory,
+            boolean spillEnabled,
+            DataSize memoryLimitBeforeSpill,
+            SpillerFactory spillerFactory)
     {
         requireNonNull(operatorContext, "operatorContext is null");
         requireNonNull(outputChannels, "outputChannels is null");
@@ -219,11 +323,14 @@ public class WindowOperator
         requireNonNull(sortChannels, "sortChannels is null");
         requireNonNull(sortOrder, "sortOrder is null");
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
+        requireNonNull(memoryLimitBeforeSpill, "memoryLimitBeforeSpill is null");
+        requireNonNull(spillerFactory, "spillerFactory is null");
         checkArgument(sortChannels.size() == sortOrder.size(), "Must have same number of sort channels as sort orders");
         checkArgument(preSortedChannelPrefix <= sortChannels.size(), "Cannot have more pre-sorted channels than specified sorted channels");
         checkArgument(preSortedChannelPrefix == 0 || ImmutableSet.copyOf(preGroupedChannels).equals(ImmutableSet.copyOf(partitionChannels)), "preSortedChannelPrefix can only be greater than zero if all partition channels are pre-grouped");
 
         this.operatorContext = operatorContext;
+        this.sourceTypes = ImmutableList.copyOf(sourceTypes);
         this.outputChannels = Ints.toArray(outputChannels);
         this.windowFunctions = windowFunctionDefinitions.stream()
                 .map(functionDefinition -> new FramedWindowFunction(functionDefinition.createWindowFunction(), functionDefinition.getFrameInfo()))
@@ -239,6 +346,8 @@ public class WindowOperator
         this.pagesIndex = pagesIndexFactory.newPagesIndex(sourceTypes, expectedPositions);
         this.preGroupedChannels = Ints.toArray(preGroupedChannels);
         this.preGroupedPartitionHashStrategy = pagesIndex.createPagesHashStrategy(preGroupedChannels, Optional.empty());
+        this.partitionChannels = Ints.toArray(partitionChannels);
+        this.partitionHashStrategy = pagesIndex.createPagesHashStrategy(partitionChannels, Optional.empty());
         List<Integer> unGroupedPartitionChannels = partitionChannels.stream()
                 .filter(channel -> !preGroupedChannels.contains(channel))
                 .collect(toImmutableList());
@@ -262,6 +371,12 @@ public class WindowOperator
             this.ordering = ImmutableList.copyOf(concat(nCopies(unGroupedPartitionChannels.size(), ASC_NULLS_LAST), sortOrder));
         }
 
+        // Spilling sorted runs only helps when the whole input is buffered before sorting, i.e. nothing is pre-grouped,
+        // and when there are partitions, since a window partition has to be processed in memory
+        this.spillEnabled = spillEnabled && preGroupedChannels.isEmpty() && preSortedChannelPrefix == 0 && !partitionChannels.isEmpty();
+        this.memoryLimitBeforeSpill = memoryLimitBeforeSpill.toBytes();
+        this.spillerFactory = spillerFactory;
+
         windowInfo = new WindowInfo.DriverWindowInfoBuilder();
         operatorContext.setInfoSupplier(this::getWindowInfo);
     }
@@ -289,6 +404,22 @@ public class WindowOperator
         if (state == State.FINISHING || state == State.FINISHED) {
             return;
         }
+        if (!isSpillDone()) {
+            // called again by the driver once the spill in progress completes
+            return;
+        }
+        if (spiller.isPresent()) {
+            finishPreviousSpill();
+            if (pagesIndex.getPositionCount() > 0) {
+                // spill the remaining input too, so that pagesIndex can be reused for the merged partitions
+                spillSortedRun();
+                return;
+            }
+            mergeSortedPages = Optional.of(new MergeSortedPages(operatorContext.getSystemMemoryContext().newAggregatedMemoryContext()));
+            sortedPages = Optional.of(mergeSortedPages.get().merge(sourceTypes, orderChannels, ordering, spiller.get().getSpills()));
+            state = State.FINISHING;
+            return;
+        }
         if (state == State.NEEDS_INPUT) {
             // Since was waiting for more input, prepare what we have for output since we will not be getting any more input
             finishPagesIndex();
@@ -296,6 +427,12 @@ public class WindowOperator
         state = State.FINISHING;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress.orElse(NOT_BLOCKED);
+    }
+
     @Override
     public boolean isFinished()
     {
@@ -305,7 +442,7 @@ public class WindowOperator
     @Override
     public boolean needsInput()
     {
-        return state == State.NEEDS_INPUT;
+        return state == State.NEEDS_INPUT && isSpillDone();
     }
 
     @Override
@@ -314,11 +451,23 @@ public class WindowOperator
         checkState(state == State.NEEDS_INPUT, "Operator can not take input at this time");
         requireNonNull(page, "page is null");
         checkState(pendingInput == null, "Operator already has pending input");
+        checkState(isSpillDone(), "Spill is still in progress");
 
         if (page.getPositionCount() == 0) {
             return;
         }
 
+        if (spillEnabled) {
+            finishPreviousSpill();
+            // nothing is pre-grouped, so the whole input is buffered until finish
+            pagesIndex.addPage(page);
+            if (memoryLimitBeforeSpill > 0 && pagesIndex.getEstimatedSize().toBytes() > memoryLimitBeforeSpill) {
+                spillSortedRun();
+            }
+            operatorContext.setMemoryReservation(pagesIndex.getEstimatedSize().toBytes());
+            return;
+        }
+
         pendingInput = page;
         if (processPendingInput()) {
             state = State.HAS_OUTPUT;
@@ -326,13 +475,79 @@ public class WindowOperator
         operatorContext.setMemoryReservation(pagesIndex.getEstimatedSize().toBytes());
     }
 
+    private void spillSortedRun()
+    {
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(spillerFactory.create(
+                    sourceTypes,
+                    operatorContext.getSpillContext(),
+                    operatorContext.getSystemMemoryContext().newAggregatedMemoryContext()));
+        }
+
+        // every spill call produces a separate stream, so each run is sorted on its own
+        sortPagesIndexIfNecessary();
+        // pagesIndex stays reserved until the spill completes, since its pages are read by the spilling thread
+        spillInProgress = Optional.of(spiller.get().spill(pagesIndex.getSortedPages()));
+    }
+
+    private boolean isSpillDone()
+    {
+        return !spillInProgress.isPresent() || spillInProgress.get().isDone();
+    }
+
+    private void finishPreviousSpill()
+    {
+        if (!spillInProgress.isPresent()) {
+            return;
+        }
+
+        // check for exception from previous spill
+        getFutureValue(spillInProgress.get());
+        spillInProgress = Optional.empty();
+        pagesIndex.clear();
+        operatorContext.setMemoryReservation(pagesIndex.getEstimatedSize().toBytes());
+    }
+
+    /**
+     * Buffers the next partition of the merged spilled input in pagesIndex.
+     *
+     * @return true if a partition has been buffered, false if the merged input is exhausted
+     */
+    private boolean processSortedPages()
+    {
+        while (true) {
+            if (pendingInput == null) {
+                if (!sortedPages.get().hasNext()) {
+                    break;
+                }
+                pendingInput = sortedPages.get().next();
+                if (pendingInput.getPositionCount() == 0) {
+                    pendingInput = null;
+                    continue;
+                }
+            }
+
+            pendingInput = updatePagesIndex(pendingInput, partitionChannels, partitionHashStrategy);
+            if (pendingInput != null) {
+                break;
+            }
+        }
+
+        if (pagesIndex.getPositionCount() == 0) {
+            return false;
+        }
+        // merged input is already sorted
+        windowInfo.addIndex(pagesIndex);
+        return true;
+    }
+
     /**
      * @return true if a full group has been buffered after processing the pendingInput, false otherwise
      */
     private boolean processPendingInput()
     {
         checkState(pendingInput != null);
-        pendingInput = updatePagesIndex(pendingInput);
+        pendingInput = updatePagesIndex(pendingInput, preGroupedChannels, preGroupedPartitionHashStrategy);
 
         // If we have unused input or are finishing, then we have buffered a full group
         if (pendingInput != null || state == State.FINISHING) {
@@ -348,15 +563,15 @@ public class WindowOperator
      * @return the unused section of the page, or null if fully applied.
      * pagesIndex guaranteed to have at least one row after this method returns
      */
-    private Page updatePagesIndex(Page page)
+    private Page updatePagesIndex(Page page, int[] groupedChannels, PagesHashStrategy groupedPartitionHashStrategy)
     {
         checkArgument(page.getPositionCount() > 0);
 
         // TODO: Fix pagesHashStrategy to allow specifying channels for comparison, it currently requires us to rearrange the right side blocks in consecutive channel order
-        Page preGroupedPage = rearrangePage(page, preGroupedChannels);
-        if (pagesIndex.getPositionCount() == 0 || pagesIndex.positionEqualsRow(preGroupedPartitionHashStrategy, 0, 0, preGroupedPage)) {
-            // Find the position where the pre-grouped columns change
-            int groupEnd = findGroupEnd(preGroupedPage, preGroupedPartitionHashStrategy, 0);
+        Page groupedPage = rearrangePage(page, groupedChannels);
+        if (pagesIndex.getPositionCount() == 0 || pagesIndex.positionEqualsRow(groupedPartitionHashStrategy, 0, 0, groupedPage)) {
+            // Find the position where the grouped columns change
+            int groupEnd = findGroupEnd(groupedPage, groupedPartitionHashStrategy, 0);
 
             // Add the section of the page that contains values for the current group
             pagesIndex.addPage(page.getRegion(0, groupEnd));
@@ -412,7 +627,7 @@ public class WindowOperator
                     pagesIndex.clear();
 
                     // Try to extract more partitions from the pendingInput
-                    if (pendingInput != null && processPendingInput()) {
+                    if (sortedPages.isPresent() ? processSortedPages() : pendingInput != null && processPendingInput()) {
                         partitionStart = 0;
                     }
                     else if (state == State.FINISHING) {
@@ -542,5 +757,7 @@ public class WindowOperator
             throws Exception
     {
         driverWindowInfo.set(Optional.of(windowInfo.build()));
+        mergeSortedPages.ifPresent(MergeSortedPages::close);
+        spiller.ifPresent(Spiller::close);
     }
 }
@@ -16,14 +16,18 @@ package com.facebook.presto.operator.exchange;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+/**
+ * Tracks the bytes buffered in a local exchange without locking. Updates only touch the
+ * not full future when a writer is blocked, and a writer re-checks the buffered bytes after
+ * publishing its future, so a concurrent release of memory is never missed.
+ */
 @ThreadSafe
 public class LocalExchangeMemoryManager
 {
@@ -37,10 +41,9 @@ public class LocalExchangeMemoryManager
     private final long maxBufferedBytes;
     private final AtomicLong bufferedBytes = new AtomicLong();
 
-    @GuardedBy("this")
-    private SettableFuture<?> notFullFuture = NOT_FULL;
+    private final AtomicReference<SettableFuture<?>> notFullFuture = new AtomicReference<>(NOT_FULL);
 
-    private final AtomicBoolean blockOnFull = new AtomicBoolean(true);
+    private volatile boolean blockOnFull = true;
 
     public LocalExchangeMemoryManager(long maxBufferedBytes)
     {
@@ -50,53 +53,63 @@ public class LocalExchangeMemoryManager
 
     public void updateMemoryUsage(long bytesAdded)
     {
-        SettableFuture<?> future;
-        synchronized (this) {
-            bufferedBytes.addAndGet(bytesAdded);
-
-            // if we are full, then breakout
-            if (bufferedBytes.get() > maxBufferedBytes || notFullFuture.isDone()) {
-                return;
-            }
-
-            // otherwise, we are not full, so complete the future
-            future = notFullFuture;
-            notFullFuture = NOT_FULL;
+        // if we are full, then breakout
+        if (bufferedBytes.addAndGet(bytesAdded) > maxBufferedBytes) {
+            return;
         }
 
-        // complete future outside of lock since this can invoke callbacks
-        future.set(null);
+        // otherwise, we are not full, so complete the future
+        notifyWriters();
     }
 
-    public synchronized ListenableFuture<?> getNotFullFuture()
+    public ListenableFuture<?> getNotFullFuture()
     {
-        // if we are full and still blocking and the current not full future is already complete, create a new one
-        if (bufferedBytes.get() > maxBufferedBytes && blockOnFull.get() && notFullFuture.isDone()) {
-            notFullFuture = SettableFuture.create();
+        if (!isFull()) {
+            return NOT_FULL;
         }
-        return notFullFuture;
-    }
 
-    public void setNoBlockOnFull()
-    {
-        blockOnFull.set(false);
-
-        SettableFuture<?> future;
-        synchronized (this) {
-            if (notFullFuture.isDone()) {
-                return;
+        // if we are full and still blocking and the current not full future is already complete, create a new one
+        SettableFuture<?> future = notFullFuture.get();
+        if (future.isDone()) {
+            SettableFuture<?> newFuture = SettableFuture.create();
+            if (notFullFuture.compareAndSet(future, newFuture)) {
+                future = newFuture;
+            }
+            else {
+                future = notFullFuture.get();
             }
+        }
 
-            future = notFullFuture;
-            notFullFuture = NOT_FULL;
+        // memory may have been released before the future was published, in which case the reader did not see the future
+        if (!isFull()) {
+            notifyWriters();
         }
+        return future;
+    }
 
-        // complete future outside of lock since this can invoke callbacks
-        future.set(null);
+    public void setNoBlockOnFull()
+    {
+        blockOnFull = false;
+        notifyWriters();
     }
 
     public long getBufferedBytes()
     {
         return bufferedBytes.get();
     }
+
+    private boolean isFull()
+    {
+        return bufferedBytes.get() > maxBufferedBytes && blockOnFull;
+    }
+
+    private void notifyWriters()
+    {
+        // avoid the atomic swap when no writer is blocked, which is the common case
+        if (notFullFuture.get() == NOT_FULL) {
+            return;
+        }
+        // complete the future after swapping, since this can invoke callbacks
+        notFullFuture.getAndSet(NOT_FULL).set(null);
+    }
 }
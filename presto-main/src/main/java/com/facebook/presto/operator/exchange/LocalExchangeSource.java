@@ -19,19 +19,23 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
-import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Pages are handed from the sinks to the reader through a lock free queue. The futures
+ * blocking the reader are swapped with compare and set, and every side re-checks the
+ * queue after publishing its future, so a page added concurrently is never missed.
+ */
 @ThreadSafe
 public class LocalExchangeSource
 {
@@ -45,16 +49,14 @@ public class LocalExchangeSource
     private final List<Type> types;
     private final Consumer<LocalExchangeSource> onFinish;
 
-    private final BlockingQueue<PageReference> buffer = new LinkedBlockingDeque<>();
+    private final Queue<PageReference> buffer = new ConcurrentLinkedQueue<>();
     private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicInteger bufferedPages = new AtomicInteger();
 
-    private final Object lock = new Object();
-
-    @GuardedBy("lock")
-    private SettableFuture<?> notEmptyFuture = NOT_EMPTY;
+    private final AtomicReference<SettableFuture<?>> notEmptyFuture = new AtomicReference<>(NOT_EMPTY);
 
-    @GuardedBy("lock")
-    private boolean finishing;
+    private volatile boolean finishing;
+    private volatile boolean closed;
 
     public LocalExchangeSource(List<? extends Type> types, Consumer<LocalExchangeSource> onFinish)
     {
@@ -71,52 +73,44 @@ public class LocalExchangeSource
     {
         // This must be lock free to assure task info creation is fast
         // Note: the stats my be internally inconsistent
-        return new LocalExchangeBufferInfo(bufferedBytes.get(), buffer.size());
+        return new LocalExchangeBufferInfo(bufferedBytes.get(), bufferedPages.get());
     }
 
     void addPage(PageReference pageReference)
     {
-        checkNotHoldsLock();
-
-        boolean added = false;
-        SettableFuture<?> notEmptyFuture;
-        synchronized (lock) {
-            // ignore pages after finish
-            if (!finishing) {
-                // buffered bytes must be updated before adding to the buffer to assure
-                // the count does not go negative
-                bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
-                buffer.add(pageReference);
-                added = true;
-            }
-
-            // we just added a page (or we are finishing) so we are not empty
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = NOT_EMPTY;
+        // ignore pages after finish
+        if (finishing) {
+            // the page is dropped so the reader does not need to be notified
+            pageReference.removePage();
+            return;
         }
 
-        if (!added) {
-            // dereference the page outside of lock
-            pageReference.removePage();
+        // buffered bytes must be updated before adding to the buffer to assure
+        // the count does not go negative
+        bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
+        bufferedPages.incrementAndGet();
+        buffer.add(pageReference);
+
+        // the source may have been closed after the finishing check above, in which case
+        // close may have drained the buffer before this page was added
+        if (closed) {
+            drainBuffer();
+            checkFinished();
         }
 
-        // notify readers outside of lock since this may result in a callback
-        notEmptyFuture.set(null);
+        // we just added a page so we are not empty
+        notifyReader();
     }
 
     public Page removePage()
     {
-        checkNotHoldsLock();
-
-        // NOTE: there is no need to acquire a lock here. The buffer is concurrent
-        // and buffered bytes is not expected to be consistent with the buffer (only
-        // best effort).
         PageReference pageReference = buffer.poll();
         if (pageReference == null) {
             return null;
         }
+        bufferedPages.decrementAndGet();
 
-        // dereference the page outside of lock, since may trigger a callback
+        // dereference the page, which may trigger a callback
         Page page = pageReference.removePage();
         bufferedBytes.addAndGet(-page.getRetainedSizeInBytes());
 
@@ -127,87 +121,91 @@ public class LocalExchangeSource
 
     public ListenableFuture<?> waitForReading()
     {
-        checkNotHoldsLock();
+        if (finishing || !buffer.isEmpty()) {
+            return NOT_EMPTY;
+        }
 
-        synchronized (lock) {
-            // if we need to block readers, and the current future is complete, create a new one
-            if (!finishing && buffer.isEmpty() && notEmptyFuture.isDone()) {
-                notEmptyFuture = SettableFuture.create();
+        // if we need to block readers, and the current future is complete, create a new one
+        SettableFuture<?> future = notEmptyFuture.get();
+        if (future.isDone()) {
+            SettableFuture<?> newFuture = SettableFuture.create();
+            if (notEmptyFuture.compareAndSet(future, newFuture)) {
+                future = newFuture;
+            }
+            else {
+                future = notEmptyFuture.get();
             }
-            return notEmptyFuture;
         }
+
+        // a page may have been added before the future was published, in which case the writer did not see the future
+        if (finishing || !buffer.isEmpty()) {
+            notifyReader();
+        }
+        return future;
     }
 
     public boolean isFinished()
     {
-        synchronized (lock) {
-            return finishing && buffer.isEmpty();
-        }
+        return finishing && buffer.isEmpty();
     }
 
     public void finish()
     {
-        checkNotHoldsLock();
-
-        SettableFuture<?> notEmptyFuture;
-        synchronized (lock) {
-            if (finishing) {
-                return;
-            }
-            finishing = true;
-
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = NOT_EMPTY;
+        if (finishing) {
+            return;
         }
+        finishing = true;
 
-        // notify readers outside of lock since this may result in a callback
-        notEmptyFuture.set(null);
+        notifyReader();
 
         checkFinished();
     }
 
     public void close()
     {
-        checkNotHoldsLock();
-
-        List<PageReference> remainingPages = new ArrayList<>();
-        SettableFuture<?> notEmptyFuture;
-        synchronized (lock) {
-            finishing = true;
-
-            buffer.drainTo(remainingPages);
-            bufferedBytes.addAndGet(-remainingPages.stream().mapToLong(PageReference::getRetainedSizeInBytes).sum());
-
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = NOT_EMPTY;
-        }
+        finishing = true;
+        closed = true;
 
         // free all the remaining pages
-        remainingPages.forEach(PageReference::removePage);
+        drainBuffer();
 
-        // notify readers outside of lock since this may result in a callback
-        notEmptyFuture.set(null);
+        notifyReader();
 
-        // this will always fire the finished event
-        checkState(isFinished(), "Expected buffer to be finished");
+        // this will always fire the finished event, unless a page is added concurrently, in which case
+        // the sink drains the buffer and fires the event
         checkFinished();
     }
 
-    private void checkFinished()
+    private void drainBuffer()
     {
-        checkNotHoldsLock();
+        while (true) {
+            PageReference pageReference = buffer.poll();
+            if (pageReference == null) {
+                return;
+            }
+            bufferedPages.decrementAndGet();
+            bufferedBytes.addAndGet(-pageReference.getRetainedSizeInBytes());
+            pageReference.removePage();
+        }
+    }
 
+    private void notifyReader()
+    {
+        // avoid the atomic swap when no reader is blocked, which is the common case
+        if (notEmptyFuture.get() == NOT_EMPTY) {
+            return;
+        }
+        // complete the future after swapping, since this may result in a callback
+        notEmptyFuture.getAndSet(NOT_EMPTY).set(null);
+    }
+
+    private void checkFinished()
+    {
         if (isFinished()) {
-            // notify finish listener outside of lock, since it may make a callback
             // NOTE: due the race in this method, the onFinish may be called multiple times
             // it is expected that the implementer handles this (which is why this source
             // is passed to the function)
             onFinish.accept(this);
         }
     }
-
-    private void checkNotHoldsLock()
-    {
-        checkState(!Thread.holdsLock(lock), "Can not execute this method while holding the lock");
-    }
 }
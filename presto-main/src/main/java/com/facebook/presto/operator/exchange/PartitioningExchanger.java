@@ -18,27 +18,47 @@ import com.facebook.presto.operator.InterpretedHashGenerator;
 import com.facebook.presto.operator.PrecomputedHashGenerator;
 import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.DictionaryBlock;
+import com.facebook.presto.spi.block.RunLengthEncodedBlock;
 import com.facebook.presto.spi.type.Type;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.LongConsumer;
 
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.slice.SizeOf.sizeOf;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Splits each page between the partitions by the hash of the partitioning channels.
+ * <p>
+ * The rows are not copied: the page of a partition is a view of the positions of the source
+ * page that belong to it, so the source page stays in memory until the pages of all the
+ * partitions are consumed. The memory of the source page is accounted for once, and released
+ * with the last of these pages. The rows of a partition that gets only a small part of the
+ * page are copied instead, so that they do not keep the whole source page in memory.
+ * Operators that retain the pages they receive compact these views first (see
+ * {@link com.facebook.presto.operator.PagesIndex#addPage}), so they are charged only for
+ * the rows of their partition.
+ */
 class PartitioningExchanger
         implements Consumer<Page>
 {
+    // a partition that gets less than this fraction of an even share of the rows of a page is copied
+    private static final double MIN_VIEW_SHARE = 0.25;
+
     private final List<Consumer<PageReference>> buffers;
     private final LongConsumer memoryTracker;
     private final LocalPartitionGenerator partitionGenerator;
-    private final IntList[] partitionAssignments;
+    private final Optional<Integer> hashChannel;
+    private final int[] partitionPositionCounts;
+    private int[] rowPartitions = new int[0];
 
     public PartitioningExchanger(
             List<Consumer<PageReference>> partitions,
@@ -49,6 +69,7 @@ class PartitioningExchanger
     {
         this.buffers = ImmutableList.copyOf(requireNonNull(partitions, "partitions is null"));
         this.memoryTracker = requireNonNull(memoryTracker, "memoryTracker is null");
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
 
         HashGenerator hashGenerator;
         if (hashChannel.isPresent()) {
@@ -62,40 +83,141 @@ class PartitioningExchanger
         }
         partitionGenerator = new LocalPartitionGenerator(hashGenerator, buffers.size());
 
-        partitionAssignments = new IntList[partitions.size()];
-        for (int i = 0; i < partitionAssignments.length; i++) {
-            partitionAssignments[i] = new IntArrayList();
-        }
+        partitionPositionCounts = new int[partitions.size()];
     }
 
     @Override
     public synchronized void accept(Page page)
     {
-        // reset the assignment lists
-        for (IntList partitionAssignment : partitionAssignments) {
-            partitionAssignment.clear();
+        int positionCount = page.getPositionCount();
+        if (positionCount == 0) {
+            return;
+        }
+        int[] rowPartitions = assignPartitions(page);
+
+        // count the rows of each partition
+        int nonEmptyPartitions = 0;
+        for (int position = 0; position < positionCount; position++) {
+            if (partitionPositionCounts[rowPartitions[position]]++ == 0) {
+                nonEmptyPartitions++;
+            }
         }
 
-        // assign each row to a partition
-        for (int position = 0; position < page.getPositionCount(); position++) {
-            int partition = partitionGenerator.getPartition(position, page);
-            partitionAssignments[partition].add(position);
+        if (nonEmptyPartitions == 1) {
+            // all the rows belong to the same partition, so the page is sent as is
+            int partition = rowPartitions[0];
+            partitionPositionCounts[partition] = 0;
+            long retainedSizeInBytes = page.getRetainedSizeInBytes();
+            memoryTracker.accept(retainedSizeInBytes);
+            buffers.get(partition).accept(new PageReference(page, 1, () -> memoryTracker.accept(-retainedSizeInBytes)));
+            return;
         }
 
-        // build a page for each partition
+        // collect the positions of each partition
+        int[][] partitionPositions = new int[buffers.size()][];
+        for (int partition = 0; partition < buffers.size(); partition++) {
+            if (partitionPositionCounts[partition] > 0) {
+                partitionPositions[partition] = new int[partitionPositionCounts[partition]];
+                partitionPositionCounts[partition] = 0;
+            }
+        }
+        for (int position = 0; position < positionCount; position++) {
+            int partition = rowPartitions[position];
+            partitionPositions[partition][partitionPositionCounts[partition]++] = position;
+        }
+
+        // copying the rows is cheap for the partitions that get few of them
+        int minViewPositions = (int) (MIN_VIEW_SHARE * positionCount / buffers.size());
+        int viewPartitions = 0;
+        for (int[] positions : partitionPositions) {
+            if (positions != null && positions.length >= minViewPositions) {
+                viewPartitions++;
+            }
+        }
+
+        // the source page is released when the views of all the partitions are consumed
+        long sourceRetainedSizeInBytes = page.getRetainedSizeInBytes();
+        if (viewPartitions > 0) {
+            memoryTracker.accept(sourceRetainedSizeInBytes);
+        }
+        AtomicInteger unconsumedViews = new AtomicInteger(viewPartitions);
+
         Block[] sourceBlocks = page.getBlocks();
-        Block[] outputBlocks = new Block[sourceBlocks.length];
         for (int partition = 0; partition < buffers.size(); partition++) {
-            List<Integer> positions = partitionAssignments[partition];
-            if (!positions.isEmpty()) {
+            int[] positions = partitionPositions[partition];
+            if (positions == null) {
+                continue;
+            }
+            partitionPositionCounts[partition] = 0;
+
+            if (positions.length < minViewPositions) {
+                Block[] copiedBlocks = new Block[sourceBlocks.length];
+                List<Integer> positionList = Ints.asList(positions);
                 for (int i = 0; i < sourceBlocks.length; i++) {
-                    outputBlocks[i] = sourceBlocks[i].copyPositions(positions);
+                    copiedBlocks[i] = sourceBlocks[i].copyPositions(positionList);
+                }
+                Page pageCopy = new Page(positions.length, copiedBlocks);
+                long copySizeInBytes = pageCopy.getRetainedSizeInBytes();
+                memoryTracker.accept(copySizeInBytes);
+                buffers.get(partition).accept(new PageReference(pageCopy, 1, () -> memoryTracker.accept(-copySizeInBytes)));
+                continue;
+            }
+
+            Block[] outputBlocks = new Block[sourceBlocks.length];
+            for (int i = 0; i < sourceBlocks.length; i++) {
+                outputBlocks[i] = createView(sourceBlocks[i], positions);
+            }
+            Page pageSplit = new Page(positions.length, outputBlocks);
+
+            // the views only add their position lists, at most one per channel, to the source page
+            long viewSizeInBytes = sourceBlocks.length * sizeOf(positions);
+            memoryTracker.accept(viewSizeInBytes);
+            buffers.get(partition).accept(new PageReference(pageSplit, 1, () -> {
+                long releasedBytes = viewSizeInBytes;
+                if (unconsumedViews.decrementAndGet() == 0) {
+                    releasedBytes += sourceRetainedSizeInBytes;
                 }
+                memoryTracker.accept(-releasedBytes);
+            }));
+        }
+    }
 
-                Page pageSplit = new Page(positions.size(), outputBlocks);
-                memoryTracker.accept(pageSplit.getRetainedSizeInBytes());
-                buffers.get(partition).accept(new PageReference(pageSplit, 1, () -> memoryTracker.accept(-pageSplit.getRetainedSizeInBytes())));
+    private int[] assignPartitions(Page page)
+    {
+        int positionCount = page.getPositionCount();
+        if (rowPartitions.length < positionCount) {
+            rowPartitions = new int[positionCount];
+        }
+
+        if (hashChannel.isPresent()) {
+            // the hash was computed upstream, so read it directly instead of going through the hash generator
+            Block hashBlock = page.getBlock(hashChannel.get());
+            for (int position = 0; position < positionCount; position++) {
+                rowPartitions[position] = partitionGenerator.getPartition(BIGINT.getLong(hashBlock, position));
+            }
+        }
+        else {
+            for (int position = 0; position < positionCount; position++) {
+                rowPartitions[position] = partitionGenerator.getPartition(position, page);
+            }
+        }
+        return rowPartitions;
+    }
+
+    private static Block createView(Block block, int[] positions)
+    {
+        if (block instanceof RunLengthEncodedBlock) {
+            return new RunLengthEncodedBlock(((RunLengthEncodedBlock) block).getValue(), positions.length);
+        }
+        if (block instanceof DictionaryBlock) {
+            // point to the dictionary directly rather than nesting dictionaries
+            DictionaryBlock dictionaryBlock = (DictionaryBlock) block;
+            int[] ids = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                ids[i] = dictionaryBlock.getId(positions[i]);
             }
+            return new DictionaryBlock(positions.length, dictionaryBlock.getDictionary(), ids, dictionaryBlock.getDictionarySourceId());
         }
+        return new DictionaryBlock(positions.length, block, positions);
     }
 }
@@ -17,8 +17,6 @@ import com.facebook.presto.execution.buffer.SerializedPage;
 import com.facebook.presto.spi.Page;
 import com.google.common.base.Throwables;
 import com.google.common.reflect.TypeToken;
-import io.airlift.slice.OutputStreamSliceOutput;
-import io.airlift.slice.SliceOutput;
 
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
@@ -30,7 +28,6 @@ import javax.ws.rs.ext.Provider;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.List;
@@ -80,17 +77,14 @@ public class PagesResponseWriter
             throws IOException, WebApplicationException
     {
         try {
-            SliceOutput sliceOutput = new OutputStreamSliceOutput(output);
-            writeSerializedPages(sliceOutput, serializedPages);
+            // write the pages straight to the response stream, rather than copying them into a SliceOutput buffer first
+            writeSerializedPages(output, serializedPages);
             // We use flush instead of close, because the underlying stream would be closed and that is not allowed.
-            sliceOutput.flush();
+            output.flush();
         }
-        catch (UncheckedIOException e) {
+        catch (EOFException e) {
             // EOF exception occurs when the client disconnects while writing data
             // This is not a "server" problem so we don't want to log this
-            if (!(e.getCause() instanceof EOFException)) {
-                throw e;
-            }
         }
     }
 }
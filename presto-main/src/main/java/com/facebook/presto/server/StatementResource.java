@@ -20,6 +20,7 @@ import com.facebook.presto.client.Column;
 import com.facebook.presto.client.FailureInfo;
 import com.facebook.presto.client.QueryError;
 import com.facebook.presto.client.QueryResults;
+import com.facebook.presto.client.ResultPagesDecoder;
 import com.facebook.presto.client.StageStats;
 import com.facebook.presto.client.StatementStats;
 import com.facebook.presto.execution.QueryInfo;
@@ -29,6 +30,7 @@ import com.facebook.presto.execution.QueryStats;
 import com.facebook.presto.execution.StageInfo;
 import com.facebook.presto.execution.StageState;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.buffer.BufferResult;
 import com.facebook.presto.execution.buffer.OutputBufferInfo;
 import com.facebook.presto.execution.buffer.PagesSerde;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
@@ -52,6 +54,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.reflect.TypeToken;
 import io.airlift.log.Logger;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
@@ -63,6 +66,7 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -70,6 +74,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
@@ -93,20 +98,29 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
 import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_ADDED_PREPARE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_BUFFER_COMPLETE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLEAR_SESSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLEAR_TRANSACTION_ID;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_DEALLOCATED_PREPARE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_RESULT_FORMAT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SET_SESSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_STARTED_TRANSACTION_ID;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.facebook.presto.util.Failures.toFailure;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static io.airlift.concurrent.MoreFutures.tryGetFutureValue;
 import static io.airlift.concurrent.Threads.threadsNamed;
 import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
@@ -121,6 +135,7 @@ public class StatementResource
     private static final Duration MAX_WAIT_TIME = new Duration(1, SECONDS);
     private static final Ordering<Comparable<Duration>> WAIT_ORDERING = Ordering.natural().nullsLast();
     private static final long DESIRED_RESULT_BYTES = new DataSize(1, MEGABYTE).toBytes();
+    private static final DataSize DEFAULT_MAX_PAGES_SIZE = new DataSize(16, MEGABYTE);
 
     private final QueryManager queryManager;
     private final SessionPropertyManager sessionPropertyManager;
@@ -169,6 +184,9 @@ public class StatementResource
 
         SessionSupplier sessionSupplier = new HttpRequestSessionFactory(servletRequest);
 
+        // clients that can decode pages ask for them when they submit the query, so no result is ever sent as JSON rows first
+        boolean streamPages = PRESTO_PAGES.equalsIgnoreCase(servletRequest.getHeader(PRESTO_RESULT_FORMAT));
+
         ExchangeClient exchangeClient = exchangeClientSupplier.get(deltaMemoryInBytes -> { });
         Query query = new Query(
                 sessionSupplier,
@@ -176,7 +194,8 @@ public class StatementResource
                 queryManager,
                 sessionPropertyManager,
                 exchangeClient,
-                blockEncodingSerde);
+                blockEncodingSerde,
+                streamPages);
         queries.put(query.getQueryId(), query);
 
         return getQueryResults(query, Optional.empty(), uriInfo, new Duration(1, MILLISECONDS));
@@ -206,6 +225,7 @@ public class StatementResource
     {
         QueryResults queryResults;
         if (token.isPresent()) {
+            query.waitForStreamingStateChange(wait);
             queryResults = query.getResults(token.get(), uriInfo, wait);
         }
         else {
@@ -214,6 +234,11 @@ public class StatementResource
 
         ResponseBuilder response = Response.ok(queryResults);
 
+        // tell the client the results of the query can be fetched as pages
+        if (query.isStreamPages()) {
+            response.header(PRESTO_RESULT_FORMAT, PRESTO_PAGES);
+        }
+
         // add set session properties
         query.getSetSessionProperties().entrySet()
                 .forEach(entry -> response.header(PRESTO_SET_SESSION, entry.getKey() + '=' + entry.getValue()));
@@ -246,6 +271,52 @@ public class StatementResource
         return response.build();
     }
 
+    /**
+     * Returns the next serialized pages of the results of a query, for clients that asked for the results
+     * as pages. The pages are taken from the exchange client as they were sent by the output stage, without
+     * being converted to rows. The exchange client only fetches more pages from the workers when its buffer
+     * has room, so a slow client slows the output stage down instead of growing the buffers of the coordinator.
+     * <p>
+     * The pages of the token that was last requested are kept, so the request can be retried. When the buffer
+     * is complete, the client fetches the final state of the query, and the results of statements that are not
+     * queries, such as the update count, from the JSON results.
+     */
+    @GET
+    @Path("{queryId}/pages/{token}")
+    @Produces(PRESTO_PAGES)
+    public Response getQueryPages(
+            @PathParam("queryId") QueryId queryId,
+            @PathParam("token") long token,
+            @QueryParam("maxWait") Duration maxWait,
+            @HeaderParam(PRESTO_MAX_SIZE) DataSize maxSize)
+            throws InterruptedException
+    {
+        Query query = queries.get(queryId);
+        if (query == null || !query.isStreamPages()) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        Duration wait = WAIT_ORDERING.min(MAX_WAIT_TIME, maxWait);
+        BufferResult result = query.getPages(token, maxSize == null ? DEFAULT_MAX_PAGES_SIZE : maxSize, wait);
+
+        GenericEntity<?> entity = null;
+        Status status;
+        if (result.isEmpty()) {
+            status = Status.NO_CONTENT;
+        }
+        else {
+            entity = new GenericEntity<>(result.getSerializedPages(), new TypeToken<List<Page>>() {}.getType());
+            status = Status.OK;
+        }
+
+        return Response.status(status)
+                .entity(entity)
+                .header(PRESTO_PAGE_TOKEN, result.getToken())
+                .header(PRESTO_PAGE_NEXT_TOKEN, result.getNextToken())
+                .header(PRESTO_BUFFER_COMPLETE, result.isBufferComplete())
+                .build();
+    }
+
     @DELETE
     @Path("{queryId}/{token}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -277,6 +348,7 @@ public class StatementResource
         private final QueryId queryId;
         private final ExchangeClient exchangeClient;
         private final PagesSerde serde;
+        private final boolean streamPages;
 
         private final AtomicLong resultId = new AtomicLong();
         private final Session session;
@@ -311,13 +383,23 @@ public class StatementResource
         @GuardedBy("this")
         private Long updateCount;
 
+        @GuardedBy("this")
+        private long lastPagesToken;
+
+        @GuardedBy("this")
+        private List<SerializedPage> lastPages = ImmutableList.of();
+
+        @GuardedBy("this")
+        private boolean lastPagesComplete;
+
         public Query(
                 SessionSupplier sessionSupplier,
                 String query,
                 QueryManager queryManager,
                 SessionPropertyManager sessionPropertyManager,
                 ExchangeClient exchangeClient,
-                BlockEncodingSerde blockEncodingSerde)
+                BlockEncodingSerde blockEncodingSerde,
+                boolean streamPages)
         {
             requireNonNull(sessionSupplier, "sessionFactory is null");
             requireNonNull(query, "query is null");
@@ -332,6 +414,7 @@ public class StatementResource
             this.exchangeClient = exchangeClient;
             requireNonNull(blockEncodingSerde, "serde is null");
             this.serde = new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session)).createPagesSerde();
+            this.streamPages = streamPages;
         }
 
         public void cancel()
@@ -350,6 +433,11 @@ public class StatementResource
             return queryId;
         }
 
+        public boolean isStreamPages()
+        {
+            return streamPages;
+        }
+
         public synchronized Map<String, String> getSetSessionProperties()
         {
             return setSessionProperties;
@@ -380,6 +468,22 @@ public class StatementResource
             return clearTransactionId;
         }
 
+        /**
+         * Waits for the state of a query whose results are fetched as pages to change, as its JSON results
+         * carry no rows. The lock of the query is not held, so the pages can be read meanwhile.
+         */
+        public void waitForStreamingStateChange(Duration maxWait)
+                throws InterruptedException
+        {
+            if (!streamPages) {
+                return;
+            }
+            QueryInfo queryInfo = queryManager.getQueryInfo(queryId);
+            if (isQueryStarted(queryInfo) && queryInfo.getOutputStage().isPresent() && isStreamingPages(queryInfo) && !queryInfo.getState().isDone()) {
+                queryManager.waitForStateChange(queryId, queryInfo.getState(), maxWait);
+            }
+        }
+
         public synchronized QueryResults getResults(long token, UriInfo uriInfo, Duration maxWaitTime)
                 throws InterruptedException
         {
@@ -517,6 +621,11 @@ public class StatementResource
 
             updateExchangeClient(outputStage);
 
+            if (isStreamingPages(queryInfo)) {
+                // the client fetches the results as pages, see waitForStreamingStateChange
+                return null;
+            }
+
             ImmutableList.Builder<RowIterable> pages = ImmutableList.builder();
             // wait up to max wait for data to arrive; then try to return at least DESIRED_RESULT_BYTES
             long bytes = 0;
@@ -542,6 +651,123 @@ public class StatementResource
             return Iterables.concat(rowIterables);
         }
 
+        public BufferResult getPages(long token, DataSize maxSize, Duration maxWait)
+                throws InterruptedException
+        {
+            checkState(streamPages, "Pages were not requested for query %s", queryId);
+
+            // the waits below do not hold the lock of the query, so that the JSON results can be read meanwhile
+            Optional<BufferResult> lastResult = getLastPages(token);
+            if (lastResult.isPresent()) {
+                return lastResult.get();
+            }
+
+            // wait for query to start
+            QueryInfo queryInfo = queryManager.getQueryInfo(queryId);
+            while (maxWait.toMillis() > 1 && !isQueryStarted(queryInfo)) {
+                queryManager.recordHeartbeat(queryId);
+                maxWait = queryManager.waitForStateChange(queryId, queryInfo.getState(), maxWait);
+                queryInfo = queryManager.getQueryInfo(queryId);
+            }
+            queryManager.recordHeartbeat(queryId);
+
+            StageInfo outputStage = queryInfo.getOutputStage().orElse(null);
+            boolean hasPages = isQueryStarted(queryInfo) && isStreamingPages(queryInfo) && outputStage != null;
+            if (hasPages) {
+                if (queryInfo.getState().isDone() && queryInfo.getState() != QueryState.FINISHED) {
+                    // the client gets the failure from the JSON results
+                    exchangeClient.close();
+                }
+                updateExchangeClient(outputStage);
+
+                // wait up to max wait for data to arrive
+                exchangeClient.scheduleRequestIfNecessary();
+                tryGetFutureValue(exchangeClient.isBlocked(), toIntExact(maxWait.toMillis()), MILLISECONDS);
+            }
+
+            synchronized (this) {
+                // a concurrent request for the same token may have taken the pages already
+                lastResult = getLastPages(token);
+                if (lastResult.isPresent()) {
+                    return lastResult.get();
+                }
+
+                List<SerializedPage> pages = ImmutableList.of();
+                boolean complete;
+                if (!isQueryStarted(queryInfo)) {
+                    complete = false;
+                }
+                else if (!isStreamingPages(queryInfo) || (outputStage == null && queryInfo.getState().isDone())) {
+                    // there are no pages to stream, the results are returned as JSON
+                    complete = true;
+                }
+                else if (outputStage == null) {
+                    complete = false;
+                }
+                else {
+                    pages = pollSerializedPages(maxSize);
+                    complete = exchangeClient.isClosed();
+                }
+
+                lastPagesToken = token;
+                lastPages = pages;
+                lastPagesComplete = complete;
+                return new BufferResult(queryId.toString(), token, token + pages.size(), complete, pages);
+            }
+        }
+
+        /**
+         * Returns the last pages again if they are requested again, or nothing if the token is the next one.
+         */
+        private synchronized Optional<BufferResult> getLastPages(long token)
+        {
+            long nextToken = lastPagesToken + lastPages.size();
+            if (token == nextToken) {
+                return Optional.empty();
+            }
+            // is this a repeated request for the last pages?
+            if (token == lastPagesToken) {
+                queryManager.recordHeartbeat(queryId);
+                return Optional.of(new BufferResult(queryId.toString(), lastPagesToken, nextToken, lastPagesComplete, lastPages));
+            }
+            if (token < lastPagesToken) {
+                throw new WebApplicationException(Status.GONE);
+            }
+            throw new WebApplicationException(Status.NOT_FOUND);
+        }
+
+        private synchronized List<SerializedPage> pollSerializedPages(DataSize maxSize)
+        {
+            ImmutableList.Builder<SerializedPage> pages = ImmutableList.builder();
+            // return the pages that arrived, up to max size
+            long bytes = 0;
+            while (bytes < maxSize.toBytes()) {
+                SerializedPage serializedPage = exchangeClient.pollPage();
+                if (serializedPage == null) {
+                    break;
+                }
+
+                // clients do not have the codecs of the exchange compression
+                serializedPage = serde.decompress(serializedPage);
+                bytes += serializedPage.getSizeInBytes();
+                pages.add(serializedPage);
+            }
+            return pages.build();
+        }
+
+        private boolean isStreamingPages(QueryInfo queryInfo)
+        {
+            if (!streamPages || queryInfo.getUpdateType() != null) {
+                // the update count of statements that are not queries is read from the JSON results
+                return false;
+            }
+            // the results with columns the client can not decode are returned as JSON
+            return queryInfo.getOutputStage()
+                    .map(outputStage -> outputStage.getTypes().stream()
+                            .allMatch(type -> ResultPagesDecoder.isSupportedType(type.getTypeSignature().getBase())))
+                    .orElse(true);
+        }
+
         private static boolean isQueryStarted(QueryInfo queryInfo)
         {
             QueryState state = queryInfo.getState();
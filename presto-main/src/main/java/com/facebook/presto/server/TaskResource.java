@@ -62,9 +62,11 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES_STREAM;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_BUFFER_COMPLETE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CURRENT_STATE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_STREAM_SIZE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
@@ -287,6 +289,49 @@ public class TaskResource
         asyncResponse.register((CompletionCallback) throwable -> resultsRequestTime.add(Duration.nanosSince(start)));
     }
 
+    @GET
+    @Path("{taskId}/results/{bufferId}/{token}/stream")
+    @Produces(PRESTO_PAGES_STREAM)
+    public void streamResults(@PathParam("taskId") TaskId taskId,
+            @PathParam("bufferId") OutputBufferId bufferId,
+            @PathParam("token") final long token,
+            @HeaderParam(PRESTO_MAX_SIZE) DataSize maxSize,
+            @HeaderParam(PRESTO_MAX_STREAM_SIZE) DataSize maxStreamSize,
+            @HeaderParam(PRESTO_MAX_WAIT) Duration maxWait,
+            @Suspended AsyncResponse asyncResponse)
+    {
+        requireNonNull(taskId, "taskId is null");
+        requireNonNull(bufferId, "bufferId is null");
+        requireNonNull(maxSize, "maxSize is null");
+
+        long start = System.nanoTime();
+        String taskInstanceId = taskManager.getTaskInstanceId(taskId);
+        ListenableFuture<BufferResult> bufferResultFuture = taskManager.getTaskResults(taskId, bufferId, token, maxSize);
+        Duration waitTime = randomizeWaitTime(maxWait == null ? DEFAULT_MAX_WAIT_TIME : maxWait);
+        bufferResultFuture = addTimeout(
+                bufferResultFuture,
+                () -> BufferResult.emptyResults(taskManager.getTaskInstanceId(taskId), token, false),
+                waitTime,
+                timeoutExecutor);
+
+        // the stream only reads ahead of the token sent by the client, which acknowledges the frames the client has consumed
+        DataSize streamSize = maxStreamSize == null ? maxSize : maxStreamSize;
+        ListenableFuture<Response> responseFuture = Futures.transform(bufferResultFuture, result -> Response.ok(new TaskResultsStream(taskManager, taskId, bufferId, token, result, maxSize, streamSize), PRESTO_PAGES_STREAM)
+                .header(PRESTO_TASK_INSTANCE_ID, taskInstanceId)
+                .build());
+
+        // For hard timeout, add an additional time to max wait for thread scheduling contention and GC
+        Duration timeout = new Duration(waitTime.toMillis() + ADDITIONAL_WAIT_TIME.toMillis(), MILLISECONDS);
+        bindAsyncResponse(asyncResponse, responseFuture, responseExecutor)
+                .withTimeout(timeout,
+                        Response.ok(new TaskResultsStream(taskManager, taskId, bufferId, token, BufferResult.emptyResults(taskInstanceId, token, false), maxSize, streamSize), PRESTO_PAGES_STREAM)
+                                .header(PRESTO_TASK_INSTANCE_ID, taskInstanceId)
+                                .build());
+
+        responseFuture.addListener(() -> readFromOutputBufferTime.add(Duration.nanosSince(start)), directExecutor());
+        asyncResponse.register((CompletionCallback) throwable -> resultsRequestTime.add(Duration.nanosSince(start)));
+    }
+
     @DELETE
     @Path("{taskId}/results/{bufferId}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.facebook.presto.OutputBuffers.OutputBufferId;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskManager;
+import com.facebook.presto.execution.buffer.BufferResult;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.writeSerializedPagesFrame;
+import static io.airlift.concurrent.MoreFutures.tryGetFutureValue;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the results of a task output buffer as a stream of frames over a single response.
+ * <p>
+ * The first frame holds the results read for the token of the request. After that, the stream reads
+ * ahead of the token and writes the results that are already buffered, until no results are
+ * immediately available, the buffer is complete, or the stream size is reached. Reading ahead does not
+ * acknowledge any results: only the token sent by the client in its next request does, so results
+ * that are lost with the connection are returned again. The stream never waits for results, the wait
+ * for the first frame happens before the response is written.
+ * <p>
+ * A stream is not held open for the life of the buffer: it ends as soon as no results are buffered.
+ * It saves requests only while the producer is ahead of the consumer. When the consumer keeps up,
+ * each stream carries a single frame, like a request of the regular results endpoint.
+ */
+class TaskResultsStream
+        implements StreamingOutput
+{
+    private final TaskManager taskManager;
+    private final TaskId taskId;
+    private final OutputBufferId bufferId;
+    private final long acknowledgedToken;
+    private final BufferResult firstResult;
+    private final DataSize maxSize;
+    private final long maxStreamBytes;
+
+    public TaskResultsStream(TaskManager taskManager, TaskId taskId, OutputBufferId bufferId, long acknowledgedToken, BufferResult firstResult, DataSize maxSize, DataSize maxStreamSize)
+    {
+        this.taskManager = requireNonNull(taskManager, "taskManager is null");
+        this.taskId = requireNonNull(taskId, "taskId is null");
+        this.bufferId = requireNonNull(bufferId, "bufferId is null");
+        this.acknowledgedToken = acknowledgedToken;
+        this.firstResult = requireNonNull(firstResult, "firstResult is null");
+        this.maxSize = requireNonNull(maxSize, "maxSize is null");
+        this.maxStreamBytes = requireNonNull(maxStreamSize, "maxStreamSize is null").toBytes();
+    }
+
+    @Override
+    public void write(OutputStream output)
+            throws IOException
+    {
+        BufferResult result = firstResult;
+        long bytesWritten = 0;
+        while (true) {
+            bytesWritten += writeSerializedPagesFrame(output, result);
+            output.flush();
+
+            if (result.isEmpty() || result.isBufferComplete() || bytesWritten >= maxStreamBytes) {
+                return;
+            }
+
+            ListenableFuture<BufferResult> resultFuture = taskManager.getTaskResults(taskId, bufferId, acknowledgedToken, result.getNextToken(), maxSize);
+            Optional<BufferResult> nextResult = tryGetFutureValue(resultFuture);
+            if (!nextResult.isPresent()) {
+                // no results are buffered, the client will come back with the token of the last frame
+                resultFuture.cancel(true);
+                return;
+            }
+            result = nextResult.get();
+        }
+    }
+}
@@ -14,20 +14,23 @@
 package com.facebook.presto.spiller;
 
 import com.facebook.presto.execution.buffer.PagesSerde;
-import com.facebook.presto.execution.buffer.PagesSerdeUtil;
 import com.facebook.presto.execution.buffer.SerializedPage;
 import com.facebook.presto.memory.LocalMemoryContext;
 import com.facebook.presto.operator.SpillContext;
 import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.PrestoException;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.io.Closer;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import io.airlift.slice.InputStreamSliceInput;
 import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.XxHash64;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -40,13 +43,19 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
 
+import static com.facebook.presto.execution.buffer.PageCompression.lookupCodecFromMarker;
 import static com.facebook.presto.execution.buffer.PagesSerdeUtil.writeSerializedPage;
+import static com.facebook.presto.spi.StandardErrorCode.CORRUPT_SPILL_FILE;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Every serialized page in the spill file is preceded by a checksum of its contents,
+ * which is verified when the page is read back.
+ */
 @NotThreadSafe
 public class FileSingleStreamSpiller
         implements SingleStreamSpiller
@@ -54,6 +63,7 @@ public class FileSingleStreamSpiller
     @VisibleForTesting
     static final int BUFFER_SIZE = 4 * 1024;
 
+    private final SpillPath spillPath;
     private final Path targetFileName;
     private final Closer closer = Closer.create();
     private final PagesSerde serde;
@@ -73,13 +83,25 @@ public class FileSingleStreamSpiller
             SpillContext spillContext,
             LocalMemoryContext memoryContext)
     {
+        this(serde, executor, new SpillPath(spillPath), spillerStats, spillContext, memoryContext);
+    }
+
+    public FileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            SpillPath spillPath,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext)
+    {
+        this.spillPath = requireNonNull(spillPath, "spillPath is null");
         this.serde = requireNonNull(serde, "serde is null");
         this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats is null");
         this.localSpillContext = spillContext.newLocalSpillContext();
         this.memoryContext = requireNonNull(memoryContext, "memoryContext can not be null");
         try {
-            targetFileName = Files.createTempFile(spillPath, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+            targetFileName = Files.createTempFile(spillPath.getPath(), SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
         }
         catch (IOException e) {
             throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to create spill file", e);
@@ -90,7 +112,15 @@ public class FileSingleStreamSpiller
     public ListenableFuture<?> spill(Iterator<Page> pageIterator)
     {
         checkNoSpillInProgress();
-        spillInProgress = executor.submit(() -> writePages(pageIterator));
+        spillPath.writeQueued();
+        try {
+            spillInProgress = executor.submit(() -> writePages(pageIterator));
+        }
+        catch (RuntimeException e) {
+            // the write will never run, so it must not keep counting against the path
+            spillPath.writeFinished(0);
+            throw e;
+        }
         return spillInProgress;
     }
 
@@ -103,6 +133,7 @@ public class FileSingleStreamSpiller
 
     private void writePages(Iterator<Page> pageIterator)
     {
+        long writtenBytes = 0;
         try (SliceOutput output = new OutputStreamSliceOutput(new FileOutputStream(targetFileName.toFile(), true), BUFFER_SIZE)) {
             memoryContext.setBytes(BUFFER_SIZE);
             while (pageIterator.hasNext()) {
@@ -111,13 +142,22 @@ public class FileSingleStreamSpiller
                 long pageSize = serializedPage.getSizeInBytes();
                 localSpillContext.updateBytes(pageSize);
                 spillerStats.addToTotalSpilledBytes(pageSize);
+                spillerStats.addToTotalSpilledRawBytes(serializedPage.getUncompressedSizeInBytes());
+                output.writeLong(checksum(
+                        serializedPage.getPositionCount(),
+                        serializedPage.getCompression().getMarker(),
+                        serializedPage.getUncompressedSizeInBytes(),
+                        serializedPage.getSlice()));
                 writeSerializedPage(output, serializedPage);
+                writtenBytes += pageSize;
             }
         }
         catch (UncheckedIOException | IOException e) {
+            spillPath.markFailed();
             throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to spill pages", e);
         }
         finally {
+            spillPath.writeFinished(writtenBytes);
             memoryContext.setBytes(0);
         }
     }
@@ -129,7 +169,7 @@ public class FileSingleStreamSpiller
             memoryContext.setBytes(BUFFER_SIZE);
             closer.register(input);
             closer.register(() -> memoryContext.setBytes(0));
-            return PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, BUFFER_SIZE));
+            return new ChecksummedPageReader(serde, new InputStreamSliceInput(input, BUFFER_SIZE), targetFileName);
         }
         catch (IOException e) {
             throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to read spilled pages", e);
@@ -157,4 +197,70 @@ public class FileSingleStreamSpiller
     {
         checkState(spillInProgress.isDone(), "spill in progress");
     }
+
+    // covers the whole page header, so that a corrupted codec marker or size is reported as such,
+    // rather than as a failure to decompress the page
+    private static long checksum(int positionCount, byte compressionMarker, int uncompressedSizeInBytes, Slice data)
+    {
+        long hash = XxHash64.hash(data);
+        hash = 31 * hash + positionCount;
+        hash = 31 * hash + compressionMarker;
+        hash = 31 * hash + uncompressedSizeInBytes;
+        hash = 31 * hash + data.length();
+        return hash;
+    }
+
+    private static class ChecksummedPageReader
+            extends AbstractIterator<Page>
+    {
+        private final PagesSerde serde;
+        private final SliceInput input;
+        private final Path spillFile;
+
+        ChecksummedPageReader(PagesSerde serde, SliceInput input, Path spillFile)
+        {
+            this.serde = requireNonNull(serde, "serde is null");
+            this.input = requireNonNull(input, "input is null");
+            this.spillFile = requireNonNull(spillFile, "spillFile is null");
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            if (!input.isReadable()) {
+                return endOfData();
+            }
+
+            long expectedChecksum;
+            int positionCount;
+            byte compressionMarker;
+            int uncompressedSizeInBytes;
+            Slice data;
+            try {
+                // the header is read field by field, as it can only be interpreted once its checksum is verified
+                expectedChecksum = input.readLong();
+                positionCount = input.readInt();
+                compressionMarker = input.readByte();
+                uncompressedSizeInBytes = input.readInt();
+                int sizeInBytes = input.readInt();
+                if (sizeInBytes < 0) {
+                    throw corruptedSpillFile(null);
+                }
+                data = input.readSlice(sizeInBytes);
+            }
+            catch (IndexOutOfBoundsException e) {
+                // the file ends in the middle of a page
+                throw corruptedSpillFile(e);
+            }
+            if (checksum(positionCount, compressionMarker, uncompressedSizeInBytes, data) != expectedChecksum) {
+                throw corruptedSpillFile(null);
+            }
+            return serde.deserialize(new SerializedPage(data, lookupCodecFromMarker(compressionMarker), positionCount, uncompressedSizeInBytes));
+        }
+
+        private PrestoException corruptedSpillFile(Throwable cause)
+        {
+            return new PrestoException(CORRUPT_SPILL_FILE, "Spill file is corrupted: " + spillFile, cause);
+        }
+    }
 }
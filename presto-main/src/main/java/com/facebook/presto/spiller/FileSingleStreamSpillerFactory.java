@@ -21,10 +21,11 @@ import com.facebook.presto.spi.block.BlockEncodingSerde;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNames;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -34,8 +35,11 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.FileStore;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.facebook.presto.spi.StandardErrorCode.OUT_OF_SPILL_SPACE;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static java.lang.String.format;
@@ -59,13 +63,24 @@ public class FileSingleStreamSpillerFactory
 
     private final ListeningExecutorService executor;
     private final PagesSerdeFactory serdeFactory;
-    private final List<Path> spillPaths;
+    private final List<SpillPath> spillPaths;
     private final SpillerStats spillerStats;
     private final double maxUsedSpaceThreshold;
+    private final Optional<MBeanExporter> exporter;
     private int roundRobinIndex;
 
     @Inject
+    public FileSingleStreamSpillerFactory(BlockEncodingSerde blockEncodingSerde, SpillerStats spillerStats, FeaturesConfig featuresConfig, MBeanExporter exporter)
+    {
+        this(blockEncodingSerde, spillerStats, featuresConfig, Optional.of(requireNonNull(exporter, "exporter is null")));
+    }
+
     public FileSingleStreamSpillerFactory(BlockEncodingSerde blockEncodingSerde, SpillerStats spillerStats, FeaturesConfig featuresConfig)
+    {
+        this(blockEncodingSerde, spillerStats, featuresConfig, Optional.empty());
+    }
+
+    private FileSingleStreamSpillerFactory(BlockEncodingSerde blockEncodingSerde, SpillerStats spillerStats, FeaturesConfig featuresConfig, Optional<MBeanExporter> exporter)
     {
         this(
                 listeningDecorator(newFixedThreadPool(
@@ -74,7 +89,9 @@ public class FileSingleStreamSpillerFactory
                 blockEncodingSerde,
                 spillerStats,
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillerSpillPaths(),
-                requireNonNull(featuresConfig, "featuresConfig is null").getSpillMaxUsedSpaceThreshold());
+                requireNonNull(featuresConfig, "featuresConfig is null").getSpillMaxUsedSpaceThreshold(),
+                requireNonNull(featuresConfig, "featuresConfig is null").isSpillCompressionEnabled(),
+                exporter);
     }
 
     @VisibleForTesting
@@ -83,13 +100,28 @@ public class FileSingleStreamSpillerFactory
             BlockEncodingSerde blockEncodingSerde,
             SpillerStats spillerStats,
             List<Path> spillPaths,
-            double maxUsedSpaceThreshold)
+            double maxUsedSpaceThreshold,
+            boolean spillCompressionEnabled)
     {
-        this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), false);
+        this(executor, blockEncodingSerde, spillerStats, spillPaths, maxUsedSpaceThreshold, spillCompressionEnabled, Optional.empty());
+    }
+
+    private FileSingleStreamSpillerFactory(
+            ListeningExecutorService executor,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            List<Path> spillPaths,
+            double maxUsedSpaceThreshold,
+            boolean spillCompressionEnabled,
+            Optional<MBeanExporter> exporter)
+    {
+        this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), spillCompressionEnabled);
         this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats can not be null");
         requireNonNull(spillPaths, "spillPaths is null");
-        this.spillPaths = ImmutableList.copyOf(spillPaths);
+        this.spillPaths = spillPaths.stream()
+                .map(SpillPath::new)
+                .collect(toImmutableList());
         spillPaths.forEach(path -> {
             try {
                 createDirectories(path);
@@ -105,20 +137,43 @@ public class FileSingleStreamSpillerFactory
         });
         this.maxUsedSpaceThreshold = maxUsedSpaceThreshold;
         this.roundRobinIndex = 0;
+        this.exporter = requireNonNull(exporter, "exporter is null");
     }
 
     @PostConstruct
     public void cleanupOldSpillFiles()
     {
-        spillPaths.forEach(FileSingleStreamSpillerFactory::cleanupOldSpillFiles);
+        spillPaths.stream()
+                .map(SpillPath::getPath)
+                .forEach(FileSingleStreamSpillerFactory::cleanupOldSpillFiles);
+    }
+
+    @PostConstruct
+    public void export()
+    {
+        exporter.ifPresent(exporter -> spillPaths.forEach(spillPath -> exporter.export(getObjectName(spillPath), spillPath)));
     }
 
     @PreDestroy
     public void destroy()
     {
+        exporter.ifPresent(exporter -> spillPaths.forEach(spillPath -> exporter.unexport(getObjectName(spillPath))));
         executor.shutdownNow();
     }
 
+    private static String getObjectName(SpillPath spillPath)
+    {
+        return ObjectNames.builder(SpillPath.class)
+                .withProperty("path", spillPath.toString())
+                .build();
+    }
+
+    @VisibleForTesting
+    List<SpillPath> getSpillPaths()
+    {
+        return spillPaths;
+    }
+
     private static void cleanupOldSpillFiles(Path path)
     {
         try (DirectoryStream<Path> stream = newDirectoryStream(path, SPILL_FILE_GLOB)) {
@@ -140,31 +195,56 @@ public class FileSingleStreamSpillerFactory
     @Override
     public SingleStreamSpiller create(List<Type> types, SpillContext spillContext, LocalMemoryContext memoryContext)
     {
-        return new FileSingleStreamSpiller(serdeFactory.createPagesSerde(), executor, getNextSpillPath(), spillerStats, spillContext, memoryContext);
+        PrestoException lastFailure = null;
+        for (int attempt = 0; attempt < spillPaths.size(); attempt++) {
+            SpillPath spillPath = getNextSpillPath();
+            try {
+                return new FileSingleStreamSpiller(serdeFactory.createPagesSerde(), executor, spillPath, spillerStats, spillContext, memoryContext);
+            }
+            catch (PrestoException e) {
+                log.warn(e, "Could not create spill file in %s, excluding the spill path", spillPath);
+                spillPath.markFailed();
+                lastFailure = e;
+            }
+        }
+        throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to create spill file", lastFailure);
     }
 
-    private synchronized Path getNextSpillPath()
+    /**
+     * Selects the least loaded of the healthy spill paths with enough free space.
+     * Paths with equal load are selected in round robin fashion.
+     */
+    private synchronized SpillPath getNextSpillPath()
     {
         int spillPathsCount = spillPaths.size();
+        int selectedIndex = -1;
         for (int i = 0; i < spillPathsCount; ++i) {
             int pathIndex = (roundRobinIndex + i) % spillPathsCount;
-            Path path = spillPaths.get(pathIndex);
-            if (hasEnoughDiskSpace(path)) {
-                roundRobinIndex = (roundRobinIndex + i + 1) % spillPathsCount;
-                return path;
+            SpillPath spillPath = spillPaths.get(pathIndex);
+            if (spillPath.isExcluded() || !hasEnoughDiskSpace(spillPath)) {
+                continue;
+            }
+            if (selectedIndex < 0 || spillPath.getQueuedWrites() < spillPaths.get(selectedIndex).getQueuedWrites()) {
+                selectedIndex = pathIndex;
             }
         }
-        throw new PrestoException(OUT_OF_SPILL_SPACE, "No free space available for spill");
+        if (selectedIndex < 0) {
+            throw new PrestoException(OUT_OF_SPILL_SPACE, "No free space available for spill");
+        }
+        roundRobinIndex = (selectedIndex + 1) % spillPathsCount;
+        return spillPaths.get(selectedIndex);
     }
 
-    private boolean hasEnoughDiskSpace(Path path)
+    private boolean hasEnoughDiskSpace(SpillPath spillPath)
     {
         try {
-            FileStore fileStore = getFileStore(path);
+            FileStore fileStore = getFileStore(spillPath.getPath());
             return fileStore.getUsableSpace() > fileStore.getTotalSpace() * (1.0 - maxUsedSpaceThreshold);
         }
         catch (IOException e) {
-            throw new PrestoException(OUT_OF_SPILL_SPACE, "Cannot determine free space for spill", e);
+            log.warn(e, "Cannot determine free space for spill in %s, excluding the spill path", spillPath);
+            spillPath.markFailed();
+            return false;
         }
     }
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.google.common.base.Ticker;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Spill directory together with its current load and health.
+ * A path that failed an I/O operation is excluded from placement of new spill files for a while.
+ */
+@ThreadSafe
+public final class SpillPath
+{
+    private static final Duration FAILED_PATH_EXCLUSION_TIME = new Duration(1, MINUTES);
+
+    private final Path path;
+    private final Ticker ticker;
+
+    private final AtomicInteger queuedWrites = new AtomicInteger();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong excludedUntilNanos;
+
+    public SpillPath(Path path)
+    {
+        this(path, Ticker.systemTicker());
+    }
+
+    public SpillPath(Path path, Ticker ticker)
+    {
+        this.path = requireNonNull(path, "path is null");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.excludedUntilNanos = new AtomicLong(ticker.read());
+    }
+
+    public Path getPath()
+    {
+        return path;
+    }
+
+    public void writeQueued()
+    {
+        queuedWrites.incrementAndGet();
+    }
+
+    public void writeFinished(long bytes)
+    {
+        queuedWrites.decrementAndGet();
+        writtenBytes.addAndGet(bytes);
+    }
+
+    public void markFailed()
+    {
+        failures.incrementAndGet();
+        excludedUntilNanos.set(ticker.read() + FAILED_PATH_EXCLUSION_TIME.roundTo(NANOSECONDS));
+    }
+
+    /**
+     * Number of spill writes submitted to this path that have not finished yet.
+     */
+    @Managed
+    public int getQueuedWrites()
+    {
+        return queuedWrites.get();
+    }
+
+    @Managed
+    public long getWrittenBytes()
+    {
+        return writtenBytes.get();
+    }
+
+    @Managed
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    @Managed
+    public boolean isExcluded()
+    {
+        return ticker.read() - excludedUntilNanos.get() < 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return path.toString();
+    }
+}
@@ -20,7 +20,11 @@ import java.util.concurrent.atomic.AtomicLong;
 public class SpillerStats
 {
     protected final AtomicLong totalSpilledBytes = new AtomicLong();
+    protected final AtomicLong totalSpilledRawBytes = new AtomicLong();
 
+    /**
+     * Bytes written to spill files, after compression.
+     */
     @Managed
     public long getTotalSpilledBytes()
     {
@@ -31,4 +35,18 @@ public class SpillerStats
     {
         totalSpilledBytes.addAndGet(delta);
     }
+
+    /**
+     * Serialized size of the spilled pages, before compression.
+     */
+    @Managed
+    public long getTotalSpilledRawBytes()
+    {
+        return totalSpilledRawBytes.get();
+    }
+
+    public void addToTotalSpilledRawBytes(long delta)
+    {
+        totalSpilledRawBytes.addAndGet(delta);
+    }
 }
@@ -21,6 +21,9 @@ import io.airlift.configuration.DefunctConfig;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 
 import java.nio.file.Path;
@@ -67,8 +70,22 @@ public class FeaturesConfig
     private List<Path> spillerSpillPaths = ImmutableList.of();
     private int spillerThreads = 4;
     private double spillMaxUsedSpaceThreshold = 0.9;
+    private boolean spillCompressionEnabled;
     private boolean iterativeOptimizerEnabled = true;
     private boolean pushAggregationThroughJoin = true;
+    private boolean dynamicFilteringEnabled;
+    private boolean joinBloomFilterEnabled;
+    private boolean batchJoinProbeEnabled;
+    private boolean adaptivePartialAggregationEnabled;
+    private long adaptivePartialAggregationMinRows = 100_000;
+    private double adaptivePartialAggregationUniqueRowsRatioThreshold = 0.8;
+    private boolean exchangeStreamingEnabled;
+    private boolean exchangeAdaptiveCompressionEnabled;
+    private boolean costBasedJoinReordering;
+    private int maxReorderedJoins = 9;
+    private boolean automaticJoinDistribution;
+    private DataSize joinMaxBroadcastTableSize = new DataSize(100, DataSize.Unit.MEGABYTE);
+    private int skewedJoinFanout = 1;
 
     private Duration iterativeOptimizerTimeout = new Duration(3, MINUTES); // by default let optimizer wait a long time in case it retrieves some data from ConnectorMetadata
 
@@ -390,6 +407,18 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isSpillCompressionEnabled()
+    {
+        return spillCompressionEnabled;
+    }
+
+    @Config("experimental.spill-compression-enabled")
+    public FeaturesConfig setSpillCompressionEnabled(boolean spillCompressionEnabled)
+    {
+        this.spillCompressionEnabled = spillCompressionEnabled;
+        return this;
+    }
+
     public boolean isOptimizeMixedDistinctAggregations()
     {
         return optimizeMixedDistinctAggregations;
@@ -437,4 +466,175 @@ public class FeaturesConfig
         this.pushAggregationThroughJoin = value;
         return this;
     }
+
+    public boolean isDynamicFilteringEnabled()
+    {
+        return dynamicFilteringEnabled;
+    }
+
+    @Config("experimental.dynamic-filtering-enabled")
+    public FeaturesConfig setDynamicFilteringEnabled(boolean dynamicFilteringEnabled)
+    {
+        this.dynamicFilteringEnabled = dynamicFilteringEnabled;
+        return this;
+    }
+
+    public boolean isJoinBloomFilterEnabled()
+    {
+        return joinBloomFilterEnabled;
+    }
+
+    @Config("experimental.join-bloom-filter-enabled")
+    public FeaturesConfig setJoinBloomFilterEnabled(boolean joinBloomFilterEnabled)
+    {
+        this.joinBloomFilterEnabled = joinBloomFilterEnabled;
+        return this;
+    }
+
+    public boolean isBatchJoinProbeEnabled()
+    {
+        return batchJoinProbeEnabled;
+    }
+
+    @Config("experimental.batch-join-probe-enabled")
+    public FeaturesConfig setBatchJoinProbeEnabled(boolean batchJoinProbeEnabled)
+    {
+        this.batchJoinProbeEnabled = batchJoinProbeEnabled;
+        return this;
+    }
+
+    public boolean isAdaptivePartialAggregationEnabled()
+    {
+        return adaptivePartialAggregationEnabled;
+    }
+
+    @Config("experimental.adaptive-partial-aggregation-enabled")
+    public FeaturesConfig setAdaptivePartialAggregationEnabled(boolean adaptivePartialAggregationEnabled)
+    {
+        this.adaptivePartialAggregationEnabled = adaptivePartialAggregationEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public long getAdaptivePartialAggregationMinRows()
+    {
+        return adaptivePartialAggregationMinRows;
+    }
+
+    @Config("experimental.adaptive-partial-aggregation-min-rows")
+    @ConfigDescription("Number of rows a partial aggregation processes before deciding whether it reduces its input")
+    public FeaturesConfig setAdaptivePartialAggregationMinRows(long adaptivePartialAggregationMinRows)
+    {
+        this.adaptivePartialAggregationMinRows = adaptivePartialAggregationMinRows;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getAdaptivePartialAggregationUniqueRowsRatioThreshold()
+    {
+        return adaptivePartialAggregationUniqueRowsRatioThreshold;
+    }
+
+    @Config("experimental.adaptive-partial-aggregation-unique-rows-ratio-threshold")
+    @ConfigDescription("Ratio of groups to input rows above which partial aggregation is disabled")
+    public FeaturesConfig setAdaptivePartialAggregationUniqueRowsRatioThreshold(double adaptivePartialAggregationUniqueRowsRatioThreshold)
+    {
+        this.adaptivePartialAggregationUniqueRowsRatioThreshold = adaptivePartialAggregationUniqueRowsRatioThreshold;
+        return this;
+    }
+
+    public boolean isExchangeStreamingEnabled()
+    {
+        return exchangeStreamingEnabled;
+    }
+
+    @Config("experimental.exchange-streaming-enabled")
+    @ConfigDescription("Read the results of remote tasks in responses that carry every batch of pages already buffered instead of a request per batch")
+    public FeaturesConfig setExchangeStreamingEnabled(boolean exchangeStreamingEnabled)
+    {
+        this.exchangeStreamingEnabled = exchangeStreamingEnabled;
+        return this;
+    }
+
+    public boolean isExchangeAdaptiveCompressionEnabled()
+    {
+        return exchangeAdaptiveCompressionEnabled;
+    }
+
+    @Config("exchange.adaptive-compression-enabled")
+    @ConfigDescription("Choose between no compression, LZ4 and deflate for exchanged pages based on the compression ratio of sampled pages")
+    public FeaturesConfig setExchangeAdaptiveCompressionEnabled(boolean exchangeAdaptiveCompressionEnabled)
+    {
+        this.exchangeAdaptiveCompressionEnabled = exchangeAdaptiveCompressionEnabled;
+        return this;
+    }
+
+    public boolean isCostBasedJoinReordering()
+    {
+        return costBasedJoinReordering;
+    }
+
+    @Config("optimizer.cost-based-join-reordering")
+    @ConfigDescription("Experimental: Choose the order and the build sides of inner joins by their estimated cost, based on the table statistics")
+    public FeaturesConfig setCostBasedJoinReordering(boolean costBasedJoinReordering)
+    {
+        this.costBasedJoinReordering = costBasedJoinReordering;
+        return this;
+    }
+
+    @Min(2)
+    @Max(10)
+    public int getMaxReorderedJoins()
+    {
+        return maxReorderedJoins;
+    }
+
+    @Config("optimizer.max-reordered-joins")
+    @ConfigDescription("Maximum number of tables of the inner joins that are reordered by their estimated cost")
+    public FeaturesConfig setMaxReorderedJoins(int maxReorderedJoins)
+    {
+        this.maxReorderedJoins = maxReorderedJoins;
+        return this;
+    }
+
+    public boolean isAutomaticJoinDistribution()
+    {
+        return automaticJoinDistribution;
+    }
+
+    @Config("optimizer.automatic-join-distribution")
+    @ConfigDescription("Experimental: Replicate the build side of a join when its estimated size is below join-max-broadcast-table-size and partition it otherwise")
+    public FeaturesConfig setAutomaticJoinDistribution(boolean automaticJoinDistribution)
+    {
+        this.automaticJoinDistribution = automaticJoinDistribution;
+        return this;
+    }
+
+    public DataSize getJoinMaxBroadcastTableSize()
+    {
+        return joinMaxBroadcastTableSize;
+    }
+
+    @Config("optimizer.join-max-broadcast-table-size")
+    @ConfigDescription("Maximum estimated size of the build side of a join that is replicated when the join distribution is automatic")
+    public FeaturesConfig setJoinMaxBroadcastTableSize(DataSize joinMaxBroadcastTableSize)
+    {
+        this.joinMaxBroadcastTableSize = joinMaxBroadcastTableSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getSkewedJoinFanout()
+    {
+        return skewedJoinFanout;
+    }
+
+    @Config("optimizer.skewed-join-fanout")
+    @ConfigDescription("Experimental: Number of partitions the rows of a hot probe key of a partitioned join are spread over, with the build rows replicated to each of them. 1 disables it")
+    public FeaturesConfig setSkewedJoinFanout(int skewedJoinFanout)
+    {
+        this.skewedJoinFanout = skewedJoinFanout;
+        return this;
+    }
 }
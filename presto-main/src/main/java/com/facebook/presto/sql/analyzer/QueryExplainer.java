@@ -102,6 +102,9 @@ public class QueryExplainer
             case DISTRIBUTED:
                 SubPlan subPlan = getDistributedPlan(session, statement, parameters);
                 return PlanPrinter.textDistributedPlan(subPlan, metadata, costCalculator, session);
+            case COST:
+                Plan costPlan = getLogicalPlan(session, statement, parameters);
+                return PlanPrinter.textLogicalPlanWithStatistics(costPlan.getRoot(), costPlan.getTypes(), metadata, costCalculator, session);
         }
         throw new IllegalArgumentException("Unhandled plan type: " + planType);
     }
@@ -121,6 +124,7 @@ public class QueryExplainer
 
         switch (planType) {
             case LOGICAL:
+            case COST:
                 Plan plan = getLogicalPlan(session, statement, parameters);
                 return PlanPrinter.graphvizLogicalPlan(plan.getRoot(), plan.getTypes());
             case DISTRIBUTED:
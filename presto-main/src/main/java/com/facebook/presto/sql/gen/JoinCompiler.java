@@ -27,6 +27,7 @@ import com.facebook.presto.bytecode.control.ForLoop;
 import com.facebook.presto.bytecode.control.IfStatement;
 import com.facebook.presto.bytecode.expression.BytecodeExpression;
 import com.facebook.presto.bytecode.instruction.LabelNode;
+import com.facebook.presto.operator.BigintPagesHash;
 import com.facebook.presto.operator.JoinHash;
 import com.facebook.presto.operator.JoinHashSupplier;
 import com.facebook.presto.operator.LookupSourceSupplier;
@@ -77,6 +78,11 @@ import static com.facebook.presto.bytecode.expression.BytecodeExpressions.consta
 import static com.facebook.presto.bytecode.expression.BytecodeExpressions.getStatic;
 import static com.facebook.presto.bytecode.expression.BytecodeExpressions.newInstance;
 import static com.facebook.presto.bytecode.expression.BytecodeExpressions.notEqual;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.IntegerType.INTEGER;
+import static com.facebook.presto.spi.type.SmallintType.SMALLINT;
+import static com.facebook.presto.spi.type.TinyintType.TINYINT;
 import static com.facebook.presto.sql.gen.SqlTypeBytecodeExpression.constantType;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
@@ -181,9 +187,22 @@ public class JoinCompiler
                 LookupSourceSupplier.class,
                 JoinHashSupplier.class,
                 JoinHash.class,
-                PagesHash.class);
+                PagesHash.class,
+                BigintPagesHash.class);
 
-        return new LookupSourceSupplierFactory(joinHashSupplierClass, new PagesHashStrategyFactory(pagesHashStrategyClass));
+        Optional<Integer> bigintJoinChannel = Optional.empty();
+        if (joinChannels.size() == 1 && isBigintJoinType(types.get(joinChannels.get(0)))) {
+            bigintJoinChannel = Optional.of(joinChannels.get(0));
+        }
+        return new LookupSourceSupplierFactory(joinHashSupplierClass, new PagesHashStrategyFactory(pagesHashStrategyClass), bigintJoinChannel.map(types::get), bigintJoinChannel);
+    }
+
+    /**
+     * Types whose values are stored as a long and are equal exactly when the longs are equal.
+     */
+    private static boolean isBigintJoinType(Type type)
+    {
+        return type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT) || type.equals(DATE);
     }
 
     private static FieldDefinition generateInstanceSize(ClassDefinition definition)
@@ -830,12 +849,20 @@ public class JoinCompiler
     {
         private final Constructor<? extends LookupSourceSupplier> constructor;
         private final PagesHashStrategyFactory pagesHashStrategyFactory;
-
-        public LookupSourceSupplierFactory(Class<? extends LookupSourceSupplier> joinHashSupplierClass, PagesHashStrategyFactory pagesHashStrategyFactory)
+        private final Optional<Type> bigintJoinType;
+        private final Optional<Integer> bigintJoinChannel;
+
+        public LookupSourceSupplierFactory(
+                Class<? extends LookupSourceSupplier> joinHashSupplierClass,
+                PagesHashStrategyFactory pagesHashStrategyFactory,
+                Optional<Type> bigintJoinType,
+                Optional<Integer> bigintJoinChannel)
         {
             this.pagesHashStrategyFactory = pagesHashStrategyFactory;
+            this.bigintJoinType = requireNonNull(bigintJoinType, "bigintJoinType is null");
+            this.bigintJoinChannel = requireNonNull(bigintJoinChannel, "bigintJoinChannel is null");
             try {
-                constructor = joinHashSupplierClass.getConstructor(Session.class, PagesHashStrategy.class, LongArrayList.class, List.class, Optional.class);
+                constructor = joinHashSupplierClass.getConstructor(Session.class, PagesHashStrategy.class, LongArrayList.class, List.class, Optional.class, Optional.class, Optional.class);
             }
             catch (NoSuchMethodException e) {
                 throw Throwables.propagate(e);
@@ -851,7 +878,7 @@ public class JoinCompiler
         {
             PagesHashStrategy pagesHashStrategy = pagesHashStrategyFactory.createPagesHashStrategy(channels, hashChannel);
             try {
-                return constructor.newInstance(session, pagesHashStrategy, addresses, channels, filterFunctionFactory);
+                return constructor.newInstance(session, pagesHashStrategy, addresses, channels, filterFunctionFactory, bigintJoinChannel, bigintJoinType);
             }
             catch (Exception e) {
                 throw Throwables.propagate(e);
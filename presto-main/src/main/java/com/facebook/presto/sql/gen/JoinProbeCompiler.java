@@ -24,6 +24,9 @@ import com.facebook.presto.bytecode.control.IfStatement;
 import com.facebook.presto.bytecode.expression.BytecodeExpression;
 import com.facebook.presto.bytecode.instruction.JumpInstruction;
 import com.facebook.presto.bytecode.instruction.LabelNode;
+import com.facebook.presto.operator.BatchJoinProbe;
+import com.facebook.presto.operator.HashGenerator;
+import com.facebook.presto.operator.InterpretedHashGenerator;
 import com.facebook.presto.operator.JoinProbe;
 import com.facebook.presto.operator.JoinProbeFactory;
 import com.facebook.presto.operator.LookupJoinOperator;
@@ -32,6 +35,7 @@ import com.facebook.presto.operator.LookupJoinOperators.JoinType;
 import com.facebook.presto.operator.LookupSource;
 import com.facebook.presto.operator.LookupSourceFactory;
 import com.facebook.presto.operator.OperatorFactory;
+import com.facebook.presto.operator.PrecomputedHashGenerator;
 import com.facebook.presto.operator.SimpleJoinProbe;
 import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.PageBuilder;
@@ -39,6 +43,7 @@ import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.block.BlockBuilder;
 import com.facebook.presto.spi.type.BigintType;
 import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
@@ -46,6 +51,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ExecutionError;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.weakref.jmx.Managed;
@@ -101,12 +107,37 @@ public class JoinProbeCompiler
             List<Integer> probeJoinChannel,
             Optional<Integer> probeHashChannel,
             List<Integer> probeOutputChannels,
-            JoinType joinType)
+            JoinType joinType,
+            SpillerFactory spillerFactory)
+    {
+        return compileJoinOperatorFactory(operatorId, planNodeId, lookupSourceFactory, probeTypes, probeJoinChannel, probeHashChannel, probeOutputChannels, joinType, spillerFactory, false);
+    }
+
+    public OperatorFactory compileJoinOperatorFactory(int operatorId,
+            PlanNodeId planNodeId,
+            LookupSourceFactory lookupSourceFactory,
+            List<? extends Type> probeTypes,
+            List<Integer> probeJoinChannel,
+            Optional<Integer> probeHashChannel,
+            List<Integer> probeOutputChannels,
+            JoinType joinType,
+            SpillerFactory spillerFactory,
+            boolean batchProbeEnabled)
     {
         try {
             List<Type> probeOutputChannelTypes = probeOutputChannels.stream()
                     .map(probeTypes::get)
                     .collect(toImmutableList());
+            HashGenerator probeHashGenerator;
+            if (probeHashChannel.isPresent()) {
+                probeHashGenerator = new PrecomputedHashGenerator(probeHashChannel.get());
+            }
+            else {
+                List<Type> probeJoinChannelTypes = probeJoinChannel.stream()
+                        .map(probeTypes::get)
+                        .collect(toImmutableList());
+                probeHashGenerator = new InterpretedHashGenerator(probeJoinChannelTypes, Ints.toArray(probeJoinChannel));
+            }
 
             HashJoinOperatorFactoryFactory operatorFactoryFactory = joinProbeFactories.get(new JoinOperatorCacheKey(
                     probeTypes,
@@ -114,7 +145,7 @@ public class JoinProbeCompiler
                     probeJoinChannel,
                     probeHashChannel,
                     joinType));
-            return operatorFactoryFactory.createHashJoinOperatorFactory(operatorId, planNodeId, lookupSourceFactory, probeTypes, probeOutputChannelTypes, joinType);
+            return operatorFactoryFactory.createHashJoinOperatorFactory(operatorId, planNodeId, lookupSourceFactory, probeTypes, probeOutputChannelTypes, joinType, probeHashGenerator, spillerFactory, batchProbeEnabled);
         }
         catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
             throw Throwables.propagate(e.getCause());
@@ -149,9 +180,11 @@ public class JoinProbeCompiler
         DynamicClassLoader classLoader = new DynamicClassLoader(joinProbeClass.getClassLoader());
 
         JoinProbeFactory joinProbeFactory;
+        JoinProbeFactory batchJoinProbeFactory;
         if (probeJoinChannel.isEmpty()) {
             // see comment in PagesIndex#createLookupSource
             joinProbeFactory = new SimpleJoinProbe.SimpleJoinProbeFactory(types, probeOutputChannels, probeJoinChannel, probeHashChannel);
+            batchJoinProbeFactory = joinProbeFactory;
         }
         else {
             Class<? extends JoinProbeFactory> joinProbeFactoryClass = defineClass(classDefinition, JoinProbeFactory.class, classLoader);
@@ -161,6 +194,7 @@ public class JoinProbeCompiler
             catch (Exception e) {
                 throw Throwables.propagate(e);
             }
+            batchJoinProbeFactory = new BatchJoinProbe.BatchJoinProbeFactory(types, probeOutputChannels, probeJoinChannel, probeHashChannel);
         }
 
         Class<? extends OperatorFactory> operatorFactoryClass = IsolatedClass.isolateClass(
@@ -169,7 +203,7 @@ public class JoinProbeCompiler
                 LookupJoinOperatorFactory.class,
                 LookupJoinOperator.class);
 
-        return new HashJoinOperatorFactoryFactory(joinProbeFactory, operatorFactoryClass);
+        return new HashJoinOperatorFactoryFactory(joinProbeFactory, batchJoinProbeFactory, operatorFactoryClass);
     }
 
     @VisibleForTesting
@@ -561,14 +595,16 @@ public class JoinProbeCompiler
     private static class HashJoinOperatorFactoryFactory
     {
         private final JoinProbeFactory joinProbeFactory;
+        private final JoinProbeFactory batchJoinProbeFactory;
         private final Constructor<? extends OperatorFactory> constructor;
 
-        private HashJoinOperatorFactoryFactory(JoinProbeFactory joinProbeFactory, Class<? extends OperatorFactory> operatorFactoryClass)
+        private HashJoinOperatorFactoryFactory(JoinProbeFactory joinProbeFactory, JoinProbeFactory batchJoinProbeFactory, Class<? extends OperatorFactory> operatorFactoryClass)
         {
             this.joinProbeFactory = joinProbeFactory;
+            this.batchJoinProbeFactory = batchJoinProbeFactory;
 
             try {
-                constructor = operatorFactoryClass.getConstructor(int.class, PlanNodeId.class, LookupSourceFactory.class, List.class, List.class, JoinType.class, JoinProbeFactory.class);
+                constructor = operatorFactoryClass.getConstructor(int.class, PlanNodeId.class, LookupSourceFactory.class, List.class, List.class, JoinType.class, JoinProbeFactory.class, HashGenerator.class, SpillerFactory.class);
             }
             catch (NoSuchMethodException e) {
                 throw Throwables.propagate(e);
@@ -581,10 +617,14 @@ public class JoinProbeCompiler
                 LookupSourceFactory lookupSourceFactory,
                 List<? extends Type> probeTypes,
                 List<? extends Type> probeOutputTypes,
-                JoinType joinType)
+                JoinType joinType,
+                HashGenerator probeHashGenerator,
+                SpillerFactory spillerFactory,
+                boolean batchProbeEnabled)
         {
             try {
-                return constructor.newInstance(operatorId, planNodeId, lookupSourceFactory, probeTypes, probeOutputTypes, joinType, joinProbeFactory);
+                JoinProbeFactory probeFactory = batchProbeEnabled ? batchJoinProbeFactory : joinProbeFactory;
+                return constructor.newInstance(operatorId, planNodeId, lookupSourceFactory, probeTypes, probeOutputTypes, joinType, probeFactory, probeHashGenerator, spillerFactory);
             }
             catch (Exception e) {
                 throw Throwables.propagate(e);
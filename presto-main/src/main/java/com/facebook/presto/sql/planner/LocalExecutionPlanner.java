@@ -24,6 +24,7 @@ import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.index.IndexManager;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.metadata.Signature;
+import com.facebook.presto.operator.AdaptivePartialAggregation;
 import com.facebook.presto.operator.AggregationOperator.AggregationOperatorFactory;
 import com.facebook.presto.operator.AssignUniqueIdOperator;
 import com.facebook.presto.operator.CursorProcessor;
@@ -38,6 +39,7 @@ import com.facebook.presto.operator.GroupIdOperator;
 import com.facebook.presto.operator.HashAggregationOperator.HashAggregationOperatorFactory;
 import com.facebook.presto.operator.HashBuilderOperator.HashBuilderOperatorFactory;
 import com.facebook.presto.operator.HashSemiJoinOperator.HashSemiJoinOperatorFactory;
+import com.facebook.presto.operator.JoinDynamicFilter;
 import com.facebook.presto.operator.JoinOperatorFactory;
 import com.facebook.presto.operator.LimitOperator.LimitOperatorFactory;
 import com.facebook.presto.operator.LocalPlannerAware;
@@ -92,7 +94,9 @@ import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.RecordSet;
 import com.facebook.presto.spi.block.BlockEncodingSerde;
 import com.facebook.presto.spi.block.SortOrder;
+import com.facebook.presto.spi.predicate.Domain;
 import com.facebook.presto.spi.predicate.NullableValue;
+import com.facebook.presto.spi.predicate.TupleDomain;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.split.MappedRecordSet;
@@ -160,6 +164,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.log.Logger;
 import io.airlift.units.DataSize;
 
@@ -180,9 +186,15 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationMinRows;
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationUniqueRowsRatioThreshold;
 import static com.facebook.presto.SystemSessionProperties.getOperatorMemoryLimitBeforeSpill;
 import static com.facebook.presto.SystemSessionProperties.getTaskConcurrency;
 import static com.facebook.presto.SystemSessionProperties.getTaskWriterCount;
+import static com.facebook.presto.SystemSessionProperties.isAdaptivePartialAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isBatchJoinProbeEnabled;
+import static com.facebook.presto.SystemSessionProperties.isDynamicFilteringEnabled;
+import static com.facebook.presto.SystemSessionProperties.isExchangeAdaptiveCompressionEnabled;
 import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
 import static com.facebook.presto.SystemSessionProperties.isSpillEnabled;
 import static com.facebook.presto.metadata.FunctionKind.SCALAR;
@@ -205,6 +217,7 @@ import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_BRO
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.FULL;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
 import static com.facebook.presto.sql.planner.plan.TableWriterNode.CreateHandle;
 import static com.facebook.presto.sql.planner.plan.TableWriterNode.InsertHandle;
@@ -218,6 +231,9 @@ import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transform;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.lang.String.format;
 import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
@@ -365,6 +381,7 @@ public class LocalExecutionPlanner
                         partitionConstants,
                         partitioningScheme.isReplicateNullsAndAny(),
                         nullChannel,
+                        partitioningScheme.getSkewMitigation(),
                         outputBuffer,
                         maxPagePartitioningBufferSize));
     }
@@ -395,7 +412,7 @@ public class LocalExecutionPlanner
                                 plan.getId(),
                                 outputTypes,
                                 pagePreprocessor,
-                                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session))))
+                                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeAdaptiveCompressionEnabled(session))))
                         .build(),
                 context.getDriverInstanceCount());
 
@@ -585,6 +602,8 @@ public class LocalExecutionPlanner
             extends PlanVisitor<PhysicalOperation, LocalExecutionPlanContext>
     {
         private final Session session;
+        // probe side table scans of inner joins, pruned by the join keys of the build side
+        private final Map<PlanNodeId, ListenableFuture<TupleDomain<ColumnHandle>>> dynamicFilters = new HashMap<>();
 
         private Visitor(Session session)
         {
@@ -604,7 +623,7 @@ public class LocalExecutionPlanner
                     context.getNextOperatorId(),
                     node.getId(),
                     exchangeClientSupplier,
-                    new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session)),
+                    new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeAdaptiveCompressionEnabled(session)),
                     types);
 
             return new PhysicalOperation(operatorFactory, makeLayout(node));
@@ -794,7 +813,10 @@ public class LocalExecutionPlanner
                     sortOrder,
                     node.getPreSortedOrderPrefix(),
                     10_000,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    isSpillEnabled(context.getSession()),
+                    getOperatorMemoryLimitBeforeSpill(context.getSession()),
+                    spillerFactory);
 
             return new PhysicalOperation(operatorFactory, outputMappings.build(), source);
         }
@@ -853,7 +875,10 @@ public class LocalExecutionPlanner
                     10_000,
                     orderByChannels,
                     sortOrder.build(),
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    isSpillEnabled(context.getSession()),
+                    getOperatorMemoryLimitBeforeSpill(context.getSession()),
+                    spillerFactory);
 
             return new PhysicalOperation(operator, source.getLayout(), source);
         }
@@ -1088,7 +1113,8 @@ public class LocalExecutionPlanner
                             cursorProcessor,
                             pageProcessor,
                             columns,
-                            getTypes(rewrittenProjections, expressionTypes));
+                            getTypes(rewrittenProjections, expressionTypes),
+                            getDynamicFilter(sourceNode));
 
                     return new PhysicalOperation(operatorFactory, outputMappings);
                 }
@@ -1140,7 +1166,8 @@ public class LocalExecutionPlanner
                         () -> cursorProcessor,
                         () -> pageProcessor,
                         columns,
-                        getTypes(rewrittenProjections, expressionTypes));
+                        getTypes(rewrittenProjections, expressionTypes),
+                        getDynamicFilter(sourceNode));
 
                 return new PhysicalOperation(operatorFactory, outputMappings);
             }
@@ -1184,9 +1211,19 @@ public class LocalExecutionPlanner
             return inputTypes.build();
         }
 
+        private ListenableFuture<TupleDomain<ColumnHandle>> getDynamicFilter(PlanNode tableScan)
+        {
+            return dynamicFilters.getOrDefault(tableScan.getId(), immediateFuture(TupleDomain.all()));
+        }
+
         @Override
         public PhysicalOperation visitTableScan(TableScanNode node, LocalExecutionPlanContext context)
         {
+            if (dynamicFilters.containsKey(node.getId())) {
+                // only the scan operator supports dynamic filters
+                return visitScanFilterAndProject(context, node.getId(), node, Optional.empty(), Assignments.identity(node.getOutputSymbols()), node.getOutputSymbols());
+            }
+
             List<ColumnHandle> columns = new ArrayList<>();
             for (Symbol symbol : node.getOutputSymbols()) {
                 columns.add(node.getAssignments().get(symbol));
@@ -1544,11 +1581,17 @@ public class LocalExecutionPlanner
                 Optional<Symbol> buildHashSymbol,
                 LocalExecutionPlanContext context)
         {
+            Optional<SettableFuture<List<Domain>>> dynamicFilterKeyDomains = Optional.empty();
+            if (node.getType() == INNER && isDynamicFilteringEnabled(session)) {
+                dynamicFilterKeyDomains = findDynamicFilterTableScan(probeNode, probeSymbols)
+                        .map(tableScan -> addDynamicFilter(tableScan, probeSymbols));
+            }
+
             // Plan probe
             PhysicalOperation probeSource = probeNode.accept(this, context);
 
             // Plan build
-            LookupSourceFactory lookupSourceFactory = createLookupSourceFactory(node, buildNode, buildSymbols, buildHashSymbol, probeSource.getLayout(), context);
+            LookupSourceFactory lookupSourceFactory = createLookupSourceFactory(node, buildNode, buildSymbols, buildHashSymbol, probeSource.getLayout(), dynamicFilterKeyDomains, context);
 
             OperatorFactory operator = createLookupJoin(node, probeSource, probeSymbols, probeHashSymbol, lookupSourceFactory, context);
 
@@ -1562,12 +1605,36 @@ public class LocalExecutionPlanner
             return new PhysicalOperation(operator, outputMappings.build(), probeSource);
         }
 
+        private Optional<TableScanNode> findDynamicFilterTableScan(PlanNode probeNode, List<Symbol> probeSymbols)
+        {
+            // removing rows below other operators could change their output, e.g. the one of a limit
+            PlanNode node = probeNode;
+            while (node instanceof FilterNode || node instanceof ProjectNode) {
+                node = getOnlyElement(node.getSources());
+            }
+            if (node instanceof TableScanNode && node.getOutputSymbols().containsAll(probeSymbols) && !dynamicFilters.containsKey(node.getId())) {
+                return Optional.of((TableScanNode) node);
+            }
+            return Optional.empty();
+        }
+
+        private SettableFuture<List<Domain>> addDynamicFilter(TableScanNode tableScan, List<Symbol> probeSymbols)
+        {
+            List<ColumnHandle> keyColumns = probeSymbols.stream()
+                    .map(tableScan.getAssignments()::get)
+                    .collect(toImmutableList());
+            SettableFuture<List<Domain>> keyDomains = SettableFuture.create();
+            dynamicFilters.put(tableScan.getId(), transform(keyDomains, domains -> JoinDynamicFilter.toTupleDomain(keyColumns, domains), directExecutor()));
+            return keyDomains;
+        }
+
         private LookupSourceFactory createLookupSourceFactory(
                 JoinNode node,
                 PlanNode buildNode,
                 List<Symbol> buildSymbols,
                 Optional<Symbol> buildHashSymbol,
                 Map<Symbol, Integer> probeLayout,
+                Optional<SettableFuture<List<Domain>>> dynamicFilterKeyDomains,
                 LocalExecutionPlanContext context)
         {
             LocalExecutionPlanContext buildContext = context.createSubContext();
@@ -1600,7 +1667,12 @@ public class LocalExecutionPlanner
                     filterFunctionFactory,
                     10_000,
                     buildContext.getDriverInstanceCount().orElse(1),
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    isSpillEnabled(context.getSession()),
+                    getOperatorMemoryLimitBeforeSpill(context.getSession()),
+                    spillerFactory,
+                    dynamicFilterKeyDomains.isPresent());
+            dynamicFilterKeyDomains.ifPresent(keyDomains -> keyDomains.setFuture(hashBuilderOperatorFactory.getDynamicFilter().get().getSummary()));
 
             context.addDriverFactory(
                     buildContext.isInputDriver(),
@@ -1660,16 +1732,17 @@ public class LocalExecutionPlanner
             List<Integer> probeOutputChannels = ImmutableList.copyOf(getChannelsForSymbols(probeOutputSymbols, probeSource.getLayout()));
             List<Integer> probeJoinChannels = ImmutableList.copyOf(getChannelsForSymbols(probeSymbols, probeSource.getLayout()));
             Optional<Integer> probeHashChannel = probeHashSymbol.map(channelGetter(probeSource));
+            boolean batchProbeEnabled = isBatchJoinProbeEnabled(session);
 
             switch (node.getType()) {
                 case INNER:
-                    return lookupJoinOperators.innerJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels));
+                    return lookupJoinOperators.innerJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels), spillerFactory, batchProbeEnabled);
                 case LEFT:
-                    return lookupJoinOperators.probeOuterJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels));
+                    return lookupJoinOperators.probeOuterJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels), spillerFactory, batchProbeEnabled);
                 case RIGHT:
-                    return lookupJoinOperators.lookupOuterJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels));
+                    return lookupJoinOperators.lookupOuterJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels), batchProbeEnabled);
                 case FULL:
-                    return lookupJoinOperators.fullOuterJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels));
+                    return lookupJoinOperators.fullOuterJoin(context.getNextOperatorId(), node.getId(), lookupSourceFactory, probeTypes, probeJoinChannels, probeHashChannel, Optional.of(probeOutputChannels), batchProbeEnabled);
                 default:
                     throw new UnsupportedOperationException("Unsupported join type: " + node.getType());
             }
@@ -1991,6 +2064,13 @@ public class LocalExecutionPlanner
 
             Optional<Integer> hashChannel = node.getHashSymbol().map(channelGetter(source));
 
+            Optional<AdaptivePartialAggregation> adaptivePartialAggregation = Optional.empty();
+            if (node.getStep() == AggregationNode.Step.PARTIAL && !groupByChannels.isEmpty() && isAdaptivePartialAggregationEnabled(session)) {
+                adaptivePartialAggregation = Optional.of(new AdaptivePartialAggregation(
+                        getAdaptivePartialAggregationMinRows(session),
+                        getAdaptivePartialAggregationUniqueRowsRatioThreshold(session)));
+            }
+
             Map<Symbol, Integer> mappings = outputMappings.build();
             OperatorFactory operatorFactory = new HashAggregationOperatorFactory(
                     operatorId,
@@ -2008,7 +2088,8 @@ public class LocalExecutionPlanner
                     spillEnabled,
                     memoryLimitBeforeSpill,
                     spillerFactory,
-                    joinCompiler);
+                    joinCompiler,
+                    adaptivePartialAggregation);
 
             return new PhysicalOperation(operatorFactory, mappings, source);
         }
@@ -94,6 +94,7 @@ public class LogicalPlanner
     private final Metadata metadata;
     private final SqlParser sqlParser;
     private final CostCalculator costCalculator;
+    private final StatsRecorder stats;
 
     public LogicalPlanner(Session session,
             List<PlanOptimizer> planOptimizers,
@@ -101,6 +102,17 @@ public class LogicalPlanner
             Metadata metadata,
             SqlParser sqlParser,
             CostCalculator costCalculator)
+    {
+        this(session, planOptimizers, idAllocator, metadata, sqlParser, costCalculator, new StatsRecorder());
+    }
+
+    public LogicalPlanner(Session session,
+            List<PlanOptimizer> planOptimizers,
+            PlanNodeIdAllocator idAllocator,
+            Metadata metadata,
+            SqlParser sqlParser,
+            CostCalculator costCalculator,
+            StatsRecorder stats)
     {
         requireNonNull(session, "session is null");
         requireNonNull(planOptimizers, "planOptimizers is null");
@@ -108,6 +120,7 @@ public class LogicalPlanner
         requireNonNull(metadata, "metadata is null");
         requireNonNull(sqlParser, "sqlParser is null");
         requireNonNull(costCalculator, "costCalculator is null");
+        requireNonNull(stats, "stats is null");
 
         this.session = session;
         this.planOptimizers = planOptimizers;
@@ -115,6 +128,7 @@ public class LogicalPlanner
         this.metadata = metadata;
         this.sqlParser = sqlParser;
         this.costCalculator = costCalculator;
+        this.stats = stats;
     }
 
     public Plan plan(Analysis analysis)
@@ -130,7 +144,15 @@ public class LogicalPlanner
 
         if (stage.ordinal() >= Stage.OPTIMIZED.ordinal()) {
             for (PlanOptimizer optimizer : planOptimizers) {
-                root = optimizer.optimize(root, session, symbolAllocator.getTypes(), symbolAllocator, idAllocator);
+                long start = System.nanoTime();
+                try {
+                    root = optimizer.optimize(root, session, symbolAllocator.getTypes(), symbolAllocator, idAllocator);
+                }
+                catch (RuntimeException e) {
+                    stats.recordFailure(optimizer);
+                    throw e;
+                }
+                stats.record(optimizer, System.nanoTime() - start);
                 requireNonNull(root, format("%s returned a null plan", optimizer.getClass().getName()));
             }
         }
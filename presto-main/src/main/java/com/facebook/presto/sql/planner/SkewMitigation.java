@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spreads the rows of the hot keys of the probe side of a join over {@code fanout} consecutive partitions,
+ * starting from the partition of the key. The build side sends each row to the same partitions, so every
+ * probe row still meets all the build rows of its key. Hot keys are detected by each task from its own rows.
+ */
+public class SkewMitigation
+{
+    public enum Strategy
+    {
+        // send the rows of a hot key to one of the partitions, in turn
+        SALT_HOT_KEYS,
+        // send every row to all the partitions
+        REPLICATE
+    }
+
+    private final Strategy strategy;
+    private final int fanout;
+
+    @JsonCreator
+    public SkewMitigation(
+            @JsonProperty("strategy") Strategy strategy,
+            @JsonProperty("fanout") int fanout)
+    {
+        checkArgument(fanout > 1, "fanout must be greater than one");
+        this.strategy = requireNonNull(strategy, "strategy is null");
+        this.fanout = fanout;
+    }
+
+    @JsonProperty
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    @JsonProperty
+    public int getFanout()
+    {
+        return fanout;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SkewMitigation that = (SkewMitigation) o;
+        return strategy == that.strategy &&
+                fanout == that.fanout;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(strategy, fanout);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("strategy", strategy)
+                .add("fanout", fanout)
+                .toString();
+    }
+}
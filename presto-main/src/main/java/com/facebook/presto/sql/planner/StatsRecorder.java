@@ -16,16 +16,25 @@ package com.facebook.presto.sql.planner;
 import com.facebook.presto.sql.planner.iterative.IterativeOptimizer;
 import com.facebook.presto.sql.planner.iterative.Rule;
 import com.facebook.presto.sql.planner.iterative.RuleStats;
+import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 import org.weakref.jmx.MBeanExporter;
 import org.weakref.jmx.ObjectNames;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
+import static java.lang.String.format;
+
 public class StatsRecorder
 {
     private final Map<Class<?>, RuleStats> stats = new HashMap<>();
+    private final Map<String, OptimizerStats> optimizerStats = new HashMap<>();
+    private final Map<PlanOptimizer, OptimizerStats> optimizerStatsByInstance = new IdentityHashMap<>();
 
     public void registerAll(Collection<Rule<?>> rules)
     {
@@ -44,6 +53,45 @@ public class StatsRecorder
         stats.get(rule.getClass()).recordFailure();
     }
 
+    /**
+     * Registers the optimizers of a planner. Their stats are named by their position, as the same
+     * optimizer class runs several times.
+     */
+    public void registerOptimizers(List<PlanOptimizer> optimizers)
+    {
+        for (int i = 0; i < optimizers.size(); i++) {
+            PlanOptimizer optimizer = optimizers.get(i);
+            OptimizerStats stats = new OptimizerStats();
+            optimizerStats.put(format("%02d_%s", i, optimizer.getClass().getSimpleName()), stats);
+            optimizerStatsByInstance.put(optimizer, stats);
+        }
+    }
+
+    /**
+     * Records the time spent in an optimizer. The optimizers that are not registered are ignored.
+     */
+    public void record(PlanOptimizer optimizer, long nanos)
+    {
+        OptimizerStats stats = optimizerStatsByInstance.get(optimizer);
+        if (stats != null) {
+            stats.record(nanos);
+        }
+    }
+
+    public void recordFailure(PlanOptimizer optimizer)
+    {
+        OptimizerStats stats = optimizerStatsByInstance.get(optimizer);
+        if (stats != null) {
+            stats.recordFailure();
+        }
+    }
+
+    @VisibleForTesting
+    Map<String, OptimizerStats> getOptimizerStats()
+    {
+        return ImmutableMap.copyOf(optimizerStats);
+    }
+
     void export(MBeanExporter exporter)
     {
         for (Map.Entry<Class<?>, RuleStats> entry : stats.entrySet()) {
@@ -53,6 +101,13 @@ public class StatsRecorder
 
             exporter.export(name, entry.getValue());
         }
+        for (Map.Entry<String, OptimizerStats> entry : optimizerStats.entrySet()) {
+            String name = ObjectNames.builder(PlanOptimizer.class)
+                    .withProperty("optimizer", entry.getKey())
+                    .build();
+
+            exporter.export(name, entry.getValue());
+        }
     }
 
     void unexport(MBeanExporter exporter)
@@ -64,5 +119,12 @@ public class StatsRecorder
 
             exporter.unexport(name);
         }
+        for (String optimizer : optimizerStats.keySet()) {
+            String name = ObjectNames.builder(PlanOptimizer.class)
+                    .withProperty("optimizer", optimizer)
+                    .build();
+
+            exporter.unexport(name);
+        }
     }
 }
@@ -15,9 +15,12 @@ package com.facebook.presto.sql.planner.iterative;
 
 import com.facebook.presto.Session;
 import com.facebook.presto.SystemSessionProperties;
+import com.facebook.presto.cost.CostCalculator;
+import com.facebook.presto.cost.PlanNodeCost;
 import com.facebook.presto.matching.Match;
 import com.facebook.presto.matching.Matcher;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.statistics.Estimate;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
 import com.facebook.presto.sql.planner.StatsRecorder;
@@ -25,19 +28,25 @@ import com.facebook.presto.sql.planner.Symbol;
 import com.facebook.presto.sql.planner.SymbolAllocator;
 import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
 import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import io.airlift.units.Duration;
 
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import static com.facebook.presto.cost.PlanNodeCost.UNKNOWN_COST;
 import static com.facebook.presto.spi.StandardErrorCode.OPTIMIZER_TIMEOUT;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
 
 public class IterativeOptimizer
         implements PlanOptimizer
@@ -45,6 +54,7 @@ public class IterativeOptimizer
     private final List<PlanOptimizer> legacyRules;
     private final RuleIndex ruleIndex;
     private final StatsRecorder stats;
+    private final Optional<CostCalculator> costCalculator;
 
     public IterativeOptimizer(StatsRecorder stats, Set<Rule<?>> rules)
     {
@@ -53,6 +63,21 @@ public class IterativeOptimizer
 
     public IterativeOptimizer(StatsRecorder stats, List<PlanOptimizer> legacyRules, Set<Rule<?>> newRules)
     {
+        this(stats, Optional.empty(), legacyRules, newRules);
+    }
+
+    /**
+     * Creates an optimizer that keeps the results of the {@link Rule#isCostBased() cost based} rules as
+     * alternatives in the Memo, and chooses the expression of each group with the lowest estimated cost.
+     */
+    public IterativeOptimizer(StatsRecorder stats, CostCalculator costCalculator, Set<Rule<?>> rules)
+    {
+        this(stats, Optional.of(costCalculator), ImmutableList.of(), rules);
+    }
+
+    private IterativeOptimizer(StatsRecorder stats, Optional<CostCalculator> costCalculator, List<PlanOptimizer> legacyRules, Set<Rule<?>> newRules)
+    {
+        this.costCalculator = requireNonNull(costCalculator, "costCalculator is null");
         this.legacyRules = ImmutableList.copyOf(legacyRules);
         this.ruleIndex = RuleIndex.builder()
                 .register(newRules)
@@ -95,6 +120,9 @@ public class IterativeOptimizer
         while (exploreChildren(group, context, matcher)) {
             progress = true;
 
+            // the children of the alternatives may have become cheaper
+            chooseCheapest(group, context);
+
             // if children changed, try current group again
             // in case we can match additional rules
             if (!exploreNode(group, context, matcher)) {
@@ -127,6 +155,17 @@ public class IterativeOptimizer
                     continue;
                 }
 
+                if (rule.isCostBased() && costCalculator.isPresent()) {
+                    Optional<PlanNode> chosen = exploreAlternative(group, node, rule, matcher, context);
+                    if (chosen.isPresent()) {
+                        node = chosen.get();
+
+                        done = false;
+                        progress = true;
+                    }
+                    continue;
+                }
+
                 Optional<PlanNode> transformed = transform(node, rule, matcher, context);
 
                 if (transformed.isPresent()) {
@@ -171,6 +210,95 @@ public class IterativeOptimizer
         return ((System.nanoTime() - context.getStartTimeInNanos()) / 1_000_000) >= context.getTimeoutInMilliseconds();
     }
 
+    /**
+     * Adds the result of a cost based rule to the group as an alternative, and chooses it when it is cheaper
+     * than the chosen expression, or when their costs cannot be compared.
+     *
+     * @return the newly chosen expression of the group, if it changed
+     */
+    private Optional<PlanNode> exploreAlternative(int group, PlanNode node, Rule<?> rule, Matcher matcher, Context context)
+    {
+        // alternatives are only explored during the first half of the time limit, so that the other rules
+        // can still converge in time
+        if (((System.nanoTime() - context.getStartTimeInNanos()) / 1_000_000) * 2 >= context.getTimeoutInMilliseconds()) {
+            return Optional.empty();
+        }
+        if (context.isExplored(node, rule)) {
+            return Optional.empty();
+        }
+
+        Optional<PlanNode> transformed = transform(node, rule, matcher, context);
+        if (!transformed.isPresent()) {
+            return Optional.empty();
+        }
+        context.markExplored(node, rule);
+        Optional<PlanNode> alternative = context.getMemo().addAlternative(group, transformed.get(), rule.getClass().getName());
+        if (!alternative.isPresent()) {
+            return Optional.empty();
+        }
+
+        Estimate nodeCost = estimateCumulativeCost(node, context);
+        Estimate alternativeCost = estimateCumulativeCost(alternative.get(), context);
+        if (nodeCost.isValueUnknown() || alternativeCost.isValueUnknown() || alternativeCost.getValue() < nodeCost.getValue()) {
+            return Optional.of(context.getMemo().choose(group, alternative.get()));
+        }
+        return Optional.empty();
+    }
+
+    private void chooseCheapest(int group, Context context)
+    {
+        List<PlanNode> expressions = context.getMemo().getExpressions(group);
+        if (!costCalculator.isPresent() || expressions.size() == 1) {
+            return;
+        }
+
+        PlanNode cheapest = expressions.get(0);
+        Estimate cheapestCost = estimateCumulativeCost(cheapest, context);
+        for (PlanNode alternative : expressions.subList(1, expressions.size())) {
+            Estimate cost = estimateCumulativeCost(alternative, context);
+            if (!cost.isValueUnknown() && !cheapestCost.isValueUnknown() && cost.getValue() < cheapestCost.getValue()) {
+                cheapest = alternative;
+                cheapestCost = cost;
+            }
+        }
+        if (cheapest != expressions.get(0)) {
+            context.getMemo().choose(group, cheapest);
+        }
+    }
+
+    /**
+     * Estimates the cost of an expression as the total size of the data produced by the nodes of its subtree,
+     * following the chosen expressions of the groups it references.
+     */
+    private Estimate estimateCumulativeCost(PlanNode node, Context context)
+    {
+        Map<PlanNodeId, PlanNodeCost> costs = costCalculator.get().calculateCostForPlan(
+                context.getSession(),
+                context.getSymbolAllocator().getTypes(),
+                node,
+                context.getLookup());
+        return sumOutputSizes(node, costs, context.getLookup());
+    }
+
+    private static Estimate sumOutputSizes(PlanNode node, Map<PlanNodeId, PlanNodeCost> costs, Lookup lookup)
+    {
+        PlanNode resolved = lookup.resolve(node);
+        // the cost of a group reference may only be recorded under its own id, e.g. for the source of a filter
+        PlanNodeCost cost = costs.get(node.getId());
+        if (cost == null) {
+            cost = costs.getOrDefault(resolved.getId(), UNKNOWN_COST);
+        }
+        Estimate total = cost.getOutputSizeInBytes();
+        for (PlanNode source : resolved.getSources()) {
+            Estimate sourceTotal = sumOutputSizes(source, costs, lookup);
+            if (total.isValueUnknown() || sourceTotal.isValueUnknown()) {
+                return Estimate.unknownValue();
+            }
+            total = new Estimate(total.getValue() + sourceTotal.getValue());
+        }
+        return total;
+    }
+
     private boolean exploreChildren(int group, Context context, Matcher matcher)
     {
         boolean progress = false;
@@ -197,6 +325,7 @@ public class IterativeOptimizer
         private final long startTimeInNanos;
         private final long timeoutInMilliseconds;
         private final Session session;
+        private final Map<PlanNode, Set<Rule<?>>> exploredRules = new IdentityHashMap<>();
 
         public Context(
                 Memo memo,
@@ -256,5 +385,18 @@ public class IterativeOptimizer
         {
             return session;
         }
+
+        /**
+         * Whether the rule already produced an alternative to the node, which it would produce again.
+         */
+        public boolean isExplored(PlanNode node, Rule<?> rule)
+        {
+            return exploredRules.getOrDefault(node, ImmutableSet.of()).contains(rule);
+        }
+
+        public void markExplored(PlanNode node, Rule<?> rule)
+        {
+            exploredRules.computeIfAbsent(node, key -> new HashSet<>()).add(rule);
+        }
     }
 }
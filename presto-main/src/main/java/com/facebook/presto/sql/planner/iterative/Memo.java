@@ -15,10 +15,14 @@ package com.facebook.presto.sql.planner.iterative;
 
 import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
 import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -51,13 +55,21 @@ import static com.google.common.base.Preconditions.checkState;
  * </pre>
  * Groups are reference-counted, and groups that become unreachable from the root
  * due to mutations in a subtree get garbage-collected.
+ * <p>
+ * Besides the expression that is currently chosen for it, a group can retain a few
+ * equivalent alternative expressions, so that the cheapest one can be chosen again
+ * when the costs of their children change. The children of the alternatives are
+ * reference-counted like the ones of the chosen expression.
  */
 public class Memo
 {
     private final PlanNodeIdAllocator idAllocator;
     private final int rootGroup;
 
+    private static final int MAX_ALTERNATIVES_PER_GROUP = 8;
+
     private final Map<Integer, PlanNode> membership = new HashMap<>();
+    private final Map<Integer, List<PlanNode>> alternatives = new HashMap<>();
     private final Map<Integer, Integer> referenceCounts = new HashMap<>();
 
     private int nextGroupId;
@@ -80,6 +92,17 @@ public class Memo
         return membership.get(group);
     }
 
+    /**
+     * Returns the expressions of the group: the chosen one first, followed by its alternatives.
+     */
+    public List<PlanNode> getExpressions(int group)
+    {
+        return ImmutableList.<PlanNode>builder()
+                .add(getNode(group))
+                .addAll(alternatives.getOrDefault(group, ImmutableList.of()))
+                .build();
+    }
+
     public PlanNode resolve(GroupReference groupReference)
     {
         return getNode(groupReference.getGroupId());
@@ -119,6 +142,44 @@ public class Memo
         return node;
     }
 
+    /**
+     * Adds an expression equivalent to the chosen one to the group, without choosing it.
+     *
+     * @return the added expression, with its children replaced by group references, or empty
+     * when the group already retains as many alternatives as allowed
+     */
+    public Optional<PlanNode> addAlternative(int group, PlanNode node, String reason)
+    {
+        PlanNode chosen = getNode(group);
+        checkArgument(new HashSet<>(chosen.getOutputSymbols()).equals(new HashSet<>(node.getOutputSymbols())),
+                "%s: alternative expression doesn't produce same outputs: %s vs %s",
+                reason,
+                chosen.getOutputSymbols(),
+                node.getOutputSymbols());
+
+        List<PlanNode> groupAlternatives = alternatives.computeIfAbsent(group, key -> new ArrayList<>());
+        if (groupAlternatives.size() >= MAX_ALTERNATIVES_PER_GROUP || node instanceof GroupReference) {
+            return Optional.empty();
+        }
+
+        node = insertChildrenAndRewrite(node);
+        incrementReferenceCounts(node);
+        groupAlternatives.add(node);
+        return Optional.of(node);
+    }
+
+    /**
+     * Chooses one of the alternatives of the group, which keeps the previously chosen expression as an alternative.
+     */
+    public PlanNode choose(int group, PlanNode alternative)
+    {
+        List<PlanNode> groupAlternatives = alternatives.get(group);
+        checkArgument(groupAlternatives != null && groupAlternatives.contains(alternative), "Not an alternative of group %s: %s", group, alternative);
+
+        groupAlternatives.set(groupAlternatives.indexOf(alternative), membership.put(group, alternative));
+        return alternative;
+    }
+
     private void incrementReferenceCounts(PlanNode node)
     {
         Set<Integer> references = getAllReferences(node);
@@ -138,8 +199,12 @@ public class Memo
 
             if (newCount == 0) {
                 PlanNode child = membership.get(group);
+                List<PlanNode> childAlternatives = alternatives.getOrDefault(group, ImmutableList.of());
                 deleteGroup(group);
                 decrementReferenceCounts(child);
+                for (PlanNode alternative : childAlternatives) {
+                    decrementReferenceCounts(alternative);
+                }
             }
         }
     }
@@ -155,6 +220,7 @@ public class Memo
     private void deleteGroup(int group)
     {
         membership.remove(group);
+        alternatives.remove(group);
         referenceCounts.remove(group);
     }
 
@@ -39,6 +39,16 @@ public interface Rule<T>
 
     Optional<PlanNode> apply(T node, Captures captures, Context context);
 
+    /**
+     * Whether the result of the rule is an alternative to the matched node, which is only better
+     * when it is cheaper, rather than an unconditional improvement. When the optimizer is given
+     * a cost calculator, alternatives are kept in the Memo and the cheapest expression is chosen.
+     */
+    default boolean isCostBased()
+    {
+        return false;
+    }
+
     /**
      * This method is for working with Rules of unknown pattern result type ({@code Rule<?>}).
      * <p>
@@ -61,7 +61,8 @@ public class EliminateCrossJoins
     @Override
     public boolean isEnabled(Session session)
     {
-        return SystemSessionProperties.isJoinReorderingEnabled(session);
+        // the joins are reordered by ReorderJoins instead, which also eliminates cross joins
+        return SystemSessionProperties.isJoinReorderingEnabled(session) && !SystemSessionProperties.isCostBasedJoinReordering(session);
     }
 
     @Override
@@ -184,6 +185,15 @@ public class EliminateCrossJoins
                     Optional.empty());
         }
 
+        return addFiltersAndProjections(expectedOutputSymbols, graph, result, idAllocator);
+    }
+
+    /**
+     * Adds the filters and the projections of the graph on top of a join tree of its nodes.
+     */
+    static PlanNode addFiltersAndProjections(List<Symbol> expectedOutputSymbols, JoinGraph graph, PlanNode joinTree, PlanNodeIdAllocator idAllocator)
+    {
+        PlanNode result = joinTree;
         List<Expression> filters = graph.getFilters();
 
         for (Expression filter : filters) {
@@ -60,6 +60,13 @@ public class PushPartialAggregationThroughJoin
         return isPushAggregationThroughJoin(session);
     }
 
+    @Override
+    public boolean isCostBased()
+    {
+        // the partial aggregation below the join only pays off when it reduces the rows enough
+        return true;
+    }
+
     @Override
     public Optional<PlanNode> apply(AggregationNode aggregationNode, Captures captures, Context context)
     {
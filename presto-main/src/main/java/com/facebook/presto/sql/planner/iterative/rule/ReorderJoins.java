@@ -0,0 +1,349 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative.rule;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.SystemSessionProperties;
+import com.facebook.presto.cost.CostCalculator;
+import com.facebook.presto.cost.PlanNodeCost;
+import com.facebook.presto.matching.Captures;
+import com.facebook.presto.matching.Pattern;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.iterative.Lookup;
+import com.facebook.presto.sql.planner.iterative.Rule;
+import com.facebook.presto.sql.planner.optimizations.joins.JoinGraph;
+import com.facebook.presto.sql.planner.plan.FilterNode;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.sql.planner.plan.ProjectNode;
+import com.google.common.collect.ImmutableList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.cost.JoinStatistics.estimateInnerJoin;
+import static com.facebook.presto.sql.planner.iterative.rule.EliminateCrossJoins.addFiltersAndProjections;
+import static com.facebook.presto.sql.planner.iterative.rule.EliminateCrossJoins.buildJoinTree;
+import static com.facebook.presto.sql.planner.iterative.rule.EliminateCrossJoins.getJoinOrder;
+import static com.facebook.presto.sql.planner.iterative.rule.EliminateCrossJoins.isOriginalOrder;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.Patterns.join;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Chooses the order and the build sides of the inner joins of a {@link JoinGraph} by their estimated cost.
+ * <p>
+ * The best plan for every subset of the nodes of the graph is found with dynamic programming: it is the
+ * cheapest join of the best plans of two disjoint subsets, so bushy plans are considered as well. Subsets
+ * are only joined when a join condition connects them, unless the graph itself is not connected.
+ * The cost of a plan is the sum of the estimated rows read and produced by its joins, where the rows of
+ * the build side count more than the rows of the probe side, as they are hashed and kept in memory.
+ * <p>
+ * When the row count of a node of the graph is not known, or the graph has more nodes than the
+ * max reordered joins session property allows, the joins are only reordered to eliminate cross joins,
+ * like {@link EliminateCrossJoins} does.
+ */
+public class ReorderJoins
+        implements Rule<JoinNode>
+{
+    private static final Pattern<JoinNode> PATTERN = join();
+
+    private static final double BUILD_COST_FACTOR = 2.0;
+
+    private final CostCalculator costCalculator;
+
+    public ReorderJoins(CostCalculator costCalculator)
+    {
+        this.costCalculator = requireNonNull(costCalculator, "costCalculator is null");
+    }
+
+    @Override
+    public Pattern<JoinNode> getPattern()
+    {
+        return PATTERN;
+    }
+
+    @Override
+    public boolean isEnabled(Session session)
+    {
+        return SystemSessionProperties.isJoinReorderingEnabled(session) && SystemSessionProperties.isCostBasedJoinReordering(session);
+    }
+
+    @Override
+    public Optional<PlanNode> apply(JoinNode node, Captures captures, Context context)
+    {
+        JoinGraph graph = JoinGraph.buildShallowFrom(node, context.getLookup());
+        if (graph.size() < 2) {
+            return Optional.empty();
+        }
+        if (graph.size() > SystemSessionProperties.getMaxReorderedJoins(context.getSession())) {
+            // enumerating the join orders of the graph is too expensive
+            return eliminateCrossJoins(node, graph, context.getIdAllocator());
+        }
+
+        Map<Symbol, Type> types = context.getSymbolAllocator().getTypes();
+        List<PlanNodeCost> nodeCosts = graph.getNodes().stream()
+                .map(graphNode -> costCalculator.calculateCostForNode(context.getSession(), types, graphNode, context.getLookup()))
+                .collect(toImmutableList());
+        if (nodeCosts.stream().anyMatch(cost -> cost.getOutputRowCount().isValueUnknown())) {
+            return eliminateCrossJoins(node, graph, context.getIdAllocator());
+        }
+
+        JoinEnumerator enumerator = new JoinEnumerator(graph, nodeCosts);
+        JoinTree best = enumerator.getBestJoinTree();
+        Optional<JoinTree> current = enumerator.toJoinTree(node, context.getLookup());
+        if (!current.isPresent() || best.getCost() >= current.get().getCost() || best.isSameAs(current.get())) {
+            return Optional.empty();
+        }
+
+        PlanNode joinTree = enumerator.buildJoinTree(best, context.getIdAllocator());
+        return Optional.of(addFiltersAndProjections(node.getOutputSymbols(), graph, joinTree, context.getIdAllocator()));
+    }
+
+    private static Optional<PlanNode> eliminateCrossJoins(JoinNode node, JoinGraph graph, PlanNodeIdAllocator idAllocator)
+    {
+        if (graph.size() < 3) {
+            return Optional.empty();
+        }
+        List<Integer> joinOrder = getJoinOrder(graph);
+        if (isOriginalOrder(joinOrder)) {
+            return Optional.empty();
+        }
+        return Optional.of(buildJoinTree(node.getOutputSymbols(), graph, joinOrder, idAllocator));
+    }
+
+    private static class JoinEnumerator
+    {
+        private final JoinGraph graph;
+        private final List<PlanNodeCost> nodeCosts;
+        private final Map<PlanNodeId, Integer> nodeIndexes = new HashMap<>();
+        private final boolean[] connected;
+
+        private JoinEnumerator(JoinGraph graph, List<PlanNodeCost> nodeCosts)
+        {
+            this.graph = requireNonNull(graph, "graph is null");
+            this.nodeCosts = ImmutableList.copyOf(requireNonNull(nodeCosts, "nodeCosts is null"));
+            for (int i = 0; i < graph.size(); i++) {
+                nodeIndexes.put(graph.getNode(i).getId(), i);
+            }
+            this.connected = new boolean[1 << graph.size()];
+            for (int nodes = 1; nodes < connected.length; nodes++) {
+                connected[nodes] = isConnected(nodes);
+            }
+        }
+
+        public JoinTree getBestJoinTree()
+        {
+            JoinTree[] best = new JoinTree[1 << graph.size()];
+            for (int i = 0; i < graph.size(); i++) {
+                best[1 << i] = createLeaf(i);
+            }
+
+            // subsets are visited after all of their own subsets, as they are smaller numbers
+            for (int nodes = 1; nodes < best.length; nodes++) {
+                if (Integer.bitCount(nodes) < 2) {
+                    continue;
+                }
+                for (int left = (nodes - 1) & nodes; left > 0; left = (left - 1) & nodes) {
+                    int right = nodes & ~left;
+                    if (best[left] == null || best[right] == null) {
+                        continue;
+                    }
+                    // a connected set of nodes is only built from connected subsets, so there is no cross join
+                    if (connected[nodes] && (!connected[left] || !connected[right] || getCriteria(left, right).isEmpty())) {
+                        continue;
+                    }
+                    JoinTree candidate = createJoin(best[left], best[right]);
+                    if (best[nodes] == null || candidate.getCost() < best[nodes].getCost()) {
+                        best[nodes] = candidate;
+                    }
+                }
+            }
+            return best[best.length - 1];
+        }
+
+        /**
+         * Describes the joins between the nodes of the graph in the plan, so their cost can be compared with
+         * the cost of the best join tree. Filters and projections between the joins are ignored, as they are
+         * by the enumeration.
+         */
+        public Optional<JoinTree> toJoinTree(PlanNode node, Lookup lookup)
+        {
+            Integer index = nodeIndexes.get(node.getId());
+            if (index != null) {
+                return Optional.of(createLeaf(index));
+            }
+            PlanNode resolved = lookup.resolve(node);
+            if (resolved != node) {
+                return toJoinTree(resolved, lookup);
+            }
+            if (node instanceof JoinNode && ((JoinNode) node).getType() == INNER) {
+                Optional<JoinTree> left = toJoinTree(((JoinNode) node).getLeft(), lookup);
+                Optional<JoinTree> right = toJoinTree(((JoinNode) node).getRight(), lookup);
+                if (left.isPresent() && right.isPresent()) {
+                    return Optional.of(createJoin(left.get(), right.get()));
+                }
+            }
+            if (node instanceof FilterNode) {
+                return toJoinTree(((FilterNode) node).getSource(), lookup);
+            }
+            if (node instanceof ProjectNode) {
+                return toJoinTree(((ProjectNode) node).getSource(), lookup);
+            }
+            return Optional.empty();
+        }
+
+        public PlanNode buildJoinTree(JoinTree joinTree, PlanNodeIdAllocator idAllocator)
+        {
+            if (joinTree.isLeaf()) {
+                return graph.getNode(Integer.numberOfTrailingZeros(joinTree.getNodes()));
+            }
+            PlanNode left = buildJoinTree(joinTree.getLeft(), idAllocator);
+            PlanNode right = buildJoinTree(joinTree.getRight(), idAllocator);
+            return new JoinNode(
+                    idAllocator.getNextId(),
+                    INNER,
+                    left,
+                    right,
+                    getCriteria(joinTree.getLeft().getNodes(), joinTree.getRight().getNodes()),
+                    ImmutableList.<Symbol>builder()
+                            .addAll(left.getOutputSymbols())
+                            .addAll(right.getOutputSymbols())
+                            .build(),
+                    Optional.empty(),
+                    Optional.empty(),
+                    Optional.empty(),
+                    Optional.empty());
+        }
+
+        private JoinTree createLeaf(int index)
+        {
+            return new JoinTree(1 << index, null, null, nodeCosts.get(index), 0);
+        }
+
+        private JoinTree createJoin(JoinTree left, JoinTree right)
+        {
+            PlanNodeCost estimate = estimateInnerJoin(left.getEstimate(), right.getEstimate(), getCriteria(left.getNodes(), right.getNodes()));
+            double cost = left.getCost() + right.getCost() +
+                    left.getRowCount() +
+                    right.getRowCount() * BUILD_COST_FACTOR +
+                    estimate.getOutputRowCount().getValue();
+            return new JoinTree(left.getNodes() | right.getNodes(), left, right, estimate, cost);
+        }
+
+        private List<EquiJoinClause> getCriteria(int leftNodes, int rightNodes)
+        {
+            ImmutableList.Builder<EquiJoinClause> criteria = ImmutableList.builder();
+            for (int i = 0; i < graph.size(); i++) {
+                if ((leftNodes & (1 << i)) == 0) {
+                    continue;
+                }
+                for (JoinGraph.Edge edge : graph.getEdges(graph.getNode(i))) {
+                    int target = nodeIndexes.get(edge.getTargetNode().getId());
+                    if ((rightNodes & (1 << target)) != 0) {
+                        criteria.add(new EquiJoinClause(edge.getSourceSymbol(), edge.getTargetSymbol()));
+                    }
+                }
+            }
+            return criteria.build();
+        }
+
+        private boolean isConnected(int nodes)
+        {
+            int first = Integer.lowestOneBit(nodes);
+            int reached = first;
+            int toVisit = first;
+            while (toVisit != 0) {
+                int index = Integer.numberOfTrailingZeros(toVisit);
+                toVisit &= ~(1 << index);
+                for (JoinGraph.Edge edge : graph.getEdges(graph.getNode(index))) {
+                    int target = 1 << nodeIndexes.get(edge.getTargetNode().getId());
+                    if ((nodes & target) != 0 && (reached & target) == 0) {
+                        reached |= target;
+                        toVisit |= target;
+                    }
+                }
+            }
+            return reached == nodes;
+        }
+    }
+
+    private static class JoinTree
+    {
+        private final int nodes;
+        private final JoinTree left;
+        private final JoinTree right;
+        private final PlanNodeCost estimate;
+        private final double cost;
+
+        private JoinTree(int nodes, JoinTree left, JoinTree right, PlanNodeCost estimate, double cost)
+        {
+            this.nodes = nodes;
+            this.left = left;
+            this.right = right;
+            this.estimate = requireNonNull(estimate, "estimate is null");
+            this.cost = cost;
+        }
+
+        public int getNodes()
+        {
+            return nodes;
+        }
+
+        public boolean isLeaf()
+        {
+            return left == null;
+        }
+
+        public JoinTree getLeft()
+        {
+            return left;
+        }
+
+        public JoinTree getRight()
+        {
+            return right;
+        }
+
+        public PlanNodeCost getEstimate()
+        {
+            return estimate;
+        }
+
+        public double getRowCount()
+        {
+            return estimate.getOutputRowCount().getValue();
+        }
+
+        public double getCost()
+        {
+            return cost;
+        }
+
+        public boolean isSameAs(JoinTree other)
+        {
+            if (nodes != other.nodes || isLeaf() != other.isLeaf()) {
+                return false;
+            }
+            return isLeaf() || (left.isSameAs(other.left) && right.isSameAs(other.right));
+        }
+    }
+}
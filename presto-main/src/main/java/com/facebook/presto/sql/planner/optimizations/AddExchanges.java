@@ -32,6 +32,7 @@ import com.facebook.presto.sql.planner.LookupSymbolResolver;
 import com.facebook.presto.sql.planner.Partitioning;
 import com.facebook.presto.sql.planner.PartitioningScheme;
 import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.SkewMitigation;
 import com.facebook.presto.sql.planner.Symbol;
 import com.facebook.presto.sql.planner.SymbolAllocator;
 import com.facebook.presto.sql.planner.SymbolsExtractor;
@@ -98,6 +99,7 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
+import static com.facebook.presto.SystemSessionProperties.getSkewedJoinFanout;
 import static com.facebook.presto.SystemSessionProperties.isColocatedJoinEnabled;
 import static com.facebook.presto.sql.ExpressionUtils.combineConjuncts;
 import static com.facebook.presto.sql.ExpressionUtils.extractConjuncts;
@@ -106,6 +108,8 @@ import static com.facebook.presto.sql.ExpressionUtils.stripNonDeterministicConju
 import static com.facebook.presto.sql.analyzer.ExpressionAnalyzer.getExpressionTypes;
 import static com.facebook.presto.sql.planner.FragmentTableScanCounter.countSources;
 import static com.facebook.presto.sql.planner.FragmentTableScanCounter.hasMultipleSources;
+import static com.facebook.presto.sql.planner.SkewMitigation.Strategy.REPLICATE;
+import static com.facebook.presto.sql.planner.SkewMitigation.Strategy.SALT_HOT_KEYS;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_ARBITRARY_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
@@ -767,6 +771,7 @@ public class AddExchanges
             if (distributionType == JoinNode.DistributionType.PARTITIONED) {
                 SetMultimap<Symbol, Symbol> rightToLeft = createMapping(rightSymbols, leftSymbols);
                 SetMultimap<Symbol, Symbol> leftToRight = createMapping(leftSymbols, rightSymbols);
+                boolean skewMitigated = false;
 
                 left = node.getLeft().accept(this, context.withPreferredProperties(PreferredProperties.partitioned(ImmutableSet.copyOf(leftSymbols))));
 
@@ -788,6 +793,17 @@ public class AddExchanges
                                 partitionedExchange(idAllocator.getNextId(), REMOTE, left.getNode(), new PartitioningScheme(leftPartitioning, left.getNode().getOutputSymbols())),
                                 left.getProperties());
                     }
+                    else if (canMitigateSkew(node)) {
+                        // unmatched build rows can not be replicated, so only joins that do not output them are salted
+                        int fanout = getSkewedJoinFanout(session);
+                        left = withDerivedProperties(
+                                skewMitigatedExchange(left.getNode(), leftSymbols, new SkewMitigation(SALT_HOT_KEYS, fanout)),
+                                left.getProperties());
+                        right = withDerivedProperties(
+                                skewMitigatedExchange(right.getNode(), rightSymbols, new SkewMitigation(REPLICATE, fanout)),
+                                right.getProperties());
+                        skewMitigated = true;
+                    }
                     else {
                         left = withDerivedProperties(
                                 partitionedExchange(idAllocator.getNextId(), REMOTE, left.getNode(), leftSymbols, Optional.empty()),
@@ -798,14 +814,17 @@ public class AddExchanges
                     }
                 }
 
-                verify(left.getProperties().isNodePartitionedWith(right.getProperties(), leftToRight::get));
+                // the sides of a salted join are partitioned together, but not on the join keys
+                if (!skewMitigated) {
+                    verify(left.getProperties().isNodePartitionedWith(right.getProperties(), leftToRight::get));
 
-                // if colocated joins are disabled, force redistribute when using a custom partitioning
-                if (!isColocatedJoinEnabled(session) && hasMultipleSources(left.getNode(), right.getNode())) {
-                    Partitioning rightPartitioning = left.getProperties().translate(createTranslator(leftToRight)).getNodePartitioning().get();
-                    right = withDerivedProperties(
-                            partitionedExchange(idAllocator.getNextId(), REMOTE, right.getNode(), new PartitioningScheme(rightPartitioning, right.getNode().getOutputSymbols())),
-                            right.getProperties());
+                    // if colocated joins are disabled, force redistribute when using a custom partitioning
+                    if (!isColocatedJoinEnabled(session) && hasMultipleSources(left.getNode(), right.getNode())) {
+                        Partitioning rightPartitioning = left.getProperties().translate(createTranslator(leftToRight)).getNodePartitioning().get();
+                        right = withDerivedProperties(
+                                partitionedExchange(idAllocator.getNextId(), REMOTE, right.getNode(), new PartitioningScheme(rightPartitioning, right.getNode().getOutputSymbols())),
+                                right.getProperties());
+                    }
                 }
             }
             else {
@@ -842,6 +861,28 @@ public class AddExchanges
             return new PlanWithProperties(result, deriveProperties(result, ImmutableList.of(left.getProperties(), right.getProperties())));
         }
 
+        private boolean canMitigateSkew(JoinNode node)
+        {
+            return getSkewedJoinFanout(session) > 1 &&
+                    !node.getCriteria().isEmpty() &&
+                    (node.getType() == JoinNode.Type.INNER || node.getType() == JoinNode.Type.LEFT);
+        }
+
+        private ExchangeNode skewMitigatedExchange(PlanNode source, List<Symbol> partitioningColumns, SkewMitigation skewMitigation)
+        {
+            return partitionedExchange(
+                    idAllocator.getNextId(),
+                    REMOTE,
+                    source,
+                    new PartitioningScheme(
+                            Partitioning.create(FIXED_HASH_DISTRIBUTION, partitioningColumns),
+                            source.getOutputSymbols(),
+                            Optional.empty(),
+                            false,
+                            Optional.empty(),
+                            Optional.of(skewMitigation)));
+        }
+
         @Override
         public PlanWithProperties visitUnnest(UnnestNode node, Context context)
         {
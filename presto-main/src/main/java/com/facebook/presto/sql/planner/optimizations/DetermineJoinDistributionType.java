@@ -14,6 +14,9 @@
 package com.facebook.presto.sql.planner.optimizations;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.cost.CostCalculator;
+import com.facebook.presto.cost.PlanNodeCost;
+import com.facebook.presto.spi.statistics.Estimate;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
 import com.facebook.presto.sql.planner.Symbol;
@@ -21,40 +24,65 @@ import com.facebook.presto.sql.planner.SymbolAllocator;
 import com.facebook.presto.sql.planner.plan.DeleteNode;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.plan.SemiJoinNode;
 import com.facebook.presto.sql.planner.plan.SimplePlanRewriter;
+import com.google.common.collect.ImmutableMap;
 
 import java.util.Map;
 import java.util.Optional;
 
+import static com.facebook.presto.SystemSessionProperties.getJoinMaxBroadcastTableSize;
+import static com.facebook.presto.SystemSessionProperties.isAutomaticJoinDistribution;
 import static com.facebook.presto.SystemSessionProperties.isDistributedJoinEnabled;
+import static com.facebook.presto.cost.PlanNodeCost.UNKNOWN_COST;
 import static com.facebook.presto.sql.planner.optimizations.QueryCardinalityUtil.isAtMostScalar;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.FULL;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Chooses whether the build side of each join is replicated to all the nodes or partitioned on the join keys.
+ * <p>
+ * By default the choice follows the distributed_join session property. When the join distribution is automatic,
+ * the build side is replicated when its estimated size is at most join_max_broadcast_table_size and partitioned
+ * otherwise. Joins whose build side size cannot be estimated still follow distributed_join.
+ */
 public class DetermineJoinDistributionType
         implements PlanOptimizer
 {
+    private final CostCalculator costCalculator;
+
+    public DetermineJoinDistributionType(CostCalculator costCalculator)
+    {
+        this.costCalculator = requireNonNull(costCalculator, "costCalculator is null");
+    }
+
     @Override
     public PlanNode optimize(PlanNode plan, Session session, Map<Symbol, Type> types, SymbolAllocator symbolAllocator, PlanNodeIdAllocator idAllocator)
     {
         requireNonNull(plan, "plan is null");
         requireNonNull(session, "session is null");
 
-        return SimplePlanRewriter.rewriteWith(new Rewriter(session), plan);
+        Map<PlanNodeId, PlanNodeCost> costs = ImmutableMap.of();
+        if (isAutomaticJoinDistribution(session)) {
+            costs = costCalculator.calculateCostForPlan(session, types, plan);
+        }
+        return SimplePlanRewriter.rewriteWith(new Rewriter(session, costs), plan);
     }
 
     private static class Rewriter
             extends SimplePlanRewriter<Void>
     {
         private final Session session;
+        private final Map<PlanNodeId, PlanNodeCost> costs;
         private boolean isDeleteQuery;
 
-        public Rewriter(Session session)
+        public Rewriter(Session session, Map<PlanNodeId, PlanNodeCost> costs)
         {
             this.session = session;
+            this.costs = costs;
         }
 
         @Override
@@ -81,7 +109,7 @@ public class DetermineJoinDistributionType
         {
             PlanNode sourceRewritten = context.rewrite(node.getSource(), context.get());
             PlanNode filteringSourceRewritten = context.rewrite(node.getFilteringSource(), context.get());
-            SemiJoinNode.DistributionType targetJoinDistributionType = getTargetSemiJoinDistributionType(isDeleteQuery);
+            SemiJoinNode.DistributionType targetJoinDistributionType = getTargetSemiJoinDistributionType(node, isDeleteQuery);
             return new SemiJoinNode(
                     node.getId(),
                     sourceRewritten,
@@ -113,7 +141,13 @@ public class DetermineJoinDistributionType
         {
             // The implementation of full outer join only works if the data is hash partitioned. See LookupJoinOperators#buildSideOuterJoinUnvisitedPositions
             JoinNode.Type type = node.getType();
-            if (type == RIGHT || type == FULL || (isDistributedJoinEnabled(session) && !mustBroadcastJoin(node))) {
+            if (type == RIGHT || type == FULL) {
+                return JoinNode.DistributionType.PARTITIONED;
+            }
+            if (mustBroadcastJoin(node)) {
+                return JoinNode.DistributionType.REPLICATED;
+            }
+            if (isDistributed(node.getRight())) {
                 return JoinNode.DistributionType.PARTITIONED;
             }
 
@@ -130,13 +164,24 @@ public class DetermineJoinDistributionType
             return node.getType() == INNER && node.getCriteria().isEmpty();
         }
 
-        private SemiJoinNode.DistributionType getTargetSemiJoinDistributionType(boolean isDeleteQuery)
+        private SemiJoinNode.DistributionType getTargetSemiJoinDistributionType(SemiJoinNode node, boolean isDeleteQuery)
         {
-            if (isDistributedJoinEnabled(session) && !isDeleteQuery) {
+            if (!isDeleteQuery && isDistributed(node.getFilteringSource())) {
                 return SemiJoinNode.DistributionType.PARTITIONED;
             }
 
             return SemiJoinNode.DistributionType.REPLICATED;
         }
+
+        private boolean isDistributed(PlanNode buildSide)
+        {
+            if (isAutomaticJoinDistribution(session)) {
+                Estimate buildSize = costs.getOrDefault(buildSide.getId(), UNKNOWN_COST).getOutputSizeInBytes();
+                if (!buildSize.isValueUnknown()) {
+                    return buildSize.getValue() > getJoinMaxBroadcastTableSize(session).toBytes();
+                }
+            }
+            return isDistributedJoinEnabled(session);
+        }
     }
 }
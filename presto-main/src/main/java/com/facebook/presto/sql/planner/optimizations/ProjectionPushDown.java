@@ -165,7 +165,8 @@ public class ProjectionPushDown
                     outputBuilder.build(),
                     exchange.getPartitioningScheme().getHashColumn(),
                     exchange.getPartitioningScheme().isReplicateNullsAndAny(),
-                    exchange.getPartitioningScheme().getBucketToPartition());
+                    exchange.getPartitioningScheme().getBucketToPartition(),
+                    exchange.getPartitioningScheme().getSkewMitigation());
 
             return new ExchangeNode(
                     exchange.getId(),
@@ -475,6 +475,13 @@ class PropertyDerivations
                             .constants(constants)
                             .build();
                 case REPARTITION:
+                    if (node.getPartitioningScheme().getSkewMitigation().isPresent()) {
+                        // the rows of a key may be sent to several partitions
+                        return ActualProperties.builder()
+                                .global(arbitraryPartition())
+                                .constants(constants)
+                                .build();
+                    }
                     return ActualProperties.builder()
                             .global(partitionedOn(
                                     node.getPartitioningScheme().getPartitioning(),
@@ -278,7 +278,8 @@ public class UnaliasSymbolReferences
                     outputs.build(),
                     canonicalize(node.getPartitioningScheme().getHashColumn()),
                     node.getPartitioningScheme().isReplicateNullsAndAny(),
-                    node.getPartitioningScheme().getBucketToPartition());
+                    node.getPartitioningScheme().getBucketToPartition(),
+                    node.getPartitioningScheme().getSkewMitigation());
 
             return new ExchangeNode(node.getId(), node.getType(), node.getScope(), partitioningScheme, sources, inputs);
         }
@@ -738,7 +739,8 @@ public class UnaliasSymbolReferences
                     outputs.build(),
                     canonicalize(scheme.getHashColumn()),
                     scheme.isReplicateNullsAndAny(),
-                    scheme.getBucketToPartition());
+                    scheme.getBucketToPartition(),
+                    scheme.getSkewMitigation());
         }
     }
 }
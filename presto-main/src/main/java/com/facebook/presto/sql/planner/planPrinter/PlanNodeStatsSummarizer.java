@@ -15,7 +15,9 @@ package com.facebook.presto.sql.planner.planPrinter;
 
 import com.facebook.presto.execution.StageInfo;
 import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.operator.HashAggregationOperatorInfo;
 import com.facebook.presto.operator.HashCollisionsInfo;
+import com.facebook.presto.operator.OperatorInfo;
 import com.facebook.presto.operator.OperatorStats;
 import com.facebook.presto.operator.PipelineStats;
 import com.facebook.presto.operator.TaskStats;
@@ -109,8 +111,9 @@ public class PlanNodeStatsSummarizer
                                         operatorStats.getSumSquaredInputPositions())),
                         (map1, map2) -> mergeMaps(map1, map2, OperatorInputStats::merge));
 
-                if (operatorStats.getInfo() instanceof HashCollisionsInfo) {
-                    HashCollisionsInfo hashCollisionsInfo = (HashCollisionsInfo) operatorStats.getInfo();
+                Optional<HashCollisionsInfo> hashCollisionsInfos = getHashCollisionsInfo(operatorStats.getInfo());
+                if (hashCollisionsInfos.isPresent()) {
+                    HashCollisionsInfo hashCollisionsInfo = hashCollisionsInfos.get();
                     operatorHashCollisionsStats.merge(planNodeId,
                             ImmutableMap.of(
                                     operatorStats.getOperatorType(),
@@ -172,4 +175,15 @@ public class PlanNodeStatsSummarizer
         }
         return stats;
     }
+
+    private static Optional<HashCollisionsInfo> getHashCollisionsInfo(OperatorInfo info)
+    {
+        if (info instanceof HashCollisionsInfo) {
+            return Optional.of((HashCollisionsInfo) info);
+        }
+        if (info instanceof HashAggregationOperatorInfo) {
+            return Optional.of(((HashAggregationOperatorInfo) info).getHashCollisionsInfo());
+        }
+        return Optional.empty();
+    }
 }
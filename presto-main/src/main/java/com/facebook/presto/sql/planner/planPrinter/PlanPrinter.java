@@ -16,6 +16,7 @@ package com.facebook.presto.sql.planner.planPrinter;
 import com.facebook.presto.Session;
 import com.facebook.presto.cost.CostCalculator;
 import com.facebook.presto.cost.PlanNodeCost;
+import com.facebook.presto.cost.SymbolStatistics;
 import com.facebook.presto.execution.StageInfo;
 import com.facebook.presto.execution.StageStats;
 import com.facebook.presto.metadata.FunctionRegistry;
@@ -115,6 +116,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.facebook.presto.cost.PlanNodeCost.UNKNOWN_COST;
+import static com.facebook.presto.cost.SymbolStatistics.UNKNOWN_STATISTICS;
 import static com.facebook.presto.execution.StageInfo.getAllStages;
 import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
 import static com.facebook.presto.sql.planner.DomainUtils.simplifyDomain;
@@ -137,13 +139,14 @@ public class PlanPrinter
     private final Metadata metadata;
     private final Optional<Map<PlanNodeId, PlanNodeStats>> stats;
     private final boolean verbose;
+    private final boolean printSymbolStatistics;
 
     private PlanPrinter(PlanNode plan, Map<Symbol, Type> types, Metadata metadata, CostCalculator costCalculator, Session sesion)
     {
-        this(plan, types, metadata, costCalculator, sesion, 0, false);
+        this(plan, types, metadata, costCalculator, sesion, 0, false, false);
     }
 
-    private PlanPrinter(PlanNode plan, Map<Symbol, Type> types, Metadata metadata, CostCalculator costCalculator, Session session, int indent, boolean verbose)
+    private PlanPrinter(PlanNode plan, Map<Symbol, Type> types, Metadata metadata, CostCalculator costCalculator, Session session, int indent, boolean verbose, boolean printSymbolStatistics)
     {
         requireNonNull(plan, "plan is null");
         requireNonNull(types, "types is null");
@@ -153,6 +156,7 @@ public class PlanPrinter
         this.metadata = metadata;
         this.stats = Optional.empty();
         this.verbose = verbose;
+        this.printSymbolStatistics = printSymbolStatistics;
 
         Map<PlanNodeId, PlanNodeCost> costs = costCalculator.calculateCostForPlan(session, types, plan);
         Visitor visitor = new Visitor(types, costs, session);
@@ -169,6 +173,7 @@ public class PlanPrinter
         this.metadata = metadata;
         this.stats = Optional.of(stats);
         this.verbose = verbose;
+        this.printSymbolStatistics = false;
 
         Map<PlanNodeId, PlanNodeCost> costs = costCalculator.calculateCostForPlan(session, types, plan);
         Visitor visitor = new Visitor(types, costs, session);
@@ -193,7 +198,15 @@ public class PlanPrinter
 
     public static String textLogicalPlan(PlanNode plan, Map<Symbol, Type> types, Metadata metadata, CostCalculator costCalculator, Session session, int indent, boolean verbose)
     {
-        return new PlanPrinter(plan, types, metadata, costCalculator, session, indent, verbose).toString();
+        return new PlanPrinter(plan, types, metadata, costCalculator, session, indent, verbose, false).toString();
+    }
+
+    /**
+     * Prints the logical plan with the estimated statistics of the output symbols of every node.
+     */
+    public static String textLogicalPlanWithStatistics(PlanNode plan, Map<Symbol, Type> types, Metadata metadata, CostCalculator costCalculator, Session session)
+    {
+        return new PlanPrinter(plan, types, metadata, costCalculator, session, 0, false, true).toString();
     }
 
     public static String textLogicalPlan(PlanNode plan, Map<Symbol, Type> types, Metadata metadata, CostCalculator costCalculator, Session session, Map<PlanNodeId, PlanNodeStats> stats, int indent, boolean verbose)
@@ -554,6 +567,7 @@ public class PlanPrinter
                         formatOutputs(node.getOutputSymbols()));
             }
 
+            node.getDistributionType().ifPresent(distributionType -> print(indent + 2, "Distribution: %s", distributionType));
             node.getSortExpression().ifPresent(expression -> print(indent + 2, "SortExpression[%s]", expression));
             printCost(indent + 2, node);
             printStats(indent + 2, node.getId());
@@ -571,6 +585,7 @@ public class PlanPrinter
                     node.getFilteringSourceJoinSymbol(),
                     formatHash(node.getSourceHashSymbol(), node.getFilteringSourceHashSymbol()),
                     formatOutputs(node.getOutputSymbols()));
+            node.getDistributionType().ifPresent(distributionType -> print(indent + 2, "Distribution: %s", distributionType));
             printCost(indent + 2, node);
             printStats(indent + 2, node.getId());
             node.getSource().accept(this, indent + 1);
@@ -1105,10 +1120,13 @@ public class PlanPrinter
                         formatOutputs(node.getOutputSymbols()));
             }
             else {
-                print(indent, "- %sExchange[%s%s]%s => %s",
+                print(indent, "- %sExchange[%s%s%s]%s => %s",
                         UPPER_UNDERSCORE.to(CaseFormat.UPPER_CAMEL, node.getScope().toString()),
                         node.getType(),
                         node.getPartitioningScheme().isReplicateNullsAndAny() ? " - REPLICATE NULLS AND ANY" : "",
+                        node.getPartitioningScheme().getSkewMitigation()
+                                .map(mitigation -> format(" - %s OVER %s PARTITIONS", mitigation.getStrategy(), mitigation.getFanout()))
+                                .orElse(""),
                         formatHash(node.getPartitioningScheme().getHashColumn()),
                         formatOutputs(node.getOutputSymbols()));
             }
@@ -1289,6 +1307,25 @@ public class PlanPrinter
                         .collect(toImmutableList()));
                 print(indent, "Cost: %s", costString);
             }
+            if (printSymbolStatistics) {
+                PlanNode node = nodes[nodes.length - 1];
+                PlanNodeCost cost = costs.getOrDefault(node.getId(), UNKNOWN_COST);
+                for (Symbol symbol : node.getOutputSymbols()) {
+                    SymbolStatistics statistics = cost.getSymbolStatistics(symbol);
+                    if (!statistics.equals(UNKNOWN_STATISTICS)) {
+                        print(indent, "%s := %s", symbol, formatSymbolStatistics(statistics));
+                    }
+                }
+            }
+        }
+
+        private String formatSymbolStatistics(SymbolStatistics statistics)
+        {
+            return String.format("{distinct: %s, nulls: %s, low: %s, high: %s}",
+                    formatDouble(statistics.getDistinctValuesCount().getValue()),
+                    formatDouble(statistics.getNullsFraction().getValue()),
+                    formatDouble(statistics.getLowValue().getValue()),
+                    formatDouble(statistics.getHighValue().getValue()));
         }
 
         private boolean isKnownCost(PlanNode node)
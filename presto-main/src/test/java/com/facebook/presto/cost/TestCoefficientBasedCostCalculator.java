@@ -20,18 +20,22 @@ import com.facebook.presto.sql.planner.assertions.PlanAssert;
 import com.facebook.presto.sql.planner.assertions.PlanMatchPattern;
 import com.facebook.presto.sql.planner.plan.FilterNode;
 import com.facebook.presto.sql.planner.plan.TableScanNode;
+import com.facebook.presto.sql.planner.plan.UnionNode;
 import com.facebook.presto.testing.LocalQueryRunner;
 import com.facebook.presto.tpch.TpchConnectorFactory;
 import com.google.common.collect.ImmutableMap;
 import org.testng.annotations.Test;
 
-import static com.facebook.presto.spi.statistics.Estimate.unknownValue;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.anyTree;
 import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.node;
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 
 public class TestCoefficientBasedCostCalculator
 {
+    // the fixed width columns of the orders table and 32 bytes for each of its four varchar columns
+    private static final int ORDERS_ROW_SIZE = 8 + 8 + 8 + 4 + 4 + 4 * 32;
+
     private final LocalQueryRunner queryRunner;
     private final CostCalculator costCalculator;
 
@@ -60,7 +64,7 @@ public class TestCoefficientBasedCostCalculator
                                 node(TableScanNode.class)
                                         .withCost(PlanNodeCost.builder()
                                                 .setOutputRowCount(new Estimate(385.0))
-                                                .setOutputSizeInBytes(unknownValue())
+                                                .setOutputSizeInBytes(new Estimate(385.0 * ORDERS_ROW_SIZE))
                                                 .build()))));
 
         assertPlan("SELECT orderstatus FROM orders WHERE orderkey = 42",
@@ -69,10 +73,24 @@ public class TestCoefficientBasedCostCalculator
                                 node(TableScanNode.class)
                                         .withCost(PlanNodeCost.builder()
                                                 .setOutputRowCount(new Estimate(0.0))
-                                                .setOutputSizeInBytes(unknownValue())
+                                                .setOutputSizeInBytes(new Estimate(0.0))
                                                 .build()))));
     }
 
+    @Test
+    public void testUnionAddsSourceRowCounts()
+    {
+        assertPlan("SELECT orderkey FROM orders UNION ALL SELECT orderkey FROM orders",
+                anyTree(
+                        node(UnionNode.class,
+                                anyTree(node(TableScanNode.class)),
+                                anyTree(node(TableScanNode.class)))
+                                .withCost(PlanNodeCost.builder()
+                                        .setOutputRowCount(new Estimate(30000.0))
+                                        .setOutputSizeInBytes(new Estimate(30000.0 * BIGINT.getFixedSize()))
+                                        .build())));
+    }
+
     private void assertPlan(String sql, PlanMatchPattern pattern)
     {
         assertPlan(sql, LogicalPlanner.Stage.CREATED, pattern);
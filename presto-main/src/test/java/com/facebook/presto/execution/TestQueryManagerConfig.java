@@ -30,6 +30,7 @@ public class TestQueryManagerConfig
                 .setMinQueryExpireAge(new Duration(15, TimeUnit.MINUTES))
                 .setMaxQueryHistory(100)
                 .setMaxQueryLength(1_000_000)
+                .setStatementCacheMaxLength(10_000_000)
                 .setClientTimeout(new Duration(5, TimeUnit.MINUTES))
                 .setScheduleSplitBatchSize(1000)
                 .setMinScheduleSplitBatchSize(100)
@@ -56,6 +57,7 @@ public class TestQueryManagerConfig
                 .put("query.min-expire-age", "30s")
                 .put("query.max-history", "10")
                 .put("query.max-length", "10000")
+                .put("query.statement-cache-max-length", "100000")
                 .put("query.schedule-split-batch-size", "99")
                 .put("query.min-schedule-split-batch-size", "9")
                 .put("query.max-concurrent-queries", "10")
@@ -77,6 +79,7 @@ public class TestQueryManagerConfig
                 .setMinQueryExpireAge(new Duration(30, TimeUnit.SECONDS))
                 .setMaxQueryHistory(10)
                 .setMaxQueryLength(10000)
+                .setStatementCacheMaxLength(100000)
                 .setClientTimeout(new Duration(10, TimeUnit.SECONDS))
                 .setScheduleSplitBatchSize(99)
                 .setMinScheduleSplitBatchSize(9)
@@ -66,6 +66,11 @@ public class TestStageStats
             new DataSize(23, BYTE),
             new DataSize(24, BYTE),
             25,
+
+            new DataSize(27, BYTE),
+            new DataSize(28, BYTE),
+            new Duration(29, NANOSECONDS),
+
             ImmutableList.of());
 
     @Test
@@ -115,6 +120,10 @@ public class TestStageStats
         assertEquals(actual.getBufferedDataSize(), new DataSize(23, BYTE));
         assertEquals(actual.getOutputDataSize(), new DataSize(24, BYTE));
         assertEquals(actual.getOutputPositions(), 25);
+
+        assertEquals(actual.getOutputUncompressedDataSize(), new DataSize(27, BYTE));
+        assertEquals(actual.getOutputSerializedDataSize(), new DataSize(28, BYTE));
+        assertEquals(actual.getOutputCompressionCpu(), new Duration(29, NANOSECONDS));
     }
 
     private static DistributionSnapshot getTestDistribution(int count)
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.sql.parser.ParsingException;
+import com.facebook.presto.sql.parser.SqlParser;
+import com.facebook.presto.sql.tree.Statement;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public class TestStatementCache
+{
+    private static final SqlParser SQL_PARSER = new SqlParser();
+
+    @Test
+    public void testCacheHit()
+    {
+        StatementCache cache = new StatementCache(SQL_PARSER, 1000);
+        Statement statement = cache.getStatement("SELECT * FROM foo");
+        assertSame(cache.getStatement("SELECT * FROM foo"), statement);
+        assertEquals(statement, SQL_PARSER.createStatement("SELECT * FROM foo"));
+        assertEquals(cache.getStats().getRequestCount(), 2);
+        assertEquals(cache.getStats().getHitRate(), 0.5);
+    }
+
+    @Test
+    public void testMaxLength()
+    {
+        // the statements longer than the max length are not kept
+        StatementCache cache = new StatementCache(SQL_PARSER, 10);
+        assertNotSame(cache.getStatement("SELECT * FROM foo"), cache.getStatement("SELECT * FROM foo"));
+        assertEquals(cache.getStats().getHitRate(), 0.0);
+    }
+
+    @Test
+    public void testParseError()
+    {
+        String sql = "SELECT * FROM foo WHERE a = 'long literal' AND";
+        StatementCache cache = new StatementCache(SQL_PARSER, 1000);
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getStatement(sql);
+                fail("expected exception");
+            }
+            catch (ParsingException e) {
+                assertEquals(e.getMessage(), getParsingError(sql).getMessage());
+            }
+        }
+        assertEquals(cache.getStats().getHitRate(), 0.0);
+    }
+
+    @Test
+    public void testLiteralsAreNotShared()
+    {
+        // literals are part of the text, so queries that differ in them do not share a statement
+        StatementCache cache = new StatementCache(SQL_PARSER, 1000);
+        Statement first = cache.getStatement("SELECT a = 1, count(*) FROM foo GROUP BY a = 1");
+        Statement second = cache.getStatement("SELECT a = 2, count(*) FROM foo GROUP BY a = 2");
+        assertEquals(first, SQL_PARSER.createStatement("SELECT a = 1, count(*) FROM foo GROUP BY a = 1"));
+        assertEquals(second, SQL_PARSER.createStatement("SELECT a = 2, count(*) FROM foo GROUP BY a = 2"));
+        assertEquals(cache.getStats().getHitRate(), 0.0);
+    }
+
+    private static ParsingException getParsingError(String sql)
+    {
+        try {
+            SQL_PARSER.createStatement(sql);
+        }
+        catch (ParsingException e) {
+            return e;
+        }
+        throw new AssertionError("expected exception");
+    }
+}
@@ -55,7 +55,8 @@ public class TestTaskManagerConfig
                 .setTaskNotificationThreads(5)
                 .setLevelAbsolutePriority(true)
                 .setLevelTimeMultiplier(new BigDecimal("2"))
-                .setLegacySchedulingBehavior(true));
+                .setLegacySchedulingBehavior(true)
+                .setQueryFairSchedulingEnabled(false));
     }
 
     @Test
@@ -85,6 +86,7 @@ public class TestTaskManagerConfig
                 .put("task.level-absolute-priority", "false")
                 .put("task.level-time-multiplier", "2.1")
                 .put("task.legacy-scheduling-behavior", "false")
+                .put("task.query-fair-scheduling-enabled", "true")
                 .build();
 
         TaskManagerConfig expected = new TaskManagerConfig()
@@ -110,7 +112,8 @@ public class TestTaskManagerConfig
                 .setTaskNotificationThreads(13)
                 .setLevelAbsolutePriority(false)
                 .setLevelTimeMultiplier(new BigDecimal("2.1"))
-                .setLegacySchedulingBehavior(false);
+                .setLegacySchedulingBehavior(false)
+                .setQueryFairSchedulingEnabled(true);
 
         assertFullMapping(properties, expected);
     }
@@ -23,6 +23,7 @@ import com.facebook.presto.spi.type.BigintType;
 import com.facebook.presto.spi.type.Type;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.testing.TestingTicker;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.testng.annotations.AfterClass;
@@ -31,8 +32,10 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.facebook.presto.OutputBuffers.BROADCAST_PARTITION_ID;
@@ -44,6 +47,7 @@ import static com.facebook.presto.execution.buffer.BufferState.TERMINAL_BUFFER_S
 import static com.facebook.presto.execution.buffer.TestingPagesSerdeFactory.testingPagesSerde;
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static io.airlift.concurrent.MoreFutures.tryGetFutureValue;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static io.airlift.units.DataSize.Unit.BYTE;
@@ -769,6 +773,54 @@ public class TestArbitraryOutputBuffer
         assertFutureIsDone(secondEnqueuePage);
     }
 
+    @Test
+    public void testPagesGoToFastestConsumer()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        ArbitraryOutputBuffer buffer = new ArbitraryOutputBuffer(
+                TASK_INSTANCE_ID,
+                new StateMachine<>("bufferState", stateNotificationExecutor, OPEN, TERMINAL_BUFFER_STATES),
+                sizeOfPages(10),
+                ignored -> {
+                },
+                stateNotificationExecutor,
+                ticker);
+        buffer.setOutputBuffers(createInitialEmptyOutputBuffers(ARBITRARY)
+                .withBuffer(FIRST, BROADCAST_PARTITION_ID)
+                .withBuffer(SECOND, BROADCAST_PARTITION_ID)
+                .withNoMoreBufferIds());
+
+        // each client reads one page
+        addPage(buffer, createPage(0));
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, FIRST, 0, sizeOfPages(1), NO_WAIT), bufferResult(0, createPage(0)));
+        addPage(buffer, createPage(1));
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, SECOND, 0, sizeOfPages(1), NO_WAIT), bufferResult(0, createPage(1)));
+
+        // the second client acknowledges its page after 1ms and the first one after 100ms
+        ticker.increment(1, MILLISECONDS);
+        ListenableFuture<BufferResult> secondRead = buffer.get(SECOND, 1, sizeOfPages(1));
+        ticker.increment(99, MILLISECONDS);
+        ListenableFuture<BufferResult> firstRead = buffer.get(FIRST, 1, sizeOfPages(1));
+        assertFalse(firstRead.isDone());
+        assertFalse(secondRead.isDone());
+
+        // both clients are waiting, so the next page goes to the faster one
+        addPage(buffer, createPage(2));
+        assertFalse(firstRead.isDone());
+        assertBufferResultEquals(TYPES, getFuture(secondRead, NO_WAIT), bufferResult(1, createPage(2)));
+
+        // the lag of the second client grows until it acknowledges the page
+        ticker.increment(5, MILLISECONDS);
+        Map<OutputBufferId, ClientLagInfo> clientLags = buffer.getInfo().getClientLags().stream()
+                .collect(toImmutableMap(ClientLagInfo::getBufferId, Function.identity()));
+        assertEquals(clientLags.get(FIRST).getLag().toMillis(), 0);
+        assertEquals(clientLags.get(FIRST).getOutstandingSize().toBytes(), 0);
+        assertEquals(clientLags.get(SECOND).getLag().toMillis(), 5);
+        assertEquals(clientLags.get(SECOND).getOutstandingSize().toBytes(), BUFFERED_PAGE_SIZE.toBytes());
+        assertTrue(clientLags.get(SECOND).getDrainRate().toBytes() > clientLags.get(FIRST).getDrainRate().toBytes());
+    }
+
     @Test
     public void testBufferCompletion()
             throws Exception
@@ -342,6 +342,48 @@ public class TestClientBuffer
         assertBufferInfo(buffer, 1, 1);
     }
 
+    @Test
+    public void testReadAhead()
+            throws Exception
+    {
+        ClientBuffer buffer = new ClientBuffer(TASK_INSTANCE_ID, BUFFER_ID);
+        for (int i = 0; i < 3; i++) {
+            addPage(buffer, createPage(i));
+        }
+
+        // read ahead without acknowledging the pages read
+        assertBufferResultEquals(TYPES, getFuture(buffer.getPages(0, 0, sizeOfPages(1), Optional.empty()), NO_WAIT), bufferResult(0, createPage(0)));
+        assertBufferResultEquals(TYPES, getFuture(buffer.getPages(0, 1, sizeOfPages(1), Optional.empty()), NO_WAIT), bufferResult(1, createPage(1)));
+        assertBufferResultEquals(TYPES, getFuture(buffer.getPages(0, 2, sizeOfPages(1), Optional.empty()), NO_WAIT), bufferResult(2, createPage(2)));
+        assertBufferInfo(buffer, 3, 0);
+
+        // a read ahead of all the buffered pages waits for the next page
+        ListenableFuture<BufferResult> future = buffer.getPages(0, 3, sizeOfPages(1), Optional.empty());
+        assertFalse(future.isDone());
+        addPage(buffer, createPage(3));
+        assertBufferResultEquals(TYPES, getFuture(future, NO_WAIT), bufferResult(3, createPage(3)));
+        assertBufferInfo(buffer, 4, 0);
+
+        // the pages that were read ahead but not acknowledged are returned again
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, 2, sizeOfPages(10), NO_WAIT), bufferResult(2, createPage(2), createPage(3)));
+        assertBufferInfo(buffer, 2, 2);
+
+        // a read ahead of the pages that have been buffered is invalid
+        try {
+            buffer.getPages(2, 5, sizeOfPages(10), Optional.empty());
+            fail("Expected " + INVALID_SEQUENCE_ID);
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), INVALID_SEQUENCE_ID);
+        }
+        assertBufferInfo(buffer, 2, 2);
+
+        // a read ahead that reaches the end of a finished buffer completes the buffer
+        buffer.setNoMorePages();
+        assertBufferResultEquals(TYPES, getFuture(buffer.getPages(2, 4, sizeOfPages(10), Optional.empty()), NO_WAIT), emptyResults(TASK_INSTANCE_ID, 4, true));
+        assertBufferInfo(buffer, 2, 2);
+    }
+
     @Test
     public void testReferenceCount()
             throws Exception
@@ -17,22 +17,40 @@ import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.block.BlockBuilder;
 import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.spi.block.TestingBlockEncodingSerde;
+import com.facebook.presto.spi.type.TestingTypeManager;
 import com.facebook.presto.spi.type.Type;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
 
+import static com.facebook.presto.execution.buffer.PageCompression.DEFLATE;
+import static com.facebook.presto.execution.buffer.PageCompression.UNCOMPRESSED;
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.SERIALIZED_PAGE_HEADER_SIZE;
 import static com.facebook.presto.execution.buffer.PagesSerdeUtil.readPages;
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.readSerializedPagesFully;
 import static com.facebook.presto.execution.buffer.PagesSerdeUtil.writePages;
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.writeRawPage;
+import static com.facebook.presto.execution.buffer.PagesSerdeUtil.writeSerializedPages;
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestPagesSerde
 {
@@ -60,6 +78,124 @@ public class TestPagesSerde
         assertFalse(pageIterator.hasNext());
     }
 
+    @Test
+    public void testStreamRoundTrip()
+            throws Exception
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
+        BlockBuilder expectedBlockBuilder = VARCHAR.createBlockBuilder(new BlockBuilderStatus(), 5);
+        VARCHAR.writeString(expectedBlockBuilder, "alice");
+        VARCHAR.writeString(expectedBlockBuilder, "bob");
+        Block expectedBlock = expectedBlockBuilder.build();
+        Page expectedPage = new Page(expectedBlock, expectedBlock);
+        List<SerializedPage> serializedPages = ImmutableList.of(serde.serialize(expectedPage), serde.serialize(expectedPage));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long size = writeSerializedPages(output, serializedPages);
+        assertEquals(size, output.size());
+
+        // the stream format is the same as the one written through a SliceOutput
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writeSerializedPages(sliceOutput, serializedPages);
+        assertEquals(output.toByteArray(), sliceOutput.slice().getBytes());
+
+        List<SerializedPage> actualPages = readSerializedPagesFully(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(actualPages.size(), 2);
+        List<Type> types = ImmutableList.of(VARCHAR, VARCHAR);
+        for (SerializedPage actualPage : actualPages) {
+            assertEquals(actualPage.getSizeInBytes(), serializedPages.get(0).getSizeInBytes());
+            assertPageEquals(types, serde.deserialize(actualPage), expectedPage);
+        }
+
+        assertTrue(readSerializedPagesFully(new ByteArrayInputStream(new byte[0])).isEmpty());
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testStreamWithTruncatedPage()
+            throws Exception
+    {
+        // a size larger than the rest of the stream fails as a truncated stream, without allocating that size
+        readSerializedPagesFully(new ByteArrayInputStream(serializedPageWithSize(Integer.MAX_VALUE, 10)));
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Invalid serialized page header.*")
+    public void testStreamWithNegativePageSize()
+            throws Exception
+    {
+        readSerializedPagesFully(new ByteArrayInputStream(serializedPageWithSize(-1, 10)));
+    }
+
+    @Test
+    public void testAdaptiveCompression()
+    {
+        PagesSerdeFactory adaptiveSerdeFactory = new PagesSerdeFactory(new TestingBlockEncodingSerde(new TestingTypeManager()), false, true);
+        PagesSerde uncompressedSerde = new PagesSerdeFactory(new TestingBlockEncodingSerde(new TestingTypeManager()), false).createPagesSerde();
+
+        // random values do not compress, so after the first sample no codec is tried on them
+        Random random = new Random(0);
+        BlockBuilder randomBuilder = BIGINT.createBlockBuilder(new BlockBuilderStatus(), 1000);
+        for (int i = 0; i < 1000; i++) {
+            BIGINT.writeLong(randomBuilder, random.nextLong());
+        }
+        Page randomPage = new Page(randomBuilder.build());
+        PagesSerde serde = adaptiveSerdeFactory.createPagesSerde();
+        for (int i = 0; i < 10; i++) {
+            SerializedPage serializedPage = serde.serialize(randomPage);
+            assertEquals(serializedPage.getCompression(), UNCOMPRESSED);
+            assertPageEquals(ImmutableList.of(BIGINT), uncompressedSerde.deserialize(serializedPage), randomPage);
+        }
+        assertEquals(serde.getUncompressedPages(), 10);
+        assertEquals(serde.getSerializedSizeInBytes(), serde.getUncompressedSizeInBytes());
+
+        // text compresses, and the pages can be read by a consumer that does not compress
+        String[] words = {"alice", "bob", "charlie", "dave", "eve", "frank", "grace", "heidi"};
+        BlockBuilder textBuilder = VARCHAR.createBlockBuilder(new BlockBuilderStatus(), 1000);
+        for (int i = 0; i < 1000; i++) {
+            VARCHAR.writeString(textBuilder, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]);
+        }
+        Page textPage = new Page(textBuilder.build());
+        serde = adaptiveSerdeFactory.createPagesSerde();
+        for (int i = 0; i < 40; i++) {
+            SerializedPage serializedPage = serde.serialize(textPage);
+            assertTrue(serializedPage.getCompression() != UNCOMPRESSED);
+            assertPageEquals(ImmutableList.of(VARCHAR), uncompressedSerde.deserialize(serializedPage), textPage);
+        }
+        assertEquals(serde.getLz4Pages() + serde.getDeflatePages(), 40);
+        assertTrue(serde.getSerializedSizeInBytes() < serde.getUncompressedSizeInBytes());
+        assertTrue(serde.getCompressionCpuNanos() > 0);
+    }
+
+    @Test
+    public void testDeflateRoundTrip()
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
+        BlockBuilder builder = VARCHAR.createBlockBuilder(new BlockBuilderStatus(), 100);
+        for (int i = 0; i < 100; i++) {
+            VARCHAR.writeString(builder, "alice");
+        }
+        Page expectedPage = new Page(builder.build());
+
+        DynamicSliceOutput rawPage = new DynamicSliceOutput(1024);
+        writeRawPage(expectedPage, rawPage, new TestingBlockEncodingSerde(new TestingTypeManager()));
+        byte[] uncompressed = rawPage.slice().getBytes();
+
+        Deflater deflater = new Deflater();
+        deflater.setInput(uncompressed);
+        deflater.finish();
+        byte[] compressed = new byte[uncompressed.length];
+        int compressedLength = deflater.deflate(compressed);
+        assertTrue(deflater.finished());
+        deflater.end();
+
+        SerializedPage serializedPage = new SerializedPage(Slices.wrappedBuffer(compressed, 0, compressedLength), DEFLATE, expectedPage.getPositionCount(), uncompressed.length);
+        assertPageEquals(ImmutableList.of(VARCHAR), serde.deserialize(serializedPage), expectedPage);
+
+        // the inflaters are pooled, so one released by a serde is reset before another serde uses it
+        for (int i = 0; i < 3; i++) {
+            assertPageEquals(ImmutableList.of(VARCHAR), new TestingPagesSerdeFactory().createPagesSerde().deserialize(serializedPage), expectedPage);
+        }
+    }
+
     @Test
     public void testBigintSerializedSize()
     {
@@ -106,6 +242,16 @@ public class TestPagesSerde
         assertEquals(secondValueSize, 4 + 3); // length + "bob" (null shared with first entry)
     }
 
+    private static byte[] serializedPageWithSize(int sizeInBytes, int actualSizeInBytes)
+    {
+        Slice slice = Slices.allocate(SERIALIZED_PAGE_HEADER_SIZE + actualSizeInBytes);
+        slice.setInt(0, 1);
+        slice.setByte(SIZE_OF_INT, UNCOMPRESSED.getMarker());
+        slice.setInt(SIZE_OF_INT + SIZE_OF_BYTE, actualSizeInBytes);
+        slice.setInt(SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT, sizeInBytes);
+        return slice.getBytes();
+    }
+
     private static int serializedSize(List<? extends Type> types, Page expectedPage)
     {
         PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
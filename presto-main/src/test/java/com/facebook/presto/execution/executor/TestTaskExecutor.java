@@ -15,6 +15,7 @@ package com.facebook.presto.execution.executor;
 
 import com.facebook.presto.execution.SplitRunner;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.spi.QueryId;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -427,6 +428,68 @@ public class TestTaskExecutor
         }
     }
 
+    @Test
+    public void testQueryFairSchedulingPriority()
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(false, 2);
+
+        QueryCpuShare largeQuery = new QueryCpuShare(new QueryId("large"), 1);
+        QueryCpuShare smallQuery = new QueryCpuShare(new QueryId("small"), 1);
+        QueryCpuShare heavyQuery = new QueryCpuShare(new QueryId("heavy"), 2);
+        largeQuery.taskAdded();
+        largeQuery.taskAdded();
+        smallQuery.taskAdded();
+        heavyQuery.taskAdded();
+
+        TaskHandle largeHandle = new TaskHandle(new TaskId("large", 0, 0), splitQueue, () -> 1, 1, new Duration(1, SECONDS), largeQuery, true);
+        TaskHandle smallHandle = new TaskHandle(new TaskId("small", 0, 0), splitQueue, () -> 1, 1, new Duration(1, SECONDS), smallQuery, true);
+        TaskHandle heavyHandle = new TaskHandle(new TaskId("heavy", 0, 0), splitQueue, () -> 1, 1, new Duration(1, SECONDS), heavyQuery, true);
+
+        long quantaNanos = MILLISECONDS.toNanos(100);
+        largeHandle.addScheduledNanos(quantaNanos);
+        smallHandle.addScheduledNanos(quantaNanos);
+        heavyHandle.addScheduledNanos(quantaNanos);
+
+        // a query with two tasks is charged twice, a query with twice the weight half
+        assertEquals(largeHandle.getPriority().getLevelPriority(), 2 * quantaNanos);
+        assertEquals(smallHandle.getPriority().getLevelPriority(), quantaNanos);
+        assertEquals(heavyHandle.getPriority().getLevelPriority(), quantaNanos / 2);
+
+        // levels are charged the actual scheduled time
+        assertEquals(splitQueue.getLevelScheduledTime()[0], 3 * quantaNanos);
+        assertEquals(largeQuery.getScheduledNanos(), quantaNanos);
+        assertEquals(heavyQuery.getWeightedScheduledNanos(), quantaNanos / 2.0);
+    }
+
+    @Test
+    public void testQueryScheduledTime()
+    {
+        TaskExecutor taskExecutor = new TaskExecutor(4, 8, 2, false, false, true, new TestingTicker());
+
+        TaskHandle handle0 = taskExecutor.addTask(new TaskId("test", 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), 3);
+        TaskHandle handle1 = taskExecutor.addTask(new TaskId("test", 1, 0), () -> 0, 10, new Duration(1, MILLISECONDS), 3);
+        TaskHandle otherHandle = taskExecutor.addTask(new TaskId("other", 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS));
+        assertEquals(taskExecutor.getActiveQueries(), 2);
+        assertEquals(handle0.getQueryCpuShare(), handle1.getQueryCpuShare());
+        assertEquals(handle0.getQueryCpuShare().getWeight(), 3);
+        assertEquals(handle0.getQueryCpuShare().getActiveTasks(), 2);
+
+        handle0.addScheduledNanos(MILLISECONDS.toNanos(30));
+        handle1.addScheduledNanos(MILLISECONDS.toNanos(50));
+        otherHandle.addScheduledNanos(MILLISECONDS.toNanos(20));
+        assertEquals(taskExecutor.getQueryScheduledMillis("test"), 80);
+        assertEquals(taskExecutor.getQueryScheduledMillis("other"), 20);
+        assertEquals(taskExecutor.getMaxQueryScheduledTimeShare(), 0.8, 0.0001);
+
+        taskExecutor.removeTask(handle0);
+        assertEquals(taskExecutor.getActiveQueries(), 2);
+        taskExecutor.removeTask(handle1);
+        taskExecutor.removeTask(otherHandle);
+        assertEquals(taskExecutor.getActiveQueries(), 0);
+        assertEquals(taskExecutor.getQueryScheduledMillis("test"), 0);
+        assertEquals(taskExecutor.getQueryScheduledTime().getCount(), 2.0);
+    }
+
     private static class TestingJob
             implements SplitRunner
     {
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.testng.annotations.Test;
+
+import static io.airlift.slice.XxHash64.hash;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestBlockedBloomFilter
+{
+    private static final int ENTRIES = 10_000;
+
+    @Test
+    public void testNoFalseNegatives()
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(ENTRIES);
+        for (long i = 0; i < ENTRIES; i++) {
+            filter.add(hash(i));
+        }
+        for (long i = 0; i < ENTRIES; i++) {
+            assertTrue(filter.mightContain(hash(i)));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate()
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(ENTRIES);
+        for (long i = 0; i < ENTRIES; i++) {
+            filter.add(hash(i));
+        }
+        int falsePositives = 0;
+        for (long i = ENTRIES; i < 11 * ENTRIES; i++) {
+            if (filter.mightContain(hash(i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < ENTRIES * 10 * 0.05, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(0);
+        assertFalse(filter.mightContain(hash(42)));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.DictionaryBlock;
+import com.facebook.presto.spi.block.RunLengthEncodedBlock;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringDictionaryBlock;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestEncodingPreservingPageBuilder
+{
+    private static final List<Type> TYPES = ImmutableList.of(VARCHAR, BIGINT, BIGINT);
+
+    @Test
+    public void testHasEncodedBlocks()
+    {
+        assertFalse(EncodingPreservingPageBuilder.hasEncodedBlocks(new Page(createLongSequenceBlock(0, 10))));
+        assertTrue(EncodingPreservingPageBuilder.hasEncodedBlocks(new Page(createLongSequenceBlock(0, 10), createStringDictionaryBlock(0, 10))));
+        assertTrue(EncodingPreservingPageBuilder.hasEncodedBlocks(new Page(new RunLengthEncodedBlock(createLongsBlock(1), 10))));
+    }
+
+    @Test
+    public void testSharedEncodingsArePreserved()
+    {
+        DictionaryBlock dictionaryBlock = (DictionaryBlock) createStringDictionaryBlock(0, 100);
+        Page first = new Page(dictionaryBlock, createLongSequenceBlock(0, 100), new RunLengthEncodedBlock(createLongsBlock(42), 100));
+        // a second page of the same dictionary, as produced for consecutive pages of the same source
+        int[] ids = new int[100];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (i * 7) % dictionaryBlock.getDictionary().getPositionCount();
+        }
+        Page second = new Page(
+                new DictionaryBlock(100, dictionaryBlock.getDictionary(), ids, dictionaryBlock.getDictionarySourceId()),
+                createLongSequenceBlock(100, 200),
+                new RunLengthEncodedBlock(createLongsBlock(42), 100));
+
+        EncodingPreservingPageBuilder pageBuilder = new EncodingPreservingPageBuilder(TYPES, 1024 * 1024);
+        IntArrayList firstPositions = positions(0, 100, 3);
+        IntArrayList secondPositions = positions(1, 100, 2);
+        pageBuilder.append(first, firstPositions, 1);
+        pageBuilder.append(second, secondPositions, 1);
+        assertFalse(pageBuilder.isFull());
+
+        Page page = pageBuilder.build();
+        assertPageEquals(TYPES, page, expectedPage(first, firstPositions, second, secondPositions));
+
+        DictionaryBlock dictionary = (DictionaryBlock) page.getBlock(0);
+        assertSame(dictionary.getDictionary(), dictionaryBlock.getDictionary());
+        assertSame(dictionary.getDictionarySourceId(), dictionaryBlock.getDictionarySourceId());
+        assertTrue(page.getBlock(2) instanceof RunLengthEncodedBlock);
+    }
+
+    @Test
+    public void testDifferentEncodingsAreFlattened()
+    {
+        Page first = new Page(createStringDictionaryBlock(0, 100), createLongSequenceBlock(0, 100), new RunLengthEncodedBlock(createLongsBlock(1), 100));
+        Page second = new Page(createStringDictionaryBlock(50, 100), createLongSequenceBlock(100, 200), new RunLengthEncodedBlock(createLongsBlock(2), 100));
+
+        EncodingPreservingPageBuilder pageBuilder = new EncodingPreservingPageBuilder(TYPES, 1024 * 1024);
+        IntArrayList firstPositions = positions(0, 100, 5);
+        IntArrayList secondPositions = positions(2, 100, 5);
+        pageBuilder.append(first, firstPositions, 1);
+        pageBuilder.append(second, secondPositions, 1);
+
+        Page page = pageBuilder.build();
+        assertPageEquals(TYPES, page, expectedPage(first, firstPositions, second, secondPositions));
+        assertFalse(page.getBlock(0) instanceof DictionaryBlock);
+        assertFalse(page.getBlock(2) instanceof RunLengthEncodedBlock);
+    }
+
+    @Test
+    public void testFullAndReset()
+    {
+        Page page = new Page(createStringDictionaryBlock(0, 100), createLongSequenceBlock(0, 100), new RunLengthEncodedBlock(createLongsBlock(1), 100));
+
+        EncodingPreservingPageBuilder pageBuilder = new EncodingPreservingPageBuilder(TYPES, 100);
+        assertTrue(pageBuilder.isEmpty());
+        pageBuilder.append(page, new IntArrayList(), 1000);
+        assertTrue(pageBuilder.isEmpty());
+
+        pageBuilder.append(page, positions(0, 10, 1), 60);
+        assertFalse(pageBuilder.isFull());
+        pageBuilder.append(page, positions(10, 20, 1), 60);
+        assertTrue(pageBuilder.isFull());
+
+        pageBuilder.reset();
+        assertTrue(pageBuilder.isEmpty());
+        assertFalse(pageBuilder.isFull());
+    }
+
+    @Test
+    public void testRetainedSizeIncludesDictionaries()
+    {
+        DictionaryBlock dictionaryBlock = (DictionaryBlock) createStringDictionaryBlock(0, 5000);
+        Block dictionary = dictionaryBlock.getDictionary();
+        Page page = new Page(dictionaryBlock, createLongSequenceBlock(0, 5000), new RunLengthEncodedBlock(createLongsBlock(1), 5000));
+
+        EncodingPreservingPageBuilder pageBuilder = new EncodingPreservingPageBuilder(TYPES, 1024 * 1024);
+        pageBuilder.append(page, positions(0, 10, 1), 1);
+        long retainedSize = pageBuilder.getRetainedSizeInBytes();
+        assertTrue(retainedSize > dictionary.getRetainedSizeInBytes());
+
+        // the dictionary is shared by the appended rows, so it is only counted once
+        pageBuilder.append(page, positions(10, 20, 1), 1);
+        assertTrue(pageBuilder.getRetainedSizeInBytes() - retainedSize < dictionary.getRetainedSizeInBytes());
+
+        pageBuilder.reset();
+        assertEquals(pageBuilder.getRetainedSizeInBytes(), 0);
+    }
+
+    private static IntArrayList positions(int start, int end, int step)
+    {
+        IntArrayList positions = new IntArrayList();
+        for (int position = start; position < end; position += step) {
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    private static Page expectedPage(Page first, IntArrayList firstPositions, Page second, IntArrayList secondPositions)
+    {
+        PageBuilder pageBuilder = new PageBuilder(TYPES);
+        appendPositions(pageBuilder, first, firstPositions);
+        appendPositions(pageBuilder, second, secondPositions);
+        return pageBuilder.build();
+    }
+
+    private static void appendPositions(PageBuilder pageBuilder, Page page, IntArrayList positions)
+    {
+        for (int position : positions) {
+            pageBuilder.declarePosition();
+            for (int channel = 0; channel < TYPES.size(); channel++) {
+                Block block = page.getBlock(channel);
+                TYPES.get(channel).appendTo(block, position, pageBuilder.getBlockBuilder(channel));
+            }
+        }
+    }
+}
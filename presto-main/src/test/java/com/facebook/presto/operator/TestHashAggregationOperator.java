@@ -76,6 +76,7 @@ import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static io.airlift.units.DataSize.succinctBytes;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
@@ -168,7 +169,8 @@ public class TestHashAggregationOperator
                 succinctBytes(memoryLimitBeforeSpill),
                 succinctBytes(memoryLimitForMergeWithMemory),
                 spillerFactory,
-                joinCompiler);
+                joinCompiler,
+                Optional.empty());
 
         MaterializedResult expected = resultBuilder(driverContext.getSession(), VARCHAR, BIGINT, BIGINT, DOUBLE, VARCHAR, BIGINT, BIGINT)
                 .row("0", 3L, 0L, 0.0, "300", 3L, 3L)
@@ -311,7 +313,8 @@ public class TestHashAggregationOperator
                 succinctBytes(memoryLimitBeforeSpill),
                 succinctBytes(memoryLimitForMergeWithMemory),
                 spillerFactory,
-                joinCompiler);
+                joinCompiler,
+                Optional.empty());
 
         toPages(operatorFactory, driverContext, input);
     }
@@ -384,6 +387,63 @@ public class TestHashAggregationOperator
         assertEquals(toPages(operatorFactory, driverContext, input).size(), 2);
     }
 
+    @Test(dataProvider = "hashEnabled")
+    public void testAdaptivePartialAggregation(boolean hashEnabled)
+    {
+        List<Integer> hashChannels = Ints.asList(0);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, hashChannels, BIGINT, BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(10, 0, 0)
+                .addSequencePage(10, 10, 10)
+                .addSequencePage(10, 20, 20)
+                .build();
+
+        HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT),
+                hashChannels,
+                ImmutableList.of(),
+                Step.PARTIAL,
+                false,
+                ImmutableList.of(COUNT.bind(ImmutableList.of(0), Optional.empty()),
+                        LONG_SUM.bind(ImmutableList.of(1), Optional.empty())),
+                rowPagesBuilder.getHashChannel(),
+                Optional.empty(),
+                100_000,
+                new DataSize(16, MEGABYTE),
+                false,
+                new DataSize(0, MEGABYTE),
+                spillerFactory,
+                joinCompiler,
+                Optional.of(new AdaptivePartialAggregation(10, 0.8)));
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+        List<Page> outputPages = toPages(operator, input.iterator());
+
+        MaterializedResult actual;
+        if (hashEnabled) {
+            List<Page> actualPages = dropChannel(outputPages, ImmutableList.of(1));
+            actual = toMaterializedResult(operator.getOperatorContext().getSession(), without(operator.getTypes(), ImmutableList.of(1)), actualPages);
+        }
+        else {
+            actual = toMaterializedResult(operator.getOperatorContext().getSession(), operator.getTypes(), outputPages);
+        }
+
+        // every key is unique, so all rows after the first page are passed through without aggregation
+        MaterializedResult.Builder expected = resultBuilder(driverContext.getSession(), BIGINT, BIGINT, BIGINT);
+        for (long i = 0; i < 30; i++) {
+            expected.row(i, 1L, i);
+        }
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.build().getMaterializedRows());
+
+        HashAggregationOperatorInfo info = (HashAggregationOperatorInfo) operator.getOperatorContext().getOperatorStats().getInfo();
+        assertEquals(info.getPartialAggregationDisabledCount(), 1);
+        assertEquals(info.getAggregatedRowsBeforeDisabled(), 10);
+        assertEquals(info.getPassThroughRows(), 20);
+        assertNotNull(info.getPartialAggregationDisabledReason());
+    }
+
     @Test(dataProvider = "hashEnabledAndMemoryLimitBeforeSpillValues")
     public void testMultiplePartialFlushes(boolean hashEnabled, long memoryLimitBeforeSpill, long memoryLimitForMergeWithMemory)
             throws Exception
@@ -414,7 +474,8 @@ public class TestHashAggregationOperator
                 succinctBytes(memoryLimitBeforeSpill),
                 succinctBytes(memoryLimitForMergeWithMemory),
                 spillerFactory,
-                joinCompiler);
+                joinCompiler,
+                Optional.empty());
 
         DriverContext driverContext = createTaskContext(executor, TEST_SESSION, new DataSize(4, Unit.KILOBYTE))
                 .addPipelineContext(0, true, true)
@@ -499,7 +560,8 @@ public class TestHashAggregationOperator
                 new DataSize(smallPagesSpillThresholdSize, Unit.BYTE),
                 succinctBytes(Integer.MAX_VALUE),
                 spillerFactory,
-                joinCompiler);
+                joinCompiler,
+                Optional.empty());
 
         DriverContext driverContext = createTaskContext(executor, TEST_SESSION, new DataSize(1, Unit.KILOBYTE))
                 .addPipelineContext(0, true, true)
@@ -552,7 +614,8 @@ public class TestHashAggregationOperator
                 succinctBytes(8),
                 succinctBytes(Integer.MAX_VALUE),
                 new FailingSpillerFactory(),
-                joinCompiler);
+                joinCompiler,
+                Optional.empty());
 
         toPages(operatorFactory, driverContext, input);
     }
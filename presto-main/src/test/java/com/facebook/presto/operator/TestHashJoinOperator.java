@@ -33,29 +33,41 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.lang.reflect.Field;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.concat;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestHashJoinOperator
@@ -176,6 +188,195 @@ public class TestHashJoinOperator
         assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testInnerJoinWithBatchProbe(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
+            throws Exception
+    {
+        TaskContext taskContext = createTaskContext();
+
+        // build
+        List<Type> buildTypes = ImmutableList.of(VARCHAR, BIGINT);
+        RowPagesBuilder buildPages = rowPagesBuilder(buildHashEnabled, Ints.asList(0), buildTypes)
+                .row("a", 1L)
+                .row("b", 2L)
+                .row("a", 3L)
+                .row("c", 4L);
+        LookupSourceFactory lookupSourceFactory = buildHash(parallelBuild, taskContext, Ints.asList(0), buildPages, Optional.empty());
+
+        // probe
+        List<Type> probeTypes = ImmutableList.of(VARCHAR);
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = probePages
+                .row("a")
+                .row((String) null)
+                .row("d")
+                .row("b")
+                .pageBreak()
+                .row("c")
+                .row("a")
+                .build();
+        OperatorFactory joinOperatorFactory = LOOKUP_JOIN_OPERATORS.innerJoin(
+                0,
+                new PlanNodeId("test"),
+                lookupSourceFactory,
+                probePages.getTypes(),
+                Ints.asList(0),
+                probePages.getHashChannel(),
+                Optional.empty(),
+                new DummySpillerFactory(),
+                true);
+
+        // expected
+        MaterializedResult expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probeTypes, buildPages.getTypesWithoutHash()))
+                .row("a", "a", 3L)
+                .row("a", "a", 1L)
+                .row("b", "b", 2L)
+                .row("c", "c", 4L)
+                .row("a", "a", 3L)
+                .row("a", "a", 1L)
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
+    }
+
+    @Test(dataProvider = "hashEnabledValues")
+    public void testInnerJoinWithBigintKey(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
+            throws Exception
+    {
+        TaskContext taskContext = createTaskContext();
+
+        // build
+        List<Type> buildTypes = ImmutableList.of(BIGINT, VARCHAR);
+        RowPagesBuilder buildPages = rowPagesBuilder(buildHashEnabled, Ints.asList(0), buildTypes)
+                .row(1L, "a")
+                .row(2L, "b")
+                .row(1L, "c")
+                .row(null, "d");
+        LookupSourceFactory lookupSourceFactory = buildHash(parallelBuild, taskContext, Ints.asList(0), buildPages, Optional.empty());
+
+        // probe
+        List<Type> probeTypes = ImmutableList.of(BIGINT);
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = probePages
+                .row(1L)
+                .row((Long) null)
+                .row(3L)
+                .row(2L)
+                .build();
+        OperatorFactory joinOperatorFactory = LOOKUP_JOIN_OPERATORS.innerJoin(
+                0,
+                new PlanNodeId("test"),
+                lookupSourceFactory,
+                probePages.getTypes(),
+                Ints.asList(0),
+                probePages.getHashChannel(),
+                Optional.empty());
+
+        // expected
+        MaterializedResult expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probeTypes, buildPages.getTypesWithoutHash()))
+                .row(1L, 1L, "c")
+                .row(1L, 1L, "a")
+                .row(2L, 2L, "b")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
+    }
+
+    @Test(dataProvider = "hashEnabledValues")
+    public void testInnerJoinWithBatchProbeAndBigintKey(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
+            throws Exception
+    {
+        TaskContext taskContext = createTaskContext();
+
+        // build
+        List<Type> buildTypes = ImmutableList.of(BIGINT, VARCHAR);
+        RowPagesBuilder buildPages = rowPagesBuilder(buildHashEnabled, Ints.asList(0), buildTypes)
+                .row(1L, "a")
+                .row(2L, "b")
+                .row(1L, "c")
+                .row(null, "d")
+                .row(40L, "e");
+        LookupSourceFactory lookupSourceFactory = buildHash(parallelBuild, taskContext, Ints.asList(0), buildPages, Optional.empty());
+        try (LookupSource lookupSource = getFutureValue(lookupSourceFactory.createLookupSource())) {
+            assertEquals(getJoinHashTableClassName(lookupSource), BigintPagesHash.class.getName());
+        }
+
+        // probe
+        List<Type> probeTypes = ImmutableList.of(BIGINT);
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = probePages
+                .row(1L)
+                .row((Long) null)
+                .row(3L)
+                .row(2L)
+                .pageBreak()
+                .row(40L)
+                .row(1L)
+                .row(41L)
+                .build();
+        OperatorFactory joinOperatorFactory = LOOKUP_JOIN_OPERATORS.innerJoin(
+                0,
+                new PlanNodeId("test"),
+                lookupSourceFactory,
+                probePages.getTypes(),
+                Ints.asList(0),
+                probePages.getHashChannel(),
+                Optional.empty(),
+                new DummySpillerFactory(),
+                true);
+
+        // expected
+        MaterializedResult expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probeTypes, buildPages.getTypesWithoutHash()))
+                .row(1L, 1L, "c")
+                .row(1L, 1L, "a")
+                .row(2L, 2L, "b")
+                .row(40L, 40L, "e")
+                .row(1L, 1L, "c")
+                .row(1L, 1L, "a")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
+    }
+
+    @Test(dataProvider = "hashEnabledValues")
+    public void testInnerJoinWithBatchProbeOfManyBigintKeys(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
+            throws Exception
+    {
+        TaskContext taskContext = createTaskContext();
+
+        // build keys 0 to 99, spread over all the partitions of a parallel build
+        List<Type> buildTypes = ImmutableList.of(BIGINT, BIGINT);
+        RowPagesBuilder buildPages = rowPagesBuilder(buildHashEnabled, Ints.asList(0), buildTypes)
+                .addSequencePage(100, 0, 1000);
+        LookupSourceFactory lookupSourceFactory = buildHash(parallelBuild, taskContext, Ints.asList(0), buildPages, Optional.empty());
+
+        // probe keys -50 to 149, so every batch mixes matched and unmatched keys of all partitions
+        List<Type> probeTypes = ImmutableList.of(BIGINT);
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = probePages
+                .addSequencePage(100, -50)
+                .addSequencePage(100, 50)
+                .build();
+        OperatorFactory joinOperatorFactory = LOOKUP_JOIN_OPERATORS.innerJoin(
+                0,
+                new PlanNodeId("test"),
+                lookupSourceFactory,
+                probePages.getTypes(),
+                Ints.asList(0),
+                probePages.getHashChannel(),
+                Optional.empty(),
+                new DummySpillerFactory(),
+                true);
+
+        // expected
+        MaterializedResult.Builder expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probeTypes, buildPages.getTypesWithoutHash()));
+        for (long key = 0; key < 100; key++) {
+            expected.row(key, key, 1000 + key);
+        }
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true).addDriverContext(), probeInput, expected.build(), true, getHashChannels(probePages, buildPages));
+    }
+
     @Test(dataProvider = "hashEnabledValues")
     public void testInnerJoinWithNullBuild(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
             throws Exception
@@ -665,11 +866,208 @@ public class TestHashJoinOperator
                 {false, false}};
     }
 
+    @Test
+    public void testBuildSideSpill()
+    {
+        TaskContext taskContext = createTaskContext();
+
+        RowPagesBuilder buildPages = rowPagesBuilder(false, Ints.asList(0), ImmutableList.of(BIGINT, BIGINT))
+                .addSequencePage(10, 20, 30)
+                .addSequencePage(10, 40, 50);
+        HashBuilderOperatorFactory buildOperatorFactory = new HashBuilderOperatorFactory(
+                1,
+                new PlanNodeId("build"),
+                buildPages.getTypes(),
+                rangeList(buildPages.getTypes().size()),
+                ImmutableMap.of(),
+                Ints.asList(0),
+                buildPages.getHashChannel(),
+                false,
+                Optional.empty(),
+                100,
+                1,
+                new PagesIndex.TestingFactory(),
+                true,
+                new DataSize(1, BYTE),
+                new DummySpillerFactory(),
+                false);
+        ValuesOperatorFactory valuesOperatorFactory = new ValuesOperatorFactory(0, new PlanNodeId("values"), buildPages.getTypes(), buildPages.build());
+
+        DriverContext buildDriverContext = taskContext.addPipelineContext(0, true, true).addDriverContext();
+        Driver buildDriver = new Driver(
+                buildDriverContext,
+                valuesOperatorFactory.createOperator(buildDriverContext),
+                buildOperatorFactory.createOperator(buildDriverContext));
+        valuesOperatorFactory.close();
+        buildOperatorFactory.close();
+
+        LookupSourceFactory lookupSourceFactory = buildOperatorFactory.getLookupSourceFactory();
+        while (!lookupSourceFactory.createLookupSource().isDone()) {
+            buildDriver.process();
+        }
+
+        // spilled partition is probed as an empty lookup source
+        Map<Integer, SpilledLookupSourceHandle> spilledPartitions = lookupSourceFactory.getSpilledPartitions();
+        assertEquals(spilledPartitions.keySet(), ImmutableSet.of(0));
+        assertEquals(getFutureValue(lookupSourceFactory.createLookupSource()).getJoinPositionCount(), 0);
+
+        SpilledLookupSourceHandle spilledPartition = spilledPartitions.get(0);
+        ListenableFuture<Supplier<LookupSource>> unspilledLookupSource = spilledPartition.unspill(1);
+        while (!unspilledLookupSource.isDone()) {
+            buildDriver.process();
+        }
+        assertEquals(getFutureValue(unspilledLookupSource).get().getJoinPositionCount(), 20);
+
+        spilledPartition.release(1);
+        while (!buildDriver.isFinished()) {
+            buildDriver.process();
+        }
+        assertTrue(spilledPartition.getDisposeRequested().isDone());
+    }
+
+    @Test
+    public void testProbeOuterJoinWithSpilledBuild()
+    {
+        TaskContext taskContext = createTaskContext();
+
+        // build, spilled as soon as its first page is added
+        List<Type> buildTypes = ImmutableList.of(BIGINT, VARCHAR);
+        RowPagesBuilder buildPages = rowPagesBuilder(false, Ints.asList(0), buildTypes)
+                .row(1L, "a")
+                .row(2L, "b")
+                .row(2L, "c")
+                .pageBreak()
+                .row(5L, "e");
+        HashBuilderOperatorFactory buildOperatorFactory = new HashBuilderOperatorFactory(
+                1,
+                new PlanNodeId("build"),
+                buildPages.getTypes(),
+                rangeList(buildPages.getTypes().size()),
+                ImmutableMap.of(),
+                Ints.asList(0),
+                buildPages.getHashChannel(),
+                false,
+                Optional.empty(),
+                100,
+                1,
+                new PagesIndex.TestingFactory(),
+                true,
+                new DataSize(1, BYTE),
+                new DummySpillerFactory(),
+                false);
+        ValuesOperatorFactory valuesOperatorFactory = new ValuesOperatorFactory(0, new PlanNodeId("values"), buildPages.getTypes(), buildPages.build());
+
+        DriverContext buildDriverContext = taskContext.addPipelineContext(0, true, true).addDriverContext();
+        Driver buildDriver = new Driver(
+                buildDriverContext,
+                valuesOperatorFactory.createOperator(buildDriverContext),
+                buildOperatorFactory.createOperator(buildDriverContext));
+        valuesOperatorFactory.close();
+        buildOperatorFactory.close();
+
+        LookupSourceFactory lookupSourceFactory = buildOperatorFactory.getLookupSourceFactory();
+        while (!lookupSourceFactory.createLookupSource().isDone()) {
+            buildDriver.process();
+        }
+        Map<Integer, SpilledLookupSourceHandle> spilledPartitions = lookupSourceFactory.getSpilledPartitions();
+        assertEquals(spilledPartitions.keySet(), ImmutableSet.of(0));
+
+        // probe
+        List<Type> probeTypes = ImmutableList.of(BIGINT);
+        OperatorFactory joinOperatorFactory = LOOKUP_JOIN_OPERATORS.probeOuterJoin(
+                0,
+                new PlanNodeId("test"),
+                lookupSourceFactory,
+                probeTypes,
+                Ints.asList(0),
+                Optional.empty(),
+                Optional.empty(),
+                new DummySpillerFactory());
+        PipelineContext probePipeline = taskContext.addPipelineContext(1, true, true);
+        Operator probeOperator = joinOperatorFactory.createOperator(probePipeline.addDriverContext());
+        Operator closedProbeOperator = joinOperatorFactory.createOperator(probePipeline.addDriverContext());
+        joinOperatorFactory.close();
+
+        // this operator spills its probe rows and consumes all of its input, but is closed before the
+        // spilled partitions are read back, so it releases them without joining them
+        assertTrue(closedProbeOperator.needsInput());
+        closedProbeOperator.addInput(rowPagesBuilder(probeTypes).row(2L).row(7L).build().get(0));
+        closedProbeOperator.finish();
+        assertNull(closedProbeOperator.getOutput());
+        assertFalse(closedProbeOperator.isFinished());
+        closedProbeOperator.close();
+
+        // the rows of this operator are spilled as they arrive, and joined once the partition is read back
+        List<Page> probeInput = rowPagesBuilder(probeTypes)
+                .row(1L)
+                .row(3L)
+                .row((Long) null)
+                .pageBreak()
+                .row(2L)
+                .row(5L)
+                .row(6L)
+                .build();
+        ImmutableList.Builder<Page> output = ImmutableList.builder();
+        Iterator<Page> input = probeInput.iterator();
+        while (!probeOperator.isFinished()) {
+            if (!buildDriver.isFinished()) {
+                buildDriver.process();
+            }
+            if (!input.hasNext()) {
+                probeOperator.finish();
+            }
+            else if (probeOperator.needsInput()) {
+                probeOperator.addInput(input.next());
+            }
+            Page page = probeOperator.getOutput();
+            if (page != null) {
+                output.add(page);
+            }
+        }
+
+        MaterializedResult expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probeTypes, buildTypes))
+                .row(1L, 1L, "a")
+                .row(3L, null, null)
+                .row(null, null, null)
+                .row(2L, 2L, "b")
+                .row(2L, 2L, "c")
+                .row(5L, 5L, "e")
+                .row(6L, null, null)
+                .build();
+        MaterializedResult actual = toMaterializedResult(taskContext.getSession(), expected.getTypes(), output.build());
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+
+        // the partition is disposed once both probe operators released it
+        SpilledLookupSourceHandle spilledPartition = spilledPartitions.get(0);
+        assertTrue(spilledPartition.getDisposeRequested().isDone());
+        while (!buildDriver.isFinished()) {
+            buildDriver.process();
+        }
+    }
+
     private TaskContext createTaskContext()
     {
         return TestingTaskContext.createTaskContext(executor, TEST_SESSION);
     }
 
+    private static String getJoinHashTableClassName(LookupSource lookupSource)
+            throws ReflectiveOperationException
+    {
+        if (lookupSource instanceof PartitionedLookupSource) {
+            return getJoinHashTableClassName(((LookupSource[]) getField(lookupSource, "lookupSources"))[0]);
+        }
+        // JoinHash is loaded by an isolated class loader, so its hash table is only reachable by reflection
+        return getField(lookupSource, "pagesHash").getClass().getName();
+    }
+
+    private static Object getField(Object object, String name)
+            throws ReflectiveOperationException
+    {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
     private static List<Integer> getHashChannels(RowPagesBuilder probe, RowPagesBuilder build)
     {
         ImmutableList.Builder<Integer> hashChannels = ImmutableList.builder();
@@ -13,19 +13,53 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.OutputBuffers;
+import com.facebook.presto.OutputBuffers.OutputBufferId;
+import com.facebook.presto.Session;
+import com.facebook.presto.TaskSource;
+import com.facebook.presto.execution.StateMachine;
+import com.facebook.presto.execution.StateMachine.StateChangeListener;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskManager;
+import com.facebook.presto.execution.TaskState;
+import com.facebook.presto.execution.TaskStatus;
+import com.facebook.presto.execution.buffer.BufferInfo;
+import com.facebook.presto.execution.buffer.BufferResult;
+import com.facebook.presto.execution.buffer.OutputBuffer;
 import com.facebook.presto.execution.buffer.PagesSerde;
+import com.facebook.presto.execution.buffer.PartitionedOutputBuffer;
 import com.facebook.presto.execution.buffer.SerializedPage;
+import com.facebook.presto.memory.MemoryPoolAssignmentsRequest;
+import com.facebook.presto.metadata.SessionPropertyManager;
 import com.facebook.presto.operator.HttpPageBufferClient.ClientCallback;
+import com.facebook.presto.server.ForAsyncHttp;
+import com.facebook.presto.server.TaskResource;
 import com.facebook.presto.spi.HostAddress;
 import com.facebook.presto.spi.Page;
+import com.facebook.presto.sql.planner.PlanFragment;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.Injector;
+import io.airlift.bootstrap.Bootstrap;
+import io.airlift.bootstrap.LifeCycleManager;
+import io.airlift.concurrent.BoundedExecutor;
+import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.Response;
+import io.airlift.http.client.jetty.JettyHttpClient;
 import io.airlift.http.client.testing.TestingHttpClient;
 import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.airlift.http.server.testing.TestingHttpServerModule;
+import io.airlift.jaxrs.JaxrsModule;
+import io.airlift.json.JsonModule;
+import io.airlift.node.testing.TestingNodeModule;
 import io.airlift.testing.TestingTicker;
+import io.airlift.tracetoken.TraceTokenModule;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import io.airlift.units.Duration;
@@ -37,16 +71,22 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import static com.facebook.presto.OutputBuffers.BufferType.PARTITIONED;
+import static com.facebook.presto.OutputBuffers.createInitialEmptyOutputBuffers;
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
+import static com.facebook.presto.execution.buffer.BufferState.OPEN;
+import static com.facebook.presto.execution.buffer.BufferState.TERMINAL_BUFFER_STATES;
 import static com.facebook.presto.execution.buffer.TestingPagesSerdeFactory.testingPagesSerde;
 import static com.facebook.presto.spi.StandardErrorCode.PAGE_TOO_LARGE;
 import static com.facebook.presto.spi.StandardErrorCode.PAGE_TRANSPORT_ERROR;
@@ -54,10 +94,14 @@ import static com.facebook.presto.spi.StandardErrorCode.PAGE_TRANSPORT_TIMEOUT;
 import static com.facebook.presto.util.Failures.WORKER_NODE_ERROR;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
+import static io.airlift.jaxrs.JaxrsBinder.jaxrsBinder;
 import static io.airlift.testing.Assertions.assertContains;
 import static io.airlift.testing.Assertions.assertInstanceOf;
+import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
 
 public class TestHttpPageBufferClient
 {
@@ -385,6 +429,100 @@ public class TestHttpPageBufferClient
         assertStatus(client, location, "queued", 0, 3, 3, 3, "not scheduled");
     }
 
+    @Test
+    public void testStreaming()
+            throws Exception
+    {
+        OutputBufferId bufferId = new OutputBufferId(0);
+        PartitionedOutputBuffer outputBuffer = new PartitionedOutputBuffer(
+                "task-instance-id",
+                new StateMachine<>("bufferState", executor, OPEN, TERMINAL_BUFFER_STATES),
+                createInitialEmptyOutputBuffers(PARTITIONED).withBuffer(bufferId, 0).withNoMoreBufferIds(),
+                new DataSize(1, Unit.MEGABYTE),
+                ignored -> { },
+                executor);
+
+        Bootstrap app = new Bootstrap(
+                new TestingNodeModule(),
+                new TestingHttpServerModule(),
+                new TraceTokenModule(),
+                new JsonModule(),
+                new JaxrsModule(true),
+                binder -> {
+                    jaxrsBinder(binder).bind(TaskResource.class);
+                    binder.bind(TaskManager.class).toInstance(new TestingTaskManager(outputBuffer));
+                    binder.bind(SessionPropertyManager.class).toInstance(new SessionPropertyManager());
+                    binder.bind(BoundedExecutor.class).annotatedWith(ForAsyncHttp.class).toInstance(new BoundedExecutor(executor, 4));
+                    binder.bind(ScheduledExecutorService.class).annotatedWith(ForAsyncHttp.class).toInstance(executor);
+                });
+
+        Injector injector = app
+                .strictConfig()
+                .doNotInitializeLogging()
+                .quiet()
+                .initialize();
+
+        try (HttpClient httpClient = new JettyHttpClient()) {
+            TestingHttpServer server = injector.getInstance(TestingHttpServer.class);
+            URI location = uriBuilderFrom(server.getBaseUrl()).appendPath("/v1/task/query.0.0/results/0").build();
+
+            CyclicBarrier requestComplete = new CyclicBarrier(2);
+            TestingClientCallback callback = new TestingClientCallback(requestComplete);
+
+            // every frame holds a single page
+            HttpPageBufferClient client = new HttpPageBufferClient(httpClient,
+                    new DataSize(1, Unit.BYTE),
+                    new Duration(1, TimeUnit.MINUTES),
+                    new Duration(1, TimeUnit.MINUTES),
+                    location,
+                    callback,
+                    executor,
+                    true);
+
+            for (int i = 0; i < 3; i++) {
+                outputBuffer.enqueue(0, ImmutableList.of(PAGES_SERDE.serialize(new Page(i + 1))));
+            }
+
+            // the client has no capacity, so the stream stops after a single frame although more pages are buffered
+            callback.resetStats();
+            callback.setStreamCapacity(0);
+            client.scheduleRequest();
+            requestComplete.await(10, TimeUnit.SECONDS);
+
+            assertPositionCounts(callback.getPages(), 1);
+            assertEquals(callback.getCompletedRequests(), 1);
+            // the page read by the stream is not acknowledged until the next request of the client
+            assertBufferInfo(outputBuffer, bufferId, 3, 0);
+
+            // the client has capacity again, so the stream writes all the buffered pages without waiting for more
+            callback.resetStats();
+            callback.setStreamCapacity(new DataSize(1, Unit.MEGABYTE).toBytes());
+            client.scheduleRequest();
+            requestComplete.await(10, TimeUnit.SECONDS);
+
+            assertPositionCounts(callback.getPages(), 2, 3);
+            assertEquals(callback.getCompletedRequests(), 1);
+            assertBufferInfo(outputBuffer, bufferId, 2, 1);
+
+            // the next request acknowledges all the pages and sees the buffer is complete
+            outputBuffer.setNoMorePages();
+            callback.resetStats();
+            client.scheduleRequest();
+            requestComplete.await(10, TimeUnit.SECONDS);
+
+            assertPositionCounts(callback.getPages());
+            assertEquals(callback.getCompletedRequests(), 1);
+            assertEquals(callback.getFailedBuffers(), 0);
+            assertBufferInfo(outputBuffer, bufferId, 0, 3);
+            assertStatus(client, location, "completed", 3, 3, 3, 0, "not scheduled");
+
+            client.close();
+        }
+        finally {
+            injector.getInstance(LifeCycleManager.class).stop();
+        }
+    }
+
     @Test
     public void testErrorCodes()
             throws Exception
@@ -413,6 +551,23 @@ public class TestHttpPageBufferClient
         assertEquals(actualStatus.getHttpRequestState(), httpRequestState, "httpRequestState");
     }
 
+    private static void assertPositionCounts(List<Page> pages, int... expectedPositionCounts)
+    {
+        assertEquals(pages.stream().mapToInt(Page::getPositionCount).toArray(), expectedPositionCounts);
+    }
+
+    private static void assertBufferInfo(OutputBuffer outputBuffer, OutputBufferId bufferId, int bufferedPages, long pagesSent)
+    {
+        for (BufferInfo bufferInfo : outputBuffer.getInfo().getBuffers()) {
+            if (bufferInfo.getBufferId().equals(bufferId)) {
+                assertEquals(bufferInfo.getBufferedPages(), bufferedPages, "bufferedPages");
+                assertEquals(bufferInfo.getPagesSent(), pagesSent, "pagesSent");
+                return;
+            }
+        }
+        fail("No buffer " + bufferId);
+    }
+
     private static void assertPageEquals(Page expectedPage, Page actualPage)
     {
         assertEquals(actualPage.getPositionCount(), expectedPage.getPositionCount());
@@ -428,6 +583,7 @@ public class TestHttpPageBufferClient
         private final AtomicInteger finishedBuffers = new AtomicInteger();
         private final AtomicInteger failedBuffers = new AtomicInteger();
         private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong streamCapacity = new AtomicLong();
 
         public TestingClientCallback(CyclicBarrier done)
         {
@@ -468,6 +624,17 @@ public class TestHttpPageBufferClient
             return true;
         }
 
+        public void setStreamCapacity(long streamCapacity)
+        {
+            this.streamCapacity.set(streamCapacity);
+        }
+
+        @Override
+        public long getStreamCapacity(HttpPageBufferClient client)
+        {
+            return streamCapacity.get();
+        }
+
         @Override
         public void requestComplete(HttpPageBufferClient client)
         {
@@ -547,4 +714,93 @@ public class TestHttpPageBufferClient
             }
         }
     }
+
+    private static class TestingTaskManager
+            implements TaskManager
+    {
+        private final OutputBuffer outputBuffer;
+
+        public TestingTaskManager(OutputBuffer outputBuffer)
+        {
+            this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
+        }
+
+        @Override
+        public String getTaskInstanceId(TaskId taskId)
+        {
+            return "task-instance-id";
+        }
+
+        @Override
+        public ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long acknowledgedSequenceId, long startingSequenceId, DataSize maxSize)
+        {
+            return outputBuffer.get(bufferId, acknowledgedSequenceId, startingSequenceId, maxSize);
+        }
+
+        @Override
+        public TaskInfo abortTaskResults(TaskId taskId, OutputBufferId bufferId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<TaskInfo> getAllTaskInfo()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TaskInfo getTaskInfo(TaskId taskId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TaskStatus getTaskStatus(TaskId taskId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<TaskInfo> getTaskInfo(TaskId taskId, TaskState currentState)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<TaskStatus> getTaskStatus(TaskId taskId, TaskState currentState)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateMemoryPoolAssignments(MemoryPoolAssignmentsRequest assignments)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TaskInfo updateTask(Session session, TaskId taskId, Optional<PlanFragment> fragment, List<TaskSource> sources, OutputBuffers outputBuffers)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TaskInfo cancelTask(TaskId taskId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TaskInfo abortTask(TaskId taskId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addStateChangeListener(TaskId taskId, StateChangeListener<TaskState> stateChangeListener)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
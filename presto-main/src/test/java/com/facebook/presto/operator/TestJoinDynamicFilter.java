@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.predicate.Domain;
+import com.facebook.presto.spi.predicate.Range;
+import com.facebook.presto.spi.predicate.TupleDomain;
+import com.facebook.presto.spi.predicate.ValueSet;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestJoinDynamicFilter
+{
+    @Test
+    public void testValueSetAndRange()
+    {
+        JoinDynamicFilter dynamicFilter = new JoinDynamicFilter(ImmutableList.of(BIGINT, VARCHAR), ImmutableList.of(0, 1), 2, 2);
+        ListenableFuture<List<Domain>> summary = dynamicFilter.getSummary();
+
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        dynamicFilter.addPartition(index(types, rowPagesBuilder(types)
+                .row(1L, "a")
+                .row(2L, null)
+                .row(3L, "a")
+                .build()));
+        assertFalse(summary.isDone());
+
+        dynamicFilter.addPartition(index(types, rowPagesBuilder(types)
+                .row(null, "b")
+                .row(10L, "a")
+                .build()));
+        assertTrue(summary.isDone());
+
+        // first partition has too many distinct values for the first key
+        assertEquals(getFutureValue(summary), ImmutableList.of(
+                Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 1L, true, 3L, true), Range.equal(BIGINT, 10L)), false),
+                Domain.multipleValues(VARCHAR, ImmutableList.<Object>of(utf8Slice("a"), utf8Slice("b")))));
+    }
+
+    @Test
+    public void testEmptyAndUnknownPartitions()
+    {
+        JoinDynamicFilter dynamicFilter = new JoinDynamicFilter(ImmutableList.of(BIGINT), ImmutableList.of(0), 1, 10);
+        dynamicFilter.addPartition(index(ImmutableList.of(BIGINT), ImmutableList.of()));
+        assertEquals(getFutureValue(dynamicFilter.getSummary()), ImmutableList.of(Domain.none(BIGINT)));
+
+        dynamicFilter = new JoinDynamicFilter(ImmutableList.of(BIGINT), ImmutableList.of(0), 2, 10);
+        dynamicFilter.addPartition(index(ImmutableList.of(BIGINT), rowPagesBuilder(BIGINT).row(1L).build()));
+        dynamicFilter.addUnknownPartition();
+        assertEquals(getFutureValue(dynamicFilter.getSummary()), ImmutableList.of(Domain.notNull(BIGINT)));
+    }
+
+    @Test
+    public void testToTupleDomain()
+    {
+        // same column provides both join keys
+        TupleDomain<String> tupleDomain = JoinDynamicFilter.toTupleDomain(
+                ImmutableList.of("x", "x"),
+                ImmutableList.of(Domain.multipleValues(BIGINT, ImmutableList.<Object>of(1L, 2L)), Domain.multipleValues(BIGINT, ImmutableList.<Object>of(2L, 3L))));
+        assertEquals(tupleDomain, TupleDomain.withColumnDomains(ImmutableMap.of("x", Domain.singleValue(BIGINT, 2L))));
+
+        tupleDomain = JoinDynamicFilter.toTupleDomain(ImmutableList.of("x"), ImmutableList.of(Domain.none(BIGINT)));
+        assertTrue(tupleDomain.isNone());
+    }
+
+    private static PagesIndex index(List<Type> types, List<Page> pages)
+    {
+        PagesIndex index = new PagesIndex.TestingFactory().newPagesIndex(types, 10);
+        pages.forEach(index::addPage);
+        return index;
+    }
+}
@@ -41,6 +41,7 @@ import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
 
 @Test(singleThreaded = true)
 public class TestOrderByOperator
@@ -159,6 +160,49 @@ public class TestOrderByOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected);
     }
 
+    @Test
+    public void testSpill()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(BIGINT, DOUBLE)
+                .row(1L, 0.1)
+                .row(2L, 0.2)
+                .pageBreak()
+                .row(-1L, -0.1)
+                .row(4L, 0.4)
+                .pageBreak()
+                .row(3L, 0.3)
+                .row(0L, 0.0)
+                .build();
+
+        DummySpillerFactory spillerFactory = new DummySpillerFactory();
+        OrderByOperatorFactory operatorFactory = new OrderByOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                ImmutableList.of(1),
+                10,
+                ImmutableList.of(0),
+                ImmutableList.of(DESC_NULLS_LAST),
+                new PagesIndex.TestingFactory(),
+                true,
+                new DataSize(1, Unit.BYTE),
+                spillerFactory);
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE)
+                .row(0.4)
+                .row(0.3)
+                .row(0.2)
+                .row(0.1)
+                .row(0.0)
+                .row(-0.1)
+                .build();
+
+        assertOperatorEquals(operatorFactory, driverContext, input, expected);
+        // every page exceeds the limit, so it is spilled as a separate sorted run
+        assertEquals(spillerFactory.getSpillsCount(), 3);
+    }
+
     @Test(expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Query exceeded local memory limit of 10B")
     public void testMemoryLimit()
             throws Exception
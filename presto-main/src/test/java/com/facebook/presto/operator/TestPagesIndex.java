@@ -14,6 +14,8 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.DictionaryBlock;
 import com.facebook.presto.spi.type.Type;
 import com.google.common.collect.ImmutableList;
 import org.testng.annotations.Test;
@@ -59,6 +61,31 @@ public class TestPagesIndex
                 estimatedSizeAfterCompact));
     }
 
+    @Test
+    public void testEstimatedSizeOfDictionaryView()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        Page source = createSequencePage(types, 1000, 0, 0);
+
+        // a view of a few positions of a large page is accounted for by the positions it references
+        int[] ids = new int[] {3, 500, 999};
+        Block[] blocks = new Block[types.size()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            blocks[channel] = new DictionaryBlock(ids.length, source.getBlock(channel), ids);
+        }
+
+        PagesIndex pagesIndex = newPagesIndex(types, 30);
+        long initialEstimatedSize = pagesIndex.getEstimatedSize().toBytes();
+        pagesIndex.addPage(new Page(blocks));
+        long viewSize = pagesIndex.getEstimatedSize().toBytes() - initialEstimatedSize;
+        assertTrue(viewSize < source.getRetainedSizeInBytes() / 10, format("View of 3 positions accounted for %s bytes", viewSize));
+
+        assertEquals(pagesIndex.getPositionCount(), 3);
+        for (int position = 0; position < ids.length; position++) {
+            assertEquals(BIGINT.getLong(pagesIndex.getSingleValueBlock(0, position), 0), ids[position]);
+        }
+    }
+
     private static PagesIndex newPagesIndex(List<Type> types, int expectedPositions)
     {
         return new PagesIndex.TestingFactory().newPagesIndex(types, expectedPositions);
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.operator.PartitionSkewInfo.HotKey;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestPartitionSkewTracker
+{
+    private static final int PARTITION_COUNT = 4;
+    private static final long HOT_KEY = 7;
+
+    @Test
+    public void testPartitionRowCounts()
+    {
+        PartitionSkewTracker tracker = new PartitionSkewTracker(PARTITION_COUNT, ImmutableList.of(BIGINT), ImmutableList.of(0), 1, 8);
+        Page keys = new Page(createLongSequenceBlock(0, 4));
+        tracker.recordPage(keys, new int[] {0, 1, 1, PartitionSkewTracker.REPLICATED}, 4);
+
+        PartitionSkewInfo info = tracker.getInfo();
+        assertEquals(info.getPartitionRowCounts(), ImmutableList.of(2L, 3L, 1L, 1L));
+        assertEquals(info.getSampledRows(), 3);
+        assertEquals(info.getSkew(), 3 * 4 / 7.0);
+        // not enough rows were sampled to report hot keys
+        assertEquals(info.getHotKeys(), ImmutableList.of());
+    }
+
+    @Test
+    public void testHotKey()
+    {
+        PartitionSkewTracker tracker = new PartitionSkewTracker(PARTITION_COUNT, ImmutableList.of(BIGINT), ImmutableList.of(0), 3, 8);
+        int hotPartition = 3;
+        for (int page = 0; page < 10; page++) {
+            // half of the rows have the hot key, the other ones have distinct keys
+            int positionCount = 1000;
+            BlockBuilder blockBuilder = BIGINT.createBlockBuilder(new BlockBuilderStatus(), positionCount);
+            int[] partitions = new int[positionCount];
+            for (int position = 0; position < positionCount; position++) {
+                if (position % 2 == 0) {
+                    BIGINT.writeLong(blockBuilder, HOT_KEY);
+                    partitions[position] = hotPartition;
+                }
+                else {
+                    BIGINT.writeLong(blockBuilder, 1000 + page * positionCount + position);
+                    partitions[position] = position % PARTITION_COUNT;
+                }
+            }
+            tracker.recordPage(new Page(blockBuilder.build()), partitions, positionCount);
+        }
+
+        PartitionSkewInfo info = tracker.getInfo();
+        assertEquals(info.getSampledRows(), 3334);
+        assertEquals(info.getPartitionRowCounts().get(hotPartition).longValue(), 5000 + 2500);
+        assertTrue(info.getSkew() > 2);
+
+        assertEquals(info.getHotKeys().size(), 1);
+        HotKey hotKey = info.getHotKeys().get(0);
+        assertEquals(hotKey.getPartition(), hotPartition);
+        assertTrue(hotKey.getSampledRows() > info.getSampledRows() / PARTITION_COUNT);
+        assertEquals(tracker.getHotKeyHashes(), ImmutableSet.of(hotKey.getKeyHash()));
+
+        PartitionSkewInfo merged = info.mergeWith(info);
+        assertEquals(merged.getSampledRows(), 2 * 3334);
+        assertEquals(merged.getPartitionRowCounts().get(hotPartition).longValue(), 2 * (5000 + 2500));
+        assertEquals(merged.getHotKeys().size(), 1);
+        assertEquals(merged.getHotKeys().get(0).getKeyHash(), hotKey.getKeyHash());
+        assertEquals(merged.getHotKeys().get(0).getSampledRows(), 2 * hotKey.getSampledRows());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.OutputBuffers;
+import com.facebook.presto.OutputBuffers.OutputBufferId;
+import com.facebook.presto.execution.StateMachine.StateChangeListener;
+import com.facebook.presto.execution.buffer.BufferResult;
+import com.facebook.presto.execution.buffer.BufferState;
+import com.facebook.presto.execution.buffer.OutputBuffer;
+import com.facebook.presto.execution.buffer.OutputBufferInfo;
+import com.facebook.presto.execution.buffer.PagesSerde;
+import com.facebook.presto.execution.buffer.SerializedPage;
+import com.facebook.presto.execution.buffer.TestingPagesSerdeFactory;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.sql.planner.SkewMitigation;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.Function;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.execution.buffer.TestingPagesSerdeFactory.testingPagesSerde;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.sql.planner.SkewMitigation.Strategy.REPLICATE;
+import static com.facebook.presto.sql.planner.SkewMitigation.Strategy.SALT_HOT_KEYS;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestPartitionedOutputOperator
+{
+    private static final int PARTITION_COUNT = 4;
+    private static final int FANOUT = 3;
+    private static final long HOT_KEY = 1;
+
+    @Test
+    public void testReplicatesRowsToConsecutivePartitions()
+    {
+        RecordingOutputBuffer outputBuffer = new RecordingOutputBuffer();
+        PartitionedOutputOperator operator = createOperator(new SkewMitigation(REPLICATE, FANOUT), outputBuffer);
+        operator.addInput(new Page(createLongSequenceBlock(0, 8)));
+        operator.finish();
+
+        for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+            ImmutableSet.Builder<Long> expected = ImmutableSet.builder();
+            for (long key = 0; key < 8; key++) {
+                long distance = Math.floorMod(partition - key, PARTITION_COUNT);
+                if (distance < FANOUT) {
+                    expected.add(key);
+                }
+            }
+            assertEquals(outputBuffer.getKeys(partition), expected.build());
+        }
+        assertEquals(operator.getInfo().getRowsAdded(), 8 * FANOUT);
+        assertEquals(operator.getInfo().getSkewInfo().getPartitionRowCounts(), ImmutableList.of(6L, 6L, 6L, 6L));
+    }
+
+    @Test
+    public void testSaltsHotKeys()
+    {
+        RecordingOutputBuffer outputBuffer = new RecordingOutputBuffer();
+        PartitionedOutputOperator operator = createOperator(new SkewMitigation(SALT_HOT_KEYS, FANOUT), outputBuffer);
+        int pageCount = 40;
+        int positionCount = 1000;
+        for (int page = 0; page < pageCount; page++) {
+            // half of the rows have the hot key, the other ones have distinct keys
+            BlockBuilder blockBuilder = BIGINT.createBlockBuilder(new BlockBuilderStatus(), positionCount);
+            for (int position = 0; position < positionCount; position++) {
+                BIGINT.writeLong(blockBuilder, position % 2 == 0 ? HOT_KEY : 1000 + page * positionCount + position);
+            }
+            operator.addInput(new Page(blockBuilder.build()));
+        }
+        operator.finish();
+
+        assertEquals(operator.getInfo().getRowsAdded(), pageCount * positionCount);
+        long partitionOfHotKey = HOT_KEY % PARTITION_COUNT;
+        for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+            List<Long> keys = outputBuffer.getRows(partition);
+            long distance = Math.floorMod(partition - partitionOfHotKey, PARTITION_COUNT);
+            if (distance < FANOUT) {
+                // the hot key is spread over the partitions the build side replicates its rows to
+                assertTrue(keys.contains(HOT_KEY));
+            }
+            else {
+                assertFalse(keys.contains(HOT_KEY));
+            }
+            for (long key : keys) {
+                if (key != HOT_KEY) {
+                    assertEquals(key % PARTITION_COUNT, partition);
+                }
+            }
+        }
+    }
+
+    private static PartitionedOutputOperator createOperator(SkewMitigation skewMitigation, OutputBuffer outputBuffer)
+    {
+        int[] bucketToPartition = new int[PARTITION_COUNT];
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            bucketToPartition[i] = i;
+        }
+        PartitionFunction partitionFunction = new PartitionFunction(
+                (page, position) -> (int) (BIGINT.getLong(page.getBlock(0), position) % PARTITION_COUNT),
+                bucketToPartition);
+
+        return new PartitionedOutputOperator(
+                TestingOperatorContext.create(),
+                ImmutableList.of(BIGINT),
+                Function.identity(),
+                partitionFunction,
+                ImmutableList.of(0),
+                ImmutableList.of(Optional.empty()),
+                false,
+                OptionalInt.empty(),
+                Optional.of(skewMitigation),
+                outputBuffer,
+                new TestingPagesSerdeFactory(),
+                new DataSize(1, MEGABYTE));
+    }
+
+    private static class RecordingOutputBuffer
+            implements OutputBuffer
+    {
+        private final PagesSerde serde = testingPagesSerde();
+        private final ListMultimap<Integer, Page> pages = ArrayListMultimap.create();
+
+        public List<Long> getRows(int partition)
+        {
+            ImmutableList.Builder<Long> rows = ImmutableList.builder();
+            for (Page page : pages.get(partition)) {
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    rows.add(BIGINT.getLong(page.getBlock(0), position));
+                }
+            }
+            return rows.build();
+        }
+
+        public Set<Long> getKeys(int partition)
+        {
+            return new HashSet<>(getRows(partition));
+        }
+
+        @Override
+        public ListenableFuture<?> enqueue(int partition, List<SerializedPage> serializedPages)
+        {
+            for (SerializedPage serializedPage : serializedPages) {
+                pages.put(partition, serde.deserialize(serializedPage));
+            }
+            return immediateFuture(null);
+        }
+
+        @Override
+        public ListenableFuture<?> enqueue(List<SerializedPage> pages)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OutputBufferInfo getInfo()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public double getUtilization()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addStateChangeListener(StateChangeListener<BufferState> stateChangeListener)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setOutputBuffers(OutputBuffers newOutputBuffers)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<BufferResult> get(OutputBufferId bufferId, long acknowledgedToken, long token, DataSize maxSize)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void abort(OutputBufferId bufferId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setNoMorePages()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void destroy()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void fail()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -164,6 +164,55 @@ public class TestWindowOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected);
     }
 
+    @Test
+    public void testRowNumberPartitionSpill()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(VARCHAR, BIGINT, DOUBLE, BOOLEAN)
+                .row("b", -1L, -0.1, true)
+                .row("a", 2L, 0.3, false)
+                .row("a", 4L, 0.2, true)
+                .pageBreak()
+                .row("b", 5L, 0.4, false)
+                .row("a", 6L, 0.1, true)
+                .pageBreak()
+                .row("c", 3L, 0.5, false)
+                .row("b", 1L, 0.6, true)
+                .build();
+
+        DummySpillerFactory spillerFactory = new DummySpillerFactory();
+        WindowOperatorFactory operatorFactory = new WindowOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(VARCHAR, BIGINT, DOUBLE, BOOLEAN),
+                Ints.asList(0, 1, 2, 3),
+                ROW_NUMBER,
+                Ints.asList(0),
+                ImmutableList.of(),
+                Ints.asList(1),
+                ImmutableList.copyOf(new SortOrder[] {SortOrder.ASC_NULLS_LAST}),
+                0,
+                10,
+                new PagesIndex.TestingFactory(),
+                true,
+                new DataSize(1, Unit.BYTE),
+                spillerFactory);
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), VARCHAR, BIGINT, DOUBLE, BOOLEAN, BIGINT)
+                .row("a", 2L, 0.3, false, 1L)
+                .row("a", 4L, 0.2, true, 2L)
+                .row("a", 6L, 0.1, true, 3L)
+                .row("b", -1L, -0.1, true, 1L)
+                .row("b", 1L, 0.6, true, 2L)
+                .row("b", 5L, 0.4, false, 3L)
+                .row("c", 3L, 0.5, false, 1L)
+                .build();
+
+        assertOperatorEquals(operatorFactory, driverContext, input, expected);
+        // every page exceeds the limit, so it is spilled as a separate sorted run
+        assertEquals(spillerFactory.getSpillsCount(), 3);
+    }
+
     @Test
     public void testRowNumberArbitrary()
             throws Exception
@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.exchange;
+
+import com.facebook.presto.SequencePageBuilder;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeSinkFactory;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_ARBITRARY_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+
+/**
+ * Measures the page handoff throughput between the drivers writing to a local exchange
+ * and the drivers reading from it, with one writer and one reader per driver.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkLocalExchange
+{
+    private static final int TOTAL_PAGES = 32 * 1024;
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT);
+
+    @Benchmark
+    @OperationsPerInvocation(TOTAL_PAGES)
+    public long handoff(BenchmarkData data)
+            throws Exception
+    {
+        LocalExchange exchange = data.createExchange();
+        LocalExchangeSinkFactory sinkFactory = exchange.createSinkFactory();
+        List<LocalExchangeSink> sinks = new ArrayList<>();
+        for (int i = 0; i < data.drivers; i++) {
+            sinks.add(sinkFactory.createSink());
+        }
+        sinkFactory.close();
+        sinkFactory.noMoreSinkFactories();
+
+        List<Future<Long>> readers = new ArrayList<>();
+        for (int i = 0; i < exchange.getBufferCount(); i++) {
+            LocalExchangeSource source = exchange.getSource(i);
+            readers.add(data.executor.submit(() -> read(source)));
+        }
+        List<Future<?>> writers = new ArrayList<>();
+        for (LocalExchangeSink sink : sinks) {
+            writers.add(data.executor.submit(() -> write(sink, data.page, TOTAL_PAGES / data.drivers)));
+        }
+
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        long positions = 0;
+        for (Future<Long> reader : readers) {
+            positions += reader.get();
+        }
+        return positions;
+    }
+
+    private static void write(LocalExchangeSink sink, Page page, int pages)
+    {
+        try {
+            for (int i = 0; i < pages; i++) {
+                sink.waitForWriting().get();
+                sink.addPage(page);
+            }
+            sink.finish();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long read(LocalExchangeSource source)
+            throws InterruptedException, ExecutionException
+    {
+        long positions = 0;
+        while (!source.isFinished()) {
+            Page page = source.removePage();
+            if (page == null) {
+                source.waitForReading().get();
+            }
+            else {
+                positions += page.getPositionCount();
+            }
+        }
+        return positions;
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"8", "16", "32"})
+        private int drivers = 8;
+
+        @Param({"FIXED_ARBITRARY", "FIXED_HASH"})
+        private String distribution = "FIXED_ARBITRARY";
+
+        @Param({"16", "1024"})
+        private int positionsPerPage = 16;
+
+        private Page page;
+        private ExecutorService executor;
+
+        @Setup
+        public void setup()
+        {
+            page = SequencePageBuilder.createSequencePage(TYPES, positionsPerPage);
+            executor = newCachedThreadPool(daemonThreadsNamed("local-exchange-%s"));
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            executor.shutdownNow();
+        }
+
+        public LocalExchange createExchange()
+        {
+            if (distribution.equals("FIXED_HASH")) {
+                return new LocalExchange(FIXED_HASH_DISTRIBUTION, drivers, TYPES, ImmutableList.of(0), Optional.empty());
+            }
+            return new LocalExchange(FIXED_ARBITRARY_DISTRIBUTION, drivers, TYPES, ImmutableList.of(), Optional.empty());
+        }
+    }
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        // assure the benchmarks are valid before running
+        BenchmarkData data = new BenchmarkData();
+        data.setup();
+        try {
+            long positions = new BenchmarkLocalExchange().handoff(data);
+            if (positions != (long) TOTAL_PAGES * data.positionsPerPage) {
+                throw new IllegalStateException("Expected " + TOTAL_PAGES * data.positionsPerPage + " positions, but read " + positions);
+            }
+        }
+        finally {
+            data.tearDown();
+        }
+
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkLocalExchange.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
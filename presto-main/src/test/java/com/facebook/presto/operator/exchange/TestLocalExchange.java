@@ -18,6 +18,9 @@ import com.facebook.presto.operator.InterpretedHashGenerator;
 import com.facebook.presto.operator.PageAssertions;
 import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeSinkFactory;
 import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.spi.block.DictionaryBlock;
 import com.facebook.presto.spi.type.BigintType;
 import com.facebook.presto.spi.type.Type;
 import com.google.common.collect.ImmutableList;
@@ -25,19 +28,26 @@ import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_ARBITRARY_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_BROADCAST_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 public class TestLocalExchange
@@ -270,6 +280,103 @@ public class TestLocalExchange
         assertExchangeTotalBufferedBytes(exchange, 0);
     }
 
+    @Test
+    public void testPartitioningExchangerCreatesViews()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, BIGINT);
+        List<List<PageReference>> partitions = ImmutableList.of(new ArrayList<>(), new ArrayList<>());
+        AtomicLong memoryUsage = new AtomicLong();
+        PartitioningExchanger exchanger = new PartitioningExchanger(
+                partitions.stream()
+                        .map(partition -> (Consumer<PageReference>) partition::add)
+                        .collect(toImmutableList()),
+                memoryUsage::addAndGet,
+                types,
+                ImmutableList.of(0),
+                Optional.of(1));
+
+        // the second channel is the precomputed hash of the first one
+        InterpretedHashGenerator hashGenerator = new InterpretedHashGenerator(ImmutableList.of(BIGINT), new int[] {0});
+        Page values = new Page(createLongSequenceBlock(0, 100));
+        BlockBuilder hashes = BIGINT.createBlockBuilder(new BlockBuilderStatus(), 100);
+        for (int position = 0; position < 100; position++) {
+            BIGINT.writeLong(hashes, hashGenerator.hashPosition(position, values));
+        }
+        Page page = new Page(values.getBlock(0), hashes.build());
+        exchanger.accept(page);
+        assertTrue(memoryUsage.get() >= page.getRetainedSizeInBytes());
+
+        LocalPartitionGenerator partitionGenerator = new LocalPartitionGenerator(hashGenerator, 2);
+        int positionCount = 0;
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            assertEquals(partitions.get(partition).size(), 1);
+            Page partitionPage = partitions.get(partition).get(0).removePage();
+            for (int channel = 0; channel < types.size(); channel++) {
+                // the rows are not copied
+                assertTrue(partitionPage.getBlock(channel) instanceof DictionaryBlock);
+                assertSame(((DictionaryBlock) partitionPage.getBlock(channel)).getDictionary(), page.getBlock(channel));
+            }
+            for (int position = 0; position < partitionPage.getPositionCount(); position++) {
+                assertEquals(partitionGenerator.getPartition(position, partitionPage), partition);
+            }
+            positionCount += partitionPage.getPositionCount();
+
+            // the source page is released with the last partition page
+            if (partition < partitions.size() - 1) {
+                assertTrue(memoryUsage.get() >= page.getRetainedSizeInBytes());
+            }
+        }
+        assertEquals(positionCount, 100);
+        assertEquals(memoryUsage.get(), 0);
+    }
+
+    @Test
+    public void testPartitioningExchangerCopiesSmallPartitions()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, BIGINT);
+        List<List<PageReference>> partitions = ImmutableList.of(new ArrayList<>(), new ArrayList<>());
+        AtomicLong memoryUsage = new AtomicLong();
+        PartitioningExchanger exchanger = new PartitioningExchanger(
+                partitions.stream()
+                        .map(partition -> (Consumer<PageReference>) partition::add)
+                        .collect(toImmutableList()),
+                memoryUsage::addAndGet,
+                types,
+                ImmutableList.of(0),
+                Optional.of(1));
+
+        // find a hash for each partition
+        LocalPartitionGenerator partitionGenerator = new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(BIGINT), new int[] {0}), 2);
+        long[] partitionHashes = new long[2];
+        for (long hash = 0; partitionGenerator.getPartition(partitionHashes[0]) != 0 || partitionGenerator.getPartition(partitionHashes[1]) != 1; hash++) {
+            partitionHashes[partitionGenerator.getPartition(hash)] = hash;
+        }
+
+        // the second partition only gets 5 of the 100 rows
+        BlockBuilder hashes = BIGINT.createBlockBuilder(new BlockBuilderStatus(), 100);
+        for (int position = 0; position < 100; position++) {
+            BIGINT.writeLong(hashes, partitionHashes[position < 95 ? 0 : 1]);
+        }
+        Page page = new Page(createLongSequenceBlock(0, 100), hashes.build());
+        exchanger.accept(page);
+
+        Page viewPage = getOnlyElement(partitions.get(0)).removePage();
+        assertEquals(viewPage.getPositionCount(), 95);
+        assertTrue(viewPage.getBlock(0) instanceof DictionaryBlock);
+        assertSame(((DictionaryBlock) viewPage.getBlock(0)).getDictionary(), page.getBlock(0));
+
+        // the few rows of the second partition are copied, so they do not keep the source page in memory
+        assertTrue(memoryUsage.get() > 0);
+        assertTrue(memoryUsage.get() < page.getRetainedSizeInBytes());
+        Page copiedPage = getOnlyElement(partitions.get(1)).removePage();
+        assertEquals(copiedPage.getPositionCount(), 5);
+        for (int channel = 0; channel < types.size(); channel++) {
+            assertFalse(copiedPage.getBlock(channel) instanceof DictionaryBlock);
+        }
+        assertEquals(BIGINT.getLong(copiedPage.getBlock(0), 0), 95);
+        assertEquals(memoryUsage.get(), 0);
+    }
+
     @Test
     public void writeUnblockWhenAllReadersFinish()
     {
@@ -95,7 +95,8 @@ public class BenchmarkBinaryFileSpiller
                 BLOCK_ENCODING_MANAGER,
                 spillerStats,
                 ImmutableList.of(SPILL_PATH),
-                1.0);
+                1.0,
+                false);
         private final SpillerFactory spillerFactory = new GenericSpillerFactory(singleStreamSpillerFactory);
 
         @Param({"10000"})
@@ -13,18 +13,28 @@
  */
 package com.facebook.presto.server;
 
+import com.facebook.presto.block.BlockEncodingManager;
 import com.facebook.presto.client.QueryError;
 import com.facebook.presto.client.QueryResults;
 import com.facebook.presto.execution.QueryInfo;
+import com.facebook.presto.execution.buffer.BufferResult;
+import com.facebook.presto.execution.buffer.PagesSerde;
+import com.facebook.presto.execution.buffer.PagesSerdeFactory;
+import com.facebook.presto.execution.buffer.PagesSerdeUtil;
+import com.facebook.presto.execution.buffer.SerializedPage;
 import com.facebook.presto.server.testing.TestingPrestoServer;
+import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.QueryId;
 import com.facebook.presto.spi.type.TimeZoneNotSupportedException;
+import com.facebook.presto.type.TypeRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
 import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.HttpUriBuilder;
 import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
 import io.airlift.http.client.StatusResponseHandler;
 import io.airlift.http.client.jetty.JettyHttpClient;
 import io.airlift.testing.Closeables;
@@ -32,15 +42,23 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
 import static com.facebook.presto.SystemSessionProperties.DISTRIBUTED_JOIN;
 import static com.facebook.presto.SystemSessionProperties.HASH_PARTITION_COUNT;
 import static com.facebook.presto.SystemSessionProperties.QUERY_MAX_MEMORY;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_BUFFER_COMPLETE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CATALOG;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLIENT_INFO;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PREPARED_STATEMENT;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_RESULT_FORMAT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SCHEMA;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SESSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SOURCE;
@@ -49,10 +67,14 @@ import static com.facebook.presto.client.PrestoHeaders.PRESTO_TIME_ZONE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_TRANSACTION_ID;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_USER;
 import static com.facebook.presto.spi.StandardErrorCode.INCOMPATIBLE_CLIENT;
+import static com.facebook.presto.spi.type.IntegerType.INTEGER;
+import static com.facebook.presto.testing.TestingConnectorSession.SESSION;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.JsonResponseHandler.createJsonResponseHandler;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.http.client.Request.Builder.preparePost;
+import static io.airlift.http.client.ResponseHandlerUtils.propagate;
 import static io.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
 import static io.airlift.json.JsonCodec.jsonCodec;
@@ -177,6 +199,51 @@ public class TestServer
         assertEquals(rows, ImmutableList.of(ImmutableList.of("system")));
     }
 
+    @Test
+    public void testQueryPages()
+            throws Exception
+    {
+        Request request = preparePost()
+                .setUri(uriFor("/v1/statement"))
+                .setBodyGenerator(createStaticBodyGenerator("SELECT * FROM (VALUES 1, 2, 3) t(x)", UTF_8))
+                .setHeader(PRESTO_USER, "user")
+                .setHeader(PRESTO_SOURCE, "source")
+                .setHeader(PRESTO_RESULT_FORMAT, PRESTO_PAGES)
+                .build();
+
+        JsonResponse<QueryResults> queryResults = client.execute(request, createFullJsonResponseHandler(jsonCodec(QueryResults.class)));
+        assertEquals(queryResults.getHeader(PRESTO_RESULT_FORMAT), PRESTO_PAGES);
+        String queryId = queryResults.getValue().getId();
+
+        TypeRegistry typeManager = new TypeRegistry();
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(typeManager), false).createPagesSerde();
+        List<Object> values = new ArrayList<>();
+        long token = 0;
+        while (true) {
+            BufferResult result = client.execute(prepareGet().setUri(uriFor("/v1/statement/" + queryId + "/pages/" + token)).build(), new PagesResponseHandler());
+            assertEquals(result.getToken(), token);
+            for (SerializedPage serializedPage : result.getSerializedPages()) {
+                Page page = serde.deserialize(serializedPage);
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    values.add(INTEGER.getObjectValue(SESSION, page.getBlock(0), position));
+                }
+            }
+            token = result.getNextToken();
+            if (result.isBufferComplete()) {
+                break;
+            }
+        }
+        assertEquals(values, ImmutableList.of(1, 2, 3));
+
+        // the JSON results report the state of the query without the data
+        while (queryResults.getValue().getNextUri() != null) {
+            queryResults = client.execute(prepareGet().setUri(queryResults.getValue().getNextUri()).build(), createFullJsonResponseHandler(jsonCodec(QueryResults.class)));
+            assertNull(queryResults.getValue().getData());
+        }
+        assertNull(queryResults.getValue().getError());
+        assertEquals(queryResults.getValue().getStats().getState(), "FINISHED");
+    }
+
     @Test
     public void testTransactionSupport()
             throws Exception
@@ -229,4 +296,35 @@ public class TestServer
     {
         return HttpUriBuilder.uriBuilderFrom(server.getBaseUrl()).replacePath(path).build();
     }
+
+    private static class PagesResponseHandler
+            implements ResponseHandler<BufferResult, RuntimeException>
+    {
+        @Override
+        public BufferResult handleException(Request request, Exception exception)
+        {
+            throw propagate(request, exception);
+        }
+
+        @Override
+        public BufferResult handle(Request request, Response response)
+        {
+            try {
+                List<SerializedPage> pages = ImmutableList.of();
+                if (response.getStatusCode() == OK.getStatusCode()) {
+                    assertEquals(response.getHeader(CONTENT_TYPE), PRESTO_PAGES);
+                    pages = PagesSerdeUtil.readSerializedPagesFully(response.getInputStream());
+                }
+                return new BufferResult(
+                        "query",
+                        Long.parseLong(response.getHeader(PRESTO_PAGE_TOKEN)),
+                        Long.parseLong(response.getHeader(PRESTO_PAGE_NEXT_TOKEN)),
+                        Boolean.parseBoolean(response.getHeader(PRESTO_BUFFER_COMPLETE)),
+                        pages);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
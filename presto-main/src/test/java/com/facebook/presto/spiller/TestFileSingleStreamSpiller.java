@@ -20,6 +20,7 @@ import com.facebook.presto.memory.AggregatedMemoryContext;
 import com.facebook.presto.memory.LocalMemoryContext;
 import com.facebook.presto.operator.PageAssertions;
 import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.block.BlockBuilder;
 import com.facebook.presto.spi.block.BlockBuilderStatus;
 import com.facebook.presto.spi.type.Type;
@@ -31,26 +32,42 @@ import com.google.common.io.Files;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import io.airlift.testing.FileUtils;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
 import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
 import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
 import static io.airlift.testing.FileUtils.deleteRecursively;
 import static java.lang.Double.doubleToLongBits;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
+@Test(singleThreaded = true)
 public class TestFileSingleStreamSpiller
 {
     private static final List<Type> TYPES = ImmutableList.of(BIGINT, DOUBLE, VARBINARY);
 
-    private final ListeningExecutorService executor = listeningDecorator(newCachedThreadPool());
-    private final File spillPath = Files.createTempDir();
+    private ListeningExecutorService executor;
+    private File spillPath;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = listeningDecorator(newCachedThreadPool());
+        spillPath = Files.createTempDir();
+    }
 
     @AfterMethod
     public void tearDown()
@@ -64,8 +81,125 @@ public class TestFileSingleStreamSpiller
     public void testSpill()
             throws Exception
     {
-        PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(new TypeRegistry(ImmutableSet.copyOf(TYPES))), false);
-        PagesSerde serde = serdeFactory.createPagesSerde();
+        assertSpill(false);
+    }
+
+    @Test
+    public void testSpillCompression()
+            throws Exception
+    {
+        SpillerStats spillerStats = assertSpill(true);
+        assertTrue(spillerStats.getTotalSpilledBytes() < spillerStats.getTotalSpilledRawBytes());
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Spill file is corrupted: .*")
+    public void testCorruptedSpillFile()
+            throws Exception
+    {
+        // flip the last byte of the serialized page
+        readCorruptedSpillFile(-1);
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Spill file is corrupted: .*")
+    public void testCorruptedCompressionMarker()
+            throws Exception
+    {
+        // flip the compression marker, which follows the checksum and the position count
+        readCorruptedSpillFile(SIZE_OF_LONG + SIZE_OF_INT);
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Spill file is corrupted: .*")
+    public void testTruncatedSpillFile()
+            throws Exception
+    {
+        // drop the last byte of the serialized page
+        readTruncatedSpillFile(-1);
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Spill file is corrupted: .*")
+    public void testTruncatedSpillFileHeader()
+            throws Exception
+    {
+        // end the file in the middle of the page header
+        readTruncatedSpillFile(SIZE_OF_LONG + SIZE_OF_INT);
+    }
+
+    @Test
+    public void testRejectedSpill()
+            throws Exception
+    {
+        SpillPath path = new SpillPath(spillPath.toPath());
+        ListeningExecutorService rejectingExecutor = listeningDecorator(newCachedThreadPool());
+        rejectingExecutor.shutdown();
+        FileSingleStreamSpiller spiller = new FileSingleStreamSpiller(
+                createPagesSerde(false),
+                rejectingExecutor,
+                path,
+                new SpillerStats(),
+                bytes -> { },
+                new AggregatedMemoryContext().newLocalMemoryContext());
+
+        try {
+            spiller.spill(buildPage());
+            fail("expected the spill to be rejected");
+        }
+        catch (RejectedExecutionException expected) {
+        }
+        finally {
+            spiller.close();
+        }
+        assertEquals(path.getQueuedWrites(), 0);
+    }
+
+    // a negative offset is relative to the end of the file
+    private void readCorruptedSpillFile(long offset)
+            throws Exception
+    {
+        readModifiedSpillFile(file -> {
+            long position = offset < 0 ? file.length() + offset : offset;
+            file.seek(position);
+            int corruptedByte = file.read();
+            file.seek(position);
+            file.write(~corruptedByte);
+        });
+    }
+
+    // a negative length is relative to the end of the file
+    private void readTruncatedSpillFile(long length)
+            throws Exception
+    {
+        readModifiedSpillFile(file -> file.setLength(length < 0 ? file.length() + length : length));
+    }
+
+    private void readModifiedSpillFile(SpillFileModification modification)
+            throws Exception
+    {
+        FileSingleStreamSpiller spiller = new FileSingleStreamSpiller(
+                createPagesSerde(false),
+                executor,
+                spillPath.toPath(),
+                new SpillerStats(),
+                bytes -> { },
+                new AggregatedMemoryContext().newLocalMemoryContext());
+        spiller.spill(buildPage()).get();
+
+        File spillFile = FileUtils.listFiles(spillPath).get(0);
+        try (RandomAccessFile file = new RandomAccessFile(spillFile, "rw")) {
+            modification.apply(file);
+        }
+
+        try {
+            ImmutableList.copyOf(spiller.getSpilledPages());
+        }
+        finally {
+            spiller.close();
+        }
+    }
+
+    private SpillerStats assertSpill(boolean compression)
+            throws Exception
+    {
+        PagesSerde serde = createPagesSerde(compression);
         SpillerStats spillerStats = new SpillerStats();
         LocalMemoryContext memoryContext = new AggregatedMemoryContext().newLocalMemoryContext();
         FileSingleStreamSpiller spiller = new FileSingleStreamSpiller(serde, executor, spillPath.toPath(), spillerStats, bytes -> { }, memoryContext);
@@ -91,6 +225,12 @@ public class TestFileSingleStreamSpiller
         spiller.close();
         assertEquals(0, FileUtils.listFiles(spillPath).size());
         assertEquals(memoryContext.getBytes(), 0);
+        return spillerStats;
+    }
+
+    private static PagesSerde createPagesSerde(boolean compression)
+    {
+        return new PagesSerdeFactory(new BlockEncodingManager(new TypeRegistry(ImmutableSet.copyOf(TYPES))), compression).createPagesSerde();
     }
 
     private Page buildPage()
@@ -99,10 +239,19 @@ public class TestFileSingleStreamSpiller
         BlockBuilder col2 = DOUBLE.createBlockBuilder(new BlockBuilderStatus(), 1);
         BlockBuilder col3 = VARBINARY.createBlockBuilder(new BlockBuilderStatus(), 1);
 
-        col1.writeLong(42).closeEntry();
-        col2.writeLong(doubleToLongBits(43.0)).closeEntry();
-        col3.writeLong(doubleToLongBits(43.0)).writeLong(1).closeEntry();
+        // repeated rows, so that the page is compressible
+        for (int i = 0; i < 100; i++) {
+            col1.writeLong(42).closeEntry();
+            col2.writeLong(doubleToLongBits(43.0)).closeEntry();
+            col3.writeLong(doubleToLongBits(43.0)).writeLong(1).closeEntry();
+        }
 
         return new Page(col1.build(), col2.build(), col3.build());
     }
+
+    private interface SpillFileModification
+    {
+        void apply(RandomAccessFile file)
+                throws IOException;
+    }
 }
@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closer;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import io.airlift.testing.FileUtils;
@@ -36,6 +37,7 @@ import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
@@ -43,6 +45,8 @@ import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_F
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
 import static com.google.common.util.concurrent.Futures.getUnchecked;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestFileSingleStreamSpillerFactory
@@ -83,7 +87,8 @@ public class TestFileSingleStreamSpillerFactory
                 blockEncodingSerde,
                 new SpillerStats(),
                 spillPaths,
-                1.0);
+                1.0,
+                false);
 
         assertEquals(FileUtils.listFiles(spillPath1).size(), 0);
         assertEquals(FileUtils.listFiles(spillPath2).size(), 0);
@@ -103,6 +108,79 @@ public class TestFileSingleStreamSpillerFactory
         assertEquals(FileUtils.listFiles(spillPath2).size(), 0);
     }
 
+    @Test
+    public void testPrefersLeastLoadedPath()
+            throws Exception
+    {
+        List<Type> types = ImmutableList.of(BIGINT);
+        BlockEncodingSerde blockEncodingSerde = new BlockEncodingManager(new TypeRegistry(ImmutableSet.copyOf(types)));
+        List<Path> spillPaths = ImmutableList.of(spillPath1.toPath(), spillPath2.toPath());
+        ListeningExecutorService singleThreadExecutor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+        closer.register(singleThreadExecutor::shutdownNow);
+        FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                singleThreadExecutor,
+                blockEncodingSerde,
+                new SpillerStats(),
+                spillPaths,
+                1.0,
+                false);
+
+        // block the only spilling thread, so that spills stay queued
+        CountDownLatch spillingBlocked = new CountDownLatch(1);
+        singleThreadExecutor.submit(() -> {
+            spillingBlocked.await();
+            return null;
+        });
+
+        List<SingleStreamSpiller> spillers = new ArrayList<>();
+        SingleStreamSpiller queuedSpiller = spillerFactory.create(types, bytes -> { }, new AggregatedMemoryContext().newLocalMemoryContext());
+        ListenableFuture<?> queuedSpill = queuedSpiller.spill(buildPage());
+        spillers.add(queuedSpiller);
+        assertEquals(spillerFactory.getSpillPaths().get(0).getQueuedWrites(), 1);
+
+        // the second path is idle, so it is selected even when the first one is next in round robin order
+        for (int i = 0; i < 2; ++i) {
+            spillers.add(spillerFactory.create(types, bytes -> { }, new AggregatedMemoryContext().newLocalMemoryContext()));
+        }
+        assertEquals(FileUtils.listFiles(spillPath1).size(), 1);
+        assertEquals(FileUtils.listFiles(spillPath2).size(), 2);
+
+        spillingBlocked.countDown();
+        getUnchecked(queuedSpill);
+        assertEquals(spillerFactory.getSpillPaths().get(0).getQueuedWrites(), 0);
+        spillers.forEach(SingleStreamSpiller::close);
+    }
+
+    @Test
+    public void testExcludesFailingPath()
+            throws Exception
+    {
+        List<Type> types = ImmutableList.of(BIGINT);
+        BlockEncodingSerde blockEncodingSerde = new BlockEncodingManager(new TypeRegistry(ImmutableSet.copyOf(types)));
+        List<Path> spillPaths = ImmutableList.of(spillPath1.toPath(), spillPath2.toPath());
+        FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                executor, // executor won't be closed, because we don't call destroy() on the spiller factory
+                blockEncodingSerde,
+                new SpillerStats(),
+                spillPaths,
+                1.0,
+                false);
+
+        // simulate a failed disk
+        FileUtils.deleteRecursively(spillPath1);
+
+        List<SingleStreamSpiller> spillers = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            spillers.add(spillerFactory.create(types, bytes -> { }, new AggregatedMemoryContext().newLocalMemoryContext()));
+        }
+        assertEquals(FileUtils.listFiles(spillPath2).size(), 4);
+        assertTrue(spillerFactory.getSpillPaths().get(0).isExcluded());
+        assertEquals(spillerFactory.getSpillPaths().get(0).getFailures(), 1);
+        assertFalse(spillerFactory.getSpillPaths().get(1).isExcluded());
+
+        spillers.forEach(SingleStreamSpiller::close);
+    }
+
     private Page buildPage()
     {
         BlockBuilder col1 = BIGINT.createBlockBuilder(new BlockBuilderStatus(), 1);
@@ -121,7 +199,8 @@ public class TestFileSingleStreamSpillerFactory
                 blockEncodingSerde,
                 new SpillerStats(),
                 spillPaths,
-                0.0);
+                0.0,
+                false);
 
         spillerFactory.create(types, bytes -> { }, new AggregatedMemoryContext().newLocalMemoryContext());
     }
@@ -151,7 +230,8 @@ public class TestFileSingleStreamSpillerFactory
                 blockEncodingSerde,
                 new SpillerStats(),
                 spillPaths,
-                1.0);
+                1.0,
+                false);
         spillerFactory.cleanupOldSpillFiles();
 
         assertEquals(FileUtils.listFiles(spillPath1).size(), 1);
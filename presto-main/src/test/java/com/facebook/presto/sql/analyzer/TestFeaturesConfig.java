@@ -19,6 +19,9 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
 import java.util.Map;
 
 import static com.facebook.presto.sql.analyzer.RegexLibrary.JONI;
@@ -26,6 +29,7 @@ import static com.facebook.presto.sql.analyzer.RegexLibrary.RE2J;
 import static io.airlift.configuration.testing.ConfigAssertions.assertDeprecatedEquivalence;
 import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
 import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.testing.ValidationAssertions.assertFailsValidation;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -58,6 +62,20 @@ public class TestFeaturesConfig
                 .setSpillerSpillPaths("")
                 .setSpillerThreads(4)
                 .setSpillMaxUsedSpaceThreshold(0.9)
+                .setSpillCompressionEnabled(false)
+                .setDynamicFilteringEnabled(false)
+                .setJoinBloomFilterEnabled(false)
+                .setBatchJoinProbeEnabled(false)
+                .setAdaptivePartialAggregationEnabled(false)
+                .setAdaptivePartialAggregationMinRows(100_000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.8)
+                .setExchangeStreamingEnabled(false)
+                .setExchangeAdaptiveCompressionEnabled(false)
+                .setCostBasedJoinReordering(false)
+                .setMaxReorderedJoins(9)
+                .setAutomaticJoinDistribution(false)
+                .setJoinMaxBroadcastTableSize(DataSize.valueOf("100MB"))
+                .setSkewedJoinFanout(1)
                 .setOptimizeMixedDistinctAggregations(false)
                 .setLegacyOrderBy(false)
                 .setIterativeOptimizerEnabled(true)
@@ -99,6 +117,20 @@ public class TestFeaturesConfig
                 .put("experimental.spiller-spill-path", "/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .put("experimental.spiller-threads", "42")
                 .put("experimental.spiller-max-used-space-threshold", "0.8")
+                .put("experimental.spill-compression-enabled", "true")
+                .put("experimental.dynamic-filtering-enabled", "true")
+                .put("experimental.join-bloom-filter-enabled", "true")
+                .put("experimental.batch-join-probe-enabled", "true")
+                .put("experimental.adaptive-partial-aggregation-enabled", "true")
+                .put("experimental.adaptive-partial-aggregation-min-rows", "1000")
+                .put("experimental.adaptive-partial-aggregation-unique-rows-ratio-threshold", "0.5")
+                .put("experimental.exchange-streaming-enabled", "true")
+                .put("exchange.adaptive-compression-enabled", "true")
+                .put("optimizer.cost-based-join-reordering", "true")
+                .put("optimizer.max-reordered-joins", "5")
+                .put("optimizer.automatic-join-distribution", "true")
+                .put("optimizer.join-max-broadcast-table-size", "10MB")
+                .put("optimizer.skewed-join-fanout", "4")
                 .put("exchange.compression-enabled", "true")
                 .put("optimizer.enable-intermediate-aggregations", "true")
                 .build();
@@ -131,6 +163,20 @@ public class TestFeaturesConfig
                 .put("experimental.spiller-spill-path", "/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .put("experimental.spiller-threads", "42")
                 .put("experimental.spiller-max-used-space-threshold", "0.8")
+                .put("experimental.spill-compression-enabled", "true")
+                .put("experimental.dynamic-filtering-enabled", "true")
+                .put("experimental.join-bloom-filter-enabled", "true")
+                .put("experimental.batch-join-probe-enabled", "true")
+                .put("experimental.adaptive-partial-aggregation-enabled", "true")
+                .put("experimental.adaptive-partial-aggregation-min-rows", "1000")
+                .put("experimental.adaptive-partial-aggregation-unique-rows-ratio-threshold", "0.5")
+                .put("experimental.exchange-streaming-enabled", "true")
+                .put("exchange.adaptive-compression-enabled", "true")
+                .put("optimizer.cost-based-join-reordering", "true")
+                .put("optimizer.max-reordered-joins", "5")
+                .put("optimizer.automatic-join-distribution", "true")
+                .put("optimizer.join-max-broadcast-table-size", "10MB")
+                .put("optimizer.skewed-join-fanout", "4")
                 .put("exchange.compression-enabled", "true")
                 .put("optimizer.enable-intermediate-aggregations", "true")
                 .build();
@@ -163,6 +209,20 @@ public class TestFeaturesConfig
                 .setSpillerSpillPaths("/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .setSpillerThreads(42)
                 .setSpillMaxUsedSpaceThreshold(0.8)
+                .setSpillCompressionEnabled(true)
+                .setDynamicFilteringEnabled(true)
+                .setJoinBloomFilterEnabled(true)
+                .setBatchJoinProbeEnabled(true)
+                .setAdaptivePartialAggregationEnabled(true)
+                .setAdaptivePartialAggregationMinRows(1000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.5)
+                .setExchangeStreamingEnabled(true)
+                .setExchangeAdaptiveCompressionEnabled(true)
+                .setCostBasedJoinReordering(true)
+                .setMaxReorderedJoins(5)
+                .setAutomaticJoinDistribution(true)
+                .setJoinMaxBroadcastTableSize(DataSize.valueOf("10MB"))
+                .setSkewedJoinFanout(4)
                 .setLegacyOrderBy(true)
                 .setExchangeCompressionEnabled(true)
                 .setEnableIntermediateAggregations(true);
@@ -170,4 +230,11 @@ public class TestFeaturesConfig
         assertFullMapping(properties, expected);
         assertDeprecatedEquivalence(FeaturesConfig.class, properties, propertiesLegacy);
     }
+
+    @Test
+    public void testValidation()
+    {
+        assertFailsValidation(new FeaturesConfig().setMaxReorderedJoins(1), "maxReorderedJoins", "must be greater than or equal to 2", Min.class);
+        assertFailsValidation(new FeaturesConfig().setMaxReorderedJoins(11), "maxReorderedJoins", "must be less than or equal to 10", Max.class);
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner;
+
+import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
+import com.facebook.presto.sql.planner.optimizations.PruneUnreferencedOutputs;
+import com.facebook.presto.sql.planner.optimizations.UnaliasSymbolReferences;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestStatsRecorder
+{
+    @Test
+    public void testOptimizerStats()
+    {
+        PlanOptimizer first = new PruneUnreferencedOutputs();
+        PlanOptimizer second = new UnaliasSymbolReferences();
+        PlanOptimizer third = new PruneUnreferencedOutputs();
+
+        StatsRecorder recorder = new StatsRecorder();
+        recorder.registerOptimizers(ImmutableList.of(first, second, third));
+
+        recorder.record(first, 1_000);
+        recorder.record(first, 2_000);
+        recorder.recordFailure(third);
+        // the optimizers that are not registered are ignored
+        recorder.record(new UnaliasSymbolReferences(), 1_000);
+
+        // the optimizers of the same class have their own stats
+        Map<String, OptimizerStats> stats = recorder.getOptimizerStats();
+        assertEquals(stats.keySet(), ImmutableSet.of("00_PruneUnreferencedOutputs", "01_UnaliasSymbolReferences", "02_PruneUnreferencedOutputs"));
+        assertEquals(stats.get("00_PruneUnreferencedOutputs").getTime().getCount(), 2.0);
+        assertEquals(stats.get("00_PruneUnreferencedOutputs").getFailures(), 0);
+        assertEquals(stats.get("01_UnaliasSymbolReferences").getTime().getCount(), 0.0);
+        assertEquals(stats.get("02_PruneUnreferencedOutputs").getTime().getCount(), 0.0);
+        assertEquals(stats.get("02_PruneUnreferencedOutputs").getFailures(), 1);
+    }
+}
@@ -17,11 +17,17 @@ import com.facebook.presto.Session;
 import com.facebook.presto.matching.Captures;
 import com.facebook.presto.matching.Pattern;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.sql.planner.Plan;
 import com.facebook.presto.sql.planner.StatsRecorder;
 import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
 import com.facebook.presto.sql.planner.plan.Assignments;
+import com.facebook.presto.sql.planner.plan.FilterNode;
+import com.facebook.presto.sql.planner.plan.LimitNode;
 import com.facebook.presto.sql.planner.plan.PlanNode;
 import com.facebook.presto.sql.planner.plan.ProjectNode;
+import com.facebook.presto.sql.planner.plan.TableScanNode;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.LogicalBinaryExpression;
 import com.facebook.presto.testing.LocalQueryRunner;
 import com.facebook.presto.tpch.TpchConnectorFactory;
 import com.google.common.collect.ImmutableList;
@@ -34,9 +40,14 @@ import org.testng.annotations.Test;
 import java.util.Optional;
 
 import static com.facebook.presto.spi.StandardErrorCode.OPTIMIZER_TIMEOUT;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
+import static com.facebook.presto.sql.planner.plan.Patterns.filter;
 import static com.facebook.presto.sql.planner.plan.Patterns.project;
+import static com.facebook.presto.sql.planner.plan.Patterns.tableScan;
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestIterativeOptimizer
@@ -85,6 +96,95 @@ public class TestIterativeOptimizer
         }
     }
 
+    @Test
+    public void cheaperAlternativeIsChosen()
+    {
+        // the scan of the finished orders reads fewer rows than the scan of the finished and open orders
+        Plan plan = planWithAlternative("SELECT * FROM orders WHERE orderstatus = 'F' OR orderstatus = 'O'", new RemoveSecondDisjunct());
+        assertTrue(searchFrom(plan.getRoot()).where(FilterNode.class::isInstance).matches());
+        assertFalse(searchFrom(plan.getRoot()).where(node -> node instanceof FilterNode && isDisjunction(((FilterNode) node).getPredicate())).matches());
+    }
+
+    @Test
+    public void costlierAlternativeIsNotChosen()
+    {
+        assertFalse(searchFrom(planWithAlternative("SELECT * FROM nation", new AddLimit(1000)).getRoot()).where(LimitNode.class::isInstance).matches());
+    }
+
+    private Plan planWithAlternative(String sql, Rule<?> rule)
+    {
+        PlanOptimizer optimizer = new IterativeOptimizer(new StatsRecorder(), queryRunner.getCostCalculator(), ImmutableSet.of(rule));
+        Session session = Session.builder(queryRunner.getDefaultSession())
+                .setSystemProperty("iterative_optimizer_timeout", "1m")
+                .build();
+
+        return queryRunner.inTransaction(session, transactionSession -> queryRunner.createPlan(transactionSession, sql, ImmutableList.of(optimizer)));
+    }
+
+    private static boolean isDisjunction(Expression expression)
+    {
+        return expression instanceof LogicalBinaryExpression && ((LogicalBinaryExpression) expression).getType() == LogicalBinaryExpression.Type.OR;
+    }
+
+    private static class RemoveSecondDisjunct
+            implements Rule<FilterNode>
+    {
+        @Override
+        public Pattern<FilterNode> getPattern()
+        {
+            return filter();
+        }
+
+        @Override
+        public boolean isCostBased()
+        {
+            return true;
+        }
+
+        // Only equivalent to the filter when no rows match the second disjunct,
+        // but the optimizer can't tell the difference.
+        @Override
+        public Optional<PlanNode> apply(FilterNode filter, Captures captures, Context context)
+        {
+            if (!isDisjunction(filter.getPredicate())) {
+                return Optional.empty();
+            }
+            Expression firstDisjunct = ((LogicalBinaryExpression) filter.getPredicate()).getLeft();
+            return Optional.of(new FilterNode(context.getIdAllocator().getNextId(), filter.getSource(), firstDisjunct));
+        }
+    }
+
+    private static class AddLimit
+            implements Rule<TableScanNode>
+    {
+        private final long count;
+
+        public AddLimit(long count)
+        {
+            this.count = count;
+        }
+
+        @Override
+        public Pattern<TableScanNode> getPattern()
+        {
+            return tableScan();
+        }
+
+        @Override
+        public boolean isCostBased()
+        {
+            return true;
+        }
+
+        // Only equivalent to the table scan when the limit is larger than the table,
+        // but the optimizer can't tell the difference.
+        @Override
+        public Optional<PlanNode> apply(TableScanNode tableScan, Captures captures, Context context)
+        {
+            return Optional.of(new LimitNode(context.getIdAllocator().getNextId(), tableScan, count, false));
+        }
+    }
+
     private static class NonConvergingRule
             implements Rule<ProjectNode>
     {
@@ -184,6 +184,47 @@ public class TestMemo
                         node(y2.getId(), node(z.getId()))));
     }
 
+    /*
+      From: X -> Y -> Z
+      To:   X -> Y' -> W, keeping Y -> Z as an alternative
+     */
+    @Test
+    public void testAlternatives()
+            throws Exception
+    {
+        PlanNode z = node();
+        PlanNode y = node(z);
+        PlanNode x = node(y);
+
+        Memo memo = new Memo(idAllocator, x);
+        assertEquals(memo.getGroupCount(), 3);
+
+        int yGroup = getChildGroup(memo, memo.getRootGroup());
+
+        PlanNode w = node();
+        PlanNode alternative = memo.addAlternative(yGroup, node(w), "rule").get();
+        assertEquals(memo.getGroupCount(), 4);
+        assertEquals(memo.getExpressions(yGroup).size(), 2);
+
+        // the alternative is not chosen until it is asked for
+        assertMatchesStructure(
+                memo.extract(),
+                node(x.getId(),
+                        node(y.getId(), node(z.getId()))));
+
+        memo.choose(yGroup, alternative);
+        assertEquals(memo.getNode(yGroup), alternative);
+        assertEquals(memo.getExpressions(yGroup).size(), 2);
+        assertMatchesStructure(
+                memo.extract(),
+                node(x.getId(),
+                        node(alternative.getId(), node(w.getId()))));
+
+        // the children of the alternatives are collected along with the group
+        memo.replace(memo.getRootGroup(), node(), "rule");
+        assertEquals(memo.getGroupCount(), 1);
+    }
+
     private static void assertMatchesStructure(PlanNode actual, PlanNode expected)
     {
         assertEquals(actual.getClass(), expected.getClass());
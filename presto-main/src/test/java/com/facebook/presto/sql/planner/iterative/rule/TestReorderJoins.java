@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative.rule;
+
+import com.facebook.presto.cost.CoefficientBasedCostCalculator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.iterative.rule.test.BaseRuleTest;
+import com.facebook.presto.sql.planner.iterative.rule.test.PlanBuilder;
+import com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause;
+import com.facebook.presto.sql.planner.plan.ValuesNode;
+import com.facebook.presto.sql.tree.Expression;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.facebook.presto.SystemSessionProperties.COST_BASED_JOIN_REORDERING;
+import static com.facebook.presto.SystemSessionProperties.MAX_REORDERED_JOINS;
+import static com.facebook.presto.SystemSessionProperties.REORDER_JOINS;
+import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.any;
+import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.join;
+import static com.facebook.presto.sql.planner.iterative.rule.test.PlanBuilder.expression;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+@Test(singleThreaded = true)
+public class TestReorderJoins
+        extends BaseRuleTest
+{
+    @Test
+    public void testBuildSideIsTheSmallerSource()
+    {
+        tester().assertThat(new ReorderJoins(new CoefficientBasedCostCalculator(tester().getMetadata())))
+                .setSystemProperty(REORDER_JOINS, "true")
+                .setSystemProperty(COST_BASED_JOIN_REORDERING, "true")
+                .on(p -> p.join(
+                        INNER,
+                        values(p, "a", 1),
+                        values(p, "b", 10),
+                        new EquiJoinClause(p.symbol("a"), p.symbol("b"))))
+                .matches(
+                        join(INNER,
+                                ImmutableList.of(aliases -> new EquiJoinClause(new Symbol("b"), new Symbol("a"))),
+                                any(),
+                                any()));
+    }
+
+    @Test
+    public void testDoesNotFireForCheapestOrder()
+    {
+        tester().assertThat(new ReorderJoins(new CoefficientBasedCostCalculator(tester().getMetadata())))
+                .setSystemProperty(REORDER_JOINS, "true")
+                .setSystemProperty(COST_BASED_JOIN_REORDERING, "true")
+                .on(p -> p.join(
+                        INNER,
+                        values(p, "a", 10),
+                        values(p, "b", 1),
+                        new EquiJoinClause(p.symbol("a"), p.symbol("b"))))
+                .doesNotFire();
+    }
+
+    @Test
+    public void testAvoidsCrossJoin()
+    {
+        // a and b are only joined through c, so a cross join of a and b is expensive
+        tester().assertThat(new ReorderJoins(new CoefficientBasedCostCalculator(tester().getMetadata())))
+                .setSystemProperty(REORDER_JOINS, "true")
+                .setSystemProperty(COST_BASED_JOIN_REORDERING, "true")
+                .on(p -> p.join(
+                        INNER,
+                        p.join(INNER, values(p, "a", 100), values(p, "b", 300)),
+                        values(p, "c", 10),
+                        new EquiJoinClause(p.symbol("a"), p.symbol("c")),
+                        new EquiJoinClause(p.symbol("b"), p.symbol("c"))))
+                .matches(
+                        join(INNER,
+                                ImmutableList.of(aliases -> new EquiJoinClause(new Symbol("b"), new Symbol("c"))),
+                                any(),
+                                join(INNER,
+                                        ImmutableList.of(aliases -> new EquiJoinClause(new Symbol("a"), new Symbol("c"))),
+                                        any(),
+                                        any())));
+    }
+
+    @Test
+    public void testEliminatesCrossJoinsOfLargeGraphs()
+    {
+        // the graph has more nodes than are reordered by cost, so only the cross join is eliminated
+        tester().assertThat(new ReorderJoins(new CoefficientBasedCostCalculator(tester().getMetadata())))
+                .setSystemProperty(REORDER_JOINS, "true")
+                .setSystemProperty(COST_BASED_JOIN_REORDERING, "true")
+                .setSystemProperty(MAX_REORDERED_JOINS, "2")
+                .on(p -> p.join(
+                        INNER,
+                        p.join(INNER, values(p, "a", 100), values(p, "b", 300)),
+                        values(p, "c", 10),
+                        new EquiJoinClause(p.symbol("a"), p.symbol("c")),
+                        new EquiJoinClause(p.symbol("b"), p.symbol("c"))))
+                .matches(
+                        join(INNER,
+                                ImmutableList.of(aliases -> new EquiJoinClause(new Symbol("c"), new Symbol("b"))),
+                                join(INNER,
+                                        ImmutableList.of(aliases -> new EquiJoinClause(new Symbol("a"), new Symbol("c"))),
+                                        any(),
+                                        any()),
+                                any()));
+    }
+
+    @Test
+    public void testDisabledWithoutCostBasedJoinReordering()
+    {
+        tester().assertThat(new ReorderJoins(new CoefficientBasedCostCalculator(tester().getMetadata())))
+                .setSystemProperty(REORDER_JOINS, "true")
+                .on(p -> p.join(
+                        INNER,
+                        values(p, "a", 1),
+                        values(p, "b", 10),
+                        new EquiJoinClause(p.symbol("a"), p.symbol("b"))))
+                .doesNotFire();
+    }
+
+    private static ValuesNode values(PlanBuilder planBuilder, String symbol, int rowCount)
+    {
+        List<List<Expression>> rows = IntStream.range(0, rowCount)
+                .mapToObj(row -> ImmutableList.of(expression(Integer.toString(row))))
+                .collect(toImmutableList());
+        return planBuilder.values(ImmutableList.of(planBuilder.symbol(symbol)), rows);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.optimizations;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.sql.planner.LogicalPlanner;
+import com.facebook.presto.sql.planner.Plan;
+import com.facebook.presto.sql.planner.assertions.BasePlanTest;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.SemiJoinNode;
+import org.intellij.lang.annotations.Language;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static com.facebook.presto.SystemSessionProperties.AUTOMATIC_JOIN_DISTRIBUTION;
+import static com.facebook.presto.SystemSessionProperties.DISTRIBUTED_JOIN;
+import static com.facebook.presto.SystemSessionProperties.JOIN_MAX_BROADCAST_TABLE_SIZE;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static org.testng.Assert.assertEquals;
+
+public class TestDetermineJoinDistributionType
+        extends BasePlanTest
+{
+    private static final String JOIN_QUERY = "SELECT n.name FROM nation n JOIN region r ON n.regionkey = r.regionkey";
+    private static final String SEMI_JOIN_QUERY = "SELECT name FROM nation WHERE regionkey IN (SELECT regionkey FROM region)";
+
+    @Test
+    public void testFollowsDistributedJoin()
+    {
+        assertEquals(getJoin(JOIN_QUERY, "false", "true", "100MB").getDistributionType(), Optional.of(JoinNode.DistributionType.PARTITIONED));
+        assertEquals(getJoin(JOIN_QUERY, "false", "false", "100MB").getDistributionType(), Optional.of(JoinNode.DistributionType.REPLICATED));
+    }
+
+    @Test
+    public void testReplicatesSmallBuildSide()
+    {
+        assertEquals(getJoin(JOIN_QUERY, "true", "true", "1MB").getDistributionType(), Optional.of(JoinNode.DistributionType.REPLICATED));
+        assertEquals(getSemiJoin(SEMI_JOIN_QUERY, "true", "true", "1MB").getDistributionType(), Optional.of(SemiJoinNode.DistributionType.REPLICATED));
+    }
+
+    @Test
+    public void testPartitionsLargeBuildSide()
+    {
+        // the 5 keys of the region table are larger than 10 bytes
+        assertEquals(getJoin(JOIN_QUERY, "true", "false", "10B").getDistributionType(), Optional.of(JoinNode.DistributionType.PARTITIONED));
+        assertEquals(getSemiJoin(SEMI_JOIN_QUERY, "true", "false", "10B").getDistributionType(), Optional.of(SemiJoinNode.DistributionType.PARTITIONED));
+    }
+
+    private JoinNode getJoin(@Language("SQL") String sql, String automatic, String distributed, String maxBroadcastTableSize)
+    {
+        return getOnlyElement(searchFrom(plan(sql, automatic, distributed, maxBroadcastTableSize).getRoot())
+                .where(JoinNode.class::isInstance)
+                .findAll());
+    }
+
+    private SemiJoinNode getSemiJoin(@Language("SQL") String sql, String automatic, String distributed, String maxBroadcastTableSize)
+    {
+        return getOnlyElement(searchFrom(plan(sql, automatic, distributed, maxBroadcastTableSize).getRoot())
+                .where(SemiJoinNode.class::isInstance)
+                .findAll());
+    }
+
+    private Plan plan(@Language("SQL") String sql, String automatic, String distributed, String maxBroadcastTableSize)
+    {
+        Session session = Session.builder(getQueryRunner().getDefaultSession())
+                .setSystemProperty(AUTOMATIC_JOIN_DISTRIBUTION, automatic)
+                .setSystemProperty(DISTRIBUTED_JOIN, distributed)
+                .setSystemProperty(JOIN_MAX_BROADCAST_TABLE_SIZE, maxBroadcastTableSize)
+                .build();
+        return getQueryRunner().inTransaction(session, transactionSession -> getQueryRunner().createPlan(transactionSession, sql, LogicalPlanner.Stage.OPTIMIZED_AND_VALIDATED, false));
+    }
+}
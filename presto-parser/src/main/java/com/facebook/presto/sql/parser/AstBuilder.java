@@ -692,6 +692,8 @@ class AstBuilder
                 return new ExplainType(getLocation(context), ExplainType.Type.DISTRIBUTED);
             case SqlBaseLexer.VALIDATE:
                 return new ExplainType(getLocation(context), ExplainType.Type.VALIDATE);
+            case SqlBaseLexer.COST:
+                return new ExplainType(getLocation(context), ExplainType.Type.COST);
         }
 
         throw new IllegalArgumentException("Unsupported EXPLAIN type: " + context.value.getText());
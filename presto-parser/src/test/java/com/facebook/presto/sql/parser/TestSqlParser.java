@@ -1639,6 +1639,12 @@ public class TestSqlParser
                         ImmutableList.of(
                                 new ExplainType(ExplainType.Type.LOGICAL),
                                 new ExplainFormat(ExplainFormat.Type.TEXT))));
+        assertStatement("EXPLAIN (TYPE COST) SELECT * FROM t",
+                new Explain(
+                        simpleQuery(selectList(new AllColumns()), table(QualifiedName.of("t"))),
+                        false,
+                        false,
+                        ImmutableList.of(new ExplainType(ExplainType.Type.COST))));
     }
 
     @Test
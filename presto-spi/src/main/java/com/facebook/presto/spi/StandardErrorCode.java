@@ -81,6 +81,7 @@ public enum StandardErrorCode
     OPTIMIZER_TIMEOUT(0x0001_0014, INTERNAL_ERROR),
     OUT_OF_SPILL_SPACE(0x0001_0015, INTERNAL_ERROR),
     REMOTE_HOST_GONE(0x0001_0016, INTERNAL_ERROR),
+    CORRUPT_SPILL_FILE(0x0001_0017, INTERNAL_ERROR),
 
     GENERIC_INSUFFICIENT_RESOURCES(0x0002_0000, INSUFFICIENT_RESOURCES),
     EXCEEDED_MEMORY_LIMIT(0x0002_0001, INSUFFICIENT_RESOURCES),
@@ -17,10 +17,26 @@ import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
+import com.facebook.presto.spi.predicate.TupleDomain;
 
 import java.util.List;
 
 public interface ConnectorPageSourceProvider
 {
     ConnectorPageSource createPageSource(ConnectorTransactionHandle transactionHandle, ConnectorSession session, ConnectorSplit split, List<ColumnHandle> columns);
+
+    /**
+     * Creates a page source for the split, additionally passing a dynamic filter computed by the engine
+     * during query execution, e.g. from the build side of a join. Rows that do not satisfy the filter
+     * may be skipped by the connector, but doing so is not required.
+     */
+    default ConnectorPageSource createPageSource(
+            ConnectorTransactionHandle transactionHandle,
+            ConnectorSession session,
+            ConnectorSplit split,
+            List<ColumnHandle> columns,
+            TupleDomain<ColumnHandle> dynamicFilter)
+    {
+        return createPageSource(transactionHandle, session, split, columns);
+    }
 }
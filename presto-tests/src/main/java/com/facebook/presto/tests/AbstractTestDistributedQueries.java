@@ -935,6 +935,27 @@ public abstract class AbstractTestDistributedQueries
                 format("VALUES %s", joinOutputRowCount));
     }
 
+    @Test
+    public void testSkewedJoin()
+    {
+        Session session = Session.builder(getSession())
+                .setSystemProperty(SystemSessionProperties.DISTRIBUTED_JOIN, "true")
+                .setSystemProperty(SystemSessionProperties.SKEWED_JOIN_FANOUT, "3")
+                .build();
+
+        // few distinct keys, so that every key is hot
+        assertQuery(
+                session,
+                "SELECT l.linenumber, count(*), sum(n.nationkey) FROM lineitem l JOIN nation n ON l.linenumber = n.regionkey GROUP BY l.linenumber");
+        assertQuery(
+                session,
+                "SELECT l.linenumber, count(*), sum(n.nationkey) FROM lineitem l LEFT JOIN nation n ON l.linenumber = n.regionkey GROUP BY l.linenumber");
+        // build outer joins are not salted
+        assertQuery(
+                session,
+                "SELECT n.regionkey, count(*), count(l.linenumber) FROM lineitem l RIGHT JOIN nation n ON l.linenumber = n.regionkey GROUP BY n.regionkey");
+    }
+
     @Test
     public void testWrittenStats()
     {